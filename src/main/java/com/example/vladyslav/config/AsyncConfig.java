@@ -0,0 +1,118 @@
+package com.example.vladyslav.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Dedicated, bounded executors. Kept separate from Spring's applicationTaskExecutor
+ * (see spring.task.execution.mode=force) so one workload cannot starve another.
+ */
+@Configuration
+public class AsyncConfig {
+
+    /**
+     * Per-doctor availability computations for multi-doctor searches.
+     * When the queue is full the request thread runs the task itself instead of failing.
+     */
+    @Bean(name = "availabilitySearchExecutor")
+    public ThreadPoolTaskExecutor availabilitySearchExecutor(@Value("${app.availability.search.threads:8}") int threads,
+                                                             @Value("${app.availability.search.queue-capacity:500}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("availability-search-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Computes and publishes live slot deltas after bookings. Pushes are best effort: when the queue is full the
+     * task is rejected (and dropped by the caller) rather than run on the booking thread.
+     */
+    @Bean(name = "slotPushExecutor")
+    public ThreadPoolTaskExecutor slotPushExecutor(@Value("${app.ws.push.threads:2}") int threads,
+                                                   @Value("${app.ws.push.queue-capacity:10000}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("slot-push-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Waitlist matching after cancellations. Runs off the request thread; when the queue is full the freed slot
+     * is simply not offered (it is still bookable by anyone).
+     */
+    @Bean(name = "waitlistExecutor")
+    public ThreadPoolTaskExecutor waitlistExecutor(@Value("${app.waitlist.threads:2}") int threads,
+                                                   @Value("${app.waitlist.queue-capacity:1000}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("waitlist-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Slot inventory rebuilds of a doctor's whole horizon after a rule change. When the queue is full the rebuild is
+     * dropped, the hourly refresh of the horizon picks the doctor up.
+     */
+    @Bean(name = "slotInventoryExecutor")
+    public ThreadPoolTaskExecutor slotInventoryExecutor(@Value("${app.slot-inventory.threads:2}") int threads,
+                                                        @Value("${app.slot-inventory.queue-capacity:500}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("slot-inventory-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Doctor.nextAvailableAt recomputes after time-off and rule changes. When the queue is full the recompute is
+     * dropped, the sweeps in NextAvailabilityService pick the doctor up.
+     */
+    @Bean(name = "nextAvailableExecutor")
+    public ThreadPoolTaskExecutor nextAvailableExecutor(@Value("${app.next-available.threads:2}") int threads,
+                                                        @Value("${app.next-available.queue-capacity:1000}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("next-available-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Outbox delivery, one task per doctor with events in the batch. The dispatcher waits for the whole batch,
+     * so when the queue is full its own thread delivers instead.
+     */
+    @Bean(name = "outboxExecutor")
+    public ThreadPoolTaskExecutor outboxExecutor(@Value("${app.outbox.threads:4}") int threads,
+                                                 @Value("${app.outbox.queue-capacity:1000}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("outbox-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.initialize();
+        return executor;
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.vladyslav.config;
+
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.CacheControl;
+import org.springframework.web.filter.ShallowEtagHeaderFilter;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.mvc.WebContentInterceptor;
+
+import java.time.Duration;
+
+/**
+ * HTTP caching for the read endpoints.
+ *
+ * Single entities and availability set strong ETags themselves (ETagService) and answer If-None-Match before any
+ * mapping. Everything else under the same routes falls back to a body-hash ETag, which saves the download but
+ * not the work. Cache-Control is set per route; responses are private because all of these require a login.
+ */
+@Configuration
+public class HttpCacheConfig implements WebMvcConfigurer {
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        WebContentInterceptor interceptor = new WebContentInterceptor();
+
+        // Reference data, changes rarely
+        interceptor.addCacheMapping(CacheControl.maxAge(Duration.ofHours(1)).cachePrivate(), "/api/specialities/**");
+
+        // Profiles: short freshness, then revalidate with the ETag
+        interceptor.addCacheMapping(CacheControl.maxAge(Duration.ofSeconds(60)).cachePrivate(),
+                "/api/doctors/**", "/api/clinics/**");
+
+        // Calendars change with every booking: always revalidate (cheap, usually a 304)
+        interceptor.addCacheMapping(CacheControl.noCache().cachePrivate(),
+                "/api/availability-rules/doctors/**", "/api/availability-rules/list/**");
+
+        // Same answer for every visitor, computed at most once a minute anyway
+        interceptor.addCacheMapping(CacheControl.maxAge(Duration.ofSeconds(60)).cachePrivate(), "/api/availability-rules/heatmap");
+
+        interceptor.addCacheMapping(CacheControl.noStore(), "/api/availability-rules/earliest", "/api/availability-rules/cache/**");
+
+        registry.addInterceptor(interceptor)
+                .addPathPatterns("/api/specialities/**", "/api/doctors/**", "/api/clinics/**", "/api/availability-rules/**");
+    }
+
+    @Bean
+    public FilterRegistrationBean<ShallowEtagHeaderFilter> shallowEtagHeaderFilter() {
+        FilterRegistrationBean<ShallowEtagHeaderFilter> registration = new FilterRegistrationBean<>(new ShallowEtagHeaderFilter());
+        registration.addUrlPatterns("/api/specialities/*", "/api/doctors/*", "/api/clinics/*", "/api/availability-rules/*");
+        registration.setName("shallowEtagHeaderFilter");
+        return registration;
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.vladyslav.config;
+
+import com.example.vladyslav.service.IdempotencyService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Idempotency-Key support for the booking endpoints (book, series, reschedule, cancel, holds, ...).
+ * Runs after Spring Security so keys are scoped to the authenticated caller.
+ */
+@Configuration
+public class IdempotencyConfig {
+
+    @Bean
+    public FilterRegistrationBean<IdempotencyFilter> idempotencyFilter(IdempotencyService idempotencyService, ObjectMapper objectMapper) {
+        FilterRegistrationBean<IdempotencyFilter> registration = new FilterRegistrationBean<>(new IdempotencyFilter(idempotencyService, objectMapper));
+        registration.addUrlPatterns("/api/appointments", "/api/appointments/*", "/api/holds", "/api/holds/*");
+        registration.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER + 10);
+        registration.setName("idempotencyFilter");
+        return registration;
+    }
+}
@@ -0,0 +1,207 @@
+package com.example.vladyslav.config;
+
+import com.example.vladyslav.exception.ConflictException;
+import com.example.vladyslav.exception.OurException;
+import com.example.vladyslav.service.IdempotencyService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Handles the Idempotency-Key header on mutating requests: the first request runs, retries get its stored
+ * response back (status, headers such as Location, and body, marked with Idempotent-Replayed) without reaching
+ * the controller. Requests without the header pass through untouched.
+ */
+public class IdempotencyFilter extends OncePerRequestFilter {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 255;
+    private static final Set<String> METHODS = Set.of("POST", "PUT", "PATCH", "DELETE");
+    // Set again from the stored body and content type, or specific to the original exchange
+    private static final Set<String> NOT_REPLAYED = Set.of("content-type", "content-length", "transfer-encoding", "date",
+            "set-cookie", REPLAYED_HEADER.toLowerCase());
+
+    private final IdempotencyService idempotencyService;
+    private final ObjectMapper objectMapper;
+
+    public IdempotencyFilter(IdempotencyService idempotencyService, ObjectMapper objectMapper) {
+        this.idempotencyService = idempotencyService;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !METHODS.contains(request.getMethod()) || request.getHeader(HEADER) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String key = request.getHeader(HEADER).trim();
+        if (key.isEmpty() || key.length() > MAX_KEY_LENGTH) {
+            writeError(response, HttpStatus.BAD_REQUEST, "Idempotency-Key must be 1-" + MAX_KEY_LENGTH + " characters.");
+            return;
+        }
+
+        CachedBodyRequest cachedRequest = new CachedBodyRequest(request);
+        ContentCachingResponseWrapper capturing = new ContentCachingResponseWrapper(response);
+
+        IdempotencyService.Outcome outcome;
+        try {
+            outcome = idempotencyService.execute(scope(key), fingerprint(cachedRequest), () -> {
+                try {
+                    chain.doFilter(cachedRequest, capturing);
+                } catch (IOException | ServletException e) {
+                    throw new ChainException(e);
+                }
+                return new IdempotencyService.StoredResponse(capturing.getStatus(), capturing.getContentType(),
+                        headers(capturing), capturing.getContentAsByteArray(), null);
+            });
+        } catch (OurException e) {
+            writeError(response, HttpStatus.UNPROCESSABLE_ENTITY, e.getMessage());
+            return;
+        } catch (ConflictException e) {
+            writeError(response, HttpStatus.CONFLICT, e.getMessage());
+            return;
+        } catch (ChainException e) {
+            if (e.getCause() instanceof IOException io) throw io;
+            throw (ServletException) e.getCause();
+        }
+
+        if (!outcome.replayed()) {
+            capturing.copyBodyToResponse();
+            return;
+        }
+
+        IdempotencyService.StoredResponse stored = outcome.response();
+        response.setStatus(stored.status());
+        response.setHeader(REPLAYED_HEADER, "true");
+        if (stored.headers() != null) {
+            stored.headers().forEach((name, values) -> values.forEach(value -> response.addHeader(name, value)));
+        }
+        if (stored.contentType() != null) response.setContentType(stored.contentType());
+        if (stored.body() != null) {
+            response.setContentLength(stored.body().length);
+            response.getOutputStream().write(stored.body());
+        }
+    }
+
+    private static Map<String, List<String>> headers(HttpServletResponse response) {
+        Map<String, List<String>> headers = new LinkedHashMap<>();
+        for (String name : response.getHeaderNames()) {
+            if (NOT_REPLAYED.contains(name.toLowerCase())) continue;
+            headers.putIfAbsent(name, List.copyOf(response.getHeaders(name)));
+        }
+        return headers;
+    }
+
+    // Keys are per caller, two users picking the same key must not see each other's responses
+    private static String scope(String key) {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        String principal = auth != null && auth.isAuthenticated() ? auth.getName() : "anonymous";
+        return principal + ":" + key;
+    }
+
+    private static String fingerprint(CachedBodyRequest request) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update((request.getMethod() + " " + request.getRequestURI() + "\n").getBytes(StandardCharsets.UTF_8));
+            digest.update(request.body);
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void writeError(HttpServletResponse response, HttpStatus status, String message) throws IOException {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), Map.of("error", status.getReasonPhrase(), "message", message));
+    }
+
+    // Carries checked exceptions of the filter chain through the Supplier
+    private static final class ChainException extends RuntimeException {
+        ChainException(Exception cause) {
+            super(cause);
+        }
+    }
+
+    // The body is read once for the fingerprint and served again to the controller
+    private static final class CachedBodyRequest extends HttpServletRequestWrapper {
+
+        private final byte[] body;
+
+        CachedBodyRequest(HttpServletRequest request) throws IOException {
+            super(request);
+            this.body = request.getInputStream().readAllBytes();
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream in = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public boolean isFinished() {
+                    return in.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                // The whole body is already in memory, so it is available and read in one go
+                @Override
+                public void setReadListener(ReadListener listener) {
+                    try {
+                        listener.onDataAvailable();
+                        listener.onAllDataRead();
+                    } catch (IOException e) {
+                        listener.onError(e);
+                    }
+                }
+
+                @Override
+                public int read() {
+                    return in.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return in.read(b, off, len);
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            return new BufferedReader(new InputStreamReader(getInputStream(), StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.vladyslav.config;
+
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Explains every QueryShapes entry and reports the ones the planner cannot serve from an index.
+ *
+ * A COLLSCAN or a blocking SORT stage in the winning plan is a failure; a winning index other than the expected one
+ * is only reported, since with near-empty collections the planner may pick between equally good candidates.
+ * Runs once the application is ready (after the index runners in MongoConfig) and from the tests. A failure stops
+ * the startup unless app.query-shapes.fail-on-scan is false; QueryShapeExplainTest fails the build the same way.
+ */
+@Component
+public class IndexCoverageVerifier {
+
+    private static final Logger log = LoggerFactory.getLogger(IndexCoverageVerifier.class);
+
+    public enum Problem {
+        COLLSCAN, IN_MEMORY_SORT, OTHER_INDEX, NO_COLLECTION;
+
+        public boolean isFailure() {
+            return this == COLLSCAN || this == IN_MEMORY_SORT;
+        }
+    }
+
+    public record Finding(String shape, Problem problem, String detail) {}
+
+    private final MongoTemplate mongoTemplate;
+    private final boolean enabled;
+    private final boolean failOnScan;
+
+    public IndexCoverageVerifier(MongoTemplate mongoTemplate,
+                                 @Value("${app.query-shapes.verify:true}") boolean enabled,
+                                 @Value("${app.query-shapes.fail-on-scan:true}") boolean failOnScan) {
+        this.mongoTemplate = mongoTemplate;
+        this.enabled = enabled;
+        this.failOnScan = failOnScan;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void verifyOnStartup() {
+        if (!enabled) return;
+
+        List<Finding> findings;
+        try {
+            findings = verify(QueryShapes.all());
+        } catch (RuntimeException e) {
+            log.warn("Could not verify query shapes", e);
+            return;
+        }
+
+        List<Finding> failures = findings.stream().filter(f -> f.problem().isFailure()).toList();
+        findings.stream().filter(f -> !f.problem().isFailure())
+                .forEach(f -> log.info("Query shape {}: {} ({})", f.shape(), f.problem(), f.detail()));
+        failures.forEach(f -> log.warn("Query shape {} is not served by an index: {} ({})", f.shape(), f.problem(), f.detail()));
+
+        if (failOnScan && !failures.isEmpty()) {
+            throw new IllegalStateException(failures.size() + " query shape(s) fall back to a collection scan or an in-memory sort: "
+                    + failures.stream().map(Finding::shape).toList());
+        }
+    }
+
+    public List<Finding> verify(List<QueryShape> shapes) {
+        List<Finding> findings = new ArrayList<>();
+        for (QueryShape shape : shapes) {
+            findings.addAll(check(shape, explain(shape)));
+        }
+        return findings;
+    }
+
+    Document explain(QueryShape shape) {
+        Document find = new Document("find", shape.collection()).append("filter", shape.filter());
+        if (!shape.sort().isEmpty()) find.append("sort", shape.sort()).append("limit", 20);
+        return mongoTemplate.getDb().runCommand(new Document("explain", find).append("verbosity", "queryPlanner"));
+    }
+
+    /**
+     * Reads the winning plan of an explain result. Handles both the classic plan tree and the slot-based engine's
+     * wrapper (winningPlan.queryPlan).
+     */
+    static List<Finding> check(QueryShape shape, Document explain) {
+        Document planner = explain.get("queryPlanner", Document.class);
+        Document winning = planner != null ? planner.get("winningPlan", Document.class) : null;
+        if (winning == null) return List.of(new Finding(shape.name(), Problem.NO_COLLECTION, "no winning plan in explain output"));
+        if (winning.containsKey("queryPlan")) winning = winning.get("queryPlan", Document.class);
+
+        List<String> stages = new ArrayList<>();
+        List<String> indexes = new ArrayList<>();
+        walk(winning, stages, indexes);
+
+        List<Finding> findings = new ArrayList<>();
+        if (stages.equals(List.of("EOF"))) {
+            findings.add(new Finding(shape.name(), Problem.NO_COLLECTION, shape.collection() + " does not exist yet"));
+            return findings;
+        }
+        if (stages.contains("COLLSCAN")) {
+            findings.add(new Finding(shape.name(), Problem.COLLSCAN, "stages " + stages));
+        }
+        if (stages.contains("SORT")) {
+            findings.add(new Finding(shape.name(), Problem.IN_MEMORY_SORT, "stages " + stages));
+        }
+        if (!indexes.isEmpty() && !indexes.contains(shape.expectedIndex())) {
+            findings.add(new Finding(shape.name(), Problem.OTHER_INDEX, "expected " + shape.expectedIndex() + ", planner chose " + indexes));
+        }
+        return findings;
+    }
+
+    // Stages are nested through inputStage, inputStages (OR, merges) and the like; anything holding a stage is followed
+    private static void walk(Object node, List<String> stages, List<String> indexes) {
+        if (node instanceof Document doc) {
+            if (doc.get("stage") instanceof String stage) {
+                stages.add(stage);
+                if (doc.get("indexName") instanceof String index) indexes.add(index);
+            }
+            for (Map.Entry<String, Object> entry : doc.entrySet()) {
+                walk(entry.getValue(), stages, indexes);
+            }
+        } else if (node instanceof List<?> list) {
+            list.forEach(item -> walk(item, stages, indexes));
+        }
+    }
+}
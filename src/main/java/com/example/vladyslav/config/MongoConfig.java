@@ -1,5 +1,8 @@
 package com.example.vladyslav.config;
 
+import com.example.vladyslav.model.Appointment;
+import com.example.vladyslav.model.Doctor;
+import com.example.vladyslav.service.AppointmentHistory;
 import org.springframework.boot.ApplicationRunner;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -43,9 +46,46 @@ public class MongoConfig {
     }
 
     @Bean
-    public ApplicationRunner ensureDoctorIndexes(MongoTemplate mongoTemplate){
+    public ApplicationRunner ensureAppointmentIndexes(MongoTemplate mongoTemplate){
         return args -> {
+            // Replaced by the partial uniq_doctor_start_scheduled, which lets cancelled slots be booked again
+            IndexOperations indexOps = mongoTemplate.indexOps(Appointment.class);
+            boolean legacy = indexOps.getIndexInfo().stream().anyMatch(i -> "uniq_doctor_start".equals(i.getName()));
+            if (legacy) indexOps.dropIndex("uniq_doctor_start");
+        };
+    }
 
+    @Bean
+    public ApplicationRunner ensureArchiveIndexes(MongoTemplate mongoTemplate){
+        return args -> {
+            // appointments_archive has no entity of its own; the listings merged by AppointmentHistory seek on these
+            IndexOperations indexOps = mongoTemplate.indexOps(AppointmentHistory.ARCHIVE);
+            for (String field : List.of("doctorId", "patientId", "clinicId", "status")) {
+                indexOps.createIndex(new Index()
+                        .on(field, Sort.Direction.ASC)
+                        .on("start", Sort.Direction.DESC)
+                        .on("_id", Sort.Direction.DESC)
+                        .named("idx_" + field.replace("Id", "") + "_start_id"));
+            }
+            indexOps.createIndex(new Index()
+                    .on("doctorId", Sort.Direction.ASC)
+                    .on("status", Sort.Direction.ASC)
+                    .on("start", Sort.Direction.DESC)
+                    .on("_id", Sort.Direction.DESC)
+                    .named("idx_doctor_status_start_id"));
+        };
+    }
+
+    @Bean
+    public ApplicationRunner ensureDoctorIndexes(MongoTemplate mongoTemplate){
+        return args -> {
+            // Replaced by idx_speciality_id_next_available and idx_clinic_id, which index the DBRef ids the queries match on
+            IndexOperations indexOps = mongoTemplate.indexOps(Doctor.class);
+            List<String> legacy = List.of("speciality", "clinic");
+            indexOps.getIndexInfo().stream()
+                    .map(IndexInfo::getName)
+                    .filter(legacy::contains)
+                    .forEach(indexOps::dropIndex);
         };
     }
 }
\ No newline at end of file
@@ -0,0 +1,18 @@
+package com.example.vladyslav.config;
+
+import org.bson.Document;
+
+/**
+ * One query the application issues, as a representative filter and sort, with the index it is meant to run on.
+ * Only the shape matters to the planner; the values are placeholders of the right type.
+ */
+public record QueryShape(String name, String collection, Document filter, Document sort, String expectedIndex) {
+
+    public static QueryShape of(String name, String collection, Document filter, String expectedIndex) {
+        return new QueryShape(name, collection, filter, new Document(), expectedIndex);
+    }
+
+    public QueryShape sortedBy(Document sort) {
+        return new QueryShape(name, collection, filter, sort, expectedIndex);
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.vladyslav.config;
+
+import com.example.vladyslav.service.AppointmentHistory;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Every non-trivial query the application issues, with the index it should use. Lookups by _id alone are left out,
+ * as are the text and geo searches, which need their special index to run at all.
+ *
+ * Add the shape here when adding a repository method or a template query; IndexCoverageVerifier explains each one.
+ */
+public final class QueryShapes {
+
+    private static final String ID = "0123456789abcdef01234567";
+    private static final ObjectId REF = new ObjectId(ID);
+    private static final Date FROM = new Date(1_900_000_000_000L);
+    private static final Date TO = new Date(1_900_086_400_000L);
+
+    private static final Document NEWEST_FIRST = new Document("start", -1).append("_id", -1);
+    private static final Document OLDEST_FIRST = new Document("start", 1).append("_id", 1);
+
+    private QueryShapes() {}
+
+    public static List<QueryShape> all() {
+        return List.of(
+                // AppointmentHistory listings, offset and keyset, on both collections
+                QueryShape.of("appointments.byDoctor", "appointments", eq("doctorId", ID), "idx_doctor_start_id").sortedBy(NEWEST_FIRST),
+                QueryShape.of("appointments.byPatient", "appointments", eq("patientId", ID), "idx_patient_start_id").sortedBy(NEWEST_FIRST),
+                QueryShape.of("appointments.byClinic", "appointments", eq("clinicId", ID), "idx_clinic_start_id").sortedBy(NEWEST_FIRST),
+                QueryShape.of("appointments.byStatus", "appointments", eq("status", "ATTENDED"), "idx_status_start_id").sortedBy(NEWEST_FIRST),
+                QueryShape.of("appointments.byClinicAndRange", "appointments",
+                        eq("clinicId", ID).append("start", range("$gt", FROM, "$lt", TO)), "idx_clinic_start_id").sortedBy(OLDEST_FIRST),
+                QueryShape.of("appointments.byDoctorStatusAndRange", "appointments",
+                        eq("doctorId", ID).append("status", "ATTENDED").append("start", new Document("$gte", FROM)).append("end", new Document("$lte", TO)),
+                        "idx_doctor_status_start_id").sortedBy(OLDEST_FIRST),
+                QueryShape.of("appointments_archive.byDoctor", AppointmentHistory.ARCHIVE, eq("doctorId", ID), "idx_doctor_start_id").sortedBy(NEWEST_FIRST),
+                QueryShape.of("appointments_archive.byPatient", AppointmentHistory.ARCHIVE, eq("patientId", ID), "idx_patient_start_id").sortedBy(NEWEST_FIRST),
+                QueryShape.of("appointments_archive.byClinic", AppointmentHistory.ARCHIVE, eq("clinicId", ID), "idx_clinic_start_id").sortedBy(NEWEST_FIRST),
+                QueryShape.of("appointments_archive.byStatus", AppointmentHistory.ARCHIVE, eq("status", "ATTENDED"), "idx_status_start_id").sortedBy(NEWEST_FIRST),
+                QueryShape.of("appointments_archive.byDoctorStatusAndRange", AppointmentHistory.ARCHIVE,
+                        eq("doctorId", ID).append("status", "ATTENDED").append("start", new Document("$gte", FROM)).append("end", new Document("$lte", TO)),
+                        "idx_doctor_status_start_id").sortedBy(OLDEST_FIRST),
+
+                // Booking context, availability windows and streams, time-off conflicts
+                QueryShape.of("appointments.overlapping", "appointments",
+                        eq("doctorId", ID).append("start", new Document("$lt", TO)).append("end", new Document("$gt", FROM))
+                                .append("status", new Document("$ne", "CANCELLED")), "idx_doctor_range"),
+                QueryShape.of("appointments.scheduledOverlapping", "appointments",
+                        eq("doctorId", ID).append("status", "SCHEDULED").append("start", new Document("$lt", TO)).append("end", new Document("$gt", FROM)),
+                        "idx_doctor_range").sortedBy(new Document("start", 1)),
+                QueryShape.of("appointments.scheduledOverlappingManyDoctors", "appointments",
+                        new Document("doctorId", new Document("$in", List.of(ID, "fedcba9876543210fedcba98"))).append("status", "SCHEDULED")
+                                .append("start", new Document("$lt", TO)).append("end", new Document("$gt", FROM)), "idx_doctor_range"),
+                QueryShape.of("appointments.byDoctorAndStart", "appointments", eq("doctorId", ID).append("start", FROM), "idx_doctor_range"),
+
+                // CalendarFeedService
+                QueryShape.of("appointments.doctorFeed", "appointments", eq("doctorId", ID).append("start", range("$gt", FROM, "$lt", TO)),
+                        "idx_doctor_range").sortedBy(new Document("start", 1)),
+                QueryShape.of("appointments.patientFeed", "appointments", eq("patientId", ID).append("start", range("$gt", FROM, "$lt", TO)),
+                        "idx_patient_start_id").sortedBy(new Document("start", 1)),
+                QueryShape.of("calendar_feeds.byToken", "calendar_feeds", eq("tokenHash", "0f" + ID), "uniq_token_hash"),
+                QueryShape.of("calendar_feeds.byUser", "calendar_feeds", eq("userId", ID), "idx_user"),
+
+                // NoShowSweeper, AppointmentArchiver, SlotClaimService reseeding
+                QueryShape.of("appointments.scheduledEndingIn", "appointments",
+                        eq("status", "SCHEDULED").append("end", range("$gte", FROM, "$lt", TO)), "idx_status_end"),
+                QueryShape.of("appointments.oldestScheduled", "appointments", eq("status", "SCHEDULED"), "idx_status_end")
+                        .sortedBy(new Document("end", 1)),
+                QueryShape.of("appointments.scheduledUpcoming", "appointments",
+                        eq("status", "SCHEDULED").append("end", new Document("$gt", FROM)), "idx_status_end"),
+                QueryShape.of("appointments.finishedBefore", "appointments",
+                        new Document("status", new Document("$in", List.of("ATTENDED", "CANCELLED", "NO_SHOW"))).append("end", new Document("$lt", FROM)),
+                        "idx_status_end"),
+
+                // AppointmentSnapshotBackfill walks both collections in _id order
+                QueryShape.of("appointments.missingSnapshot", "appointments",
+                        new Document("doctorName", new Document("$exists", false)).append("_id", new Document("$gt", REF)), "_id_")
+                        .sortedBy(new Document("_id", 1)),
+                QueryShape.of("appointments_archive.missingSnapshot", AppointmentHistory.ARCHIVE,
+                        new Document("doctorName", new Document("$exists", false)).append("_id", new Document("$gt", REF)), "_id_")
+                        .sortedBy(new Document("_id", 1)),
+
+                QueryShape.of("time_off.overlapping", "time_off",
+                        eq("doctorId", ID).append("start", new Document("$lte", TO)).append("end", new Document("$gte", FROM)), "idx_doctor_timeOff"),
+                QueryShape.of("time_off.overlappingManyDoctors", "time_off",
+                        new Document("doctorId", new Document("$in", List.of(ID, "fedcba9876543210fedcba98")))
+                                .append("start", new Document("$lt", TO)).append("end", new Document("$gt", FROM)), "idx_doctor_timeOff"),
+                QueryShape.of("time_off.byDoctorFrom", "time_off", eq("doctorId", ID).append("start", new Document("$gt", FROM)), "idx_doctor_timeOff"),
+
+                QueryShape.of("availability_rules.byDoctorAndDay", "availability_rules", eq("doctorId", ID).append("dayOfWeek", 3), "idx_doctor_dow"),
+                QueryShape.of("availability_rules.byDoctor", "availability_rules", eq("doctorId", ID), "idx_doctor_dow"),
+
+                QueryShape.of("slot_holds.liveOverlapping", "slot_holds",
+                        eq("doctorId", ID).append("start", new Document("$lt", TO)).append("end", new Document("$gt", FROM))
+                                .append("expireAt", new Document("$gt", FROM)), "idx_doctor_range"),
+                QueryShape.of("slot_holds.liveOverlappingByStart", "slot_holds",
+                        eq("doctorId", ID).append("start", new Document("$lt", TO)).append("end", new Document("$gt", FROM))
+                                .append("expireAt", new Document("$gt", FROM)), "idx_doctor_range").sortedBy(new Document("start", 1)),
+                QueryShape.of("slot_claims.byAppointment", "slot_claims", eq("appointmentId", ID), "appointmentId"),
+                QueryShape.of("slot_inventory.byDoctorAndDates", "slot_inventory",
+                        eq("doctorId", ID).append("date", range("$gte", "2030-01-01", "$lte", "2030-01-28")), "idx_doctor_date"),
+                QueryShape.of("slot_inventory.before", "slot_inventory", new Document("date", new Document("$lt", "2030-01-01")), "idx_date"),
+
+                QueryShape.of("reviews.byDoctorNewestFirst", "reviews", eq("doctor.$id", REF), "idx_doctor_created")
+                        .sortedBy(new Document("createdAt", -1)),
+                QueryShape.of("reviews.byDoctorAndPatient", "reviews", eq("doctor.$id", REF).append("patient.$id", REF), "idx_doctor_created"),
+
+                QueryShape.of("waitlist.nextForSlot", "waitlist",
+                        eq("doctorId", ID).append("status", "WAITING").append("windowStart", new Document("$lte", FROM))
+                                .append("windowEnd", new Document("$gte", TO)), "idx_doctor_status_created").sortedBy(new Document("createdAt", 1)),
+                QueryShape.of("waitlist.staleMatches", "waitlist", eq("status", "MATCHING").append("matchedAt", new Document("$lt", FROM)), "idx_status_matched"),
+                QueryShape.of("waitlist.byPatient", "waitlist", eq("patientId", ID), "idx_patient_created").sortedBy(new Document("createdAt", -1)),
+                QueryShape.of("waitlist.activeForPatient", "waitlist",
+                        eq("doctorId", ID).append("patientId", ID).append("status", new Document("$in", List.of("WAITING", "MATCHING"))),
+                        "idx_doctor_status_created"),
+
+                QueryShape.of("outbox_events.settled", "outbox_events",
+                        new Document("_id", new Document("$lt", REF)).append("deadLettered", new Document("$ne", true)), "_id_")
+                        .sortedBy(new Document("_id", 1)),
+                QueryShape.of("outbox_events.held", "outbox_events",
+                        new Document("held", true).append("deadLettered", new Document("$ne", true)), "idx_held")
+                        .sortedBy(new Document("_id", 1)),
+
+                // Doctor search, heatmap and day sheet filters
+                QueryShape.of("doctors.bySpecialitySoonest", "doctors",
+                        eq("speciality.$id", REF).append("nextAvailableAt", new Document("$ne", null)), "idx_speciality_id_next_available")
+                        .sortedBy(new Document("nextAvailableAt", 1).append("_id", 1)),
+                QueryShape.of("doctors.soonest", "doctors", new Document("nextAvailableAt", new Document("$ne", null)), "idx_next_available_id")
+                        .sortedBy(new Document("nextAvailableAt", 1).append("_id", 1)),
+                QueryShape.of("doctors.byClinic", "doctors", eq("clinic.$id", REF), "idx_clinic_id"),
+                QueryShape.of("doctors.nextAvailablePassed", "doctors", new Document("nextAvailableAt", new Document("$lt", FROM)), "idx_next_available_id"),
+
+                QueryShape.of("specialities.newest", "specialities", new Document(), "idx_updated_at")
+                        .sortedBy(new Document("updatedAt", -1)),
+
+                QueryShape.of("users.byEmail", "users", eq("email", "someone@example.com"), "email"));
+    }
+
+    private static Document eq(String field, Object value) {
+        return new Document(field, value);
+    }
+
+    private static Document range(String lowerOp, Object lower, String upperOp, Object upper) {
+        return new Document(lowerOp, lower).append(upperOp, upper);
+    }
+}
@@ -7,6 +7,7 @@ import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.mongodb.config.EnableMongoAuditing;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.authentication.AbstractAuthenticationToken;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.AuthenticationManagerResolver;
@@ -65,6 +66,10 @@ public class SecurityConfig {
             .authorizeHttpRequests(auth -> auth
                 .requestMatchers("/v3/api-docs/**", "/swagger-ui/**", "/swagger-ui.html").permitAll()
                 .requestMatchers("/api/auth/**").permitAll()
+                // Calendar apps can't log in, CalendarFeedService checks the token in the path
+                .requestMatchers(HttpMethod.GET, "/api/calendar-feeds/*.ics").permitAll()
+                // Browsers can't send a token with the WebSocket handshake, STOMP CONNECT carries it (StompAuthenticationInterceptor)
+                .requestMatchers("/ws", "/ws/**").permitAll()
                 .requestMatchers("/api/admin/**").hasRole("ADMIN")
                 .requestMatchers("/api/doctor/**").hasRole("DOCTOR")
                 .anyRequest().authenticated()
@@ -138,8 +143,9 @@ public class SecurityConfig {
 
     // --------- AuthenticationManagerResolver (issuer-based) ---------
 
+    // Trusted issuers, shared by the REST API and STOMP CONNECT
     @Bean
-    AuthenticationManagerResolver<HttpServletRequest> authenticationManagerResolver(
+    AuthenticationManagerResolver<String> issuerAuthenticationManagers(
             JwtDecoder googleJwtDecoder,
             JwtDecoder appJwtDecoder,
             Converter<Jwt, ? extends AbstractAuthenticationToken> converter) {
@@ -155,9 +161,14 @@ public class SecurityConfig {
         var byIssuer = new HashMap<String, AuthenticationManager>();
         byIssuer.put("https://accounts.google.com", new ProviderManager(googleProvider));
         byIssuer.put("medikart-api", new ProviderManager(appProvider));
+        return byIssuer::get;
+    }
 
+    @Bean
+    AuthenticationManagerResolver<HttpServletRequest> authenticationManagerResolver(
+            AuthenticationManagerResolver<String> issuerAuthenticationManagers) {
         // Spring will peek at the unsigned 'iss' claim to choose the right manager
-        return new JwtIssuerAuthenticationManagerResolver(issuer -> byIssuer.get(issuer));
+        return new JwtIssuerAuthenticationManagerResolver(issuerAuthenticationManagers);
     }
 
     @Bean
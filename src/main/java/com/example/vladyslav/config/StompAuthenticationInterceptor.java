@@ -0,0 +1,72 @@
+package com.example.vladyslav.config;
+
+import com.nimbusds.jwt.JWTParser;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.AuthenticationManagerResolver;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.server.resource.InvalidBearerTokenException;
+import org.springframework.security.oauth2.server.resource.authentication.BearerTokenAuthenticationToken;
+import org.springframework.stereotype.Component;
+
+import java.text.ParseException;
+
+/**
+ * Authenticates STOMP sessions. Browser WebSocket clients cannot set an Authorization header on the handshake,
+ * so they send it as a native header of the CONNECT frame instead ("Authorization: Bearer ...").
+ *
+ * The token goes through the same issuer-based JWT managers as the REST API and becomes the session's user.
+ * A CONNECT without a valid token, and a SUBSCRIBE or SEND on a session without a user, are rejected with an
+ * ERROR frame.
+ */
+@Component
+public class StompAuthenticationInterceptor implements ChannelInterceptor {
+
+    private static final String BEARER = "Bearer ";
+
+    private final AuthenticationManagerResolver<String> issuerAuthenticationManagers;
+
+    public StompAuthenticationInterceptor(AuthenticationManagerResolver<String> issuerAuthenticationManagers) {
+        this.issuerAuthenticationManagers = issuerAuthenticationManagers;
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || accessor.getCommand() == null) return message;
+
+        if (StompCommand.CONNECT.equals(accessor.getCommand())) {
+            // The user set here is kept on the session and stamped on every later frame
+            accessor.setUser(authenticate(accessor.getFirstNativeHeader("Authorization")));
+        } else if ((StompCommand.SUBSCRIBE.equals(accessor.getCommand()) || StompCommand.SEND.equals(accessor.getCommand()))
+                && accessor.getUser() == null) {
+            throw new InvalidBearerTokenException("STOMP session is not authenticated");
+        }
+        return message;
+    }
+
+    private Authentication authenticate(String header) {
+        if (header == null || !header.startsWith(BEARER)) {
+            throw new InvalidBearerTokenException("CONNECT needs an Authorization: Bearer header");
+        }
+        String token = header.substring(BEARER.length()).trim();
+
+        AuthenticationManager manager = issuerAuthenticationManagers.resolve(issuer(token));
+        if (manager == null) throw new InvalidBearerTokenException("Untrusted issuer");
+        return manager.authenticate(new BearerTokenAuthenticationToken(token));
+    }
+
+    // Only picks the manager, the signature is checked by its decoder
+    private static String issuer(String token) {
+        try {
+            return JWTParser.parse(token).getJWTClaimsSet().getIssuer();
+        } catch (ParseException e) {
+            throw new InvalidBearerTokenException("Malformed token");
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.vladyslav.config;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.config.ChannelRegistration;
+import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
+import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
+import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
+
+/**
+ * STOMP over WebSocket on /ws. Clients subscribe to /topic/doctors/{doctorId}/slots for live slot changes.
+ * The handshake is open, clients authenticate with a bearer token on CONNECT (StompAuthenticationInterceptor).
+ * Cross-origin handshakes are refused unless the origin is listed in app.ws.allowed-origins.
+ *
+ * Uses the in-memory broker, so each node only pushes changes booked through it; put a broker relay in front
+ * when running several nodes.
+ */
+@Configuration
+@EnableWebSocketMessageBroker
+@RequiredArgsConstructor
+public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
+
+    private final StompAuthenticationInterceptor stompAuthenticationInterceptor;
+
+    @Value("${app.ws.allowed-origins:}")
+    private String[] allowedOrigins;
+
+    @Value("${app.ws.outbound-threads:16}")
+    private int outboundThreads;
+
+    @Override
+    public void registerStompEndpoints(StompEndpointRegistry registry) {
+        registry.addEndpoint("/ws").setAllowedOriginPatterns(allowedOrigins);
+    }
+
+    @Override
+    public void configureMessageBroker(MessageBrokerRegistry registry) {
+        registry.enableSimpleBroker("/topic");
+        registry.setApplicationDestinationPrefixes("/app");
+    }
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        // Topics are server-to-client only, drop anything a client tries to publish there
+        registration.interceptors(stompAuthenticationInterceptor, new ChannelInterceptor() {
+            @Override
+            public Message<?> preSend(Message<?> message, MessageChannel channel) {
+                StompHeaderAccessor accessor = StompHeaderAccessor.wrap(message);
+                if (StompCommand.SEND.equals(accessor.getCommand())
+                        && accessor.getDestination() != null
+                        && accessor.getDestination().startsWith("/topic")) {
+                    return null;
+                }
+                return message;
+            }
+        });
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        // Fan-out to subscribers runs here, never on the thread that published the change
+        registration.taskExecutor().corePoolSize(outboundThreads).maxPoolSize(outboundThreads);
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        // A slow client gets disconnected instead of holding an outbound thread
+        registration.setSendTimeLimit(10_000).setSendBufferSizeLimit(512 * 1024);
+    }
+}
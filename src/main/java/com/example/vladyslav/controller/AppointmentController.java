@@ -1,10 +1,13 @@
 package com.example.vladyslav.controller;
 
 import com.example.vladyslav.dto.AppointmentDTO;
+import com.example.vladyslav.dto.CursorPageDTO;
+import com.example.vladyslav.dto.SeriesBookingDTO;
 import com.example.vladyslav.model.User;
 import com.example.vladyslav.model.enums.AppointmentStatus;
 import com.example.vladyslav.repository.DoctorRepository;
 import com.example.vladyslav.requests.BookAppointmentRequest;
+import com.example.vladyslav.requests.BookSeriesRequest;
 import com.example.vladyslav.requests.RescheduleRequest;
 import com.example.vladyslav.service.AppointmentService;
 import com.example.vladyslav.service.UserService;
@@ -62,6 +65,13 @@ public class AppointmentController {
             return new ResponseEntity<>(appointmentService.createAppointment(request), HttpStatus.CREATED);
     }
 
+    // 201 when anything was booked, otherwise 409; the body lists the outcome of every session either way
+    @PostMapping("/series")
+    public ResponseEntity<SeriesBookingDTO> bookSeries(@RequestBody BookSeriesRequest request) {
+        SeriesBookingDTO result = appointmentService.bookSeries(request);
+        return ResponseEntity.status(result.booked() > 0 ? HttpStatus.CREATED : HttpStatus.CONFLICT).body(result);
+    }
+
     @PostMapping("/cancel/{appointmentId}")
     public ResponseEntity<Void> cancel(@PathVariable String appointmentId){
         appointmentService.cancel(appointmentId);
@@ -111,6 +121,46 @@ public class AppointmentController {
         return ResponseEntity.ok(appointmentService.findByDoctorIdAndStatusBetween(doctorId, appointmentStatus, from, to, page, size));
     }
 
+    /* Keyset variants of the listings: pass the returned nextCursor to get the following page, no total count */
+
+    @GetMapping("/patient-id/{patientId}/cursor")
+    public ResponseEntity<CursorPageDTO<AppointmentDTO>> getAppointmentsByPatientIdCursor(@PathVariable String patientId,
+                                                                                          @RequestParam(required = false) String cursor,
+                                                                                          @RequestParam(defaultValue = "20") int size){
+        return ResponseEntity.ok(appointmentService.getAppointmentsByPatientId(patientId, cursor, size));
+    }
+
+    @PreAuthorize("hasAnyRole('DOCTOR','ADMIN')")
+    @GetMapping("/doctor/{doctorId}/cursor")
+    public ResponseEntity<CursorPageDTO<AppointmentDTO>> getAppointmentsByDoctorIdCursor(@PathVariable String doctorId,
+                                                                                         @RequestParam(required = false) String cursor,
+                                                                                         @RequestParam(defaultValue = "20") int size){
+        return ResponseEntity.ok(appointmentService.getAppointmentsByDoctorId(doctorId, cursor, size));
+    }
+
+    @GetMapping("/status/{status}/cursor")
+    public ResponseEntity<CursorPageDTO<AppointmentDTO>> getAppointmentByStatusCursor(@PathVariable AppointmentStatus status,
+                                                                                      @RequestParam(required = false) String cursor,
+                                                                                      @RequestParam(defaultValue = "20") int size){
+        return ResponseEntity.ok(appointmentService.getAppointmentsByStatus(status, cursor, size));
+    }
+
+    @GetMapping("/clinic-id/{clinicId}/by-start-end/cursor")
+    public ResponseEntity<CursorPageDTO<AppointmentDTO>> getAppointmentByClinicIdFromStartToEndDatesCursor(@PathVariable String clinicId,
+                                                                                                           @RequestParam Instant start,
+                                                                                                           @RequestParam Instant end,
+                                                                                                           @RequestParam(required = false) String cursor,
+                                                                                                           @RequestParam(defaultValue = "20") int size){
+        return ResponseEntity.ok(appointmentService.getAppointmentByClinicIdFromStartToEndDates(clinicId, start, end, cursor, size));
+    }
+
+    @GetMapping("/by-clinic/{clinicId}/cursor")
+    public ResponseEntity<CursorPageDTO<AppointmentDTO>> getAppointmentsByClinicIdCursor(@PathVariable String clinicId,
+                                                                                         @RequestParam(required = false) String cursor,
+                                                                                         @RequestParam(defaultValue = "20") int size){
+        return ResponseEntity.ok(appointmentService.getAppointmentsByClinicId(clinicId, cursor, size));
+    }
+
     @PostMapping("/attended/{appointmentId}")
     @PreAuthorize("hasAnyRole('DOCTOR','ADMIN')")
     public ResponseEntity<AppointmentDTO> attended(@PathVariable String appointmentId,
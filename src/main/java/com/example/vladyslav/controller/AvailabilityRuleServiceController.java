@@ -1,16 +1,32 @@
 package com.example.vladyslav.controller;
 
+import com.example.vladyslav.dto.AvailableSlotDTO;
 import com.example.vladyslav.dto.DaySlotsDTO;
+import com.example.vladyslav.dto.HeatmapDayDTO;
 import com.example.vladyslav.model.AvailabilityRule;
+import com.example.vladyslav.model.enums.LanguageCode;
+import com.example.vladyslav.service.AvailabilityCache;
+import com.example.vladyslav.service.AvailabilityHeatmapService;
 import com.example.vladyslav.service.AvailabilityRuleService;
+import com.example.vladyslav.service.AvailabilityStreamService;
+import com.example.vladyslav.service.CalendarVersionService;
+import com.example.vladyslav.service.ETagService;
+import com.example.vladyslav.service.EarliestAvailabilityService;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.filter.ShallowEtagHeaderFilter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/availability-rules")
@@ -19,10 +35,23 @@ public class AvailabilityRuleServiceController {
 
     private final AvailabilityRuleService service;
 
+    private final EarliestAvailabilityService earliestAvailabilityService;
+
+    private final AvailabilityCache availabilityCache;
+
+    private final AvailabilityStreamService availabilityStreamService;
+
+    private final AvailabilityHeatmapService availabilityHeatmapService;
+
+    private final ETagService eTagService;
+
+    private final CalendarVersionService calendarVersionService;
+
     // List all rules for doctor
     @PreAuthorize("hasAnyAuthority('ADMIN','DOCTOR')")
     @GetMapping("/list/{doctorId}")
-    public ResponseEntity<List<AvailabilityRule>> findByDoctorId (@PathVariable String doctorId){
+    public ResponseEntity<List<AvailabilityRule>> findByDoctorId (@PathVariable String doctorId, WebRequest request){
+        if (request.checkNotModified(eTagService.calendar(doctorId))) return null;
         return ResponseEntity.ok(service.findByDoctorId(doctorId));
     }
 
@@ -36,7 +65,56 @@ public class AvailabilityRuleServiceController {
     @GetMapping("/doctors/{doctorId}/availability")
     public List<DaySlotsDTO> availability(@PathVariable String doctorId,
                                           @RequestParam LocalDate from,
-                                          @RequestParam LocalDate to) {
-        return service.getAvailability(doctorId, from, to);
+                                          @RequestParam LocalDate to,
+                                          WebRequest request) {
+        // Version is read before computing, so a concurrent change can only make the ETag older than the data.
+        // The same version gates this node's cache, days cached before a change made elsewhere are recomputed.
+        long version = calendarVersionService.current(doctorId);
+        if (request.checkNotModified(eTagService.calendar(doctorId, version))) return null;
+        return service.getAvailability(doctorId, from, to, version);
+    }
+
+    // Same data as /availability, one JSON object per line, written while the range is being computed
+    @GetMapping(value = "/doctors/{doctorId}/availability/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> availabilityStream(@PathVariable String doctorId,
+                                                                    @RequestParam LocalDate from,
+                                                                    @RequestParam LocalDate to,
+                                                                    HttpServletRequest request) {
+        availabilityStreamService.checkRange(from, to);
+        ShallowEtagHeaderFilter.disableContentCaching(request); // keep it streaming, don't buffer for a body hash
+        StreamingResponseBody body = out -> availabilityStreamService.write(doctorId, from, to, out);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    // N earliest free slots across all doctors of a speciality, e.g. /earliest?specialityId=...&days=14&limit=5
+    @GetMapping("/earliest")
+    public List<AvailableSlotDTO> earliest(@RequestParam String specialityId,
+                                           @RequestParam(required = false) String clinicId,
+                                           @RequestParam(required = false) LanguageCode language,
+                                           @RequestParam(defaultValue = "14") int days,
+                                           @RequestParam(defaultValue = "10") int limit) {
+        return earliestAvailabilityService.findEarliest(specialityId, clinicId, language, days, limit);
+    }
+
+    // Free slots per day over a speciality and/or clinic, e.g. /heatmap?specialityId=...&from=2026-01-05&to=2026-02-01
+    @GetMapping("/heatmap")
+    public List<HeatmapDayDTO> heatmap(@RequestParam(required = false) String specialityId,
+                                       @RequestParam(required = false) String clinicId,
+                                       @RequestParam LocalDate from,
+                                       @RequestParam LocalDate to) {
+        return availabilityHeatmapService.heatmap(specialityId, clinicId, from, to);
+    }
+
+    // Hit/miss/eviction counters of the per doctor-day availability cache
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping("/cache/stats")
+    public Map<String, Object> cacheStats() {
+        CacheStats stats = availabilityCache.stats();
+        return Map.of(
+                "hits", stats.hitCount(),
+                "misses", stats.missCount(),
+                "hitRate", stats.hitRate(),
+                "evictions", stats.evictionCount(),
+                "size", availabilityCache.size());
     }
 }
@@ -0,0 +1,72 @@
+package com.example.vladyslav.controller;
+
+import com.example.vladyslav.dto.CalendarFeedDTO;
+import com.example.vladyslav.model.CalendarFeed;
+import com.example.vladyslav.model.User;
+import com.example.vladyslav.service.CalendarFeedService;
+import com.example.vladyslav.service.UserService;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.filter.ShallowEtagHeaderFilter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/calendar-feeds")
+@RequiredArgsConstructor
+public class CalendarFeedController {
+
+    private static final MediaType TEXT_CALENDAR = new MediaType("text", "calendar", StandardCharsets.UTF_8);
+
+    private final CalendarFeedService calendarFeedService;
+
+    private final UserService userService;
+
+    @PostMapping
+    @PreAuthorize("hasAnyRole('DOCTOR','PATIENT')")
+    public ResponseEntity<CalendarFeedDTO> create(@RequestParam(required = false) String label, Authentication auth) {
+        User user = userService.getCurrentUser(auth);
+        return new ResponseEntity<>(calendarFeedService.create(user, label), HttpStatus.CREATED);
+    }
+
+    @GetMapping
+    @PreAuthorize("hasAnyRole('DOCTOR','PATIENT')")
+    public ResponseEntity<List<CalendarFeedDTO>> mine(Authentication auth) {
+        return ResponseEntity.ok(calendarFeedService.list(userService.getCurrentUser(auth)));
+    }
+
+    @DeleteMapping("/{id}")
+    @PreAuthorize("hasAnyRole('DOCTOR','PATIENT')")
+    public ResponseEntity<Void> revoke(@PathVariable String id, Authentication auth) {
+        calendarFeedService.revoke(id, userService.getCurrentUser(auth));
+        return ResponseEntity.noContent().build();
+    }
+
+    // Polled by calendar apps: no JWT, the token in the URL is the credential (permitted in SecurityConfig)
+    @GetMapping(value = "/{token}.ics", produces = "text/calendar")
+    public ResponseEntity<StreamingResponseBody> feed(@PathVariable String token,
+                                                      WebRequest webRequest,
+                                                      HttpServletRequest request) {
+        CalendarFeed feed = calendarFeedService.resolve(token);
+        Instant now = Instant.now();
+        if (webRequest.checkNotModified(calendarFeedService.eTag(feed, now))) return null;
+
+        ShallowEtagHeaderFilter.disableContentCaching(request);
+        StreamingResponseBody body = out -> calendarFeedService.write(feed, now, out);
+        return ResponseEntity.ok()
+                .contentType(TEXT_CALENDAR)
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .body(body);
+    }
+}
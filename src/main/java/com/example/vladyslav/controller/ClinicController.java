@@ -1,20 +1,26 @@
 package com.example.vladyslav.controller;
 
 import com.example.vladyslav.dto.ClinicDTO;
+import com.example.vladyslav.dto.DaySheetDTO;
 import com.example.vladyslav.dto.DoctorDTO;
 import com.example.vladyslav.requests.ClinicRegisterRequest;
 import com.example.vladyslav.service.ClinicService;
+import com.example.vladyslav.service.DaySheetService;
 import com.example.vladyslav.service.DoctorService;
+import com.example.vladyslav.service.ETagService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
 
@@ -28,6 +34,10 @@ public class ClinicController {
 
     private final DoctorService doctorService;
 
+    private final ETagService eTagService;
+
+    private final DaySheetService daySheetService;
+
     @PostMapping(
             value = "/register",
             consumes = MediaType.MULTIPART_FORM_DATA_VALUE
@@ -71,7 +81,9 @@ public class ClinicController {
     }
 
     @GetMapping("/by-id/{clinicId}")
-    public ResponseEntity<ClinicDTO> getClinicById(@PathVariable String clinicId){
+    public ResponseEntity<ClinicDTO> getClinicById(@PathVariable String clinicId, WebRequest request){
+        String eTag = eTagService.clinic(clinicId);
+        if (eTag != null && request.checkNotModified(eTag)) return null;
         return new ResponseEntity<>(service.getClinicById(clinicId), HttpStatus.FOUND);
     }
 
@@ -81,6 +93,15 @@ public class ClinicController {
         return new ResponseEntity<>(service.getAllClinics(page, size), HttpStatus.FOUND);
     }
 
+    // Reception's view of the day (today when no date is given), sorted by doctor and start
+    @PreAuthorize("hasAnyRole('CLINIC','ADMIN')")
+    @GetMapping("/{clinicId}/day-sheet")
+    public ResponseEntity<DaySheetDTO> daySheet(@PathVariable String clinicId,
+                                                @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+                                                @RequestParam(defaultValue = "false") boolean includeCancelled){
+        return ResponseEntity.ok(daySheetService.daySheet(clinicId, date, includeCancelled));
+    }
+
     @DeleteMapping("/{clinicId}")
     public ResponseEntity<Void> deleteClinic(@RequestParam String clinicId){
        service.deleteClinic(clinicId);
@@ -6,6 +6,7 @@ import com.example.vladyslav.model.enums.LanguageCode;
 import com.example.vladyslav.requests.DoctorRegisterRequest;
 import com.example.vladyslav.search.DoctorSearchCriteria;
 import com.example.vladyslav.service.DoctorService;
+import com.example.vladyslav.service.ETagService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
@@ -15,6 +16,7 @@ import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.time.LocalDate;
@@ -30,6 +32,8 @@ public class DoctorController {
 
     private final DoctorService doctorService;
 
+    private final ETagService eTagService;
+
 
     @GetMapping("/all")
     public ResponseEntity<Page<DoctorDTO>> getAllDoctors(@RequestParam(defaultValue = "0") int page,
@@ -48,7 +52,9 @@ public class DoctorController {
     }
 
     @GetMapping("/by-id/{id}")
-    public ResponseEntity<DoctorDTO> getDoctorById(@PathVariable String id){
+    public ResponseEntity<DoctorDTO> getDoctorById(@PathVariable String id, WebRequest request){
+        String eTag = eTagService.doctor(id);
+        if (eTag != null && request.checkNotModified(eTag)) return null; // 304, nothing loaded or mapped
         return ResponseEntity.ok(doctorService.getDoctorById(id));
     }
 
@@ -91,10 +97,12 @@ public class DoctorController {
             @RequestParam(required = false) Integer minFee,
             @RequestParam(required = false) Integer maxFee,
             @RequestParam(required = false) String q,
+            @RequestParam(required = false) Integer availableWithinDays,
+            @RequestParam(defaultValue = "false") boolean availableSoonest,
             Pageable pageable
     )   {
         DoctorSearchCriteria criteria = new DoctorSearchCriteria(
-            specialityId, language, city, postCode, clinicId, minFee, maxFee, q
+            specialityId, language, city, postCode, clinicId, minFee, maxFee, q, availableWithinDays, availableSoonest
         );
         return ResponseEntity.ok(doctorService.search(criteria, pageable));
     }
@@ -0,0 +1,40 @@
+package com.example.vladyslav.controller;
+
+import com.example.vladyslav.dto.AppointmentDTO;
+import com.example.vladyslav.dto.SlotHoldDTO;
+import com.example.vladyslav.model.User;
+import com.example.vladyslav.requests.HoldSlotRequest;
+import com.example.vladyslav.service.SlotHoldService;
+import com.example.vladyslav.service.UserService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/holds")
+@RequiredArgsConstructor
+public class SlotHoldController {
+
+    private final SlotHoldService slotHoldService;
+    private final UserService userService;
+
+    @PostMapping
+    public ResponseEntity<SlotHoldDTO> hold(@RequestBody HoldSlotRequest request) {
+        return new ResponseEntity<>(slotHoldService.hold(request), HttpStatus.CREATED);
+    }
+
+    @PostMapping("/{holdId}/confirm")
+    public ResponseEntity<AppointmentDTO> confirm(@PathVariable String holdId, Authentication auth) {
+        User user = userService.getCurrentUser(auth);
+        return new ResponseEntity<>(slotHoldService.confirm(holdId, user), HttpStatus.CREATED);
+    }
+
+    @DeleteMapping("/{holdId}")
+    public ResponseEntity<Void> release(@PathVariable String holdId, Authentication auth) {
+        User user = userService.getCurrentUser(auth);
+        slotHoldService.release(holdId, user);
+        return ResponseEntity.noContent().build();
+    }
+}
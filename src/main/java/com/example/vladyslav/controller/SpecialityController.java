@@ -1,24 +1,28 @@
 package com.example.vladyslav.controller;
 
 import com.example.vladyslav.model.Speciality;
+import com.example.vladyslav.service.ETagService;
 import com.example.vladyslav.service.SpecialityService;
 import jakarta.validation.Valid;
-import org.springframework.beans.factory.annotation.Autowired;
+import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 
 @RestController
 @RequestMapping("/api/specialities")
+@RequiredArgsConstructor
 public class SpecialityController {
 
-    @Autowired
-    private SpecialityService specialityService;
+    private final SpecialityService specialityService;
+    private final ETagService eTagService;
 
     @GetMapping
-    public List<Speciality> getAll(){
+    public List<Speciality> getAll(WebRequest request){
+        if (notModified(eTagService.specialities(), request)) return null; // 304, nothing loaded or mapped
         return specialityService.getAll();
     }
 
@@ -30,13 +34,15 @@ public class SpecialityController {
     }
 
     @GetMapping("/id/{specialityId}")
-    public ResponseEntity<Speciality> getSpecialityById(@PathVariable String specialityId){
+    public ResponseEntity<Speciality> getSpecialityById(@PathVariable String specialityId, WebRequest request){
+        if (notModified(eTagService.speciality(specialityId), request)) return null;
         Speciality speciality = specialityService.getSpecialityById(specialityId);
         return new ResponseEntity<>(speciality, HttpStatus.OK);
     }
 
     @GetMapping("/title/{title}")
-    public ResponseEntity<Speciality> getSpecialityByTitle(@PathVariable String title){
+    public ResponseEntity<Speciality> getSpecialityByTitle(@PathVariable String title, WebRequest request){
+        if (notModified(eTagService.specialities(), request)) return null;
         Speciality speciality = specialityService.getSpecialityByTitle(title);
         return new ResponseEntity<>(speciality, HttpStatus.OK);
     }
@@ -51,8 +57,14 @@ public class SpecialityController {
     @GetMapping("/search")
     public ResponseEntity<List<Speciality>> search(
             @RequestParam("q") String q,
-            @RequestParam(value = "limit", defaultValue = "10") int limit
+            @RequestParam(value = "limit", defaultValue = "10") int limit,
+            WebRequest request
     ) {
+        if (notModified(eTagService.specialities(), request)) return null;
         return ResponseEntity.ok(specialityService.searchByPrefix(q, limit));
     }
+
+    private static boolean notModified(String eTag, WebRequest request) {
+        return eTag != null && request.checkNotModified(eTag);
+    }
 }
@@ -1,6 +1,8 @@
 package com.example.vladyslav.controller;
 
+import com.example.vladyslav.dto.TimeOffConflictSummaryDTO;
 import com.example.vladyslav.model.TimeOff;
+import com.example.vladyslav.model.enums.TimeOffConflictMode;
 import com.example.vladyslav.service.TimeOffService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -27,6 +29,14 @@ public class TimeOffController {
         return ResponseEntity.ok(service.create(timeOff));
     }
 
+    // Also flags or cancels the appointments the new time-off covers, see TimeOffConflictMode
+    @PreAuthorize("hasAnyAuthority('ADMIN','DOCTOR')")
+    @PostMapping("/with-conflicts")
+    public ResponseEntity<TimeOffConflictSummaryDTO> createResolvingConflicts(@Valid @RequestBody TimeOff timeOff,
+                                                                              @RequestParam(defaultValue = "FLAG") TimeOffConflictMode mode){
+        return new ResponseEntity<>(service.create(timeOff, mode), HttpStatus.CREATED);
+    }
+
     @PreAuthorize("hasAnyAuthority('ADMIN','DOCTOR')")
     @GetMapping("/{id}")
     public ResponseEntity<TimeOff> get(@PathVariable String id){
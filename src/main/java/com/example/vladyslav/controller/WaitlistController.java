@@ -0,0 +1,35 @@
+package com.example.vladyslav.controller;
+
+import com.example.vladyslav.dto.WaitlistEntryDTO;
+import com.example.vladyslav.requests.JoinWaitlistRequest;
+import com.example.vladyslav.service.WaitlistService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/waitlist")
+@RequiredArgsConstructor
+public class WaitlistController {
+
+    private final WaitlistService waitlistService;
+
+    @PostMapping
+    public ResponseEntity<WaitlistEntryDTO> join(@RequestBody JoinWaitlistRequest request) {
+        return new ResponseEntity<>(waitlistService.join(request), HttpStatus.CREATED);
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> withdraw(@PathVariable String id) {
+        waitlistService.withdraw(id);
+        return ResponseEntity.noContent().build();
+    }
+
+    @GetMapping("/patient/{patientId}")
+    public ResponseEntity<List<WaitlistEntryDTO>> forPatient(@PathVariable String patientId) {
+        return ResponseEntity.ok(waitlistService.forPatient(patientId));
+    }
+}
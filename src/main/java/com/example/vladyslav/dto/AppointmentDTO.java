@@ -18,6 +18,8 @@ public class AppointmentDTO {
     private String patientId;
     private String doctorId;
     private String clinicId;
+    private String doctorName;
+    private String patientName;
     private Instant start;
     private Instant end;
     private AppointmentStatus status;
@@ -25,5 +27,7 @@ public class AppointmentDTO {
     private Instant updatedAt;
     private Long version;
     private String concern;
+    private String seriesId;
+    private String timeOffConflictId;
 
 }
@@ -0,0 +1,6 @@
+package com.example.vladyslav.dto;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+public record AvailableSlotDTO(String doctorId, LocalDate date, String time, Instant start) {}
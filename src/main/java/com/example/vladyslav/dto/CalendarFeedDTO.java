@@ -0,0 +1,28 @@
+package com.example.vladyslav.dto;
+
+import com.example.vladyslav.model.enums.CalendarFeedOwner;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class CalendarFeedDTO {
+
+    private String id;
+    private CalendarFeedOwner ownerType;
+    private String ownerId;
+    private String label;
+    private Instant createdAt;
+
+    /**
+     * Only set in the response that created the feed, it cannot be read back later.
+     */
+    private String token;
+    private String path;
+}
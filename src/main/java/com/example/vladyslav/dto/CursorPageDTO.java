@@ -0,0 +1,8 @@
+package com.example.vladyslav.dto;
+
+import java.util.List;
+
+/**
+ * One page of a keyset listing. nextCursor is opaque and null on the last page.
+ */
+public record CursorPageDTO<T>(List<T> items, String nextCursor) {}
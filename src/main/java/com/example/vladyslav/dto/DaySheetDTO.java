@@ -0,0 +1,6 @@
+package com.example.vladyslav.dto;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public record DaySheetDTO(String clinicId, LocalDate date, List<DaySheetEntryDTO> appointments) {}
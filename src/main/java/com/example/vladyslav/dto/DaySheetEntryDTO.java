@@ -0,0 +1,19 @@
+package com.example.vladyslav.dto;
+
+import com.example.vladyslav.model.enums.AppointmentStatus;
+
+import java.time.Instant;
+
+/**
+ * One row of a clinic's day sheet: what reception shows, nothing more.
+ */
+public record DaySheetEntryDTO(String appointmentId,
+                               String doctorId,
+                               String doctorName,
+                               String patientId,
+                               String patientName,
+                               String patientPhone,
+                               Instant start,
+                               Instant end,
+                               AppointmentStatus status,
+                               String concern) {}
@@ -32,6 +32,7 @@ public class DoctorDTO {
     private Instant updatedAt;
     private String imageUrl;
     private String clinicId;
+    private Instant nextAvailableAt;
 
     @Builder.Default
     private int consultationFee = 0;
@@ -0,0 +1,8 @@
+package com.example.vladyslav.dto;
+
+import java.time.LocalDate;
+
+/**
+ * Free slots on one day summed over the doctors of a speciality/clinic, and how many of them have any.
+ */
+public record HeatmapDayDTO(LocalDate date, int freeSlots, int doctorsAvailable) {}
@@ -0,0 +1,7 @@
+package com.example.vladyslav.dto;
+
+import com.example.vladyslav.model.enums.SeriesMode;
+
+import java.util.List;
+
+public record SeriesBookingDTO(String seriesId, SeriesMode mode, int booked, List<SeriesOccurrenceDTO> occurrences) {}
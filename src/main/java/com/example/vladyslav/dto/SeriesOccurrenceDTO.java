@@ -0,0 +1,15 @@
+package com.example.vladyslav.dto;
+
+import java.time.LocalDate;
+
+/**
+ * One session of a series: the booked appointment, or why it was not booked.
+ */
+public record SeriesOccurrenceDTO(LocalDate date, Outcome outcome, AppointmentDTO appointment, String reason) {
+
+    public enum Outcome {
+        BOOKED,
+        REJECTED,   // this session cannot be booked
+        SKIPPED     // bookable, but the series was rejected as a whole
+    }
+}
@@ -0,0 +1,10 @@
+package com.example.vladyslav.dto;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Live update for /topic/doctors/{doctorId}/slots. Lists the current state of the slots touched by a change:
+ * slots in {@code taken} are no longer bookable, slots in {@code freed} are bookable again.
+ */
+public record SlotDeltaDTO(String doctorId, LocalDate date, List<String> taken, List<String> freed) {}
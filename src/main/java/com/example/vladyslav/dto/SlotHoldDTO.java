@@ -0,0 +1,5 @@
+package com.example.vladyslav.dto;
+
+import java.time.Instant;
+
+public record SlotHoldDTO(String id, String doctorId, String patientId, Instant start, Instant end, Instant expiresAt) {}
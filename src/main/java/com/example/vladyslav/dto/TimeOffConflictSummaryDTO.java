@@ -0,0 +1,13 @@
+package com.example.vladyslav.dto;
+
+import com.example.vladyslav.model.TimeOff;
+import com.example.vladyslav.model.enums.TimeOffConflictMode;
+
+import java.util.List;
+
+public record TimeOffConflictSummaryDTO(TimeOff timeOff,
+                                        TimeOffConflictMode mode,
+                                        int conflicts,
+                                        int resolved,
+                                        List<String> appointmentIds,
+                                        int patientsNotified) {}
@@ -0,0 +1,25 @@
+package com.example.vladyslav.dto;
+
+import com.example.vladyslav.model.enums.WaitlistStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class WaitlistEntryDTO {
+    private String id;
+    private String doctorId;
+    private String patientId;
+    private String concern;
+    private Instant windowStart;
+    private Instant windowEnd;
+    private WaitlistStatus status;
+    private String appointmentId;
+    private Instant createdAt;
+}
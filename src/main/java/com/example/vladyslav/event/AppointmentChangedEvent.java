@@ -0,0 +1,50 @@
+package com.example.vladyslav.event;
+
+import com.example.vladyslav.model.Appointment;
+
+import java.time.Instant;
+
+/**
+ * Published synchronously by AppointmentOutbox after an appointment change was committed, on the node that made it.
+ * Mostly for per-node state; listeners that write shared state use AppointmentLifecycleEvent, which every change
+ * also produces. The exception is CalendarVersionService, which bumps here so ETags change with the commit.
+ * previousStart/previousEnd are only set for RESCHEDULED.
+ *
+ * NO_SHOW is per doctor and sweep window (see NoShowSweeper): appointmentId and patientId are null, and start/end
+ * bound the end times that were swept.
+ */
+public record AppointmentChangedEvent(String appointmentId,
+                                      String doctorId,
+                                      String patientId,
+                                      Instant start,
+                                      Instant end,
+                                      Instant previousStart,
+                                      Instant previousEnd,
+                                      Change change) {
+
+    public enum Change {
+        BOOKED,
+        CANCELLED,
+        RESCHEDULED,
+        ATTENDED,
+        NO_SHOW;
+
+        // Outcome of a past appointment, no calendar time is taken or freed
+        public boolean isOutcome() {
+            return this == ATTENDED || this == NO_SHOW;
+        }
+    }
+
+    public static AppointmentChangedEvent of(Appointment a, Change change) {
+        return new AppointmentChangedEvent(a.getId(), a.getDoctorId(), a.getPatientId(), a.getStart(), a.getEnd(), null, null, change);
+    }
+
+    public static AppointmentChangedEvent noShows(String doctorId, Instant from, Instant to) {
+        return new AppointmentChangedEvent(null, doctorId, null, from, to, null, null, Change.NO_SHOW);
+    }
+
+    public static AppointmentChangedEvent rescheduled(Appointment a, Instant previousStart, Instant previousEnd) {
+        return new AppointmentChangedEvent(a.getId(), a.getDoctorId(), a.getPatientId(), a.getStart(), a.getEnd(),
+                previousStart, previousEnd, Change.RESCHEDULED);
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.vladyslav.event;
+
+import com.example.vladyslav.model.OutboxEvent;
+
+import java.time.Instant;
+
+/**
+ * Durable counterpart of AppointmentChangedEvent, delivered from the outbox by OutboxDispatcher.
+ *
+ * Delivery is at least once and in order per doctor, on the dispatcher's threads rather than the request's.
+ * Listeners must tolerate duplicates (eventId is stable across redeliveries); throwing makes the event retried.
+ */
+public record AppointmentLifecycleEvent(String eventId,
+                                        String appointmentId,
+                                        String doctorId,
+                                        String patientId,
+                                        AppointmentChangedEvent.Change change,
+                                        Instant start,
+                                        Instant end,
+                                        Instant previousStart,
+                                        Instant previousEnd,
+                                        Instant occurredAt) {
+
+    public static AppointmentLifecycleEvent of(OutboxEvent e) {
+        return new AppointmentLifecycleEvent(e.getId(), e.getAppointmentId(), e.getDoctorId(), e.getPatientId(), e.getChange(),
+                e.getStart(), e.getEnd(), e.getPreviousStart(), e.getPreviousEnd(), e.getOccurredAt());
+    }
+}
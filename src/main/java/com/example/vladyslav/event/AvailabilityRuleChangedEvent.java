@@ -0,0 +1,6 @@
+package com.example.vladyslav.event;
+
+/**
+ * The doctor's weekly rule for an ISO day-of-week (1..7) was created or updated.
+ */
+public record AvailabilityRuleChangedEvent(String doctorId, int dayOfWeek) {}
@@ -0,0 +1,8 @@
+package com.example.vladyslav.event;
+
+import java.time.Instant;
+
+/**
+ * A hold on [start, end) was placed, released or expired. Confirmed holds publish an AppointmentChangedEvent instead.
+ */
+public record SlotHoldChangedEvent(String doctorId, Instant start, Instant end) {}
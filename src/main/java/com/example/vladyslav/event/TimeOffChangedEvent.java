@@ -0,0 +1,8 @@
+package com.example.vladyslav.event;
+
+import java.time.Instant;
+
+/**
+ * A time-off range was created or deleted for the doctor.
+ */
+public record TimeOffChangedEvent(String doctorId, Instant start, Instant end) {}
@@ -0,0 +1,18 @@
+package com.example.vladyslav.event;
+
+import com.example.vladyslav.model.enums.TimeOffConflictMode;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * One notice per patient whose appointments were hit by a new time-off, covering all of them at once.
+ */
+public record TimeOffConflictNotice(String patientId,
+                                    String doctorId,
+                                    String timeOffId,
+                                    TimeOffConflictMode resolution,
+                                    List<Affected> appointments) {
+
+    public record Affected(String appointmentId, Instant start, Instant end) {}
+}
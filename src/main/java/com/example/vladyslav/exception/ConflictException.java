@@ -0,0 +1,14 @@
+package com.example.vladyslav.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * The requested change collides with existing state (e.g. the slot was booked by someone else). Maps to 409.
+ */
+@ResponseStatus(HttpStatus.CONFLICT)
+public class ConflictException extends RuntimeException {
+    public ConflictException(String message) {
+        super(message);
+    }
+}
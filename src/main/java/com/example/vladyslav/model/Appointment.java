@@ -23,8 +23,18 @@ import java.time.Instant;
 @Document(collection = "appointments")
 
 @CompoundIndexes({
-        @CompoundIndex(name = "uniq_doctor_start", def = "{ 'doctorId': 1, 'start': 1 }", unique = true),
-        @CompoundIndex(name = "idx_doctor_range", def = "{ 'doctorId': 1, 'start': 1, 'end': 1 }")
+        // Only live bookings are unique, a cancelled appointment must not block re-booking its slot
+        @CompoundIndex(name = "uniq_doctor_start_scheduled", def = "{ 'doctorId': 1, 'start': 1 }", unique = true,
+                partialFilter = "{ 'status': 'SCHEDULED' }"),
+        @CompoundIndex(name = "idx_doctor_range", def = "{ 'doctorId': 1, 'start': 1, 'end': 1 }"),
+        // Listings in (start, id) order, see AppointmentHistory (appointments_archive has the same ones)
+        @CompoundIndex(name = "idx_doctor_start_id", def = "{ 'doctorId': 1, 'start': -1, '_id': -1 }"),
+        @CompoundIndex(name = "idx_patient_start_id", def = "{ 'patientId': 1, 'start': -1, '_id': -1 }"),
+        @CompoundIndex(name = "idx_clinic_start_id", def = "{ 'clinicId': 1, 'start': -1, '_id': -1 }"),
+        @CompoundIndex(name = "idx_status_start_id", def = "{ 'status': 1, 'start': -1, '_id': -1 }"),
+        @CompoundIndex(name = "idx_doctor_status_start_id", def = "{ 'doctorId': 1, 'status': 1, 'start': -1, '_id': -1 }"),
+        // NoShowSweeper walks SCHEDULED rows by end
+        @CompoundIndex(name = "idx_status_end", def = "{ 'status': 1, 'end': 1 }")
 })
 public class Appointment {
 
@@ -37,9 +47,19 @@ public class Appointment {
     @Indexed
     private String patientId;
 
+    /**
+     * Copied from the doctor at booking time, see AppointmentSnapshots
+     */
     @Indexed
     private String clinicId;
 
+    /**
+     * Display names as they were at booking time, so listings need no doctor or patient fetch
+     */
+    private String doctorName;
+
+    private String patientName;
+
     /**
      * Absolute UTC times for DST-safe scheduling
      */
@@ -61,6 +81,18 @@ public class Appointment {
 
     private String concern;
 
+    /**
+     * Set when booked as part of a recurring series, shared by all its sessions
+     */
+    @Indexed(sparse = true)
+    private String seriesId;
+
+    /**
+     * Set when a time-off created later covers this appointment, to the id of that time-off
+     */
+    @Indexed(sparse = true)
+    private String timeOffConflictId;
+
 
 
 }
@@ -0,0 +1,49 @@
+package com.example.vladyslav.model;
+
+import com.example.vladyslav.model.enums.CalendarFeedOwner;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * A subscribable .ics feed of a doctor's or a patient's appointments. Calendar apps cannot send a JWT, so the feed
+ * URL carries a random token instead; only its SHA-256 is stored, and deleting the document revokes the URL.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Document("calendar_feeds")
+public class CalendarFeed {
+
+    @Id
+    private String id;
+
+    @Indexed(name = "uniq_token_hash", unique = true)
+    private String tokenHash;
+
+    private CalendarFeedOwner ownerType;
+
+    /**
+     * Doctor or patient id, depending on ownerType.
+     */
+    private String ownerId;
+
+    /**
+     * The user who created the feed, the only one who can list or revoke it.
+     */
+    @Indexed(name = "idx_user")
+    private String userId;
+
+    private String label;
+
+    @CreatedDate
+    private Instant createdAt;
+}
@@ -0,0 +1,32 @@
+package com.example.vladyslav.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * Per-doctor counter bumped on every booking, rule or time-off change. Used as the availability ETag.
+ * Per-patient and per-feed counters live in the same collection, see CalendarVersionService.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Document("calendar_versions")
+public class CalendarVersion {
+
+    /**
+     * The doctor's id, "patient-" + the patient's id or "feed-" + the doctor's id.
+     */
+    @Id
+    private String id;
+
+    private long version;
+
+    private Instant updatedAt;
+}
@@ -8,6 +8,8 @@ import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.annotation.LastModifiedDate;
 import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.index.GeoSpatialIndexType;
 import org.springframework.data.mongodb.core.index.GeoSpatialIndexed;
 import org.springframework.data.mongodb.core.index.Indexed;
@@ -28,6 +30,13 @@ import java.util.List;
 @AllArgsConstructor
 @Builder
 @Document(collection = "doctors")
+@CompoundIndexes({
+        // Searches match DBRefs on their id, an index on the whole reference does not serve those
+        @CompoundIndex(name = "idx_speciality_id_next_available", def = "{ 'speciality.$id': 1, 'nextAvailableAt': 1, '_id': 1 }"),
+        @CompoundIndex(name = "idx_clinic_id", def = "{ 'clinic.$id': 1 }"),
+        // "Soonest" search sorts on (nextAvailableAt, _id)
+        @CompoundIndex(name = "idx_next_available_id", def = "{ 'nextAvailableAt': 1, '_id': 1 }")
+})
 public class Doctor {
     @Id
     private String id;
@@ -45,7 +54,6 @@ public class Doctor {
     @Indexed(unique = true)
     private String email;
 
-    @Indexed
     @DBRef
     private Speciality speciality;
 
@@ -86,13 +94,17 @@ public class Doctor {
     @LastModifiedDate
     private Instant updatedAt;
 
-    @Indexed
     @DBRef
     private Clinic clinic; // optional - can be null if independent;
 
     @GeoSpatialIndexed(type = GeoSpatialIndexType.GEO_2DSPHERE)
     private GeoJsonPoint location; // longitude, latitude
 
+    /**
+     * Start of the first free slot, maintained by NextAvailabilityService. Null when nothing is free within its horizon.
+     */
+    private Instant nextAvailableAt;
+
 
     public String getFullName() {
         return firstName + " " + lastName;
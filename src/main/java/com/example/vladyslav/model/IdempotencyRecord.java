@@ -0,0 +1,58 @@
+package com.example.vladyslav.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Outcome of a mutating request sent with an Idempotency-Key, replayed to retries of the same request.
+ * The _id is the caller's principal + ":" + the key, so keys of different users never meet.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Document("idempotency_keys")
+public class IdempotencyRecord {
+
+    @Id
+    private String id;
+
+    private State state;
+
+    /**
+     * Hash of method, path and body; a key reused for a different request is rejected.
+     */
+    private String fingerprint;
+
+    private int httpStatus;
+    private String contentType;
+
+    /**
+     * Response headers other than the content ones, e.g. Location of a created resource.
+     */
+    private Map<String, List<String>> headers;
+
+    private byte[] body;
+
+    private Instant createdAt;
+
+    /**
+     * Removed by Mongo once retries are no longer expected (TTL index).
+     */
+    @Indexed(name = "ttl_expire_at", expireAfter = "0s")
+    private Instant expireAt;
+
+    public enum State {
+        IN_PROGRESS,
+        COMPLETED
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.vladyslav.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * Where a dispatcher got to in outbox_events, and which node currently holds its lease.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Document("outbox_checkpoints")
+public class OutboxCheckpoint {
+
+    @Id
+    private String id;          // dispatcher name
+
+    private String lastEventId; // everything up to and including this was delivered
+
+    private String owner;
+    private Instant leaseUntil;
+    private Instant updatedAt;
+}
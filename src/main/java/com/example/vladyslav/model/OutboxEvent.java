@@ -0,0 +1,53 @@
+package com.example.vladyslav.model;
+
+import com.example.vladyslav.event.AppointmentChangedEvent;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * An appointment state change, written together with the change itself and delivered later by OutboxDispatcher.
+ * The _id is an ObjectId, so the natural _id order is (roughly) the write order the dispatcher follows.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Document("outbox_events")
+// Only events held back behind a failure of their doctor, read on every round in _id order
+@CompoundIndex(name = "idx_held", def = "{ 'held': 1, '_id': 1 }", partialFilter = "{ 'held': true }")
+public class OutboxEvent {
+
+    @Id
+    private String id;
+
+    private String appointmentId;
+    private String doctorId;
+    private String patientId;
+
+    private AppointmentChangedEvent.Change change;
+
+    private Instant start;
+    private Instant end;
+    private Instant previousStart;
+    private Instant previousEnd;
+
+    // Delivered or not, events are removed after a week
+    @Indexed(expireAfter = "7d")
+    private Instant occurredAt;
+
+    // Failed deliveries so far, the event is dead-lettered after app.outbox.max-attempts
+    private int attempts;
+
+    private boolean deadLettered;
+
+    // Set while an earlier event of the same doctor is failing; the checkpoint has already moved past it
+    private Boolean held;
+}
@@ -6,12 +6,15 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.DBRef;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.Instant;
 
 @Document(collection = "reviews")
+// A doctor's reviews newest first (listing, top 3, average), matched on the DBRef id
+@CompoundIndex(name = "idx_doctor_created", def = "{ 'doctor.$id': 1, 'createdAt': -1 }")
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -0,0 +1,40 @@
+package com.example.vladyslav.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * One 5-minute bucket of a doctor's calendar held by a SCHEDULED appointment.
+ * The _id is doctorId + ":" + bucket start (epoch minute), so overlapping bookings collide on the primary key
+ * on every node, whatever their start times.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Document("slot_claims")
+public class SlotClaim {
+
+    @Id
+    private String id;
+
+    private String doctorId;
+
+    @Indexed
+    private String appointmentId;
+
+    private Instant bucketStart;
+
+    /**
+     * Claims are only needed until the appointment is over, Mongo removes them afterwards (TTL index).
+     */
+    @Indexed(name = "ttl_expire_at", expireAfter = "0s")
+    private Instant expireAt;
+}
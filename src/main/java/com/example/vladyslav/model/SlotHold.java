@@ -0,0 +1,43 @@
+package com.example.vladyslav.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * A slot reserved for a patient while they finish checkout. Holds its time through slot claims like an
+ * appointment does; confirming turns it into an Appointment with the same id.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Document("slot_holds")
+@CompoundIndex(name = "idx_doctor_range", def = "{ 'doctorId': 1, 'start': 1, 'end': 1 }")
+public class SlotHold {
+
+    @Id
+    private String id;
+
+    private String doctorId;
+
+    private String patientId;
+
+    private String concern;
+
+    private Instant start;
+    private Instant end;
+
+    /**
+     * Mongo removes the hold after this (TTL index); the creating node's expiry wheel usually does it sooner.
+     */
+    @Indexed(name = "ttl_expire_at", expireAfter = "0s")
+    private Instant expireAt;
+}
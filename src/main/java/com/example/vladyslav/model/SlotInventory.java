@@ -0,0 +1,68 @@
+package com.example.vladyslav.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Materialized slots of one doctor-day, maintained by SlotInventoryService.
+ * Only used when app.slot-inventory.enabled=true.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Document("slot_inventory")
+@CompoundIndex(name = "idx_doctor_date", def = "{ 'doctorId': 1, 'date': 1 }")
+public class SlotInventory {
+
+    /**
+     * doctorId + ":" + date, so a claim can address the day directly.
+     */
+    @Id
+    private String id;
+
+    private String doctorId;
+
+    /**
+     * ISO date (yyyy-MM-dd, UK local). Kept as a string so it is not shifted by time zone conversion and sorts correctly.
+     * Indexed on its own for the sweep that drops past days.
+     */
+    @Indexed(name = "idx_date")
+    private String date;
+
+    private int slotMinutes;
+
+    /**
+     * Bookable slot starts, "HH:mm" ascending.
+     */
+    @Builder.Default
+    private List<String> free = new ArrayList<>();
+
+    /**
+     * Slot starts claimed by bookings. Regeneration never hands these out again.
+     */
+    @Builder.Default
+    private List<String> taken = new ArrayList<>();
+
+    /**
+     * Incremented by every claim, release and regeneration; regeneration writes are conditional on it.
+     */
+    private long version;
+
+    private Instant generatedAt;
+
+    public static String idFor(String doctorId, LocalDate date) {
+        return doctorId + ":" + date;
+    }
+}
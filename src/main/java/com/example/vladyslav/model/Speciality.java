@@ -6,9 +6,12 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.LastModifiedDate;
 import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
+import java.time.Instant;
+
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -23,4 +26,9 @@ public class Speciality {
     @NotBlank
     private String title;
 
+    // Newest first answers the listing ETag from the index, see ETagService
+    @LastModifiedDate
+    @Indexed(name = "idx_updated_at")
+    private Instant updatedAt;
+
 }
@@ -0,0 +1,32 @@
+package com.example.vladyslav.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * Progress of a background sweep over a time-ordered field (or over _id), and which node currently holds its lease.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Document("sweep_checkpoints")
+public class SweepCheckpoint {
+
+    @Id
+    private String id;          // sweep name
+
+    private Instant watermark;  // everything before this was swept
+
+    private String lastId;      // for sweeps in _id order: everything up to this id was swept
+
+    private String owner;
+    private Instant leaseUntil;
+    private Instant updatedAt;
+}
@@ -0,0 +1,60 @@
+package com.example.vladyslav.model;
+
+import com.example.vladyslav.model.enums.WaitlistStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * A patient waiting for any free slot of a doctor inside [windowStart, windowEnd).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Document("waitlist")
+@CompoundIndexes({
+        // Matcher: equality on doctor and status, first come first served, window checked from the index keys
+        @CompoundIndex(name = "idx_doctor_status_created",
+                def = "{ 'doctorId': 1, 'status': 1, 'createdAt': 1, 'windowStart': 1, 'windowEnd': 1 }"),
+        @CompoundIndex(name = "idx_status_matched", def = "{ 'status': 1, 'matchedAt': 1 }"),
+        // A patient's entries, newest first
+        @CompoundIndex(name = "idx_patient_created", def = "{ 'patientId': 1, 'createdAt': -1 }")
+})
+public class WaitlistEntry {
+
+    @Id
+    private String id;
+
+    private String doctorId;
+
+    private String patientId;
+
+    private String concern;
+
+    private Instant windowStart;
+
+    /**
+     * Entries are of no use once their window has passed, Mongo removes them (TTL index).
+     */
+    @Indexed(name = "ttl_window_end", expireAfter = "0s")
+    private Instant windowEnd;
+
+    private WaitlistStatus status;
+
+    private Instant matchedAt;
+
+    private String appointmentId;
+
+    @CreatedDate
+    private Instant createdAt;
+}
@@ -0,0 +1,6 @@
+package com.example.vladyslav.model.enums;
+
+public enum CalendarFeedOwner {
+    DOCTOR,
+    PATIENT
+}
@@ -0,0 +1,6 @@
+package com.example.vladyslav.model.enums;
+
+public enum SeriesMode {
+    ALL_OR_NOTHING,   // any session that cannot be booked rejects the whole series
+    BEST_EFFORT       // book what fits, report the rest
+}
@@ -0,0 +1,11 @@
+package com.example.vladyslav.model.enums;
+
+/**
+ * What creating a time-off does to SCHEDULED appointments inside it.
+ */
+public enum TimeOffConflictMode {
+
+    IGNORE,     // leave them, as plain create does
+    FLAG,       // keep them but mark them with the time-off id for the clinic to follow up
+    CANCEL      // cancel them and free their slots
+}
@@ -0,0 +1,8 @@
+package com.example.vladyslav.model.enums;
+
+public enum WaitlistStatus {
+    WAITING,
+    MATCHING,   // picked by the matcher, booking in progress
+    BOOKED,
+    WITHDRAWN
+}
@@ -11,6 +11,7 @@ import java.time.Instant;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface AppointmentRepository extends MongoRepository<Appointment, String> {
 
@@ -28,6 +29,16 @@ public interface AppointmentRepository extends MongoRepository<Appointment, Stri
 
     List<Appointment> findByDoctorIdAndStartLessThanAndEndGreaterThan(String doctorId, Instant endExclusive, Instant startExclusive);
 
+    List<Appointment> findByDoctorIdAndStatusAndStartLessThanAndEndGreaterThan(String doctorId, AppointmentStatus status, Instant endExclusive, Instant startExclusive);
+
+    // Cursor-backed, ordered by start (idx_doctor_range); the caller must close the stream
+    Stream<Appointment> streamByDoctorIdAndStatusAndStartLessThanAndEndGreaterThanOrderByStartAsc(String doctorId, AppointmentStatus status, Instant endExclusive, Instant startExclusive);
+
+    // Calendar feeds, every status, start in (from, to) and ordered by start; the caller must close the stream
+    Stream<Appointment> streamByDoctorIdAndStartBetweenOrderByStartAsc(String doctorId, Instant from, Instant to);
+
+    Stream<Appointment> streamByPatientIdAndStartBetweenOrderByStartAsc(String patientId, Instant from, Instant to);
+
     Page<Appointment> findByStatus(AppointmentStatus status, Pageable pageable);
 
     @Query("{ 'doctorId': ?0, 'status': ?1, 'start': { $gte: ?2 }, 'end': { $lte: ?3 } }")
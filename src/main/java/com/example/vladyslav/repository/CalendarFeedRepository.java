@@ -0,0 +1,18 @@
+package com.example.vladyslav.repository;
+
+import com.example.vladyslav.model.CalendarFeed;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface CalendarFeedRepository extends MongoRepository<CalendarFeed, String> {
+
+    Optional<CalendarFeed> findByTokenHash(String tokenHash);
+
+    List<CalendarFeed> findByUserId(String userId);
+
+    long countByUserId(String userId);
+
+    Optional<CalendarFeed> findByIdAndUserId(String id, String userId);
+}
@@ -0,0 +1,15 @@
+package com.example.vladyslav.repository;
+
+import com.example.vladyslav.model.SlotClaim;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+import java.util.Collection;
+
+public interface SlotClaimRepository extends MongoRepository<SlotClaim, String> {
+
+    void deleteByAppointmentId(String appointmentId);
+
+    void deleteByAppointmentIdIn(Collection<String> appointmentIds);
+
+    void deleteByAppointmentIdAndIdIn(String appointmentId, Collection<String> ids);
+}
@@ -0,0 +1,17 @@
+package com.example.vladyslav.repository;
+
+import com.example.vladyslav.model.SlotHold;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Stream;
+
+public interface SlotHoldRepository extends MongoRepository<SlotHold, String> {
+
+    // Live holds overlapping [start, end); expired ones may linger until the TTL monitor runs
+    List<SlotHold> findByDoctorIdAndStartLessThanAndEndGreaterThanAndExpireAtGreaterThan(String doctorId, Instant end, Instant start, Instant now);
+
+    // Same, cursor-backed and ordered by start (idx_doctor_range); the caller must close the stream
+    Stream<SlotHold> streamByDoctorIdAndStartLessThanAndEndGreaterThanAndExpireAtGreaterThanOrderByStartAsc(String doctorId, Instant end, Instant start, Instant now);
+}
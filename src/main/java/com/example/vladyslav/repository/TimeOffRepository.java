@@ -7,11 +7,20 @@ import org.springframework.data.mongodb.repository.MongoRepository;
 
 import java.time.Instant;
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface TimeOffRepository extends MongoRepository<TimeOff, String > {
 
     List<TimeOff> findByDoctorIdAndStartLessThanEqualAndEndGreaterThanEqual(String doctorId, Instant end, Instant start);
 
+    List<TimeOff> findByDoctorIdAndStartLessThanAndEndGreaterThan(String doctorId, Instant endExclusive, Instant startExclusive);
+
+    List<TimeOff> findByDoctorIdInAndStartLessThanAndEndGreaterThan(Collection<String> doctorIds, Instant endExclusive, Instant startExclusive);
+
+    // Cursor-backed, ordered by start (idx_doctor_timeOff); the caller must close the stream
+    Stream<TimeOff> streamByDoctorIdAndStartLessThanAndEndGreaterThanOrderByStartAsc(String doctorId, Instant endExclusive, Instant startExclusive);
+
     Page<TimeOff> findByDoctorIdAndStartAfter(String doctorId, LocalDate start, Pageable pageable);
 }
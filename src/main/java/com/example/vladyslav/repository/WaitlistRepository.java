@@ -0,0 +1,15 @@
+package com.example.vladyslav.repository;
+
+import com.example.vladyslav.model.WaitlistEntry;
+import com.example.vladyslav.model.enums.WaitlistStatus;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface WaitlistRepository extends MongoRepository<WaitlistEntry, String> {
+
+    List<WaitlistEntry> findByPatientIdOrderByCreatedAtDesc(String patientId);
+
+    boolean existsByDoctorIdAndPatientIdAndStatusIn(String doctorId, String patientId, Collection<WaitlistStatus> statuses);
+}
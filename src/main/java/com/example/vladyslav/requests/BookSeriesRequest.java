@@ -0,0 +1,16 @@
+package com.example.vladyslav.requests;
+
+import com.example.vladyslav.model.enums.SeriesMode;
+import lombok.Data;
+
+@Data
+public class BookSeriesRequest {
+    private String doctorId;
+    private String patientId;
+    private String concern;
+    private String startDate;       // yyyy-MM-dd, first session
+    private String time;            // HH:mm, same for every session
+    private int occurrences;        // number of sessions, e.g. 6-12
+    private int intervalWeeks = 1;  // 1 = weekly, 2 = fortnightly
+    private SeriesMode mode = SeriesMode.ALL_OR_NOTHING;
+}
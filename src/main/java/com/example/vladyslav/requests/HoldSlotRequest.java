@@ -0,0 +1,12 @@
+package com.example.vladyslav.requests;
+
+import lombok.Data;
+
+@Data
+public class HoldSlotRequest {
+    private String doctorId;
+    private String patientId;
+    private String concern;
+    private String date;
+    private String time;
+}
@@ -0,0 +1,12 @@
+package com.example.vladyslav.requests;
+
+import lombok.Data;
+
+@Data
+public class JoinWaitlistRequest {
+    private String doctorId;
+    private String patientId;
+    private String concern;
+    private String fromDate;    // yyyy-MM-dd, first acceptable day
+    private String toDate;      // yyyy-MM-dd, last acceptable day
+}
@@ -21,4 +21,7 @@ public class DoctorSearchCriteria {
     private Integer maxFee;
 
     private String q; // text search: name, bio
+
+    private Integer availableWithinDays; // only doctors with a free slot in the next N days
+    private boolean availableSoonest;    // sort by nextAvailableAt, doctors without availability excluded
 }
@@ -0,0 +1,126 @@
+package com.example.vladyslav.service;
+
+import com.example.vladyslav.model.Appointment;
+import com.example.vladyslav.model.SweepCheckpoint;
+import com.example.vladyslav.model.enums.AppointmentStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Moves finished appointments (ATTENDED, CANCELLED, NO_SHOW) that ended more than app.archive.age-days ago from
+ * appointments into appointments_archive, so the hot collection and its indexes only hold recent and upcoming ones.
+ *
+ * Each batch is copied with one unordered bulk of upserting replaces, then removed from the hot collection with one
+ * bulk of deletes conditional on the version that was copied; a row changed in between stays hot and is copied again
+ * by a later batch. Copying is idempotent, so a batch cut short by a crash is simply redone. Only the node holding
+ * the lease in sweep_checkpoints archives. Reads go through AppointmentHistory, which looks at both collections.
+ */
+@Service
+public class AppointmentArchiver {
+
+    private static final Logger log = LoggerFactory.getLogger(AppointmentArchiver.class);
+
+    static final String NAME = "archive";
+
+    static final List<AppointmentStatus> FINISHED = List.of(AppointmentStatus.ATTENDED, AppointmentStatus.CANCELLED, AppointmentStatus.NO_SHOW);
+
+    private final MongoTemplate mongoTemplate;
+    private final Duration age;
+    private final int batchSize;
+    private final int maxBatches;
+    private final Duration lease;
+    private final String owner = UUID.randomUUID().toString();
+
+    public AppointmentArchiver(MongoTemplate mongoTemplate,
+                               @Value("${app.archive.age-days:365}") long ageDays,
+                               @Value("${app.archive.batch-size:500}") int batchSize,
+                               @Value("${app.archive.max-batches:20}") int maxBatches,
+                               @Value("${app.archive.lease-seconds:600}") long leaseSeconds) {
+        this.mongoTemplate = mongoTemplate;
+        this.age = Duration.ofDays(ageDays);
+        this.batchSize = batchSize;
+        this.maxBatches = maxBatches;
+        this.lease = Duration.ofSeconds(leaseSeconds);
+    }
+
+    @Scheduled(fixedDelayString = "${app.archive.run-ms:3600000}", initialDelayString = "${app.archive.initial-delay-ms:300000}")
+    public void archive() {
+        try {
+            long moved = archiveOnce(Instant.now());
+            if (moved > 0) log.info("Archived {} finished appointments", moved);
+        } catch (RuntimeException e) {
+            log.warn("Archiving failed, the next run picks up what is left", e);
+        }
+    }
+
+    /**
+     * Archives up to app.archive.max-batches batches of appointments that ended before {@code now - age}.
+     *
+     * @return appointments removed from the hot collection
+     */
+    long archiveOnce(Instant now) {
+        if (acquireLease(now) == null) return 0;
+
+        Instant cutoff = now.minus(age);
+        long moved = 0;
+        for (int i = 0; i < maxBatches; i++) {
+            // idx_status_end: one range per finished status
+            Query due = new Query(where("status").in(FINISHED).and("end").lt(cutoff)).limit(batchSize);
+            List<Appointment> batch = mongoTemplate.find(due, Appointment.class);
+            if (batch.isEmpty()) break;
+
+            BulkOperations copy = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Appointment.class, AppointmentHistory.ARCHIVE);
+            batch.forEach(a -> copy.replaceOne(new Query(where("_id").is(a.getId())), a, FindAndReplaceOptions.options().upsert()));
+            copy.execute();
+
+            BulkOperations remove = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Appointment.class);
+            remove.remove(batch.stream()
+                    .map(a -> new Query(where("_id").is(a.getId()).and("version").is(a.getVersion())))
+                    .toList());
+            moved += remove.execute().getDeletedCount();
+
+            if (batch.size() < batchSize || !renew(now, cutoff)) break;
+        }
+        return moved;
+    }
+
+    private SweepCheckpoint acquireLease(Instant now) {
+        Query query = new Query(where("_id").is(NAME)
+                .orOperator(where("owner").is(owner), where("leaseUntil").lt(now)));
+        Update update = new Update().set("owner", owner).set("leaseUntil", now.plus(lease));
+        try {
+            return mongoTemplate.findAndModify(query, update,
+                    FindAndModifyOptions.options().upsert(true).returnNew(true), SweepCheckpoint.class);
+        } catch (DuplicateKeyException e) {
+            // Another node is archiving
+            return null;
+        }
+    }
+
+    // Records progress and extends the lease; false when it was lost to another node
+    private boolean renew(Instant now, Instant cutoff) {
+        Query ours = new Query(where("_id").is(NAME).and("owner").is(owner));
+        Update update = new Update()
+                .max("watermark", cutoff)
+                .set("leaseUntil", Instant.now().plus(lease))
+                .set("updatedAt", now);
+        return mongoTemplate.updateFirst(ours, update, SweepCheckpoint.class).getMatchedCount() > 0;
+    }
+}
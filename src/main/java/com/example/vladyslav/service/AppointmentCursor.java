@@ -0,0 +1,48 @@
+package com.example.vladyslav.service;
+
+import com.example.vladyslav.exception.OurException;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Window;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Continuation tokens for the keyset appointment listings: the (start, id) of the last row returned,
+ * base64url-encoded so clients treat it as opaque.
+ */
+final class AppointmentCursor {
+
+    private static final String VERSION = "1";
+
+    private AppointmentCursor() {}
+
+    static ScrollPosition decode(String token) {
+        if (token == null || token.isBlank()) return ScrollPosition.keyset();
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split("\\|", 3);
+            if (parts.length != 3 || !VERSION.equals(parts[0])) throw new IllegalArgumentException("unknown format");
+
+            Map<String, Object> keys = new LinkedHashMap<>();
+            keys.put("start", Instant.ofEpochMilli(Long.parseLong(parts[1])));
+            keys.put("id", parts[2]);
+            return ScrollPosition.forward(keys);
+        } catch (IllegalArgumentException e) {
+            throw new OurException("Invalid cursor.");
+        }
+    }
+
+    // Null when there is nothing after this window
+    static String next(Window<?> window) {
+        if (!window.hasNext() || window.isEmpty()) return null;
+        KeysetScrollPosition position = (KeysetScrollPosition) window.positionAt(window.size() - 1);
+        Instant start = (Instant) position.getKeys().get("start");
+        Object id = position.getKeys().getOrDefault("id", position.getKeys().get("_id"));
+        String raw = VERSION + "|" + start.toEpochMilli() + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
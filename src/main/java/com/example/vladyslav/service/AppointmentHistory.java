@@ -0,0 +1,126 @@
+package com.example.vladyslav.service;
+
+import com.example.vladyslav.model.Appointment;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.TypedAggregation;
+import org.springframework.data.mongodb.core.aggregation.UnionWithOperation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Reads appointments across the hot collection and appointments_archive, where AppointmentArchiver moves old
+ * finished ones, so listings and lookups do not depend on where a row currently lives.
+ *
+ * Both sides are queried with the same criteria in (start, id) order on their own indexes, each limited to what
+ * the page can use. Offset pages are merged and cut on the server, keyset windows here. During an archiving batch
+ * a row can briefly exist in both; it is listed once.
+ */
+@Component
+@RequiredArgsConstructor
+public class AppointmentHistory {
+
+    public static final String ARCHIVE = "appointments_archive";
+
+    private final MongoTemplate mongoTemplate;
+
+    public Optional<Appointment> findById(String id) {
+        return findOne(where("_id").is(id));
+    }
+
+    public Optional<Appointment> findOne(Criteria criteria) {
+        Appointment hot = mongoTemplate.findOne(new Query(criteria), Appointment.class);
+        if (hot != null) return Optional.of(hot);
+        return Optional.ofNullable(mongoTemplate.findOne(new Query(criteria), Appointment.class, ARCHIVE));
+    }
+
+    /**
+     * Offset page over both collections in one aggregation: each side is sorted on its index and limited to
+     * offset + size rows, $unionWith joins them and the page is skipped and limited on the server, so only the
+     * page comes back. The total is the sum of both counts.
+     */
+    public Page<Appointment> page(Criteria criteria, Sort.Direction direction, Pageable pageable) {
+        long wanted = pageable.getOffset() + pageable.getPageSize();
+        Sort order = order(direction);
+
+        TypedAggregation<Appointment> aggregation = Aggregation.newAggregation(Appointment.class,
+                Aggregation.match(criteria),
+                Aggregation.sort(order),
+                Aggregation.limit(wanted),
+                UnionWithOperation.unionWith(ARCHIVE)
+                        .mapFieldsTo(Appointment.class)
+                        .pipeline(Aggregation.match(criteria), Aggregation.sort(order), Aggregation.limit(wanted)),
+                Aggregation.sort(order),
+                Aggregation.skip(pageable.getOffset()),
+                Aggregation.limit(pageable.getPageSize()));
+        // A row caught mid-archiving comes from both sides, the page is then one row short for that moment
+        List<Appointment> rows = distinct(mongoTemplate.aggregate(aggregation, Appointment.class).getMappedResults());
+
+        long total = mongoTemplate.count(new Query(criteria), Appointment.class)
+                + mongoTemplate.count(new Query(criteria), Appointment.class, ARCHIVE);
+        return new PageImpl<>(rows, pageable, total);
+    }
+
+    /**
+     * Keyset window over both collections: each side seeks past the same (start, id), the merged rows carry their own keys.
+     */
+    public Window<Appointment> scroll(Criteria criteria, Sort.Direction direction, ScrollPosition position, int limit) {
+        Query query = new Query(criteria).with(order(direction)).with(position).limit(limit);
+        Window<Appointment> hot = mongoTemplate.scroll(query, Appointment.class);
+        Window<Appointment> cold = mongoTemplate.scroll(query, Appointment.class, ARCHIVE);
+
+        List<Appointment> merged = merge(direction, hot.getContent(), cold.getContent());
+        boolean hasNext = merged.size() > limit || hot.hasNext() || cold.hasNext();
+        List<Appointment> rows = merged.subList(0, Math.min(limit, merged.size()));
+        return Window.from(rows, i -> keyset(rows.get(i)), hasNext);
+    }
+
+    // The hot copy wins
+    private static List<Appointment> merge(Sort.Direction direction, List<Appointment> hot, List<Appointment> cold) {
+        List<Appointment> both = new ArrayList<>(hot.size() + cold.size());
+        both.addAll(hot);
+        both.addAll(cold);
+        List<Appointment> merged = distinct(both);
+
+        Comparator<Appointment> order = Comparator.comparing(Appointment::getStart).thenComparing(Appointment::getId);
+        merged.sort(direction.isAscending() ? order : order.reversed());
+        return merged;
+    }
+
+    private static List<Appointment> distinct(List<Appointment> rows) {
+        Set<String> ids = new HashSet<>();
+        List<Appointment> unique = new ArrayList<>(rows.size());
+        rows.forEach(a -> { if (ids.add(a.getId())) unique.add(a); });
+        return unique;
+    }
+
+    private static Sort order(Sort.Direction direction) {
+        return Sort.by(direction, "start", "id");
+    }
+
+    private static ScrollPosition keyset(Appointment appointment) {
+        Map<String, Object> keys = new LinkedHashMap<>();
+        keys.put("start", appointment.getStart());
+        keys.put("id", appointment.getId());
+        return ScrollPosition.forward(keys);
+    }
+}
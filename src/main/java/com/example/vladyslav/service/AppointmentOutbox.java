@@ -0,0 +1,105 @@
+package com.example.vladyslav.service;
+
+import com.example.vladyslav.event.AppointmentChangedEvent;
+import com.example.vladyslav.model.OutboxEvent;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.MongoTransactionManager;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Writes appointment state changes together with their outbox_events entry, so a change is never persisted
+ * without the event that OutboxDispatcher later delivers.
+ *
+ * Both writes run in one Mongo transaction (replica set or Atlas). The transaction manager is private to this
+ * class on purpose: registering one as a bean would switch on the @Transactional annotations elsewhere, which
+ * currently run without a transaction. With app.outbox.transactions=false (standalone dev servers) the event is
+ * written right after the change instead, and a crash in between loses it.
+ *
+ * Once the change is committed the AppointmentChangedEvents are also published in-process, on this node only.
+ * That is for per-node state (availability cache, slot pushes to this node's sockets); anything that writes
+ * shared state listens to the AppointmentLifecycleEvent the dispatcher delivers instead.
+ */
+@Component
+public class AppointmentOutbox {
+
+    private static final Logger log = LoggerFactory.getLogger(AppointmentOutbox.class);
+
+    private final MongoTemplate mongoTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactions;
+
+    public AppointmentOutbox(MongoTemplate mongoTemplate,
+                             MongoDatabaseFactory databaseFactory,
+                             ApplicationEventPublisher eventPublisher,
+                             @Value("${app.outbox.transactions:true}") boolean useTransactions) {
+        this.mongoTemplate = mongoTemplate;
+        this.eventPublisher = eventPublisher;
+        this.transactions = useTransactions ? new TransactionTemplate(new MongoTransactionManager(databaseFactory)) : null;
+    }
+
+    /**
+     * Runs {@code stateChange} and records the event derived from its result in the same transaction.
+     */
+    public <T> T write(Supplier<T> stateChange, Function<? super T, AppointmentChangedEvent> change) {
+        return writeAll(stateChange, result -> List.of(change.apply(result)));
+    }
+
+    public <T> T writeAll(Supplier<T> stateChange, Function<? super T, ? extends Collection<AppointmentChangedEvent>> changes) {
+        List<AppointmentChangedEvent> written = new ArrayList<>();
+        Supplier<T> unit = () -> {
+            T result = stateChange.get();
+            written.clear();
+            written.addAll(changes.apply(result));
+            append(written);
+            return result;
+        };
+        T result = transactions == null ? unit.get() : transactions.execute(status -> unit.get());
+        written.forEach(this::publishLocally);
+        return result;
+    }
+
+    // The change is committed by now, a failing listener must not make the caller undo it
+    private void publishLocally(AppointmentChangedEvent change) {
+        try {
+            eventPublisher.publishEvent(change);
+        } catch (RuntimeException e) {
+            log.warn("Local listener failed for {} of appointment {}", change.change(), change.appointmentId(), e);
+        }
+    }
+
+    private void append(Collection<AppointmentChangedEvent> changes) {
+        if (changes.isEmpty()) return;
+        Instant now = Instant.now();
+        List<OutboxEvent> events = changes.stream()
+                .map(c -> OutboxEvent.builder()
+                        .id(new ObjectId().toHexString())
+                        .appointmentId(c.appointmentId())
+                        .doctorId(c.doctorId())
+                        .patientId(c.patientId())
+                        .change(c.change())
+                        .start(c.start())
+                        .end(c.end())
+                        .previousStart(c.previousStart())
+                        .previousEnd(c.previousEnd())
+                        .occurredAt(now)
+                        .build())
+                .toList();
+        // One small document per change; a series is still a single insertMany
+        if (events.size() == 1) mongoTemplate.insert(events.get(0));
+        else mongoTemplate.insert(events, OutboxEvent.class);
+    }
+}
@@ -1,25 +1,43 @@
 package com.example.vladyslav.service;
 
 import com.example.vladyslav.dto.AppointmentDTO;
+import com.example.vladyslav.dto.CursorPageDTO;
+import com.example.vladyslav.dto.SeriesBookingDTO;
+import com.example.vladyslav.dto.SeriesOccurrenceDTO;
+import com.example.vladyslav.event.AppointmentChangedEvent;
+import com.example.vladyslav.exception.ConflictException;
 import com.example.vladyslav.exception.NotFoundException;
 import com.example.vladyslav.exception.OurException;
 import com.example.vladyslav.model.*;
 import com.example.vladyslav.model.enums.AppointmentStatus;
 import com.example.vladyslav.model.enums.Role;
+import com.example.vladyslav.model.enums.SeriesMode;
 import com.example.vladyslav.repository.*;
 import com.example.vladyslav.requests.BookAppointmentRequest;
+import com.example.vladyslav.requests.BookSeriesRequest;
 import com.example.vladyslav.requests.RescheduleRequest;
 import lombok.RequiredArgsConstructor;
+import org.bson.types.ObjectId;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.stereotype.Service;
 
 
 import java.time.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
 
 @Service
 @RequiredArgsConstructor
@@ -27,10 +45,19 @@ public class AppointmentService {
 
     private static final ZoneId UK_TZ = ZoneId.of("Europe/London");
 
+    private static final int MAX_SERIES_OCCURRENCES = 26;
+    private static final int MAX_SERIES_INTERVAL_WEEKS = 4;
+    private static final int MAX_CURSOR_PAGE_SIZE = 100;
+
     private final AppointmentRepository appointmentRepository;
-    private final AvailabilityRuleRepository availabilityRuleRepository;
-    private final TimeOffRepository timeOffRepository;
     private final DoctorRepository doctorRepository;
+    private final SlotInventoryService slotInventoryService;
+    private final SlotClaimService slotClaimService;
+    private final BookingLocks bookingLocks;
+    private final BookingContextLoader bookingContextLoader;
+    private final AppointmentOutbox outbox;
+    private final AppointmentHistory history;
+    private final AppointmentSnapshots snapshots;
 
     public AppointmentDTO toDto(Appointment a){
         return AppointmentDTO.builder()
@@ -38,6 +65,8 @@ public class AppointmentService {
                 .patientId(a.getPatientId())
                 .doctorId(a.getDoctorId())
                 .clinicId(a.getClinicId())
+                .doctorName(a.getDoctorName())
+                .patientName(a.getPatientName())
                 .start(a.getStart())
                 .end(a.getEnd())
                 .status(a.getStatus())
@@ -45,17 +74,19 @@ public class AppointmentService {
                 .updatedAt(a.getUpdatedAt())
                 .version(a.getVersion())
                 .concern(a.getConcern())
+                .seriesId(a.getSeriesId())
+                .timeOffConflictId(a.getTimeOffConflictId())
                 .build();
     }
 
     public Page<AppointmentDTO> getAllAppointments(int page, int size){
         Pageable pageable = PageRequest.of(page, size);
-        Page<Appointment> appointments = appointmentRepository.findAll(pageable);
+        Page<Appointment> appointments = history.page(new Criteria(), Sort.Direction.DESC, pageable);
         return appointments.map(this::toDto);
     }
 
     public AppointmentDTO getAppointmentById(String appointmentId){
-        Appointment appointment = appointmentRepository.findById(appointmentId).orElseThrow(()-> new NotFoundException("Appointment not found with Appointment ID " + appointmentId));
+        Appointment appointment = history.findById(appointmentId).orElseThrow(()-> new NotFoundException("Appointment not found with Appointment ID " + appointmentId));
         return toDto(appointment);
     }
 
@@ -88,13 +119,37 @@ public class AppointmentService {
                 .build();
 
         validateDraft(appointmentCheck);
-        ensureWithinAvailability(appointmentCheck);
-        ensureNotDuringTimeOff(appointmentCheck);
-        ensureNoOverlapForRescheduling(appointmentCheck);
 
-        appointment.setStart(request.getNewStart());
-        appointment.setEnd(request.getNewEnd());
-        appointmentRepository.save(appointment);
+        Instant previousStart = appointment.getStart();
+        Instant previousEnd = appointment.getEnd();
+
+        bookingLocks.withDoctorLock(appointment.getDoctorId(), () -> {
+            BookingContext context = bookingContextLoader.load(appointment.getDoctorId(),
+                    request.getNewStart().atZone(UK_TZ).getDayOfWeek().getValue(), request.getNewStart(), request.getNewEnd());
+            context.ensureWithinAvailability(appointmentCheck);
+            context.ensureNotDuringTimeOff(appointmentCheck);
+            context.ensureNoOverlap(appointmentCheck);
+
+            // Claim the new time before giving up the old one, the overlap of both stays held throughout
+            List<String> held = slotClaimService.bucketIds(appointment.getDoctorId(), previousStart, previousEnd);
+            List<String> added = slotClaimService.claim(appointment.getDoctorId(), appointment.getId(),
+                    request.getNewStart(), request.getNewEnd(), held);
+
+            appointment.setStart(request.getNewStart());
+            appointment.setEnd(request.getNewEnd());
+            try {
+                outbox.write(() -> appointmentRepository.save(appointment),
+                        saved -> AppointmentChangedEvent.rescheduled(saved, previousStart, previousEnd));
+            } catch (RuntimeException e) {
+                slotClaimService.release(appointment.getId(), added);
+                throw e;
+            }
+
+            List<String> dropped = new ArrayList<>(held);
+            dropped.removeAll(slotClaimService.bucketIds(appointment.getDoctorId(), request.getNewStart(), request.getNewEnd()));
+            slotClaimService.release(appointment.getId(), dropped);
+            return appointment;
+        });
 
         return toDto(appointment);
 
@@ -103,20 +158,22 @@ public class AppointmentService {
     public void cancel(String id) {
         Appointment appointment = appointmentRepository.findById(id).orElseThrow(()-> new NotFoundException("Appointment not found with id " + id));
         appointment.setStatus(AppointmentStatus.CANCELLED);
-        appointmentRepository.save(appointment);
+        outbox.write(() -> appointmentRepository.save(appointment),
+                saved -> AppointmentChangedEvent.of(saved, AppointmentChangedEvent.Change.CANCELLED));
+        slotClaimService.releaseAll(appointment.getId());
     }
 
     public  Page<AppointmentDTO> getAppointmentsByPatientId(String patientId, int page, int size){
 
         Pageable pageable = PageRequest.of(page,size);
-        Page<Appointment> results = appointmentRepository.findByPatientIdOrderByStartDesc(patientId, pageable);
+        Page<Appointment> results = history.page(where("patientId").is(patientId), Sort.Direction.DESC, pageable);
         return results.map(this::toDto);
     }
 
     public Page<AppointmentDTO> getAppointmentsByDoctorId(String doctorId, int page, int size){
 
         Pageable pageable = PageRequest.of(page,size);
-        Page<Appointment> appointmentPage = appointmentRepository.findByDoctorIdOrderByStartDesc(doctorId, pageable);
+        Page<Appointment> appointmentPage = history.page(where("doctorId").is(doctorId), Sort.Direction.DESC, pageable);
 
         return appointmentPage.map(this::toDto);
     }
@@ -124,34 +181,67 @@ public class AppointmentService {
     public Page<AppointmentDTO> getAppointmentsByStatus(AppointmentStatus status, int page, int size){
 
         Pageable pageable = PageRequest.of(page,size);
-        Page<Appointment> appointmentList = appointmentRepository.findByStatus(status, pageable);
+        Page<Appointment> appointmentList = history.page(where("status").is(status), Sort.Direction.DESC, pageable);
 
         return appointmentList.map(this::toDto);
     }
 
     public Optional<AppointmentDTO> getAppointmentByDoctorIdAndStartDate(String doctorId, Instant start){
-        return appointmentRepository
-                .findByDoctorIdAndStart(doctorId,start)
+        return history
+                .findOne(where("doctorId").is(doctorId).and("start").is(start))
                 .map(this::toDto);
     }
 
     public Page<AppointmentDTO> getAppointmentByClinicIdFromStartToEndDates(String clinicId, Instant start, Instant end, int page, int size){
         Pageable pageable = PageRequest.of(page, size);
-        Page<Appointment> appointmentPage = appointmentRepository.findByClinicIdAndStartBetween(clinicId, start, end, pageable);
+        Page<Appointment> appointmentPage = history.page(where("clinicId").is(clinicId).and("start").gt(start).lt(end), Sort.Direction.ASC, pageable);
 
         return appointmentPage.map(this::toDto);
     }
 
     public Page<AppointmentDTO> getAppointmentsByClinicId(String clinicId, int page, int size){
         Pageable pageable = PageRequest.of(page, size);
-        Page<Appointment> appointmentPage = appointmentRepository.findByClinicIdOrderByStartDesc(clinicId, pageable);
+        Page<Appointment> appointmentPage = history.page(where("clinicId").is(clinicId), Sort.Direction.DESC, pageable);
 
         return appointmentPage.map(this::toDto);
     }
 
+    /* --------------------------------------- Keyset listings --------------------------------------------------------------- */
+
+    // Same listings as above without skip or count: each page seeks past the (start, id) in the cursor
+
+    public CursorPageDTO<AppointmentDTO> getAppointmentsByDoctorId(String doctorId, String cursor, int size){
+        return cursorPage(where("doctorId").is(doctorId), Sort.Direction.DESC, cursor, size);
+    }
+
+    public CursorPageDTO<AppointmentDTO> getAppointmentsByPatientId(String patientId, String cursor, int size){
+        return cursorPage(where("patientId").is(patientId), Sort.Direction.DESC, cursor, size);
+    }
+
+    public CursorPageDTO<AppointmentDTO> getAppointmentsByClinicId(String clinicId, String cursor, int size){
+        return cursorPage(where("clinicId").is(clinicId), Sort.Direction.DESC, cursor, size);
+    }
+
+    public CursorPageDTO<AppointmentDTO> getAppointmentsByStatus(AppointmentStatus status, String cursor, int size){
+        return cursorPage(where("status").is(status), Sort.Direction.DESC, cursor, size);
+    }
+
+    public CursorPageDTO<AppointmentDTO> getAppointmentByClinicIdFromStartToEndDates(String clinicId, Instant start, Instant end, String cursor, int size){
+        return cursorPage(where("clinicId").is(clinicId).and("start").gt(start).lt(end), Sort.Direction.ASC, cursor, size);
+    }
+
+    private CursorPageDTO<AppointmentDTO> cursorPage(Criteria criteria, Sort.Direction direction, String cursor, int size) {
+        if (size < 1 || size > MAX_CURSOR_PAGE_SIZE) {
+            throw new OurException("size must be between 1 and " + MAX_CURSOR_PAGE_SIZE + ".");
+        }
+        Window<Appointment> window = history.scroll(criteria, direction, AppointmentCursor.decode(cursor), size);
+        return new CursorPageDTO<>(window.map(this::toDto).getContent(), AppointmentCursor.next(window));
+    }
+
     public Page<AppointmentDTO> findByDoctorIdAndStatusBetween(String doctorId, AppointmentStatus status, Instant from, Instant to, int page, int size){
         Pageable pageable = PageRequest.of(page,size);
-        Page<Appointment> appointmentPage = appointmentRepository.findByDoctorIdAndStatusBetween(doctorId, status, from, to, pageable);
+        Page<Appointment> appointmentPage = history.page(where("doctorId").is(doctorId).and("status").is(status).and("start").gte(from).and("end").lte(to),
+                Sort.Direction.ASC, pageable);
 
         return appointmentPage.map(this::toDto);
     }
@@ -176,7 +266,8 @@ public class AppointmentService {
         }
 
         appointment.setStatus(AppointmentStatus.ATTENDED);
-        appointmentRepository.save(appointment);
+        outbox.write(() -> appointmentRepository.save(appointment),
+                saved -> AppointmentChangedEvent.of(saved, AppointmentChangedEvent.Change.ATTENDED));
 
         return toDto(appointment);
     }
@@ -201,14 +292,47 @@ public class AppointmentService {
             throw new OurException("Cannot book an appointment in the past");
         }
 
-        int isoDow = date.getDayOfWeek().getValue();
-
-        AvailabilityRule rule = availabilityRuleRepository
-                .findByDoctorIdAndDayOfWeek(request.getDoctorId(), isoDow)
-                .orElseThrow(()-> new OurException("No availability for this day (doctorId=" + request.getDoctorId() +
-                        ", day=" + isoDow + ")."));
+        if (slotInventoryService.isEnabled()) {
+            AppointmentDTO claimed = bookFromInventory(request, date, time);
+            if (claimed != null) return claimed;
+        }
 
+        int isoDow = date.getDayOfWeek().getValue();
+        Instant dayStart = date.atStartOfDay(UK_TZ).toInstant();
+        Instant dayEnd = date.plusDays(1).atStartOfDay(UK_TZ).toInstant();
+        // Same-doctor bookings on this node queue on the lock; the slot claim makes it safe across nodes.
+        // The whole day is loaded because the slot length is only known once the rule is read.
+        Appointment booked = bookingLocks.withDoctorLock(request.getDoctorId(), () -> {
+            BookingContext context = bookingContextLoader.loadForBooking(request.getDoctorId(), request.getPatientId(), isoDow, dayStart, dayEnd);
+            AvailabilityRule rule = context.requireRule();
+            AppointmentSnapshots.Parties parties = context.parties();
+
+            Instant start = alignedStart(rule, date, time);
+            Instant end = start.plus(Duration.ofMinutes(rule.getSlotMinutes()));
+
+            Appointment draft = Appointment.builder()
+                            .doctorId(request.getDoctorId())
+                            .patientId(request.getPatientId())
+                            .clinicId(parties.clinicId())
+                            .doctorName(parties.doctorName())
+                            .patientName(parties.patientName())
+                            .start(start)
+                            .end(end)
+                            .status(AppointmentStatus.SCHEDULED)
+                            .concern(request.getConcern())
+                            .build();
+
+            validateDraft(draft);
+            context.ensureWithinAvailability(draft);
+            context.ensureNotDuringTimeOff(draft);
+            context.ensureNoOverlap(draft);
+            return claimAndSave(draft);
+        });
+
+        return toDto(booked);
+    }
 
+    static Instant alignedStart(AvailabilityRule rule, LocalDate date, LocalTime time) {
         // You can only book exactly on the slot grid (e.g., 09:00, 09:30, 10:00 - not 09:07)
         // Ensure the chosen time is not before the doctor start working
         // Time falls exactly on a slot boundary (based on slot minutes)
@@ -226,86 +350,189 @@ public class AppointmentService {
             throw new OurException("Selected time must align with slot intervals of " + rule.getSlotMinutes() + " minutes.");
         }
 
-        ZonedDateTime startUK = ZonedDateTime.of(date, time, UK_TZ);
-        Instant start = startUK.toInstant();
-        Instant end = start.plus(Duration.ofMinutes(rule.getSlotMinutes()));
-
-        Appointment draft = Appointment.builder()
-                        .doctorId(request.getDoctorId())
-                        .patientId(request.getPatientId())
-                        .start(start)
-                        .end(end)
-                        .status(AppointmentStatus.SCHEDULED)
-                        .concern(request.getConcern())
-                        .build();
-
-        validateDraft(draft);
-        ensureWithinAvailability(draft);
-        ensureNotDuringTimeOff(draft);
-        ensureNoOverlap(draft);
-
-        appointmentRepository.save(draft);
-
-        return toDto(draft);
+        return ZonedDateTime.of(date, time, UK_TZ).toInstant();
     }
 
-    public void validateDraft(Appointment appointment) {
-        if(appointment.getDoctorId() == null || appointment.getPatientId() == null) {
+    /**
+     * Books a recurring series (same weekday and time every {@code intervalWeeks}).
+     *
+     * All sessions share the weekday, so one context load covers the rule, time-off and bookings of the whole
+     * range; claims go in with one bulk insert and the appointments with one insertMany. In ALL_OR_NOTHING mode
+     * nothing is written unless every session fits.
+     */
+    public SeriesBookingDTO bookSeries(BookSeriesRequest request) {
+        if (request.getDoctorId() == null || request.getPatientId() == null) {
             throw new OurException("doctorId and patientId are required.");
         }
-        if (appointment.getStart() == null || appointment.getEnd() == null || !appointment.getEnd().isAfter(appointment.getStart()) || !appointment.getStart().isBefore(appointment.getEnd())) {
-            throw new OurException("Invalid start/end.");
+        if (request.getOccurrences() < 1 || request.getOccurrences() > MAX_SERIES_OCCURRENCES) {
+            throw new OurException("occurrences must be between 1 and " + MAX_SERIES_OCCURRENCES + ".");
         }
-    }
+        if (request.getIntervalWeeks() < 1 || request.getIntervalWeeks() > MAX_SERIES_INTERVAL_WEEKS) {
+            throw new OurException("intervalWeeks must be between 1 and " + MAX_SERIES_INTERVAL_WEEKS + ".");
+        }
+        SeriesMode mode = request.getMode() != null ? request.getMode() : SeriesMode.ALL_OR_NOTHING;
 
-    public void ensureWithinAvailability(Appointment appointment) {
-        // Convert start to UK local date/time
-        ZonedDateTime startUK = appointment.getStart().atZone(UK_TZ);
-        int isoDow = startUK.getDayOfWeek().getValue(); // 1..7
+        final LocalDate first;
+        final LocalTime time;
+        try {
+            first = LocalDate.parse(request.getStartDate()); // yyyy-MM-dd
+            time = LocalTime.parse(request.getTime()); // HH:mm
+        } catch (DateTimeException | NullPointerException e) {
+            throw new OurException("Invalid date/time. Expected startDate yyyy-MM-dd and time HH:mm");
+        }
+        if (first.isBefore(LocalDate.now(UK_TZ))) {
+            throw new OurException("Cannot book an appointment in the past");
+        }
 
-        AvailabilityRule rule = availabilityRuleRepository
-                .findByDoctorIdAndDayOfWeek(appointment.getDoctorId(), isoDow)
-                .orElseThrow(()-> new OurException("No availability for this day (doctorId=" + appointment.getDoctorId() +
-                        ", day=" + isoDow + ")."));
+        List<LocalDate> dates = new ArrayList<>();
+        for (int i = 0; i < request.getOccurrences(); i++) {
+            dates.add(first.plusWeeks((long) i * request.getIntervalWeeks()));
+        }
+        LocalDate last = dates.get(dates.size() - 1);
+        Instant rangeStart = first.atStartOfDay(UK_TZ).toInstant();
+        Instant rangeEnd = last.plusDays(1).atStartOfDay(UK_TZ).toInstant();
+        String seriesId = new ObjectId().toHexString();
+
+        Map<LocalDate, Appointment> accepted = new LinkedHashMap<>();
+        Map<LocalDate, String> rejected = new HashMap<>();
+
+        bookingLocks.withDoctorLock(request.getDoctorId(), () -> {
+            BookingContext context = bookingContextLoader.loadForBooking(request.getDoctorId(), request.getPatientId(),
+                    first.getDayOfWeek().getValue(), rangeStart, rangeEnd);
+            AvailabilityRule rule = context.requireRule();
+            AppointmentSnapshots.Parties parties = context.parties();
+            Instant now = Instant.now();
+
+            for (LocalDate date : dates) {
+                try {
+                    Instant start = alignedStart(rule, date, time);
+                    if (!start.isAfter(now)) throw new OurException("Cannot book an appointment in the past");
+
+                    Appointment draft = Appointment.builder()
+                            .id(new ObjectId().toHexString())
+                            .doctorId(request.getDoctorId())
+                            .patientId(request.getPatientId())
+                            .clinicId(parties.clinicId())
+                            .doctorName(parties.doctorName())
+                            .patientName(parties.patientName())
+                            .start(start)
+                            .end(start.plus(Duration.ofMinutes(rule.getSlotMinutes())))
+                            .status(AppointmentStatus.SCHEDULED)
+                            .concern(request.getConcern())
+                            .seriesId(seriesId)
+                            .build();
+                    context.ensureNotDuringTimeOff(draft);
+                    context.ensureNoOverlap(draft);
+                    accepted.put(date, draft);
+                } catch (OurException | ConflictException e) {
+                    rejected.put(date, e.getMessage());
+                }
+            }
+            if (accepted.isEmpty() || (mode == SeriesMode.ALL_OR_NOTHING && !rejected.isEmpty())) return null;
+
+            Set<String> lost = slotClaimService.claimAll(accepted.values());
+            if (!lost.isEmpty()) {
+                accepted.entrySet().removeIf(e -> {
+                    if (!lost.contains(e.getValue().getId())) return false;
+                    rejected.put(e.getKey(), "Selected time is no longer available for this doctor.");
+                    return true;
+                });
+                if (mode == SeriesMode.ALL_OR_NOTHING) {
+                    slotClaimService.releaseAll(accepted.values().stream().map(Appointment::getId).toList());
+                    return null;
+                }
+            }
+            if (accepted.isEmpty()) return null;
+
+            try {
+                outbox.writeAll(() -> appointmentRepository.insert(accepted.values()),
+                        inserted -> inserted.stream()
+                                .map(a -> AppointmentChangedEvent.of(a, AppointmentChangedEvent.Change.BOOKED))
+                                .toList());
+            } catch (RuntimeException e) {
+                slotClaimService.releaseAll(accepted.values().stream().map(Appointment::getId).toList());
+                throw e;
+            }
+            return null;
+        });
 
-        LocalTime startLocal = startUK.toLocalTime();
-        LocalTime endLocal = appointment.getEnd().atZone(UK_TZ).toLocalTime();
+        boolean persisted = !accepted.isEmpty() && (mode == SeriesMode.BEST_EFFORT || rejected.isEmpty());
+        if (persisted) {
+            // Days inside the inventory horizon now have bookings that did not go through it
+            slotInventoryService.regenerate(request.getDoctorId(), first, last);
+        }
 
-        // Slot-size enforcement
-        if (rule.getSlotMinutes() > 0) {
-            long minutes = Duration.between(appointment.getStart(), appointment.getEnd()).toMinutes();
-            if(minutes % rule.getSlotMinutes() != 0) {
-                throw new OurException("Duration must be multiple of slotMinutes=" + rule.getSlotMinutes());
+        List<SeriesOccurrenceDTO> occurrences = new ArrayList<>(dates.size());
+        for (LocalDate date : dates) {
+            if (rejected.containsKey(date)) {
+                occurrences.add(new SeriesOccurrenceDTO(date, SeriesOccurrenceDTO.Outcome.REJECTED, null, rejected.get(date)));
+            } else if (persisted) {
+                occurrences.add(new SeriesOccurrenceDTO(date, SeriesOccurrenceDTO.Outcome.BOOKED, toDto(accepted.get(date)), null));
+            } else {
+                occurrences.add(new SeriesOccurrenceDTO(date, SeriesOccurrenceDTO.Outcome.SKIPPED, null,
+                        "Not booked because other sessions of the series are unavailable."));
             }
         }
+        return new SeriesBookingDTO(persisted ? seriesId : null, mode, persisted ? accepted.size() : 0, occurrences);
     }
 
-    private void ensureNotDuringTimeOff(Appointment appointment){
-        List<TimeOff> offs = timeOffRepository
-                .findByDoctorIdAndStartLessThanEqualAndEndGreaterThanEqual(
-                        appointment.getDoctorId(), appointment.getEnd(), appointment.getStart());
-
-        if(!offs.isEmpty()) {
-            throw new OurException("Doctor is unavailable (time-off) during the requested period.");
+    // Id is assigned up front so the claim and the appointment refer to each other
+    private Appointment claimAndSave(Appointment draft) {
+        draft.setId(new ObjectId().toHexString());
+        slotClaimService.claim(draft.getDoctorId(), draft.getId(), draft.getStart(), draft.getEnd());
+        try {
+            return outbox.write(() -> appointmentRepository.save(draft),
+                    saved -> AppointmentChangedEvent.of(saved, AppointmentChangedEvent.Change.BOOKED));
+        } catch (RuntimeException e) {
+            slotClaimService.releaseAll(draft.getId());
+            throw e;
         }
     }
 
-    public void ensureNoOverlap(Appointment appointment) {
-        // Any appointment that starts before new end AND ends after new start is an overlap
-        List<Appointment> overlaps = appointmentRepository
-                .findByDoctorIdAndStartLessThanAndEndGreaterThan(appointment.getDoctorId(), appointment.getEnd(), appointment.getStart());
-        // Allow same doc/time only if system updates the exact same record
-        boolean conflict = overlaps.stream()
-                .anyMatch(existing -> !existing.getId().equals(appointment.getId()) &&
-                        existing.getStatus() != AppointmentStatus.CANCELLED);
-
-        if(conflict) {
-            throw new OurException("Overlapping appointment for this doctor with ID " + appointment.getDoctorId());
+    // Claims the slot in the materialized inventory. Returns null when the day is not materialized (beyond the horizon),
+    // the caller then validates against rules, time-off and appointments as usual.
+    private AppointmentDTO bookFromInventory(BookAppointmentRequest request, LocalDate date, LocalTime time) {
+        SlotInventoryService.Claim claim = slotInventoryService.claim(request.getDoctorId(), date, time.toString());
+
+        switch (claim.status()) {
+            case NOT_MATERIALIZED -> {
+                return null;
+            }
+            case UNAVAILABLE -> throw new ConflictException("Selected time is not available for this doctor.");
+            default -> {
+                // CLAIMED
+            }
+        }
+
+        Instant start = ZonedDateTime.of(date, time, UK_TZ).toInstant();
+        Appointment draft = Appointment.builder()
+                .doctorId(request.getDoctorId())
+                .patientId(request.getPatientId())
+                .start(start)
+                .end(start.plus(Duration.ofMinutes(claim.slotMinutes())))
+                .status(AppointmentStatus.SCHEDULED)
+                .concern(request.getConcern())
+                .build();
+
+        try {
+            validateDraft(draft);
+            snapshots.fill(draft);
+            claimAndSave(draft);
+        } catch (RuntimeException e) {
+            slotInventoryService.release(draft.getDoctorId(), draft.getStart(), draft.getEnd());
+            throw e;
         }
+
+        return toDto(draft);
     }
 
-    public void ensureNoOverlapForRescheduling(Appointment appointment) {
-        ensureNoOverlap(appointment);
+    public void validateDraft(Appointment appointment) {
+        if(appointment.getDoctorId() == null || appointment.getPatientId() == null) {
+            throw new OurException("doctorId and patientId are required.");
+        }
+        if (appointment.getStart() == null || appointment.getEnd() == null || !appointment.getEnd().isAfter(appointment.getStart()) || !appointment.getStart().isBefore(appointment.getEnd())) {
+            throw new OurException("Invalid start/end.");
+        }
     }
 
 }
@@ -0,0 +1,174 @@
+package com.example.vladyslav.service;
+
+import com.example.vladyslav.model.Appointment;
+import com.example.vladyslav.model.SweepCheckpoint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * One-off migration that copies clinicId, doctorName and patientName (see AppointmentSnapshots) onto appointments
+ * booked before those were set at booking time, in appointments and in appointments_archive.
+ *
+ * Walks each collection in _id order in batches: the doctors and patients of a batch are read with one $in query
+ * each, and the rows updated with one unordered bulk, only where doctorName is still missing. The last _id done is
+ * kept per collection in sweep_checkpoints, so a restart resumes where it stopped; a finished collection gets a
+ * watermark and is not walked again. Only the node holding the lease works on a collection.
+ */
+@Service
+public class AppointmentSnapshotBackfill {
+
+    private static final Logger log = LoggerFactory.getLogger(AppointmentSnapshotBackfill.class);
+
+    static final String NAME = "appointment-snapshots";
+
+    private final MongoTemplate mongoTemplate;
+    private final AppointmentSnapshots snapshots;
+    private final boolean enabled;
+    private final int batchSize;
+    private final int maxBatches;
+    private final Duration lease;
+    private final String owner = UUID.randomUUID().toString();
+
+    public AppointmentSnapshotBackfill(MongoTemplate mongoTemplate,
+                                       AppointmentSnapshots snapshots,
+                                       @Value("${app.snapshot-backfill.enabled:true}") boolean enabled,
+                                       @Value("${app.snapshot-backfill.batch-size:500}") int batchSize,
+                                       @Value("${app.snapshot-backfill.max-batches:20}") int maxBatches,
+                                       @Value("${app.snapshot-backfill.lease-seconds:600}") long leaseSeconds) {
+        this.mongoTemplate = mongoTemplate;
+        this.snapshots = snapshots;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.maxBatches = maxBatches;
+        this.lease = Duration.ofSeconds(leaseSeconds);
+    }
+
+    @Scheduled(fixedDelayString = "${app.snapshot-backfill.run-ms:60000}", initialDelayString = "${app.snapshot-backfill.initial-delay-ms:120000}")
+    public void backfill() {
+        if (!enabled) return;
+        try {
+            long updated = backfillOnce(Instant.now());
+            if (updated > 0) log.info("Backfilled clinic and names on {} appointments", updated);
+        } catch (RuntimeException e) {
+            log.warn("Appointment backfill failed, the next run resumes from the checkpoint", e);
+        }
+    }
+
+    /**
+     * Runs up to app.snapshot-backfill.max-batches batches on each collection that is not finished yet.
+     *
+     * @return appointments updated
+     */
+    long backfillOnce(Instant now) {
+        long updated = 0;
+        for (String collection : List.of(mongoTemplate.getCollectionName(Appointment.class), AppointmentHistory.ARCHIVE)) {
+            updated += backfill(collection, now);
+        }
+        return updated;
+    }
+
+    private long backfill(String collection, Instant now) {
+        String checkpointId = NAME + ":" + collection;
+        SweepCheckpoint checkpoint = acquireLease(checkpointId, now);
+        if (checkpoint == null || checkpoint.getWatermark() != null) return 0;
+
+        String lastId = checkpoint.getLastId();
+        long updated = 0;
+        for (int i = 0; i < maxBatches; i++) {
+            Criteria missing = where("doctorName").exists(false);
+            if (lastId != null) missing = missing.and("_id").gt(lastId);
+            Query next = new Query(missing).with(Sort.by(Sort.Direction.ASC, "_id")).limit(batchSize);
+            next.fields().include("doctorId").include("patientId").include("clinicId");
+            List<Appointment> batch = mongoTemplate.find(next, Appointment.class, collection);
+
+            if (!batch.isEmpty()) {
+                updated += update(collection, batch);
+                lastId = batch.get(batch.size() - 1).getId();
+            }
+            if (batch.size() < batchSize) {
+                finish(checkpointId, lastId, now);
+                break;
+            }
+            if (!renew(checkpointId, lastId, now)) break;
+        }
+        return updated;
+    }
+
+    private long update(String collection, List<Appointment> batch) {
+        Map<String, AppointmentSnapshots.DoctorSnapshot> doctors =
+                snapshots.doctors(batch.stream().map(Appointment::getDoctorId).toList());
+        Map<String, String> patients = snapshots.patientNames(batch.stream().map(Appointment::getPatientId).toList());
+
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Appointment.class, collection);
+        int queued = 0;
+        for (Appointment a : batch) {
+            Update update = new Update();
+            AppointmentSnapshots.DoctorSnapshot doctor = doctors.get(a.getDoctorId());
+            if (doctor != null) {
+                update.set("doctorName", doctor.name());
+                // A clinic set at booking time is kept, the doctor may have moved since
+                if (a.getClinicId() == null && doctor.clinicId() != null) update.set("clinicId", doctor.clinicId());
+            }
+            String patientName = patients.get(a.getPatientId());
+            if (patientName != null) update.set("patientName", patientName);
+            if (update.getUpdateObject().isEmpty()) continue;
+
+            // Left alone if the appointment was rewritten with its names in the meantime
+            bulk.updateOne(new Query(where("_id").is(a.getId()).and("doctorName").exists(false)), update);
+            queued++;
+        }
+        return queued == 0 ? 0 : bulk.execute().getModifiedCount();
+    }
+
+    private SweepCheckpoint acquireLease(String checkpointId, Instant now) {
+        Query query = new Query(where("_id").is(checkpointId)
+                .orOperator(where("owner").is(owner), where("leaseUntil").lt(now)));
+        Update update = new Update().set("owner", owner).set("leaseUntil", now.plus(lease));
+        try {
+            return mongoTemplate.findAndModify(query, update,
+                    FindAndModifyOptions.options().upsert(true).returnNew(true), SweepCheckpoint.class);
+        } catch (DuplicateKeyException e) {
+            // Another node is backfilling
+            return null;
+        }
+    }
+
+    // Records progress and extends the lease; false when it was lost to another node
+    private boolean renew(String checkpointId, String lastId, Instant now) {
+        Query ours = new Query(where("_id").is(checkpointId).and("owner").is(owner));
+        Update update = new Update()
+                .set("lastId", lastId)
+                .set("leaseUntil", Instant.now().plus(lease))
+                .set("updatedAt", now);
+        return mongoTemplate.updateFirst(ours, update, SweepCheckpoint.class).getMatchedCount() > 0;
+    }
+
+    private void finish(String checkpointId, String lastId, Instant now) {
+        Query ours = new Query(where("_id").is(checkpointId).and("owner").is(owner));
+        Update update = new Update()
+                .set("lastId", lastId)
+                .set("watermark", now)
+                .set("updatedAt", now);
+        mongoTemplate.updateFirst(ours, update, SweepCheckpoint.class);
+        log.info("Appointment backfill of {} is complete", checkpointId);
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.vladyslav.service;
+
+import com.example.vladyslav.model.Appointment;
+import com.example.vladyslav.model.Doctor;
+import com.example.vladyslav.model.Patient;
+import com.mongodb.DBRef;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * The clinic id and display names copied onto an appointment when it is booked, so clinic listings are one query
+ * on idx_clinic_start_id and no listing has to fetch doctors or patients per row.
+ *
+ * Doctors and patients are read as raw documents with a projection: mapping a Doctor would resolve its clinic and
+ * speciality DBRefs, while only the clinic's id is needed. The copies are not updated when a profile changes later.
+ */
+@Component
+@RequiredArgsConstructor
+public class AppointmentSnapshots {
+
+    public record DoctorSnapshot(String clinicId, String name) {}
+
+    /**
+     * What a new booking copies, as loaded with its BookingContext. Fields are null when unknown.
+     */
+    public record Parties(String clinicId, String doctorName, String patientName) {
+
+        public static final Parties UNKNOWN = new Parties(null, null, null);
+    }
+
+    // Raw projections, also used by BookingContextLoader
+    static final String[] DOCTOR_FIELDS = {"firstName", "lastName", "clinic"};
+    static final String[] PATIENT_FIELDS = {"firstName", "lastName"};
+
+    private final MongoTemplate mongoTemplate;
+
+    /**
+     * Sets clinicId, doctorName and patientName from the current profiles, leaving a field null when unknown.
+     */
+    public Appointment fill(Appointment appointment) {
+        DoctorSnapshot doctor = doctors(List.of(appointment.getDoctorId())).get(appointment.getDoctorId());
+        if (doctor != null) {
+            appointment.setClinicId(doctor.clinicId());
+            appointment.setDoctorName(doctor.name());
+        }
+        appointment.setPatientName(patientNames(List.of(appointment.getPatientId())).get(appointment.getPatientId()));
+        return appointment;
+    }
+
+    public Map<String, DoctorSnapshot> doctors(Collection<String> doctorIds) {
+        Map<String, DoctorSnapshot> byId = new HashMap<>();
+        for (Document doc : find(doctorIds, mongoTemplate.getCollectionName(Doctor.class), DOCTOR_FIELDS)) {
+            byId.put(doc.getObjectId("_id").toHexString(), doctor(doc));
+        }
+        return byId;
+    }
+
+    public Map<String, String> patientNames(Collection<String> patientIds) {
+        Map<String, String> byId = new HashMap<>();
+        for (Document doc : find(patientIds, mongoTemplate.getCollectionName(Patient.class), PATIENT_FIELDS)) {
+            byId.put(doc.getObjectId("_id").toHexString(), name(doc));
+        }
+        return byId;
+    }
+
+    // Appointments hold the ids as strings, the profiles are keyed by ObjectId
+    private List<Document> find(Collection<String> ids, String collection, String... fields) {
+        List<ObjectId> objectIds = ids.stream().filter(id -> id != null && ObjectId.isValid(id)).distinct().map(ObjectId::new).toList();
+        if (objectIds.isEmpty()) return List.of();
+
+        Query query = new Query(where("_id").in(objectIds));
+        query.fields().include(fields);
+        return mongoTemplate.find(query, Document.class, collection);
+    }
+
+    static DoctorSnapshot doctor(Document doc) {
+        String clinicId = doc.get("clinic") instanceof DBRef clinic ? clinic.getId().toString() : null;
+        return new DoctorSnapshot(clinicId, name(doc));
+    }
+
+    static String name(Document doc) {
+        String first = doc.getString("firstName");
+        String last = doc.getString("lastName");
+        String name = ((first != null ? first : "") + " " + (last != null ? last : "")).trim();
+        return name.isEmpty() ? null : name;
+    }
+}
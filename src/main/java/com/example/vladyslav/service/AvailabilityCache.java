@@ -0,0 +1,143 @@
+package com.example.vladyslav.service;
+
+import com.example.vladyslav.event.AppointmentChangedEvent;
+import com.example.vladyslav.event.AvailabilityRuleChangedEvent;
+import com.example.vladyslav.event.SlotHoldChangedEvent;
+import com.example.vladyslav.event.TimeOffChangedEvent;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of computed slot masks keyed by (doctorId, date).
+ *
+ * Entries are dropped as soon as a booking, rule or time-off change touches the doctor-day. A per-doctor
+ * generation counter stops a computation that raced with such a change from writing its stale result back.
+ * Each entry also carries the calendar version (CalendarVersionService) read before it was computed; a read at a
+ * newer version skips it, so a change made on another node is never served under that change's ETag. Reads that
+ * hand out no ETag take any entry, for them the TTL bounds staleness.
+ * Cached masks are shared between requests and must not be modified by callers.
+ */
+@Component
+public class AvailabilityCache {
+
+    private static final ZoneId UK_TZ = ZoneId.of("Europe/London");
+
+    /**
+     * Version for reads that do not know the calendar version: they take any entry, and what they store is
+     * skipped by every versioned read.
+     */
+    public static final long ANY_VERSION = Long.MIN_VALUE;
+
+    private final Cache<DayKey, Entry> cache;
+    private final Map<String, AtomicLong> generations = new ConcurrentHashMap<>();
+
+    public AvailabilityCache(@Value("${app.availability.cache.max-entries:50000}") long maxEntries,
+                             @Value("${app.availability.cache.ttl-minutes:10}") long ttlMinutes) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(Duration.ofMinutes(ttlMinutes))
+                .recordStats()
+                .build();
+    }
+
+    public DaySlotMask get(String doctorId, LocalDate date) {
+        return get(doctorId, date, ANY_VERSION);
+    }
+
+    /**
+     * The cached mask if it was computed at {@code calendarVersion} or later, otherwise null.
+     */
+    public DaySlotMask get(String doctorId, LocalDate date, long calendarVersion) {
+        Entry entry = cache.getIfPresent(new DayKey(doctorId, date));
+        return entry != null && entry.calendarVersion() >= calendarVersion ? entry.mask() : null;
+    }
+
+    /**
+     * Read before loading from the database and pass to {@link #putAll}.
+     */
+    public long generation(String doctorId) {
+        return generations.computeIfAbsent(doctorId, id -> new AtomicLong()).get();
+    }
+
+    public void putAll(String doctorId, long generation, Map<LocalDate, DaySlotMask> masks) {
+        putAll(doctorId, generation, ANY_VERSION, masks);
+    }
+
+    /**
+     * Stores freshly computed masks unless the doctor's calendar changed since {@code generation} was read.
+     * {@code calendarVersion} must have been read before the masks were computed.
+     */
+    public void putAll(String doctorId, long generation, long calendarVersion, Map<LocalDate, DaySlotMask> masks) {
+        if (generation(doctorId) != generation) return;
+
+        Map<DayKey, Entry> entries = new LinkedHashMap<>();
+        masks.forEach((date, mask) -> entries.put(new DayKey(doctorId, date), new Entry(calendarVersion, mask)));
+        cache.putAll(entries);
+    }
+
+    public void invalidate(String doctorId, Instant start, Instant end) {
+        if (start == null || end == null) return;
+        bump(doctorId);
+
+        LocalDate first = LocalDate.ofInstant(start, UK_TZ);
+        LocalDate last = LocalDate.ofInstant(end.minusNanos(1), UK_TZ);
+        for (LocalDate date = first; !date.isAfter(last); date = date.plusDays(1)) {
+            cache.invalidate(new DayKey(doctorId, date));
+        }
+    }
+
+    public void invalidateDayOfWeek(String doctorId, int dayOfWeek) {
+        bump(doctorId);
+        cache.asMap().keySet().removeIf(k -> k.doctorId().equals(doctorId) && k.date().getDayOfWeek().getValue() == dayOfWeek);
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    @EventListener
+    public void onAppointmentChanged(AppointmentChangedEvent event) {
+        invalidate(event.doctorId(), event.start(), event.end());
+        invalidate(event.doctorId(), event.previousStart(), event.previousEnd());
+    }
+
+    @EventListener
+    public void onTimeOffChanged(TimeOffChangedEvent event) {
+        invalidate(event.doctorId(), event.start(), event.end());
+    }
+
+    @EventListener
+    public void onHoldChanged(SlotHoldChangedEvent event) {
+        invalidate(event.doctorId(), event.start(), event.end());
+    }
+
+    @EventListener
+    public void onRuleChanged(AvailabilityRuleChangedEvent event) {
+        invalidateDayOfWeek(event.doctorId(), event.dayOfWeek());
+    }
+
+    private void bump(String doctorId) {
+        generations.computeIfAbsent(doctorId, id -> new AtomicLong()).incrementAndGet();
+    }
+
+    record DayKey(String doctorId, LocalDate date) {}
+
+    record Entry(long calendarVersion, DaySlotMask mask) {}
+}
@@ -0,0 +1,174 @@
+package com.example.vladyslav.service;
+
+import com.example.vladyslav.dto.HeatmapDayDTO;
+import com.example.vladyslav.exception.OurException;
+import com.example.vladyslav.model.Appointment;
+import com.example.vladyslav.model.AvailabilityRule;
+import com.example.vladyslav.model.Doctor;
+import com.example.vladyslav.model.TimeOff;
+import com.example.vladyslav.model.enums.AppointmentStatus;
+import com.example.vladyslav.repository.AvailabilityRuleRepository;
+import com.example.vladyslav.repository.TimeOffRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.group;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.match;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.project;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Free-slot counts per day across all doctors of a speciality and/or clinic (landing page heatmap).
+ *
+ * Bookings of all doctors come from one aggregation grouped by doctor, rules and time-off from one query each,
+ * and the slot grids are expanded in memory. Results are cached briefly since every visitor asks for the same data.
+ */
+@Service
+public class AvailabilityHeatmapService {
+
+    private static final ZoneId UK_TZ = ZoneId.of("Europe/London");
+
+    private final MongoTemplate mongoTemplate;
+    private final AvailabilityRuleRepository ruleRepository;
+    private final TimeOffRepository timeOffRepository;
+    private final Cache<HeatmapKey, List<HeatmapDayDTO>> cache;
+    private final int maxDays;
+
+    public AvailabilityHeatmapService(MongoTemplate mongoTemplate,
+                                      AvailabilityRuleRepository ruleRepository,
+                                      TimeOffRepository timeOffRepository,
+                                      @Value("${app.availability.heatmap.ttl-seconds:60}") long ttlSeconds,
+                                      @Value("${app.availability.heatmap.max-days:62}") int maxDays) {
+        this.mongoTemplate = mongoTemplate;
+        this.ruleRepository = ruleRepository;
+        this.timeOffRepository = timeOffRepository;
+        this.maxDays = maxDays;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(1_000)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .build();
+    }
+
+    public List<HeatmapDayDTO> heatmap(String specialityId, String clinicId, LocalDate from, LocalDate to) {
+        if ((specialityId == null || specialityId.isBlank()) && (clinicId == null || clinicId.isBlank())) {
+            throw new OurException("specialityId or clinicId is required.");
+        }
+        if (from == null || to == null || to.isBefore(from)) throw new OurException("Invalid from/to range.");
+        if (ChronoUnit.DAYS.between(from, to) + 1 > maxDays) throw new OurException("Range must not exceed " + maxDays + " days.");
+
+        // Concurrent misses for the same key wait for one computation
+        return cache.get(new HeatmapKey(specialityId, clinicId, from, to), this::compute);
+    }
+
+    private List<HeatmapDayDTO> compute(HeatmapKey key) {
+        List<String> doctorIds = doctorIds(key.specialityId(), key.clinicId());
+
+        int days = (int) ChronoUnit.DAYS.between(key.from(), key.to()) + 1;
+        int[] freeSlots = new int[days];
+        int[] doctorsAvailable = new int[days];
+
+        if (!doctorIds.isEmpty()) {
+            Instant windowStart = key.from().atStartOfDay(UK_TZ).toInstant();
+            Instant windowEnd = key.to().plusDays(1).atStartOfDay(UK_TZ).toInstant();
+
+            Map<String, Map<Integer, AvailabilityRule>> rules = new HashMap<>();
+            for (AvailabilityRule rule : ruleRepository.findByDoctorIdIn(doctorIds)) {
+                rules.computeIfAbsent(rule.getDoctorId(), id -> new HashMap<>()).put(rule.getDayOfWeek(), rule);
+            }
+
+            Map<String, AvailabilityWindow> windows = new HashMap<>();
+            for (String doctorId : rules.keySet()) {
+                windows.put(doctorId, new AvailabilityWindow(key.from(), key.to(), UK_TZ));
+            }
+            loadBookings(rules.keySet(), windowStart, windowEnd, windows);
+            for (TimeOff off : timeOffRepository.findByDoctorIdInAndStartLessThanAndEndGreaterThan(rules.keySet(), windowEnd, windowStart)) {
+                AvailabilityWindow window = windows.get(off.getDoctorId());
+                if (window != null) window.addBusy(off.getStart(), off.getEnd());
+            }
+
+            Instant now = Instant.now();
+            rules.forEach((doctorId, ruleByDow) -> {
+                AvailabilityWindow window = windows.get(doctorId);
+                for (int i = 0; i < days; i++) {
+                    LocalDate date = key.from().plusDays(i);
+                    AvailabilityRule rule = ruleByDow.get(date.getDayOfWeek().getValue());
+                    if (rule == null) continue;
+
+                    DaySlotMask mask = DaySlotMask.forRule(rule);
+                    window.applyTo(date, mask);
+                    // Slots that already started today are not bookable
+                    Instant dayStart = date.atStartOfDay(UK_TZ).toInstant();
+                    if (dayStart.isBefore(now)) mask.block(date, UK_TZ, dayStart, now);
+
+                    int free = mask.freeCount();
+                    freeSlots[i] += free;
+                    if (free > 0) doctorsAvailable[i]++;
+                }
+            });
+        }
+
+        List<HeatmapDayDTO> result = new ArrayList<>(days);
+        for (int i = 0; i < days; i++) {
+            result.add(new HeatmapDayDTO(key.from().plusDays(i), freeSlots[i], doctorsAvailable[i]));
+        }
+        return List.copyOf(result);
+    }
+
+    private List<String> doctorIds(String specialityId, String clinicId) {
+        List<Criteria> criteria = new ArrayList<>();
+        if (specialityId != null && !specialityId.isBlank()) criteria.add(where("speciality.$id").is(objectId(specialityId)));
+        if (clinicId != null && !clinicId.isBlank()) criteria.add(where("clinic.$id").is(objectId(clinicId)));
+
+        Query query = new Query(new Criteria().andOperator(criteria.toArray(new Criteria[0])));
+        query.fields().include("_id");
+        return mongoTemplate.find(query, Doctor.class).stream().map(Doctor::getId).toList();
+    }
+
+    // One aggregation for every doctor: overlapping SCHEDULED bookings, grouped per doctor (idx_doctor_range)
+    private void loadBookings(Collection<String> doctorIds, Instant windowStart, Instant windowEnd, Map<String, AvailabilityWindow> windows) {
+        if (doctorIds.isEmpty()) return;
+
+        Aggregation aggregation = Aggregation.newAggregation(
+                match(where("doctorId").in(doctorIds)
+                        .and("status").is(AppointmentStatus.SCHEDULED)
+                        .and("start").lt(windowEnd)
+                        .and("end").gt(windowStart)),
+                project("doctorId", "start", "end"),
+                group("doctorId").push(Aggregation.ROOT).as("busy"));
+
+        for (Document byDoctor : mongoTemplate.aggregate(aggregation, Appointment.class, Document.class)) {
+            AvailabilityWindow window = windows.get(byDoctor.getString("_id"));
+            if (window == null) continue;
+
+            for (Document busy : byDoctor.getList("busy", Document.class)) {
+                window.addBusy(busy.getDate("start").toInstant(), busy.getDate("end").toInstant());
+            }
+        }
+    }
+
+    private static ObjectId objectId(String id) {
+        if (!ObjectId.isValid(id)) throw new OurException("Invalid id: " + id);
+        return new ObjectId(id);
+    }
+
+    private record HeatmapKey(String specialityId, String clinicId, LocalDate from, LocalDate to) {}
+}
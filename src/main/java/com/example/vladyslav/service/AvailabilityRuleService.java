@@ -1,20 +1,19 @@
 package com.example.vladyslav.service;
 
 import com.example.vladyslav.dto.DaySlotsDTO;
+import com.example.vladyslav.event.AvailabilityRuleChangedEvent;
 import com.example.vladyslav.exception.OurException;
-import com.example.vladyslav.model.Appointment;
 import com.example.vladyslav.model.AvailabilityRule;
-import com.example.vladyslav.model.enums.AppointmentStatus;
-import com.example.vladyslav.repository.AppointmentRepository;
 import com.example.vladyslav.repository.AvailabilityRuleRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.time.*;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -22,7 +21,13 @@ public class AvailabilityRuleService {
 
     private final AvailabilityRuleRepository repository;
 
-    private final AppointmentRepository appointmentRepository;
+    private final SlotMaskCalculator slotMaskCalculator;
+
+    private final AvailabilityCache availabilityCache;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final SlotInventoryService slotInventoryService;
 
     public List<AvailabilityRule> findByDoctorId(String doctorId) {
         return repository.findByDoctorId(doctorId);
@@ -31,7 +36,7 @@ public class AvailabilityRuleService {
     public AvailabilityRule upsert(AvailabilityRule rule) {
         validate(rule);
 
-        return repository.findByDoctorIdAndDayOfWeek(rule.getDoctorId(), rule.getDayOfWeek())
+        AvailabilityRule saved = repository.findByDoctorIdAndDayOfWeek(rule.getDoctorId(), rule.getDayOfWeek())
                 .map(existing -> {
                     existing.setStart(rule.getStart());
                     existing.setEnd(rule.getEnd());
@@ -39,6 +44,9 @@ public class AvailabilityRuleService {
                     return repository.save(existing);
                 })
                 .orElseGet(()-> repository.save(rule));
+
+        eventPublisher.publishEvent(new AvailabilityRuleChangedEvent(saved.getDoctorId(), saved.getDayOfWeek()));
+        return saved;
     }
 
     private void validate(AvailabilityRule rule){
@@ -51,145 +59,68 @@ public class AvailabilityRuleService {
     }
 
     public List<DaySlotsDTO> getAvailability(String doctorId, LocalDate from, LocalDate to) {
+        return getAvailability(doctorId, from, to, AvailabilityCache.ANY_VERSION);
+    }
 
-        // Load doctor's weekly schedule rules from DB
-        List<AvailabilityRule> rules = findByDoctorId(doctorId);
-
-        // e.g. 1 -> Monday rule
-        // e.g. 2 -> Tuesday rule
-        // e.g  3 -> "id": "6904cc4ec8248ceb824c2e40",
-        //        "doctorId": "690321b8a20b7634c71ef405",
-        //        "dayOfWeek": 1,
-        //        "start": "09:00:00",
-        //        "end": "17:00:00",
-        //        "slotMinutes": 30,
-        //        "bufferBeforeMinutes": 5,
-        //        "bufferAfterMinutes": 5,
-        //        "breaks": [
-        //            {
-        //                "startBreak": "12:30:00",
-        //                "endBreak": "13:30:00"
-        //            },
-        //            {
-        //                "startBreak": "15:00:00",
-        //                "endBreak": "15:15:00"
-        //            }
-        //        ]
-        Map<Integer, AvailabilityRule> ruleByDow = rules.stream()
-                .collect(Collectors.toMap(AvailabilityRule::getDayOfWeek, r -> r));
-        // AvailabilityRule::getDayOfWeek (KEY) this is method reference, means rule -> rule.getDayOfWeek()
-        // r -> r (VALUE) means use object itself as a value.
-
+    /**
+     * Listing that matches the doctor's calendar version, read by the caller before this call and handed out
+     * as its ETag: cached days computed at an older version are recomputed.
+     */
+    public List<DaySlotsDTO> getAvailability(String doctorId, LocalDate from, LocalDate to, long calendarVersion) {
         List<DaySlotsDTO> result = new ArrayList<>();
 
+        // Materialized days are served as stored, anything outside the inventory horizon is computed
+        Map<LocalDate, List<String>> stored = slotInventoryService.isEnabled()
+                ? slotInventoryService.read(doctorId, from, to)
+                : Map.of();
 
-        // Loop date by date between from and to, so if from = Jan 6 and to = Jan 12, it iterates: Jav6, Jan 7, Jan 8,Jan9, Jan 10
+        LocalDate firstMiss = null, lastMiss = null;
         for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
-            int dow = date.getDayOfWeek().getValue(); // ISO 1..7
-            AvailabilityRule rule = ruleByDow.get(dow);  // Get rule for specific date
-
-            // If doctor doesn't work that day, meaning rule is null;
-            if (rule == null) {
-                result.add(new DaySlotsDTO(date, List.of())); // return empty slots
-                continue;
+            if (!stored.containsKey(date)) {
+                if (firstMiss == null) firstMiss = date;
+                lastMiss = date;
             }
+        }
+        Map<LocalDate, DaySlotMask> computed = firstMiss == null ? Map.of() : getSlotMasks(doctorId, firstMiss, lastMiss, calendarVersion);
 
-            // Load existing appointments for that doctor & date
-            List<TimeInterval> booked = findBookedIntervals(doctorId, date);
-
-            // Convert breaks to intervals
-            List<TimeInterval> breaks = (rule.getBreaks() == null) ? List.of() :
-                    rule.getBreaks().stream()
-                            .map(b -> new TimeInterval(b.getStartBreak(), b.getEndBreak()))
-                            .toList();
-
-            List<String> slots = generateSlots(rule, breaks, booked);
-            result.add(new DaySlotsDTO(date, slots));
+        for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+            List<String> slots = stored.get(date);
+            // ["09:00", "09:30", "10:00"], computed strings are rendered when the response is serialized
+            result.add(new DaySlotsDTO(date, slots != null ? slots : computed.get(date).freeSlotTimes()));
         }
 
         return result;
     }
 
-    private List<String> generateSlots(AvailabilityRule rule,
-                                       List<TimeInterval> breaks,
-                                       List<TimeInterval> booked) {
-
-        int slotMin = rule.getSlotMinutes(); // 30 min
-//        int bufBefore = Math.max(0, rule.getBufferBeforeMinutes()); // 5 min
-//        int bufAfter = Math.max(0, rule.getBufferAfterMinutes()); // 5 min
-
-        LocalTime workStart = rule.getStart(); // 10:00
-        LocalTime workEnd = rule.getEnd();     // 17:00
-
-        List<String> out = new ArrayList<>();
-
-        for (LocalTime t = workStart; !t.plusMinutes(slotMin).isAfter(workEnd); t = t.plusMinutes(slotMin)) {
-            // Generate candidate bookable slots: 09:00, 09:30, 10:00, ...
-            // IMPORTANT: Buffers are NOT applied here, otherwise one booking may hide neighboring slots.
-            // Buffers should be enforced at booking/validation time (e.g. in AppointmentService.ensureNoOverlap).
-
-            LocalTime slotStart = t; // e.g. 10:00
-            LocalTime slotEnd = t.plusMinutes(slotMin); // e.g 10:30
-
-            // blocked interval includes buffers
-            // Meaning: if someone books 10:00-10:30, doctor if busy from 09:55 to 10:35, depends on buffer times.
-//            LocalTime blockedStart = appontmentStartTime.minusMinutes(bufBefore);
-//            LocalTime blockedEnd = appointmentEndTime.plusMinutes(bufAfter);
-
-            // If blocked interval touches break, skip that slot
-            boolean overlapsBreak = breaks.stream().anyMatch(b -> overlaps(slotStart, slotEnd, b.start(), b.end()));
-            if (overlapsBreak) continue;
-
-            // If blocked interval touches booked appointment, skip that slot
-            boolean overlapsBooked = booked.stream().anyMatch(b -> overlaps(slotStart, slotEnd, b.start(), b.end()));
-            if (overlapsBooked) continue;
-
-            // Add slots to list as ["09:00", "09:30", "10:00"]
-            out.add(slotStart.toString().substring(0,5)); // "HH:mm"
-        }
-
-        return out;
+    /**
+     * Free-slot grid for every date in from..to (in date order). Days the doctor does not work map to an empty mask.
+     */
+    public Map<LocalDate, DaySlotMask> getSlotMasks(String doctorId, LocalDate from, LocalDate to) {
+        return getSlotMasks(doctorId, from, to, AvailabilityCache.ANY_VERSION);
     }
 
-    public List<TimeInterval> findBookedIntervals(String doctorId, LocalDate date) {
-
-        ZoneId clinicZone = ZoneId.of("Europe/London"); // IMPORTANT
-
-        Instant dayStart = date.atStartOfDay(clinicZone).toInstant(); //e.g. dayStart = 2026-01-06 00:00 London time -> Instant
-        Instant dayEnd   = date.plusDays(1).atStartOfDay(clinicZone).toInstant();  //e.g. dayEnd = 2026-01-07 00:00 London time -> Instant
+    private Map<LocalDate, DaySlotMask> getSlotMasks(String doctorId, LocalDate from, LocalDate to, long calendarVersion) {
+        Map<LocalDate, DaySlotMask> result = new LinkedHashMap<>();
 
+        // Serve cached days, remember the span of days that still have to be computed
+        LocalDate firstMiss = null, lastMiss = null;
+        for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+            DaySlotMask cached = availabilityCache.get(doctorId, date, calendarVersion);
+            result.put(date, cached);
+            if (cached == null) {
+                if (firstMiss == null) firstMiss = date;
+                lastMiss = date;
+            }
+        }
+        if (firstMiss == null) return result;
 
-        // appointment starts before the day ends
-        // appointment ends after the day starts
-        List<Appointment> appointments =
-                appointmentRepository.findByDoctorIdAndStartLessThanAndEndGreaterThan(
-                        doctorId,
-                        dayEnd,
-                        dayStart
-                );
-
-        // Only appointments with status SCHEDULED are considered
-        return appointments.stream()
-                .filter(a -> a.getStatus() == AppointmentStatus.SCHEDULED)
-                .map(a -> {
-                    LocalTime start = LocalDateTime.ofInstant(a.getStart(), clinicZone).toLocalTime(); // Get appointment start time
-                    LocalTime end   = LocalDateTime.ofInstant(a.getEnd(), clinicZone).toLocalTime();   // Get appointment end time
-                    return new TimeInterval(start, end);
-                })
-                .toList();
-
-        /** return:
-         * [
-         *   TimeInterval(start=10:30, end=11:00),
-         *   TimeInterval(start=14:00, end=14:30)
-         * ]
-         */
-    }
+        long generation = availabilityCache.generation(doctorId);
+        Map<LocalDate, DaySlotMask> computed = slotMaskCalculator.compute(doctorId, firstMiss, lastMiss);
+        availabilityCache.putAll(doctorId, generation, calendarVersion, computed);
 
-    private boolean overlaps(LocalTime appointmentStart, LocalTime appointmentEnd, LocalTime breakStart, LocalTime breakEnd) {
-        return appointmentStart.isBefore(breakEnd) && breakStart.isBefore(appointmentEnd);
+        result.putAll(computed);
+        return result;
     }
 
-
     public record TimeInterval(LocalTime start, LocalTime end) {}
 }
@@ -0,0 +1,150 @@
+package com.example.vladyslav.service;
+
+import com.example.vladyslav.dto.DaySlotsDTO;
+import com.example.vladyslav.exception.OurException;
+import com.example.vladyslav.model.Appointment;
+import com.example.vladyslav.model.AvailabilityRule;
+import com.example.vladyslav.model.SlotHold;
+import com.example.vladyslav.model.TimeOff;
+import com.example.vladyslav.model.enums.AppointmentStatus;
+import com.example.vladyslav.repository.AppointmentRepository;
+import com.example.vladyslav.repository.AvailabilityRuleRepository;
+import com.example.vladyslav.repository.SlotHoldRepository;
+import com.example.vladyslav.repository.TimeOffRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Availability for long ranges as NDJSON (one DaySlotsDTO per line).
+ *
+ * Days are computed and written one at a time while walking start-ordered cursors over appointments,
+ * time-off and live slot holds (busy, as in the listing), so memory does not grow with the range and the first line goes out right after the first day.
+ */
+@Service
+public class AvailabilityStreamService {
+
+    private static final ZoneId UK_TZ = ZoneId.of("Europe/London");
+
+    // Flush after the first day, then in weekly batches
+    private static final int FLUSH_EVERY_DAYS = 7;
+
+    private final AvailabilityRuleRepository ruleRepository;
+    private final AppointmentRepository appointmentRepository;
+    private final TimeOffRepository timeOffRepository;
+    private final SlotHoldRepository slotHoldRepository;
+    private final ObjectMapper objectMapper;
+    private final int maxDays;
+
+    public AvailabilityStreamService(AvailabilityRuleRepository ruleRepository,
+                                     AppointmentRepository appointmentRepository,
+                                     TimeOffRepository timeOffRepository,
+                                     SlotHoldRepository slotHoldRepository,
+                                     ObjectMapper objectMapper,
+                                     @Value("${app.availability.stream.max-days:366}") int maxDays) {
+        this.ruleRepository = ruleRepository;
+        this.appointmentRepository = appointmentRepository;
+        this.timeOffRepository = timeOffRepository;
+        this.slotHoldRepository = slotHoldRepository;
+        this.objectMapper = objectMapper;
+        this.maxDays = maxDays;
+    }
+
+    /**
+     * Called before the response is committed, so a bad range is still reported as an error response.
+     */
+    public void checkRange(LocalDate from, LocalDate to) {
+        if (from == null || to == null || to.isBefore(from)) throw new OurException("Invalid from/to range.");
+        if (ChronoUnit.DAYS.between(from, to) + 1 > maxDays) {
+            throw new OurException("Range must not exceed " + maxDays + " days.");
+        }
+    }
+
+    public void write(String doctorId, LocalDate from, LocalDate to, OutputStream out) throws IOException {
+        checkRange(from, to);
+
+        Map<Integer, AvailabilityRule> ruleByDow = ruleRepository.findByDoctorId(doctorId).stream()
+                .collect(Collectors.toMap(AvailabilityRule::getDayOfWeek, r -> r));
+
+        Instant windowStart = from.atStartOfDay(UK_TZ).toInstant();
+        Instant windowEnd = to.plusDays(1).atStartOfDay(UK_TZ).toInstant();
+
+        try (Stream<Appointment> appointments = appointmentRepository
+                     .streamByDoctorIdAndStatusAndStartLessThanAndEndGreaterThanOrderByStartAsc(
+                             doctorId, AppointmentStatus.SCHEDULED, windowEnd, windowStart);
+             Stream<TimeOff> timeOffs = timeOffRepository
+                     .streamByDoctorIdAndStartLessThanAndEndGreaterThanOrderByStartAsc(doctorId, windowEnd, windowStart);
+             Stream<SlotHold> holds = slotHoldRepository
+                     .streamByDoctorIdAndStartLessThanAndEndGreaterThanAndExpireAtGreaterThanOrderByStartAsc(
+                             doctorId, windowEnd, windowStart, Instant.now());
+             JsonGenerator json = objectMapper.getFactory().createGenerator(out)
+                     .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+
+            BusyCursor booked = new BusyCursor(appointments.map(a -> new AvailabilityWindow.Interval(a.getStart(), a.getEnd())).iterator());
+            BusyCursor off = new BusyCursor(timeOffs.map(t -> new AvailabilityWindow.Interval(t.getStart(), t.getEnd())).iterator());
+            BusyCursor held = new BusyCursor(holds.map(h -> new AvailabilityWindow.Interval(h.getStart(), h.getEnd())).iterator());
+
+            int written = 0;
+            for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+                Instant dayStart = date.atStartOfDay(UK_TZ).toInstant();
+                Instant dayEnd = date.plusDays(1).atStartOfDay(UK_TZ).toInstant();
+
+                // Advance every cursor even on days off, so intervals never pile up
+                List<AvailabilityWindow.Interval> busy = new ArrayList<>(booked.overlapping(dayStart, dayEnd));
+                busy.addAll(off.overlapping(dayStart, dayEnd));
+                busy.addAll(held.overlapping(dayStart, dayEnd));
+
+                AvailabilityRule rule = ruleByDow.get(date.getDayOfWeek().getValue());
+                DaySlotMask mask = rule == null ? DaySlotMask.empty() : DaySlotMask.forRule(rule);
+                for (AvailabilityWindow.Interval interval : busy) {
+                    mask.block(date, UK_TZ, interval.start(), interval.end());
+                }
+
+                json.writeObject(new DaySlotsDTO(date, mask.freeSlotTimes()));
+                json.writeRaw('\n');
+
+                if (written++ % FLUSH_EVERY_DAYS == 0) json.flush();
+            }
+            json.flush();
+        }
+    }
+
+    /**
+     * Walks a start-ordered interval cursor day by day, holding only the intervals that are still open.
+     */
+    private static final class BusyCursor {
+
+        private final Iterator<AvailabilityWindow.Interval> source;
+        private final List<AvailabilityWindow.Interval> open = new ArrayList<>();
+        private AvailabilityWindow.Interval next;
+
+        private BusyCursor(Iterator<AvailabilityWindow.Interval> source) {
+            this.source = source;
+            this.next = source.hasNext() ? source.next() : null;
+        }
+
+        // Intervals overlapping [dayStart, dayEnd); days must be requested in ascending order
+        private List<AvailabilityWindow.Interval> overlapping(Instant dayStart, Instant dayEnd) {
+            open.removeIf(i -> !i.end().isAfter(dayStart));
+            while (next != null && next.start().isBefore(dayEnd)) {
+                if (next.end().isAfter(dayStart)) open.add(next);
+                next = source.hasNext() ? source.next() : null;
+            }
+            return open;
+        }
+    }
+}
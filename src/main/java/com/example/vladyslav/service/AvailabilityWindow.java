@@ -0,0 +1,71 @@
+package com.example.vladyslav.service;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Busy intervals (bookings, time-off) for one doctor over a from..to date window, split per local day.
+ * Built once by {@link AvailabilityWindowLoader} so slot generation never goes back to Mongo per date.
+ */
+public class AvailabilityWindow {
+
+    private final LocalDate from;
+    private final LocalDate to;
+    private final ZoneId zone;
+    private final Map<LocalDate, List<Interval>> busyByDate = new HashMap<>();
+
+    public AvailabilityWindow(LocalDate from, LocalDate to, ZoneId zone) {
+        this.from = from;
+        this.to = to;
+        this.zone = zone;
+    }
+
+    /**
+     * Registers [start, end) under every local date of the window it touches.
+     */
+    public void addBusy(Instant start, Instant end) {
+        if (start == null || end == null || !end.isAfter(start)) return;
+
+        LocalDate first = LocalDate.ofInstant(start, zone);
+        LocalDate last = LocalDate.ofInstant(end.minusNanos(1), zone); // an end at midnight belongs to the day before
+        if (first.isBefore(from)) first = from;
+        if (last.isAfter(to)) last = to;
+
+        Interval interval = new Interval(start, end);
+        for (LocalDate date = first; !date.isAfter(last); date = date.plusDays(1)) {
+            busyByDate.computeIfAbsent(date, d -> new ArrayList<>()).add(interval);
+        }
+    }
+
+    public List<Interval> busyOn(LocalDate date) {
+        return busyByDate.getOrDefault(date, List.of());
+    }
+
+    /**
+     * Clears every busy interval of the date from the mask.
+     */
+    public void applyTo(LocalDate date, DaySlotMask mask) {
+        for (Interval busy : busyOn(date)) {
+            mask.block(date, zone, busy.start(), busy.end());
+        }
+    }
+
+    public LocalDate from() {
+        return from;
+    }
+
+    public LocalDate to() {
+        return to;
+    }
+
+    public ZoneId zone() {
+        return zone;
+    }
+
+    public record Interval(Instant start, Instant end) {}
+}
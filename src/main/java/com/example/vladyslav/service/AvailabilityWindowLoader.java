@@ -0,0 +1,54 @@
+package com.example.vladyslav.service;
+
+import com.example.vladyslav.model.Appointment;
+import com.example.vladyslav.model.SlotHold;
+import com.example.vladyslav.model.TimeOff;
+import com.example.vladyslav.model.enums.AppointmentStatus;
+import com.example.vladyslav.repository.AppointmentRepository;
+import com.example.vladyslav.repository.SlotHoldRepository;
+import com.example.vladyslav.repository.TimeOffRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+/**
+ * Loads everything that blocks a doctor's slots over a date range with one query per collection,
+ * regardless of how many days the range covers.
+ */
+@Component
+@RequiredArgsConstructor
+public class AvailabilityWindowLoader {
+
+    private final AppointmentRepository appointmentRepository;
+    private final TimeOffRepository timeOffRepository;
+    private final SlotHoldRepository slotHoldRepository;
+
+    public AvailabilityWindow load(String doctorId, LocalDate from, LocalDate to, ZoneId zone) {
+        Instant windowStart = from.atStartOfDay(zone).toInstant();
+        Instant windowEnd = to.plusDays(1).atStartOfDay(zone).toInstant();
+
+        AvailabilityWindow window = new AvailabilityWindow(from, to, zone);
+
+        // Anything that starts before the window ends and ends after it starts (idx_doctor_range)
+        for (Appointment a : appointmentRepository.findByDoctorIdAndStatusAndStartLessThanAndEndGreaterThan(
+                doctorId, AppointmentStatus.SCHEDULED, windowEnd, windowStart)) {
+            window.addBusy(a.getStart(), a.getEnd());
+        }
+
+        // Same overlap rule for time-off (idx_doctor_timeOff)
+        for (TimeOff off : timeOffRepository.findByDoctorIdAndStartLessThanAndEndGreaterThan(doctorId, windowEnd, windowStart)) {
+            window.addBusy(off.getStart(), off.getEnd());
+        }
+
+        // Slots held during checkout are not offered to anyone else
+        for (SlotHold hold : slotHoldRepository.findByDoctorIdAndStartLessThanAndEndGreaterThanAndExpireAtGreaterThan(
+                doctorId, windowEnd, windowStart, Instant.now())) {
+            window.addBusy(hold.getStart(), hold.getEnd());
+        }
+
+        return window;
+    }
+}
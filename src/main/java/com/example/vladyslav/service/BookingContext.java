@@ -0,0 +1,80 @@
+package com.example.vladyslav.service;
+
+import com.example.vladyslav.exception.ConflictException;
+import com.example.vladyslav.exception.OurException;
+import com.example.vladyslav.model.Appointment;
+import com.example.vladyslav.model.AvailabilityRule;
+import com.example.vladyslav.model.SlotHold;
+import com.example.vladyslav.model.TimeOff;
+import com.example.vladyslav.model.enums.AppointmentStatus;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Everything a booking is validated against, loaded in one round trip by BookingContextLoader:
+ * the day's rule (null when the doctor does not work that day), time-off touching the window,
+ * non-cancelled appointments and live holds overlapping it. For a new booking also the clinic and names
+ * it copies; UNKNOWN otherwise.
+ */
+public record BookingContext(String doctorId,
+                             int dayOfWeek,
+                             AvailabilityRule rule,
+                             List<TimeOff> timeOffs,
+                             List<Appointment> appointments,
+                             List<SlotHold> holds,
+                             AppointmentSnapshots.Parties parties) {
+
+    public BookingContext(String doctorId, int dayOfWeek, AvailabilityRule rule, List<TimeOff> timeOffs,
+                          List<Appointment> appointments, List<SlotHold> holds) {
+        this(doctorId, dayOfWeek, rule, timeOffs, appointments, holds, AppointmentSnapshots.Parties.UNKNOWN);
+    }
+
+    public AvailabilityRule requireRule() {
+        if (rule == null) {
+            throw new OurException("No availability for this day (doctorId=" + doctorId + ", day=" + dayOfWeek + ").");
+        }
+        return rule;
+    }
+
+    public void ensureWithinAvailability(Appointment appointment) {
+        AvailabilityRule rule = requireRule();
+
+        // Slot-size enforcement
+        if (rule.getSlotMinutes() > 0) {
+            long minutes = Duration.between(appointment.getStart(), appointment.getEnd()).toMinutes();
+            if (minutes % rule.getSlotMinutes() != 0) {
+                throw new OurException("Duration must be multiple of slotMinutes=" + rule.getSlotMinutes());
+            }
+        }
+    }
+
+    // Inclusive bounds, as before: time-off ending exactly at the start still blocks
+    public void ensureNotDuringTimeOff(Appointment appointment) {
+        boolean blocked = timeOffs.stream()
+                .anyMatch(off -> !off.getStart().isAfter(appointment.getEnd()) && !off.getEnd().isBefore(appointment.getStart()));
+        if (blocked) {
+            throw new OurException("Doctor is unavailable (time-off) during the requested period.");
+        }
+    }
+
+    // The appointment itself is ignored, so a reschedule may overlap its old time
+    public void ensureNoOverlap(Appointment appointment) {
+        boolean conflict = appointments.stream()
+                .anyMatch(existing -> !existing.getId().equals(appointment.getId())
+                        && existing.getStatus() != AppointmentStatus.CANCELLED
+                        && existing.getStart().isBefore(appointment.getEnd())
+                        && existing.getEnd().isAfter(appointment.getStart()));
+        if (conflict) {
+            throw new ConflictException("Overlapping appointment for this doctor with ID " + appointment.getDoctorId());
+        }
+
+        boolean held = holds.stream()
+                .anyMatch(hold -> !hold.getId().equals(appointment.getId())
+                        && hold.getStart().isBefore(appointment.getEnd())
+                        && hold.getEnd().isAfter(appointment.getStart()));
+        if (held) {
+            throw new ConflictException("Selected time is currently held by another patient.");
+        }
+    }
+}
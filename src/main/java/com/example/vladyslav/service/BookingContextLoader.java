@@ -0,0 +1,136 @@
+package com.example.vladyslav.service;
+
+import com.example.vladyslav.model.Appointment;
+import com.example.vladyslav.model.AvailabilityRule;
+import com.example.vladyslav.model.Doctor;
+import com.example.vladyslav.model.Patient;
+import com.example.vladyslav.model.SlotHold;
+import com.example.vladyslav.model.TimeOff;
+import com.example.vladyslav.model.enums.AppointmentStatus;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Loads a BookingContext in one aggregation instead of separate rule, time-off and overlap queries.
+ *
+ * The pipeline starts from the doctor's rule for the day (idx_doctor_dow) and pulls time-off (idx_doctor_timeOff),
+ * overlapping appointments and live holds (idx_doctor_range on both) in with uncorrelated $lookup sub-pipelines.
+ * For a new booking the doctor and patient profiles are looked up by _id as well, projected to what the
+ * appointment copies (see AppointmentSnapshots), so the booking needs no separate profile reads.
+ * No rule means no document comes back, which is fine: nothing else matters when the doctor does not work that day.
+ */
+@Component
+@RequiredArgsConstructor
+public class BookingContextLoader {
+
+    private final MongoTemplate mongoTemplate;
+
+    public BookingContext load(String doctorId, int dayOfWeek, Instant start, Instant end) {
+        return load(doctorId, null, dayOfWeek, start, end);
+    }
+
+    /**
+     * Same as {@link #load(String, int, Instant, Instant)}, plus the parties a new appointment of {@code patientId} copies.
+     */
+    public BookingContext loadForBooking(String doctorId, String patientId, int dayOfWeek, Instant start, Instant end) {
+        return load(doctorId, patientId, dayOfWeek, start, end);
+    }
+
+    private BookingContext load(String doctorId, String patientId, int dayOfWeek, Instant start, Instant end) {
+        Date from = Date.from(start);
+        Date to = Date.from(end);
+
+        Document timeOffMatch = new Document("doctorId", doctorId)
+                .append("start", new Document("$lte", to))
+                .append("end", new Document("$gte", from));
+        Document appointmentMatch = new Document("doctorId", doctorId)
+                .append("start", new Document("$lt", to))
+                .append("end", new Document("$gt", from))
+                .append("status", new Document("$ne", AppointmentStatus.CANCELLED.name()));
+        Document holdMatch = new Document("doctorId", doctorId)
+                .append("start", new Document("$lt", to))
+                .append("end", new Document("$gt", from))
+                .append("expireAt", new Document("$gt", new Date()));
+
+        List<AggregationOperation> stages = new ArrayList<>(List.of(
+                stage(new Document("$match", new Document("doctorId", doctorId).append("dayOfWeek", dayOfWeek))),
+                stage(new Document("$limit", 1)),
+                lookup(TimeOff.class, timeOffMatch, "timeOffs"),
+                lookup(Appointment.class, appointmentMatch, "appointments"),
+                lookup(SlotHold.class, holdMatch, "holds")));
+        boolean booking = patientId != null;
+        if (booking) {
+            stages.add(profile(Doctor.class, doctorId, AppointmentSnapshots.DOCTOR_FIELDS, "doctor"));
+            stages.add(profile(Patient.class, patientId, AppointmentSnapshots.PATIENT_FIELDS, "patient"));
+        }
+        Aggregation aggregation = Aggregation.newAggregation(stages);
+
+        Document result = mongoTemplate.aggregate(aggregation, mongoTemplate.getCollectionName(AvailabilityRule.class), Document.class)
+                .getUniqueMappedResult();
+        if (result == null) {
+            return new BookingContext(doctorId, dayOfWeek, null, List.of(), List.of(), List.of());
+        }
+
+        MongoConverter converter = mongoTemplate.getConverter();
+        List<TimeOff> timeOffs = result.getList("timeOffs", Document.class, List.of()).stream()
+                .map(doc -> converter.read(TimeOff.class, doc))
+                .toList();
+        List<Appointment> appointments = result.getList("appointments", Document.class, List.of()).stream()
+                .map(doc -> converter.read(Appointment.class, doc))
+                .toList();
+        List<SlotHold> holds = result.getList("holds", Document.class, List.of()).stream()
+                .map(doc -> converter.read(SlotHold.class, doc))
+                .toList();
+
+        AppointmentSnapshots.Parties parties = booking ? parties(result) : AppointmentSnapshots.Parties.UNKNOWN;
+
+        result.remove("timeOffs");
+        result.remove("appointments");
+        result.remove("holds");
+        result.remove("doctor");
+        result.remove("patient");
+        return new BookingContext(doctorId, dayOfWeek, converter.read(AvailabilityRule.class, result), timeOffs, appointments, holds, parties);
+    }
+
+    private static AppointmentSnapshots.Parties parties(Document result) {
+        List<Document> doctor = result.getList("doctor", Document.class, List.of());
+        List<Document> patient = result.getList("patient", Document.class, List.of());
+        AppointmentSnapshots.DoctorSnapshot snapshot = doctor.isEmpty()
+                ? new AppointmentSnapshots.DoctorSnapshot(null, null)
+                : AppointmentSnapshots.doctor(doctor.get(0));
+        return new AppointmentSnapshots.Parties(snapshot.clinicId(), snapshot.name(),
+                patient.isEmpty() ? null : AppointmentSnapshots.name(patient.get(0)));
+    }
+
+    private AggregationOperation lookup(Class<?> type, Document match, String as) {
+        return stage(new Document("$lookup", new Document("from", mongoTemplate.getCollectionName(type))
+                .append("pipeline", List.of(new Document("$match", match)))
+                .append("as", as)));
+    }
+
+    // Profiles are keyed by ObjectId, appointments hold the ids as strings
+    private AggregationOperation profile(Class<?> type, String id, String[] fields, String as) {
+        Document projection = new Document();
+        for (String field : fields) projection.append(field, 1);
+        return stage(new Document("$lookup", new Document("from", mongoTemplate.getCollectionName(type))
+                .append("pipeline", List.of(
+                        new Document("$match", new Document("_id", ObjectId.isValid(id) ? new ObjectId(id) : id)),
+                        new Document("$project", projection)))
+                .append("as", as)));
+    }
+
+    private static AggregationOperation stage(Document stage) {
+        return context -> stage;
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.vladyslav.service;
+
+import com.example.vladyslav.exception.ConflictException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Striped in-process locks keyed by doctorId. Bookings for the same doctor on this node run one at a time, so
+ * contenders wait here instead of all racing to Mongo. Correctness across nodes comes from SlotClaimService.
+ */
+@Component
+public class BookingLocks {
+
+    private final ReentrantLock[] stripes;
+    private final long timeoutMillis;
+
+    public BookingLocks(@Value("${app.booking.lock-stripes:256}") int stripeCount,
+                        @Value("${app.booking.lock-timeout-ms:5000}") long timeoutMillis) {
+        // Power of two so the stripe is a mask of the hash
+        int size = Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1;
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) stripes[i] = new ReentrantLock(true);
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public <T> T withDoctorLock(String doctorId, Supplier<T> action) {
+        ReentrantLock lock = stripeFor(doctorId);
+        try {
+            if (!lock.tryLock(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new ConflictException("Too many concurrent bookings for this doctor, please retry.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConflictException("Booking was interrupted, please retry.");
+        }
+
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ReentrantLock stripeFor(String doctorId) {
+        int h = doctorId.hashCode();
+        h ^= (h >>> 16);
+        return stripes[h & (stripes.length - 1)];
+    }
+}
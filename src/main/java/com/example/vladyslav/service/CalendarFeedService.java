@@ -0,0 +1,225 @@
+package com.example.vladyslav.service;
+
+import com.example.vladyslav.dto.CalendarFeedDTO;
+import com.example.vladyslav.exception.NotFoundException;
+import com.example.vladyslav.exception.OurException;
+import com.example.vladyslav.model.Appointment;
+import com.example.vladyslav.model.CalendarFeed;
+import com.example.vladyslav.model.Doctor;
+import com.example.vladyslav.model.Patient;
+import com.example.vladyslav.model.User;
+import com.example.vladyslav.model.enums.AppointmentStatus;
+import com.example.vladyslav.model.enums.CalendarFeedOwner;
+import com.example.vladyslav.model.enums.Role;
+import com.example.vladyslav.repository.AppointmentRepository;
+import com.example.vladyslav.repository.CalendarFeedRepository;
+import com.example.vladyslav.repository.DoctorRepository;
+import com.example.vladyslav.repository.PatientRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Per-user .ics feeds of appointments, polled by calendar apps.
+ *
+ * A poll costs two point reads (the feed by token hash, the feed's version) when the app sends If-None-Match,
+ * which is what almost every poll does. Otherwise events are written straight from a start-ordered cursor, over a
+ * window from past-days ago to future-days ahead. The window moves at midnight UTC and is part of the ETag, so
+ * the ETag changes exactly when the body can.
+ */
+@Service
+public class CalendarFeedService {
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final int TOKEN_BYTES = 32;
+
+    private final CalendarFeedRepository feedRepository;
+    private final AppointmentRepository appointmentRepository;
+    private final DoctorRepository doctorRepository;
+    private final PatientRepository patientRepository;
+    private final CalendarVersionService calendarVersionService;
+    private final int pastDays;
+    private final int futureDays;
+    private final int maxFeedsPerUser;
+
+    public CalendarFeedService(CalendarFeedRepository feedRepository,
+                               AppointmentRepository appointmentRepository,
+                               DoctorRepository doctorRepository,
+                               PatientRepository patientRepository,
+                               CalendarVersionService calendarVersionService,
+                               @Value("${app.calendar-feed.past-days:30}") int pastDays,
+                               @Value("${app.calendar-feed.future-days:365}") int futureDays,
+                               @Value("${app.calendar-feed.max-per-user:5}") int maxFeedsPerUser) {
+        this.feedRepository = feedRepository;
+        this.appointmentRepository = appointmentRepository;
+        this.doctorRepository = doctorRepository;
+        this.patientRepository = patientRepository;
+        this.calendarVersionService = calendarVersionService;
+        this.pastDays = pastDays;
+        this.futureDays = futureDays;
+        this.maxFeedsPerUser = maxFeedsPerUser;
+    }
+
+    /**
+     * Creates a feed of the user's own appointments, as a doctor or as a patient. The token is returned only here.
+     */
+    public CalendarFeedDTO create(User user, String label) {
+        if (feedRepository.countByUserId(user.getId()) >= maxFeedsPerUser) {
+            throw new OurException("At most " + maxFeedsPerUser + " calendar feeds per user, revoke one first.");
+        }
+
+        CalendarFeed feed = CalendarFeed.builder()
+                .ownerType(ownerType(user))
+                .ownerId(ownerId(user))
+                .userId(user.getId())
+                .label(label)
+                .build();
+
+        String token = newToken();
+        feed.setTokenHash(hash(token));
+        CalendarFeed saved = feedRepository.save(feed);
+
+        CalendarFeedDTO dto = toDTO(saved);
+        dto.setToken(token);
+        dto.setPath("/api/calendar-feeds/" + token + ".ics");
+        return dto;
+    }
+
+    public List<CalendarFeedDTO> list(User user) {
+        return feedRepository.findByUserId(user.getId()).stream().map(this::toDTO).toList();
+    }
+
+    public void revoke(String feedId, User user) {
+        CalendarFeed feed = feedRepository.findByIdAndUserId(feedId, user.getId())
+                .orElseThrow(() -> new NotFoundException("Calendar feed not found with id:" + feedId));
+        feedRepository.delete(feed);
+    }
+
+    /**
+     * Unknown and revoked tokens look the same to the caller.
+     */
+    public CalendarFeed resolve(String token) {
+        return feedRepository.findByTokenHash(hash(token))
+                .orElseThrow(() -> new NotFoundException("Calendar feed not found"));
+    }
+
+    public String eTag(CalendarFeed feed, Instant now) {
+        long version = feed.getOwnerType() == CalendarFeedOwner.DOCTOR
+                ? calendarVersionService.currentFeed(feed.getOwnerId())
+                : calendarVersionService.currentForPatient(feed.getOwnerId());
+        return "ics-" + feed.getId() + "-" + version + "-" + today(now);
+    }
+
+    public void write(CalendarFeed feed, Instant now, OutputStream out) throws IOException {
+        LocalDate today = today(now);
+        Instant from = today.minusDays(pastDays).atStartOfDay(ZoneOffset.UTC).toInstant();
+        Instant to = today.plusDays(futureDays + 1L).atStartOfDay(ZoneOffset.UTC).toInstant();
+        boolean doctor = feed.getOwnerType() == CalendarFeedOwner.DOCTOR;
+
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        IcsWriter ics = new IcsWriter(writer);
+
+        try (Stream<Appointment> appointments = doctor
+                ? appointmentRepository.streamByDoctorIdAndStartBetweenOrderByStartAsc(feed.getOwnerId(), from, to)
+                : appointmentRepository.streamByPatientIdAndStartBetweenOrderByStartAsc(feed.getOwnerId(), from, to)) {
+
+            ics.property("BEGIN", "VCALENDAR");
+            ics.property("VERSION", "2.0");
+            ics.property("PRODID", "-//Medikart//Appointments//EN");
+            ics.property("CALSCALE", "GREGORIAN");
+            ics.property("METHOD", "PUBLISH");
+            ics.text("X-WR-CALNAME", feed.getLabel() != null ? feed.getLabel() : "Medikart appointments");
+            ics.property("REFRESH-INTERVAL;VALUE=DURATION", "PT15M");
+            ics.property("X-PUBLISHED-TTL", "PT15M");
+
+            Iterator<Appointment> it = appointments.iterator();
+            while (it.hasNext()) {
+                event(ics, it.next(), doctor);
+            }
+
+            ics.property("END", "VCALENDAR");
+            writer.flush();
+        }
+    }
+
+    /**
+     * Only uses fields that change together with the feed's version: attended and no-show are outcomes that don't
+     * bump it, so they are written like SCHEDULED. No concern or names, the event ends up in third-party storage.
+     */
+    private static void event(IcsWriter ics, Appointment a, boolean doctor) throws IOException {
+        boolean cancelled = a.getStatus() == AppointmentStatus.CANCELLED;
+
+        ics.property("BEGIN", "VEVENT");
+        ics.property("UID", a.getId() + "@medikart");
+        ics.time("DTSTAMP", a.getCreatedAt() != null ? a.getCreatedAt() : a.getStart());
+        ics.time("DTSTART", a.getStart());
+        ics.time("DTEND", a.getEnd());
+        ics.text("SUMMARY", doctor ? "Patient appointment" : "Doctor appointment");
+        ics.property("STATUS", cancelled ? "CANCELLED" : "CONFIRMED");
+        ics.property("TRANSP", cancelled ? "TRANSPARENT" : "OPAQUE");
+        if (!cancelled && a.getTimeOffConflictId() != null) {
+            ics.text("DESCRIPTION", "Affected by doctor time-off, needs rescheduling.");
+        }
+        ics.property("END", "VEVENT");
+    }
+
+    private CalendarFeedOwner ownerType(User user) {
+        if (user.getRole() == Role.DOCTOR) return CalendarFeedOwner.DOCTOR;
+        if (user.getRole() == Role.PATIENT) return CalendarFeedOwner.PATIENT;
+        throw new OurException("Calendar feeds are only available to doctors and patients");
+    }
+
+    private String ownerId(User user) {
+        if (user.getRole() == Role.DOCTOR) {
+            return doctorRepository.findByUserId(user.getId()).map(Doctor::getId)
+                    .orElseThrow(() -> new NotFoundException("Doctor profile not found"));
+        }
+        return patientRepository.findByUserId(user.getId()).map(Patient::getId)
+                .orElseThrow(() -> new NotFoundException("Patient profile not found"));
+    }
+
+    private static LocalDate today(Instant now) {
+        return LocalDate.ofInstant(now, ZoneOffset.UTC);
+    }
+
+    private static String newToken() {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        RANDOM.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private CalendarFeedDTO toDTO(CalendarFeed feed) {
+        return CalendarFeedDTO.builder()
+                .id(feed.getId())
+                .ownerType(feed.getOwnerType())
+                .ownerId(feed.getOwnerId())
+                .label(feed.getLabel())
+                .createdAt(feed.getCreatedAt())
+                .build();
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.vladyslav.service;
+
+import com.example.vladyslav.event.AppointmentChangedEvent;
+import com.example.vladyslav.event.AppointmentLifecycleEvent;
+import com.example.vladyslav.event.AvailabilityRuleChangedEvent;
+import com.example.vladyslav.event.SlotHoldChangedEvent;
+import com.example.vladyslav.event.TimeOffChangedEvent;
+import com.example.vladyslav.event.TimeOffConflictNotice;
+import com.example.vladyslav.model.CalendarVersion;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Keeps a version number per doctor calendar in Mongo, so every node hands out the same availability ETag.
+ * Patients get one too, under "patient-" + id, bumped whenever one of their appointments moves (calendar feeds).
+ * A doctor's calendar feed has its own, under "feed-" + id: holds, rules and time-off bump the calendar version
+ * but never change the .ics body, so they leave the feed's alone.
+ * Appointment changes bump it right after their commit, on the node that wrote them, so a revalidating client never
+ * gets a 304 for slots that were just booked; the outbox delivery bumps it once more in case that node died in between.
+ */
+@Service
+@RequiredArgsConstructor
+public class CalendarVersionService {
+
+    private final MongoTemplate mongoTemplate;
+
+    public long current(String doctorId) {
+        Query query = new Query(where("_id").is(doctorId));
+        query.fields().include("version");
+        CalendarVersion version = mongoTemplate.findOne(query, CalendarVersion.class);
+        return version != null ? version.getVersion() : 0L;
+    }
+
+    public void bump(String doctorId) {
+        Update update = new Update().inc("version", 1).set("updatedAt", Instant.now());
+        mongoTemplate.upsert(new Query(where("_id").is(doctorId)), update, CalendarVersion.class);
+    }
+
+    public long currentForPatient(String patientId) {
+        return current(patientKey(patientId));
+    }
+
+    public void bumpPatient(String patientId) {
+        bump(patientKey(patientId));
+    }
+
+    public long currentFeed(String doctorId) {
+        return current(feedKey(doctorId));
+    }
+
+    public void bumpFeed(String doctorId) {
+        bump(feedKey(doctorId));
+    }
+
+    @EventListener
+    public void onAppointmentWritten(AppointmentChangedEvent event) {
+        if (event.change().isOutcome()) return;
+        bump(event.doctorId());
+        if (event.patientId() != null) bumpPatient(event.patientId());
+    }
+
+    // Backstop for a node that committed the change but stopped before bumping; the only bump of the doctor's feed
+    @EventListener
+    public void onAppointmentChanged(AppointmentLifecycleEvent event) {
+        if (event.change().isOutcome()) return;
+        bump(event.doctorId());
+        bumpFeed(event.doctorId());
+        if (event.patientId() != null) bumpPatient(event.patientId());
+    }
+
+    // Flagging or cancelling appointments for a time-off writes no outbox event per appointment
+    @EventListener
+    public void onTimeOffConflict(TimeOffConflictNotice notice) {
+        bumpPatient(notice.patientId());
+        bumpFeed(notice.doctorId());
+    }
+
+    @EventListener
+    public void onTimeOffChanged(TimeOffChangedEvent event) {
+        bump(event.doctorId());
+    }
+
+    @EventListener
+    public void onHoldChanged(SlotHoldChangedEvent event) {
+        bump(event.doctorId());
+    }
+
+    @EventListener
+    public void onRuleChanged(AvailabilityRuleChangedEvent event) {
+        bump(event.doctorId());
+    }
+
+    private static String patientKey(String patientId) {
+        return "patient-" + patientId;
+    }
+
+    private static String feedKey(String doctorId) {
+        return "feed-" + doctorId;
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.vladyslav.service;
+
+import com.example.vladyslav.dto.DaySheetDTO;
+import com.example.vladyslav.dto.DaySheetEntryDTO;
+import com.example.vladyslav.exception.OurException;
+import com.example.vladyslav.model.Appointment;
+import com.example.vladyslav.model.Doctor;
+import com.example.vladyslav.model.Patient;
+import com.example.vladyslav.model.enums.AppointmentStatus;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * A clinic's appointments for one day with doctor and patient names, for reception.
+ *
+ * One aggregation instead of a page of appointments plus a patient and a doctor fetch per row: it starts from the
+ * clinic's doctors (the clinic DBRef is indexed), pulls each doctor's appointments of the day in with a $lookup on
+ * idx_doctor_range and each patient by _id, and projects only the columns reception shows.
+ * Appointments store doctor and patient ids as strings, the other collections as ObjectIds, hence the conversions.
+ */
+@Service
+@RequiredArgsConstructor
+public class DaySheetService {
+
+    private static final ZoneId UK_TZ = ZoneId.of("Europe/London");
+
+    private final MongoTemplate mongoTemplate;
+
+    public DaySheetDTO daySheet(String clinicId, LocalDate date, boolean includeCancelled) {
+        if (clinicId == null || !ObjectId.isValid(clinicId)) throw new OurException("Invalid clinic id: " + clinicId);
+        LocalDate day = date != null ? date : LocalDate.now(UK_TZ);
+        Date from = Date.from(day.atStartOfDay(UK_TZ).toInstant());
+        Date to = Date.from(day.plusDays(1).atStartOfDay(UK_TZ).toInstant());
+
+        Document appointmentMatch = new Document("$expr", new Document("$eq", List.of("$doctorId", "$$doctorId")))
+                .append("start", new Document("$gte", from).append("$lt", to));
+        if (!includeCancelled) {
+            appointmentMatch.append("status", new Document("$ne", AppointmentStatus.CANCELLED.name()));
+        }
+
+        Aggregation aggregation = Aggregation.newAggregation(
+                stage(new Document("$match", new Document("clinic.$id", new ObjectId(clinicId)))),
+                stage(new Document("$project", new Document("doctorName", fullName("$firstName", "$lastName")))),
+                stage(new Document("$lookup", new Document("from", mongoTemplate.getCollectionName(Appointment.class))
+                        .append("let", new Document("doctorId", new Document("$toString", "$_id")))
+                        .append("pipeline", List.of(
+                                new Document("$match", appointmentMatch),
+                                new Document("$project", fields("patientId", "start", "end", "status", "concern"))))
+                        .append("as", "appointment"))),
+                stage(new Document("$unwind", "$appointment")),
+                stage(new Document("$lookup", new Document("from", mongoTemplate.getCollectionName(Patient.class))
+                        .append("let", new Document("patientId", new Document("$convert", new Document("input", "$appointment.patientId")
+                                .append("to", "objectId")
+                                .append("onError", null)
+                                .append("onNull", null))))
+                        .append("pipeline", List.of(
+                                new Document("$match", new Document("$expr", new Document("$eq", List.of("$_id", "$$patientId")))),
+                                new Document("$project", fields("firstName", "lastName", "phoneNumber"))))
+                        .append("as", "patient"))),
+                stage(new Document("$unwind", new Document("path", "$patient").append("preserveNullAndEmptyArrays", true))),
+                // Doctor id after the name keeps namesakes apart
+                stage(new Document("$sort", new Document("doctorName", 1).append("_id", 1).append("appointment.start", 1))),
+                stage(new Document("$project", new Document("_id", 0)
+                        .append("appointmentId", new Document("$toString", "$appointment._id"))
+                        .append("doctorId", new Document("$toString", "$_id"))
+                        .append("doctorName", 1)
+                        .append("patientId", "$appointment.patientId")
+                        .append("patientName", fullName("$patient.firstName", "$patient.lastName"))
+                        .append("patientPhone", "$patient.phoneNumber")
+                        .append("start", "$appointment.start")
+                        .append("end", "$appointment.end")
+                        .append("status", "$appointment.status")
+                        .append("concern", "$appointment.concern"))));
+
+        List<DaySheetEntryDTO> entries = mongoTemplate
+                .aggregate(aggregation, mongoTemplate.getCollectionName(Doctor.class), DaySheetEntryDTO.class)
+                .getMappedResults();
+        return new DaySheetDTO(clinicId, day, entries);
+    }
+
+    private static Document fullName(String first, String last) {
+        return new Document("$concat", List.of(
+                new Document("$ifNull", List.of(first, "")), " ", new Document("$ifNull", List.of(last, ""))));
+    }
+
+    private static Document fields(String... names) {
+        Document projection = new Document();
+        for (String name : names) projection.append(name, 1);
+        return projection;
+    }
+
+    private static AggregationOperation stage(Document stage) {
+        return context -> stage;
+    }
+}
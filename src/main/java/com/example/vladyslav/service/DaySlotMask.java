@@ -0,0 +1,254 @@
+package com.example.vladyslav.service;
+
+import com.example.vladyslav.model.AvailabilityRule;
+import com.example.vladyslav.model.Break;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Slot grid for one doctor-day, stored as a bitmask.
+ *
+ * Bit i is set when slot i (workStart + i * slotMinutes) is free. Breaks, bookings and time-off
+ * are removed with range operations, and the "HH:mm" strings are only built when the
+ * result list is read (i.e. during JSON serialization).
+ */
+public final class DaySlotMask {
+
+    private static final int MINUTES_PER_DAY = 24 * 60;
+
+    private final int workStartMinute;
+    private final int slotMinutes;
+    private final int slotCount;
+    private final long[] words;
+
+    private DaySlotMask(int workStartMinute, int slotMinutes, int slotCount) {
+        this.workStartMinute = workStartMinute;
+        this.slotMinutes = slotMinutes;
+        this.slotCount = slotCount;
+        this.words = new long[(slotCount + 63) >>> 6];
+        setAll();
+    }
+
+    /**
+     * A day without any bookable slot (no rule for that day of week).
+     */
+    public static DaySlotMask empty() {
+        return new DaySlotMask(0, 1, 0);
+    }
+
+    /**
+     * Builds the grid for a rule with every slot free except the rule's breaks.
+     */
+    public static DaySlotMask forRule(AvailabilityRule rule) {
+        int start = minuteOfDay(rule.getStart());
+        int end = minuteOfDay(rule.getEnd());
+        int slot = rule.getSlotMinutes();
+
+        // slotMinutes = 0 is allowed by validation, treat it as "no bookable slots"
+        int count = (slot <= 0 || end <= start) ? 0 : (end - start) / slot;
+
+        DaySlotMask mask = new DaySlotMask(start, Math.max(slot, 1), count);
+        if (rule.getBreaks() != null) {
+            for (Break b : rule.getBreaks()) {
+                if (b.getStartBreak() != null && b.getEndBreak() != null) {
+                    mask.block(b.getStartBreak(), b.getEndBreak());
+                }
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Blocks every slot that overlaps [from, to) in local wall-clock time.
+     */
+    public void block(LocalTime from, LocalTime to) {
+        block(minuteOfDay(from), minuteOfDay(to));
+    }
+
+    /**
+     * Blocks every slot that overlaps the absolute range [start, end), clipped to the given local date.
+     */
+    public void block(LocalDate date, ZoneId zone, Instant start, Instant end) {
+        block(minuteOfDate(date, zone, start), minuteOfDate(date, zone, end));
+    }
+
+    /**
+     * Blocks every slot that overlaps [fromMinute, toMinute), minutes counted from local midnight.
+     */
+    public void block(int fromMinute, int toMinute) {
+        if (toMinute <= fromMinute || slotCount == 0) return;
+
+        // Slot i overlaps when slotStart < to && from < slotEnd
+        int first = Math.floorDiv(fromMinute - workStartMinute, slotMinutes);
+        int last = -Math.floorDiv(workStartMinute - toMinute, slotMinutes); // ceil, exclusive
+
+        clearBits(Math.max(first, 0), Math.min(last, slotCount));
+    }
+
+    public boolean isFree(int slot) {
+        return slot >= 0 && slot < slotCount && (words[slot >>> 6] & (1L << slot)) != 0;
+    }
+
+    /**
+     * @return index of the first free slot at or after {@code from}, or -1 if none.
+     */
+    public int nextFree(int from) {
+        if (from < 0) from = 0;
+        if (from >= slotCount) return -1;
+
+        int w = from >>> 6;
+        long word = words[w] & (-1L << from);
+        while (true) {
+            if (word != 0) {
+                int slot = (w << 6) + Long.numberOfTrailingZeros(word);
+                return slot < slotCount ? slot : -1;
+            }
+            if (++w == words.length) return -1;
+            word = words[w];
+        }
+    }
+
+    public int freeCount() {
+        int n = 0;
+        for (long word : words) n += Long.bitCount(word);
+        return n;
+    }
+
+    public int slotCount() {
+        return slotCount;
+    }
+
+    public int slotMinutes() {
+        return slotMinutes;
+    }
+
+    /**
+     * Start of the slot as minutes from local midnight.
+     */
+    public int slotStartMinute(int slot) {
+        return workStartMinute + slot * slotMinutes;
+    }
+
+    public LocalTime slotStart(int slot) {
+        return LocalTime.ofSecondOfDay(slotStartMinute(slot) * 60L);
+    }
+
+    /**
+     * Snapshot of the free slots as "HH:mm" strings. The strings are created lazily on access,
+     * so further changes to this mask do not affect the returned list.
+     */
+    public List<String> freeSlotTimes() {
+        return new FreeSlotTimes(workStartMinute, slotMinutes, words.clone(), freeCount());
+    }
+
+    private void setAll() {
+        Arrays.fill(words, -1L);
+        int tail = slotCount & 63;
+        if (tail != 0) words[words.length - 1] = (1L << tail) - 1;
+    }
+
+    private void clearBits(int from, int to) {
+        if (from >= to) return;
+
+        int firstWord = from >>> 6;
+        int lastWord = (to - 1) >>> 6;
+        long firstMask = -1L << from;
+        long lastMask = -1L >>> -to;
+
+        if (firstWord == lastWord) {
+            words[firstWord] &= ~(firstMask & lastMask);
+            return;
+        }
+        words[firstWord] &= ~firstMask;
+        for (int w = firstWord + 1; w < lastWord; w++) words[w] = 0L;
+        words[lastWord] &= ~lastMask;
+    }
+
+    private static int minuteOfDay(LocalTime time) {
+        return time.getHour() * 60 + time.getMinute();
+    }
+
+    // Minutes from local midnight of `date`, clamped to just outside the day so ranges crossing midnight clip correctly
+    private static int minuteOfDate(LocalDate date, ZoneId zone, Instant instant) {
+        long minutes = ChronoUnit.MINUTES.between(date.atStartOfDay(), LocalDateTime.ofInstant(instant, zone));
+        return (int) Math.max(-1, Math.min(MINUTES_PER_DAY + 1, minutes));
+    }
+
+    private static String label(int minuteOfDay) {
+        int h = minuteOfDay / 60, m = minuteOfDay % 60;
+        return new String(new char[]{
+                (char) ('0' + h / 10), (char) ('0' + h % 10), ':', (char) ('0' + m / 10), (char) ('0' + m % 10)
+        });
+    }
+
+    /**
+     * Read-only list over a copy of the mask, rendering "HH:mm" on demand.
+     */
+    private static final class FreeSlotTimes extends AbstractList<String> {
+
+        private final int workStartMinute;
+        private final int slotMinutes;
+        private final long[] words;
+        private final int size;
+
+        private FreeSlotTimes(int workStartMinute, int slotMinutes, long[] words, int size) {
+            this.workStartMinute = workStartMinute;
+            this.slotMinutes = slotMinutes;
+            this.words = words;
+            this.size = size;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public String get(int index) {
+            if (index < 0 || index >= size) throw new IndexOutOfBoundsException(index);
+            int remaining = index;
+            for (int w = 0; w < words.length; w++) {
+                int bits = Long.bitCount(words[w]);
+                if (remaining < bits) {
+                    long word = words[w];
+                    for (int i = 0; i < remaining; i++) word &= word - 1; // drop lowest set bits
+                    return label(workStartMinute + ((w << 6) + Long.numberOfTrailingZeros(word)) * slotMinutes);
+                }
+                remaining -= bits;
+            }
+            throw new IndexOutOfBoundsException(index);
+        }
+
+        @Override
+        public Iterator<String> iterator() {
+            return new Iterator<>() {
+                private int w = 0;
+                private long word = words.length == 0 ? 0 : words[0];
+
+                @Override
+                public boolean hasNext() {
+                    while (word == 0 && w + 1 < words.length) word = words[++w];
+                    return word != 0;
+                }
+
+                @Override
+                public String next() {
+                    if (!hasNext()) throw new NoSuchElementException();
+                    int slot = (w << 6) + Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                    return label(workStartMinute + slot * slotMinutes);
+                }
+            };
+        }
+    }
+}
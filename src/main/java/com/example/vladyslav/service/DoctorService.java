@@ -22,6 +22,7 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
@@ -30,6 +31,8 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
@@ -325,6 +328,18 @@ public class DoctorService {
             criteria.add(text);
         }
 
+        // Precomputed first free slot (NextAvailabilityService), so this is an indexed range/sort
+        if (c.getAvailableWithinDays() != null) {
+            if (c.getAvailableWithinDays() < 1) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "availableWithinDays must be positive");
+            }
+            criteria.add(
+                    Criteria.where("nextAvailableAt").lte(Instant.now().plus(Duration.ofDays(c.getAvailableWithinDays())))
+            );
+        } else if (c.isAvailableSoonest()) {
+            criteria.add(Criteria.where("nextAvailableAt").ne(null));
+        }
+
 
 
         Query query = new Query();
@@ -332,6 +347,10 @@ public class DoctorService {
         if(!criteria.isEmpty()) {
             query.addCriteria(new Criteria().andOperator(criteria.toArray(new Criteria[0])));
         }
+        if (c.isAvailableSoonest()) {
+            pageable = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(),
+                    Sort.by(Sort.Order.asc("nextAvailableAt"), Sort.Order.asc("_id")));
+        }
         query.with(pageable);
 
         List<Doctor> content = mongoTemplate.find(query, Doctor.class);
@@ -378,6 +397,7 @@ public class DoctorService {
                 .consultationFee(doctor.getConsultationFee())
                 .languages(doctor.getLanguages())
                 .clinicId(doctor.getClinic().getId())
+                .nextAvailableAt(doctor.getNextAvailableAt())
                 .build();
     }
 
@@ -0,0 +1,82 @@
+package com.example.vladyslav.service;
+
+import com.example.vladyslav.model.Clinic;
+import com.example.vladyslav.model.Doctor;
+import com.example.vladyslav.model.Speciality;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Strong ETags computed from a small projection, so a conditional GET can be answered with 304 before the
+ * entity is loaded and mapped to its DTO. A null result means "unknown", the caller then serves normally.
+ */
+@Service
+@RequiredArgsConstructor
+public class ETagService {
+
+    private final MongoTemplate mongoTemplate;
+
+    private final CalendarVersionService calendarVersionService;
+
+    public String doctor(String doctorId) {
+        Query query = new Query(where("_id").is(doctorId));
+        // nextAvailableAt is written without touching updatedAt
+        query.fields().include("updatedAt").include("nextAvailableAt");
+        Doctor doctor = mongoTemplate.findOne(query, Doctor.class);
+        if (doctor == null || doctor.getUpdatedAt() == null) return null;
+
+        return "d-" + doctorId + "-" + doctor.getUpdatedAt().toEpochMilli() + "-" + millis(doctor.getNextAvailableAt());
+    }
+
+    public String clinic(String clinicId) {
+        Query query = new Query(where("_id").is(clinicId));
+        query.fields().include("updatedAt");
+        Clinic clinic = mongoTemplate.findOne(query, Clinic.class);
+        if (clinic == null || clinic.getUpdatedAt() == null) return null;
+
+        return "c-" + clinicId + "-" + clinic.getUpdatedAt().toEpochMilli();
+    }
+
+    public String speciality(String specialityId) {
+        Query query = new Query(where("_id").is(specialityId));
+        query.fields().include("updatedAt");
+        Speciality speciality = mongoTemplate.findOne(query, Speciality.class);
+        if (speciality == null || speciality.getUpdatedAt() == null) return null;
+
+        return "s-" + specialityId + "-" + speciality.getUpdatedAt().toEpochMilli();
+    }
+
+    /**
+     * For listings and lookups across all specialities: the latest change, plus the count so a removal shows too.
+     */
+    public String specialities() {
+        Query newest = new Query().with(Sort.by(Sort.Direction.DESC, "updatedAt")).limit(1);
+        newest.fields().include("updatedAt");
+        Speciality latest = mongoTemplate.findOne(newest, Speciality.class);
+        if (latest == null || latest.getUpdatedAt() == null) return null;
+
+        return "s-" + mongoTemplate.estimatedCount(Speciality.class) + "-" + latest.getUpdatedAt().toEpochMilli();
+    }
+
+    /**
+     * Availability and rules of a doctor only change through events that bump the calendar version.
+     */
+    public String calendar(String doctorId) {
+        return calendar(doctorId, calendarVersionService.current(doctorId));
+    }
+
+    public String calendar(String doctorId, long version) {
+        return "cal-" + doctorId + "-" + version;
+    }
+
+    private static long millis(Instant instant) {
+        return instant != null ? instant.toEpochMilli() : 0L;
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.vladyslav.service;
+
+import com.example.vladyslav.dto.AvailableSlotDTO;
+import com.example.vladyslav.exception.OurException;
+import com.example.vladyslav.model.Doctor;
+import com.example.vladyslav.model.enums.LanguageCode;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * "First free slot for any doctor of a speciality" search. Availability of the matching doctors is computed
+ * concurrently on a bounded executor, and the horizon is scanned in growing chunks so the search stops as
+ * soon as enough slots are found.
+ *
+ * The doctors are picked in one query with every filter applied in Mongo, so the app.availability.search.max-doctors
+ * cap only counts doctors that match, and only their ids are read.
+ */
+@Service
+public class EarliestAvailabilityService {
+
+    private static final ZoneId UK_TZ = ZoneId.of("Europe/London");
+
+    private static final int MAX_DAYS = 60;
+    private static final int MAX_LIMIT = 50;
+
+    private static final Comparator<AvailableSlotDTO> BY_START =
+            Comparator.comparing(AvailableSlotDTO::start).thenComparing(AvailableSlotDTO::doctorId);
+
+    private final MongoTemplate mongoTemplate;
+    private final AvailabilityRuleService availabilityRuleService;
+    private final Executor executor;
+    private final int maxDoctors;
+
+    public EarliestAvailabilityService(MongoTemplate mongoTemplate,
+                                       AvailabilityRuleService availabilityRuleService,
+                                       @Qualifier("availabilitySearchExecutor") Executor executor,
+                                       @Value("${app.availability.search.max-doctors:200}") int maxDoctors) {
+        this.mongoTemplate = mongoTemplate;
+        this.availabilityRuleService = availabilityRuleService;
+        this.executor = executor;
+        this.maxDoctors = maxDoctors;
+    }
+
+    public List<AvailableSlotDTO> findEarliest(String specialityId, String clinicId, LanguageCode language, int days, int limit) {
+        if (specialityId == null || specialityId.isBlank()) throw new OurException("specialityId is required.");
+        if (days < 1 || days > MAX_DAYS) throw new OurException("days must be between 1.." + MAX_DAYS);
+        if (limit < 1 || limit > MAX_LIMIT) throw new OurException("limit must be between 1.." + MAX_LIMIT);
+
+        List<String> doctorIds = doctorIds(specialityId, clinicId, language);
+
+        List<AvailableSlotDTO> found = new ArrayList<>();
+        if (doctorIds.isEmpty()) return found;
+
+        Instant now = Instant.now();
+        LocalDate horizonEnd = LocalDate.now(UK_TZ).plusDays(days - 1);
+
+        // Chunks of 1, 2, 4, ... days. Every slot in an earlier chunk is before every slot in a later one,
+        // so once `limit` slots are collected nothing further ahead can make it into the result.
+        LocalDate chunkFrom = LocalDate.now(UK_TZ);
+        int chunkDays = 1;
+        while (!chunkFrom.isAfter(horizonEnd) && found.size() < limit) {
+            LocalDate from = chunkFrom;
+            LocalDate to = chunkFrom.plusDays(chunkDays - 1).isAfter(horizonEnd) ? horizonEnd : chunkFrom.plusDays(chunkDays - 1);
+            int remaining = limit - found.size();
+
+            List<CompletableFuture<List<AvailableSlotDTO>>> perDoctor = doctorIds.stream()
+                    .map(id -> CompletableFuture.supplyAsync(() -> earliestForDoctor(id, from, to, now, remaining), executor))
+                    .toList();
+
+            perDoctor.stream()
+                    .map(CompletableFuture::join)
+                    .flatMap(List::stream)
+                    .sorted(BY_START)
+                    .limit(remaining)
+                    .forEach(found::add);
+
+            chunkFrom = to.plusDays(1);
+            chunkDays *= 2;
+        }
+
+        return found;
+    }
+
+    // Matches DBRefs on their id (idx_speciality_id_next_available), without resolving clinic or speciality
+    private List<String> doctorIds(String specialityId, String clinicId, LanguageCode language) {
+        Criteria criteria = where("speciality.$id").is(objectId(specialityId));
+        if (clinicId != null && !clinicId.isBlank()) criteria.and("clinic.$id").is(objectId(clinicId));
+        if (language != null) criteria.and("languages").is(language);
+
+        Query query = new Query(criteria).limit(maxDoctors);
+        query.fields().include("_id");
+        return mongoTemplate.find(query, Doctor.class).stream().map(Doctor::getId).toList();
+    }
+
+    // First `limit` future slots of one doctor in from..to
+    private List<AvailableSlotDTO> earliestForDoctor(String doctorId, LocalDate from, LocalDate to, Instant now, int limit) {
+        List<AvailableSlotDTO> out = new ArrayList<>();
+
+        for (Map.Entry<LocalDate, DaySlotMask> day : availabilityRuleService.getSlotMasks(doctorId, from, to).entrySet()) {
+            DaySlotMask mask = day.getValue();
+            for (int slot = mask.nextFree(0); slot >= 0; slot = mask.nextFree(slot + 1)) {
+                Instant start = ZonedDateTime.of(day.getKey(), mask.slotStart(slot), UK_TZ).toInstant();
+                if (!start.isAfter(now)) continue;
+
+                out.add(new AvailableSlotDTO(doctorId, day.getKey(), mask.slotStart(slot).toString(), start));
+                if (out.size() == limit) return out;
+            }
+        }
+        return out;
+    }
+
+    private static ObjectId objectId(String id) {
+        if (!ObjectId.isValid(id)) throw new OurException("Invalid id: " + id);
+        return new ObjectId(id);
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.vladyslav.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Hashed timing wheel: keys go into the slot of their deadline tick, and advancing only looks at the slots
+ * of the ticks that passed. Scheduling, cancelling and expiring are O(1) per key, whatever the number of
+ * pending deadlines. Deadlines further out than one revolution simply stay in their slot for another round.
+ */
+class ExpiryWheel<K> {
+
+    private final long tickMillis;
+    private final List<Set<K>> slots;
+    private final Map<K, Pending> pending = new HashMap<>();
+    private long cursor;
+
+    ExpiryWheel(Duration tick, int slotCount, Instant start) {
+        this.tickMillis = tick.toMillis();
+        this.slots = new ArrayList<>(slotCount);
+        for (int i = 0; i < slotCount; i++) slots.add(new HashSet<>());
+        this.cursor = tickOf(start);
+    }
+
+    synchronized void schedule(K key, Instant deadline) {
+        cancel(key);
+        int slot = slotIndex(Math.max(tickOf(deadline), cursor));
+        pending.put(key, new Pending(deadline.toEpochMilli(), slot));
+        slots.get(slot).add(key);
+    }
+
+    synchronized void cancel(K key) {
+        Pending p = pending.remove(key);
+        if (p != null) slots.get(p.slot()).remove(key);
+    }
+
+    /**
+     * Moves the wheel to {@code now} and returns the keys whose deadline has passed.
+     */
+    synchronized List<K> advance(Instant now) {
+        List<K> due = new ArrayList<>();
+        long target = tickOf(now);
+        long nowMillis = now.toEpochMilli();
+
+        // A long pause is at most one full revolution of work
+        long from = Math.max(cursor, target - slots.size() + 1);
+        for (long tick = from; tick <= target; tick++) {
+            Iterator<K> it = slots.get(slotIndex(tick)).iterator();
+            while (it.hasNext()) {
+                K key = it.next();
+                // Keys of a later round, or later within the current tick, stay where they are
+                if (pending.get(key).deadlineMillis() <= nowMillis) {
+                    it.remove();
+                    pending.remove(key);
+                    due.add(key);
+                }
+            }
+        }
+        cursor = target;
+        return due;
+    }
+
+    synchronized int size() {
+        return pending.size();
+    }
+
+    private long tickOf(Instant instant) {
+        return instant.toEpochMilli() / tickMillis;
+    }
+
+    private int slotIndex(long tick) {
+        return (int) Math.floorMod(tick, (long) slots.size());
+    }
+
+    private record Pending(long deadlineMillis, int slot) {}
+}
@@ -0,0 +1,67 @@
+package com.example.vladyslav.service;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Writes iCalendar (RFC 5545) content lines: CRLF endings, text escaping and folding at 75 octets.
+ * Times are written in UTC, so no VTIMEZONE is needed.
+ */
+final class IcsWriter {
+
+    private static final DateTimeFormatter UTC = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'").withZone(ZoneOffset.UTC);
+
+    private static final int MAX_OCTETS = 75;
+
+    private final Writer out;
+
+    IcsWriter(Writer out) {
+        this.out = out;
+    }
+
+    void property(String name, String rawValue) throws IOException {
+        line(name + ":" + rawValue);
+    }
+
+    void text(String name, String value) throws IOException {
+        line(name + ":" + escape(value));
+    }
+
+    void time(String name, Instant instant) throws IOException {
+        line(name + ":" + UTC.format(instant));
+    }
+
+    static String escape(String value) {
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\', ';', ',' -> sb.append('\\').append(c);
+                case '\n' -> sb.append("\\n");
+                case '\r' -> { }
+                default -> sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    // Folds by UTF-8 length without splitting a character; continuation lines start with a space, which counts
+    private void line(String line) throws IOException {
+        int octets = 0;
+        for (int i = 0; i < line.length(); ) {
+            int cp = line.codePointAt(i);
+            int width = cp < 0x80 ? 1 : cp < 0x800 ? 2 : cp < 0x10000 ? 3 : 4;
+            if (octets + width > MAX_OCTETS) {
+                out.write("\r\n ");
+                octets = 1;
+            }
+            out.write(Character.toChars(cp));
+            octets += width;
+            i += Character.charCount(cp);
+        }
+        out.write("\r\n");
+    }
+}
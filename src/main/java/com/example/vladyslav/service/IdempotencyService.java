@@ -0,0 +1,220 @@
+package com.example.vladyslav.service;
+
+import com.example.vladyslav.exception.ConflictException;
+import com.example.vladyslav.exception.OurException;
+import com.example.vladyslav.model.IdempotencyRecord;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Runs a request at most once per Idempotency-Key and hands the stored response to every retry.
+ *
+ * Completed responses live in idempotency_keys (TTL) with a small Caffeine layer in front, so a retry on the
+ * same node does not even reach Mongo. Duplicates arriving while the first one runs wait for it: on this node
+ * through a shared future, across nodes by polling the IN_PROGRESS record. A node that dies mid-request only
+ * holds the key until its lease runs out.
+ */
+@Service
+public class IdempotencyService {
+
+    private static final Duration POLL_INTERVAL = Duration.ofMillis(100);
+
+    private final MongoTemplate mongoTemplate;
+    private final Duration retention;
+    private final Duration lease;
+    private final Duration waitTimeout;
+    private final Cache<String, StoredResponse> hot;
+    private final ConcurrentMap<String, CompletableFuture<StoredResponse>> inFlight = new ConcurrentHashMap<>();
+
+    public IdempotencyService(MongoTemplate mongoTemplate,
+                              @Value("${app.idempotency.retention-hours:24}") long retentionHours,
+                              @Value("${app.idempotency.lease-seconds:60}") long leaseSeconds,
+                              @Value("${app.idempotency.wait-ms:10000}") long waitMs,
+                              @Value("${app.idempotency.cache.max-entries:10000}") long maxEntries,
+                              @Value("${app.idempotency.cache.ttl-minutes:10}") long cacheTtlMinutes) {
+        this.mongoTemplate = mongoTemplate;
+        this.retention = Duration.ofHours(retentionHours);
+        this.lease = Duration.ofSeconds(leaseSeconds);
+        this.waitTimeout = Duration.ofMillis(waitMs);
+        this.hot = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(Duration.ofMinutes(cacheTtlMinutes))
+                .build();
+    }
+
+    /**
+     * Returns the stored response for {@code key}, or runs {@code action} and stores what it produced.
+     * Responses with a 5xx status are not stored, the next retry runs again.
+     *
+     * @throws OurException      when the key was used for a different request
+     * @throws ConflictException when the first request is still running after the wait timeout
+     */
+    public Outcome execute(String key, String fingerprint, Supplier<StoredResponse> action) {
+        StoredResponse cached = hot.getIfPresent(key);
+        if (cached != null) return Outcome.replayed(checked(cached, fingerprint));
+
+        CompletableFuture<StoredResponse> mine = new CompletableFuture<>();
+        CompletableFuture<StoredResponse> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) return Outcome.replayed(checked(await(running), fingerprint));
+
+        try {
+            StoredResponse stored = acquire(key, fingerprint);
+            if (stored != null) {
+                hot.put(key, stored);
+                mine.complete(stored);
+                return Outcome.replayed(checked(stored, fingerprint));
+            }
+
+            StoredResponse response;
+            try {
+                response = action.get();
+            } catch (RuntimeException e) {
+                release(key);
+                throw e;
+            }
+
+            StoredResponse result = new StoredResponse(response.status(), response.contentType(), response.headers(),
+                    response.body(), fingerprint);
+            if (result.status() >= 500) {
+                release(key);
+            } else {
+                complete(key, result);
+                hot.put(key, result);
+            }
+            mine.complete(result);
+            return Outcome.executed(result);
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    // Takes the key for this node, or returns the response another node already stored
+    private StoredResponse acquire(String key, String fingerprint) {
+        long deadline = System.nanoTime() + waitTimeout.toNanos();
+        while (true) {
+            Instant now = Instant.now();
+            try {
+                mongoTemplate.insert(IdempotencyRecord.builder()
+                        .id(key)
+                        .state(IdempotencyRecord.State.IN_PROGRESS)
+                        .fingerprint(fingerprint)
+                        .createdAt(now)
+                        .expireAt(now.plus(lease))
+                        .build());
+                return null;
+            } catch (DuplicateKeyException e) {
+                // Someone has it, look at what they left
+            }
+
+            IdempotencyRecord existing = mongoTemplate.findById(key, IdempotencyRecord.class);
+            if (existing == null) continue; // expired in between
+
+            if (existing.getState() == IdempotencyRecord.State.COMPLETED) {
+                return new StoredResponse(existing.getHttpStatus(), existing.getContentType(), existing.getHeaders(),
+                        existing.getBody(), existing.getFingerprint());
+            }
+            if (!fingerprint.equals(existing.getFingerprint())) throw mismatch();
+
+            // Lease of a node that never finished: take it over, unless another retry just did
+            if (existing.getExpireAt() != null && existing.getExpireAt().isBefore(now)) {
+                Query query = new Query(where("_id").is(key)
+                        .and("state").is(IdempotencyRecord.State.IN_PROGRESS)
+                        .and("expireAt").is(existing.getExpireAt()));
+                Update update = new Update().set("expireAt", now.plus(lease)).set("createdAt", now);
+                if (mongoTemplate.updateFirst(query, update, IdempotencyRecord.class).getModifiedCount() == 1) return null;
+                continue;
+            }
+
+            if (System.nanoTime() >= deadline) throw stillRunning();
+            sleep();
+        }
+    }
+
+    private void complete(String key, StoredResponse response) {
+        Update update = new Update()
+                .set("state", IdempotencyRecord.State.COMPLETED)
+                .set("httpStatus", response.status())
+                .set("contentType", response.contentType())
+                .set("headers", response.headers())
+                .set("body", response.body())
+                .set("expireAt", Instant.now().plus(retention));
+        mongoTemplate.updateFirst(new Query(where("_id").is(key)), update, IdempotencyRecord.class);
+    }
+
+    private void release(String key) {
+        mongoTemplate.remove(new Query(where("_id").is(key).and("state").is(IdempotencyRecord.State.IN_PROGRESS)), IdempotencyRecord.class);
+    }
+
+    private StoredResponse await(CompletableFuture<StoredResponse> running) {
+        try {
+            return running.get(waitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw stillRunning();
+        } catch (ExecutionException e) {
+            // The first attempt failed without a response; this retry may run it once that is cleaned up
+            throw new ConflictException("The original request with this Idempotency-Key failed, please retry.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw stillRunning();
+        }
+    }
+
+    private static StoredResponse checked(StoredResponse stored, String fingerprint) {
+        if (stored.fingerprint() != null && !stored.fingerprint().equals(fingerprint)) throw mismatch();
+        return stored;
+    }
+
+    private static OurException mismatch() {
+        return new OurException("Idempotency-Key was already used for a different request.");
+    }
+
+    private static ConflictException stillRunning() {
+        return new ConflictException("A request with this Idempotency-Key is still being processed.");
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(POLL_INTERVAL.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw stillRunning();
+        }
+    }
+
+    public record StoredResponse(int status, String contentType, Map<String, List<String>> headers, byte[] body,
+                                 String fingerprint) {}
+
+    public record Outcome(StoredResponse response, boolean replayed) {
+
+        static Outcome executed(StoredResponse response) {
+            return new Outcome(response, false);
+        }
+
+        static Outcome replayed(StoredResponse response) {
+            return new Outcome(response, true);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.example.vladyslav.service;
+
+import com.example.vladyslav.event.AppointmentLifecycleEvent;
+import com.example.vladyslav.event.AvailabilityRuleChangedEvent;
+import com.example.vladyslav.event.TimeOffChangedEvent;
+import com.example.vladyslav.model.AvailabilityRule;
+import com.example.vladyslav.model.Doctor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Maintains Doctor.nextAvailableAt (start of the first free slot) so search can filter and sort on it with an index.
+ *
+ * Changes only trigger a recompute when they can move the value: a booking that covers it, or a freed slot
+ * earlier than it. A sweep recomputes doctors whose value has passed, and a slower full sweep picks up days
+ * that roll into the horizon.
+ *
+ * Appointment changes arrive from the outbox, off the request already. Time-off and rule changes are published
+ * inside their request, so their recompute is queued on nextAvailableExecutor; a doctor already queued is not
+ * queued twice.
+ */
+@Service
+public class NextAvailabilityService {
+
+    private static final Logger log = LoggerFactory.getLogger(NextAvailabilityService.class);
+
+    private static final ZoneId UK_TZ = ZoneId.of("Europe/London");
+
+    // Scan a week first, most doctors have a slot in it
+    private static final int FIRST_CHUNK_DAYS = 7;
+
+    private final MongoTemplate mongoTemplate;
+    private final SlotMaskCalculator slotMaskCalculator;
+    private final Executor executor;
+    private final int horizonDays;
+    private final Set<String> queued = ConcurrentHashMap.newKeySet();
+
+    public NextAvailabilityService(MongoTemplate mongoTemplate,
+                                   SlotMaskCalculator slotMaskCalculator,
+                                   @Qualifier("nextAvailableExecutor") Executor executor,
+                                   @Value("${app.next-available.horizon-days:60}") int horizonDays) {
+        this.mongoTemplate = mongoTemplate;
+        this.slotMaskCalculator = slotMaskCalculator;
+        this.executor = executor;
+        this.horizonDays = horizonDays;
+    }
+
+    /**
+     * Recomputes and stores the doctor's first free slot.
+     */
+    public Instant recompute(String doctorId) {
+        Instant next = findNext(doctorId, Instant.now());
+
+        Update update = next != null ? new Update().set("nextAvailableAt", next) : new Update().unset("nextAvailableAt");
+        mongoTemplate.updateFirst(new Query(where("_id").is(doctorId)), update, Doctor.class);
+        return next;
+    }
+
+    private Instant findNext(String doctorId, Instant now) {
+        LocalDate today = LocalDate.now(UK_TZ);
+        LocalDate horizonEnd = today.plusDays(horizonDays - 1);
+
+        // Growing chunks (7, 14, 28, ... days) keep the common case to one small computation
+        LocalDate from = today;
+        int chunkDays = FIRST_CHUNK_DAYS;
+        while (!from.isAfter(horizonEnd)) {
+            LocalDate to = from.plusDays(chunkDays - 1).isAfter(horizonEnd) ? horizonEnd : from.plusDays(chunkDays - 1);
+
+            for (Map.Entry<LocalDate, DaySlotMask> day : slotMaskCalculator.compute(doctorId, from, to).entrySet()) {
+                DaySlotMask mask = day.getValue();
+                for (int slot = mask.nextFree(0); slot >= 0; slot = mask.nextFree(slot + 1)) {
+                    Instant start = ZonedDateTime.of(day.getKey(), mask.slotStart(slot), UK_TZ).toInstant();
+                    if (start.isAfter(now)) return start;
+                }
+            }
+
+            from = to.plusDays(1);
+            chunkDays *= 2;
+        }
+        return null;
+    }
+
+    @EventListener
+    public void onAppointmentChanged(AppointmentLifecycleEvent event) {
+        if (event.change().isOutcome()) return;
+
+        Instant current = current(event.doctorId());
+        boolean affected = switch (event.change()) {
+            case BOOKED -> covers(current, event.start(), event.end());
+            case CANCELLED -> frees(current, event.start());
+            case RESCHEDULED -> covers(current, event.start(), event.end()) || frees(current, event.previousStart());
+            default -> false;
+        };
+        if (affected) recompute(event.doctorId());
+    }
+
+    @EventListener
+    public void onTimeOffChanged(TimeOffChangedEvent event) {
+        recomputeLater(event.doctorId());
+    }
+
+    @EventListener
+    public void onRuleChanged(AvailabilityRuleChangedEvent event) {
+        recomputeLater(event.doctorId());
+    }
+
+    private void recomputeLater(String doctorId) {
+        if (!queued.add(doctorId)) return;
+        try {
+            executor.execute(() -> {
+                // Dequeued before reading, a change that lands meanwhile queues another run
+                queued.remove(doctorId);
+                try {
+                    recompute(doctorId);
+                } catch (RuntimeException e) {
+                    log.warn("Could not recompute nextAvailableAt for doctor {}", doctorId, e);
+                }
+            });
+        } catch (TaskRejectedException e) {
+            queued.remove(doctorId);
+            log.warn("nextAvailableAt queue full, doctor {} is left for the sweep", doctorId);
+        }
+    }
+
+    /**
+     * Doctors whose first free slot has started since it was computed.
+     */
+    @Scheduled(initialDelayString = "${app.next-available.initial-delay-ms:60000}",
+               fixedDelayString = "${app.next-available.sweep-ms:300000}")
+    public void refreshPassed() {
+        Query query = new Query(where("nextAvailableAt").lt(Instant.now()));
+        query.fields().include("_id");
+
+        List<Doctor> passed = mongoTemplate.find(query, Doctor.class);
+        passed.forEach(d -> recompute(d.getId()));
+        if (!passed.isEmpty()) log.debug("Recomputed nextAvailableAt for {} doctors", passed.size());
+    }
+
+    /**
+     * Every doctor with rules, so slots rolling into the horizon (and any missed change) are picked up.
+     */
+    @Scheduled(initialDelayString = "${app.next-available.initial-delay-ms:60000}",
+               fixedDelayString = "${app.next-available.full-sweep-ms:3600000}")
+    public void refreshAll() {
+        List<String> doctorIds = mongoTemplate.findDistinct(new Query(), "doctorId", AvailabilityRule.class, String.class);
+        for (String doctorId : doctorIds) {
+            try {
+                recompute(doctorId);
+            } catch (RuntimeException e) {
+                log.warn("Could not recompute nextAvailableAt for doctor {}", doctorId, e);
+            }
+        }
+    }
+
+    private Instant current(String doctorId) {
+        Query query = new Query(where("_id").is(doctorId));
+        query.fields().include("nextAvailableAt");
+        Doctor doctor = mongoTemplate.findOne(query, Doctor.class);
+        return doctor != null ? doctor.getNextAvailableAt() : null;
+    }
+
+    // The stored slot was just booked
+    private static boolean covers(Instant current, Instant start, Instant end) {
+        return current != null && start != null && end != null && !current.isBefore(start) && current.isBefore(end);
+    }
+
+    // A slot earlier than the stored one (or the first one at all) may have opened up
+    private static boolean frees(Instant current, Instant freedStart) {
+        return freedStart != null && freedStart.isAfter(Instant.now()) && (current == null || freedStart.isBefore(current));
+    }
+}
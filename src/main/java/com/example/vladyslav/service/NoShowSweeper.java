@@ -0,0 +1,161 @@
+package com.example.vladyslav.service;
+
+import com.example.vladyslav.event.AppointmentChangedEvent;
+import com.example.vladyslav.model.Appointment;
+import com.example.vladyslav.model.SweepCheckpoint;
+import com.example.vladyslav.model.enums.AppointmentStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Moves SCHEDULED appointments that ended more than app.no-show.grace-minutes ago to NO_SHOW.
+ *
+ * Works through end times in windows, one updateMany per window on idx_status_end, and stores the end of the last
+ * finished window as a watermark in sweep_checkpoints, so a restarted or replacement node resumes where the last
+ * one stopped. Only the node holding the checkpoint's lease sweeps; the updates only match SCHEDULED rows, so a
+ * window swept twice after a lease takeover changes nothing. Rows that ended before the watermark but were still
+ * SCHEDULED (written late) are picked up in one extra update at the start of a run.
+ *
+ * Each window also writes one NO_SHOW outbox event per affected doctor. The doctors are read with a distinct
+ * on the same filter, in the same transaction as the update.
+ */
+@Service
+public class NoShowSweeper {
+
+    private static final Logger log = LoggerFactory.getLogger(NoShowSweeper.class);
+
+    static final String NAME = "no-show";
+
+    private final MongoTemplate mongoTemplate;
+    private final AppointmentOutbox outbox;
+    private final Duration grace;
+    private final Duration window;
+    private final int maxWindows;
+    private final Duration lease;
+    private final String owner = UUID.randomUUID().toString();
+
+    public NoShowSweeper(MongoTemplate mongoTemplate,
+                         AppointmentOutbox outbox,
+                         @Value("${app.no-show.grace-minutes:60}") long graceMinutes,
+                         @Value("${app.no-show.window-hours:24}") long windowHours,
+                         @Value("${app.no-show.max-windows:50}") int maxWindows,
+                         @Value("${app.no-show.lease-seconds:300}") long leaseSeconds) {
+        this.mongoTemplate = mongoTemplate;
+        this.outbox = outbox;
+        this.grace = Duration.ofMinutes(graceMinutes);
+        this.window = Duration.ofHours(windowHours);
+        this.maxWindows = maxWindows;
+        this.lease = Duration.ofSeconds(leaseSeconds);
+    }
+
+    @Scheduled(fixedDelayString = "${app.no-show.sweep-ms:300000}", initialDelayString = "${app.no-show.initial-delay-ms:60000}")
+    public void sweep() {
+        try {
+            long moved = sweepOnce(Instant.now());
+            if (moved > 0) log.info("Marked {} past appointments as NO_SHOW", moved);
+        } catch (RuntimeException e) {
+            log.warn("No-show sweep failed, resuming from the checkpoint next time", e);
+        }
+    }
+
+    /**
+     * Sweeps up to app.no-show.max-windows windows ending at most at {@code now - grace}.
+     *
+     * @return appointments moved to NO_SHOW
+     */
+    long sweepOnce(Instant now) {
+        SweepCheckpoint checkpoint = acquireLease(now);
+        if (checkpoint == null) return 0;
+
+        Instant cutoff = now.minus(grace);
+        Instant oldest = oldestScheduledEnd();
+        if (oldest == null || !oldest.isBefore(cutoff)) {
+            // Nothing to do; moving the watermark keeps the next run from walking empty windows
+            advance(cutoff);
+            return 0;
+        }
+
+        long moved = 0;
+        Instant from = checkpoint.getWatermark();
+        if (from == null || oldest.isAfter(from)) {
+            from = oldest;
+        } else if (oldest.isBefore(from)) {
+            moved += markNoShow(oldest, from);
+        }
+
+        for (int i = 0; i < maxWindows && from.isBefore(cutoff); i++) {
+            Instant to = min(from.plus(window), cutoff);
+            moved += markNoShow(from, to);
+            if (!advance(to)) break;
+            from = to;
+        }
+        return moved;
+    }
+
+    private long markNoShow(Instant from, Instant to) {
+        Query query = new Query(where("status").is(AppointmentStatus.SCHEDULED).and("end").gte(from).lt(to));
+        Update update = new Update()
+                .set("status", AppointmentStatus.NO_SHOW)
+                .set("updatedAt", Instant.now())
+                .inc("version", 1);
+        Marked marked = outbox.writeAll(() -> {
+            List<String> doctorIds = mongoTemplate.findDistinct(query, "doctorId", Appointment.class, String.class);
+            long count = doctorIds.isEmpty() ? 0 : mongoTemplate.updateMulti(query, update, Appointment.class).getModifiedCount();
+            return new Marked(doctorIds, count);
+        }, m -> m.count() == 0 ? List.of() : m.doctorIds().stream()
+                .filter(Objects::nonNull)
+                .map(doctorId -> AppointmentChangedEvent.noShows(doctorId, from, to))
+                .toList());
+        return marked.count();
+    }
+
+    private record Marked(List<String> doctorIds, long count) {}
+
+    private Instant oldestScheduledEnd() {
+        Query query = new Query(where("status").is(AppointmentStatus.SCHEDULED)).with(Sort.by("end")).limit(1);
+        query.fields().include("end");
+        Appointment oldest = mongoTemplate.findOne(query, Appointment.class);
+        return oldest != null ? oldest.getEnd() : null;
+    }
+
+    private SweepCheckpoint acquireLease(Instant now) {
+        Query query = new Query(where("_id").is(NAME)
+                .orOperator(where("owner").is(owner), where("leaseUntil").lt(now)));
+        Update update = new Update().set("owner", owner).set("leaseUntil", now.plus(lease));
+        try {
+            return mongoTemplate.findAndModify(query, update,
+                    FindAndModifyOptions.options().upsert(true).returnNew(true), SweepCheckpoint.class);
+        } catch (DuplicateKeyException e) {
+            // Another node is sweeping
+            return null;
+        }
+    }
+
+    // False when the lease was lost, the new owner carries on from the stored watermark
+    private boolean advance(Instant watermark) {
+        Query ours = new Query(where("_id").is(NAME).and("owner").is(owner));
+        Update update = new Update().max("watermark", watermark).set("updatedAt", Instant.now());
+        return mongoTemplate.updateFirst(ours, update, SweepCheckpoint.class).getMatchedCount() > 0;
+    }
+
+    private static Instant min(Instant a, Instant b) {
+        return a.isBefore(b) ? a : b;
+    }
+}
@@ -0,0 +1,195 @@
+package com.example.vladyslav.service;
+
+import com.example.vladyslav.event.AppointmentLifecycleEvent;
+import com.example.vladyslav.model.OutboxCheckpoint;
+import com.example.vladyslav.model.OutboxEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Delivers outbox_events to in-process listeners as AppointmentLifecycleEvents.
+ *
+ * One node at a time holds the lease on the checkpoint document and reads the outbox in _id order, a batch per
+ * round trip. Each doctor's events in a batch are delivered one after another, different doctors in parallel.
+ * When one of a doctor's events fails, it and that doctor's later events are marked held and retried first on
+ * every round, in order, until they are delivered or dead-lettered. The checkpoint moves past the whole batch,
+ * so one doctor's failing listener does not make other doctors' events deliver again. Delivery is at least once:
+ * after a crash or a lease takeover some events are delivered again.
+ *
+ * Events younger than app.outbox.settle-ms are left for the next round: ObjectIds are taken before the commit,
+ * and an event committed after a later one was checkpointed would otherwise be skipped.
+ */
+@Service
+public class OutboxDispatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxDispatcher.class);
+
+    static final String NAME = "appointments";
+
+    private final MongoTemplate mongoTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Executor executor;
+    private final int batchSize;
+    private final Duration settle;
+    private final Duration lease;
+    private final int maxAttempts;
+    private final String owner = UUID.randomUUID().toString();
+
+    public OutboxDispatcher(MongoTemplate mongoTemplate,
+                            ApplicationEventPublisher eventPublisher,
+                            @Qualifier("outboxExecutor") Executor executor,
+                            @Value("${app.outbox.batch-size:200}") int batchSize,
+                            @Value("${app.outbox.settle-ms:2000}") long settleMillis,
+                            @Value("${app.outbox.lease-seconds:30}") long leaseSeconds,
+                            @Value("${app.outbox.max-attempts:10}") int maxAttempts) {
+        this.mongoTemplate = mongoTemplate;
+        this.eventPublisher = eventPublisher;
+        this.executor = executor;
+        this.batchSize = batchSize;
+        this.settle = Duration.ofMillis(settleMillis);
+        this.lease = Duration.ofSeconds(leaseSeconds);
+        this.maxAttempts = maxAttempts;
+    }
+
+    @Scheduled(fixedDelayString = "${app.outbox.poll-ms:500}")
+    public void poll() {
+        try {
+            // Keep going while there is a backlog and it is moving
+            while (dispatchBatch() == batchSize) {
+                log.debug("Outbox backlog, dispatching next batch");
+            }
+        } catch (RuntimeException e) {
+            log.warn("Outbox dispatch failed, retrying on the next poll", e);
+        }
+    }
+
+    /**
+     * Retries held events and delivers the next batch if this node holds the lease.
+     *
+     * @return how many events the checkpoint moved past
+     */
+    int dispatchBatch() {
+        OutboxCheckpoint checkpoint = acquireLease();
+        if (checkpoint == null) return 0;
+
+        // Only the failing doctors' events, each is given up on after max-attempts
+        Query heldQuery = new Query(where("held").is(true).and("deadLettered").ne(true)).with(Sort.by("_id"));
+        List<OutboxEvent> held = mongoTemplate.find(heldQuery, OutboxEvent.class);
+
+        Criteria range = where("_id").lt(settledBoundary());
+        if (checkpoint.getLastEventId() != null) range = range.gt(checkpoint.getLastEventId());
+        Query query = new Query(range.and("deadLettered").ne(true)).with(Sort.by("_id")).limit(batchSize);
+        List<OutboxEvent> batch = mongoTemplate.find(query, OutboxEvent.class);
+        if (held.isEmpty() && batch.isEmpty()) return 0;
+
+        // Held events are all behind the checkpoint, so each doctor's events stay in _id order
+        Map<String, List<OutboxEvent>> byDoctor = Stream.concat(held.stream(), batch.stream())
+                .collect(Collectors.groupingBy(OutboxEvent::getDoctorId, LinkedHashMap::new, Collectors.toList()));
+        List<CompletableFuture<List<OutboxEvent>>> chains = byDoctor.values().stream()
+                .map(events -> CompletableFuture.supplyAsync(() -> deliverInOrder(events), executor))
+                .toList();
+        Set<String> undelivered = chains.stream()
+                .map(CompletableFuture::join)
+                .flatMap(List::stream)
+                .map(OutboxEvent::getId)
+                .collect(Collectors.toSet());
+
+        // Marked before the checkpoint moves, so a crash in between delivers them again rather than losing them
+        List<String> toHold = batch.stream().map(OutboxEvent::getId).filter(undelivered::contains).toList();
+        if (!toHold.isEmpty()) {
+            mongoTemplate.updateMulti(new Query(where("_id").in(toHold)), new Update().set("held", true), OutboxEvent.class);
+        }
+        List<String> done = held.stream().map(OutboxEvent::getId).filter(id -> !undelivered.contains(id)).toList();
+        if (!done.isEmpty()) {
+            mongoTemplate.updateMulti(new Query(where("_id").in(done)), new Update().unset("held"), OutboxEvent.class);
+        }
+
+        if (!batch.isEmpty()) saveCheckpoint(batch.get(batch.size() - 1).getId());
+        return batch.size();
+    }
+
+    // Returns the events from the one the chain stopped at onwards, empty when all were delivered
+    private List<OutboxEvent> deliverInOrder(List<OutboxEvent> events) {
+        for (int i = 0; i < events.size(); i++) {
+            OutboxEvent event = events.get(i);
+            try {
+                eventPublisher.publishEvent(AppointmentLifecycleEvent.of(event));
+            } catch (RuntimeException e) {
+                if (!deadLetter(event, e)) return events.subList(i, events.size());
+            }
+        }
+        return List.of();
+    }
+
+    // Counts the failed attempt; true when the event is given up on and the chain may continue
+    private boolean deadLetter(OutboxEvent event, RuntimeException cause) {
+        int attempts = event.getAttempts() + 1;
+        boolean giveUp = attempts >= maxAttempts;
+        Update update = new Update().set("attempts", attempts);
+        if (giveUp) update.set("deadLettered", true);
+        mongoTemplate.updateFirst(new Query(where("_id").is(event.getId())), update, OutboxEvent.class);
+
+        if (giveUp) {
+            log.error("Outbox event {} ({} of appointment {}) dead-lettered after {} attempts",
+                    event.getId(), event.getChange(), event.getAppointmentId(), attempts, cause);
+        } else {
+            log.warn("Delivering outbox event {} failed (attempt {}), doctor {} is held back until it succeeds",
+                    event.getId(), attempts, event.getDoctorId(), cause);
+        }
+        return giveUp;
+    }
+
+    private OutboxCheckpoint acquireLease() {
+        Instant now = Instant.now();
+        Query query = new Query(where("_id").is(NAME)
+                .orOperator(where("owner").is(owner), where("leaseUntil").lt(now)));
+        Update update = new Update().set("owner", owner).set("leaseUntil", now.plus(lease));
+        try {
+            return mongoTemplate.findAndModify(query, update,
+                    FindAndModifyOptions.options().upsert(true).returnNew(true), OutboxCheckpoint.class);
+        } catch (DuplicateKeyException e) {
+            // The document exists and another node's lease is still running
+            return null;
+        }
+    }
+
+    private void saveCheckpoint(String lastEventId) {
+        Query ours = new Query(where("_id").is(NAME).and("owner").is(owner));
+        Update update = new Update().set("lastEventId", lastEventId).set("updatedAt", Instant.now());
+        if (mongoTemplate.updateFirst(ours, update, OutboxCheckpoint.class).getModifiedCount() == 0) {
+            log.info("Outbox lease lost before checkpointing {}, the new owner will deliver those events again", lastEventId);
+        }
+    }
+
+    // Smallest ObjectId of the first second not yet settled
+    private String settledBoundary() {
+        long seconds = Instant.now().minus(settle).getEpochSecond();
+        return String.format("%08x%016x", seconds, 0L);
+    }
+}
@@ -6,7 +6,6 @@ import com.example.vladyslav.exception.OurException;
 import com.example.vladyslav.model.*;
 import com.example.vladyslav.model.enums.AppointmentStatus;
 import com.example.vladyslav.model.enums.Role;
-import com.example.vladyslav.repository.AppointmentRepository;
 import com.example.vladyslav.repository.DoctorRepository;
 import com.example.vladyslav.repository.PatientRepository;
 import com.example.vladyslav.repository.ReviewRepository;
@@ -29,7 +28,7 @@ public class ReviewService {
     private final ReviewRepository reviewRepository;
     private final DoctorRepository doctorRepository;
     private final PatientRepository patientRepository;
-    private final AppointmentRepository appointmentRepository;
+    private final AppointmentHistory appointmentHistory;
 
     public ReviewDTO createReviewForDoctor( ReviewCreateRequest request){
         // 1) Basic validation
@@ -45,8 +44,8 @@ public class ReviewService {
         Patient patient = patientRepository.findById(request.getPatientId())
                 .orElseThrow(()-> new NotFoundException("Patient not found: " + request.getPatientId()));
 
-        // 4) Retrieve appointment
-        Appointment appointment = appointmentRepository.findById(request.getAppointmentId())
+        // 4) Retrieve appointment, older visits may already be archived
+        Appointment appointment = appointmentHistory.findById(request.getAppointmentId())
                 .orElseThrow(()-> new NotFoundException("Appointment not found: " + request.getAppointmentId()));
 
         // 4) Ensure that this appointment is ATTENDED
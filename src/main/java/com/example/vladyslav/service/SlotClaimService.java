@@ -0,0 +1,224 @@
+package com.example.vladyslav.service;
+
+import com.example.vladyslav.exception.ConflictException;
+import com.example.vladyslav.model.Appointment;
+import com.example.vladyslav.model.SlotClaim;
+import com.example.vladyslav.model.enums.AppointmentStatus;
+import com.example.vladyslav.repository.SlotClaimRepository;
+import com.mongodb.ErrorCategory;
+import com.mongodb.bulk.BulkWriteError;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Database-enforced ownership of calendar time. A booking inserts one SlotClaim per 5-minute bucket it covers;
+ * the bucket is the document _id, so two overlapping bookings cannot both succeed, on any node.
+ *
+ * Slot grids are expected to be multiples of 5 minutes; on other grids adjacent bookings may share a bucket
+ * and be reported as a conflict.
+ */
+@Service
+public class SlotClaimService {
+
+    private static final Logger log = LoggerFactory.getLogger(SlotClaimService.class);
+
+    static final int BUCKET_MINUTES = 5;
+    private static final long BUCKET_SECONDS = BUCKET_MINUTES * 60L;
+
+    // Kept a little past the appointment end, then removed by the TTL index
+    private static final Duration RETENTION = Duration.ofDays(1);
+
+    private final SlotClaimRepository repository;
+    private final MongoTemplate mongoTemplate;
+    private final boolean backfillOnStartup;
+
+    public SlotClaimService(SlotClaimRepository repository,
+                            MongoTemplate mongoTemplate,
+                            @Value("${app.booking.claims.backfill:true}") boolean backfillOnStartup) {
+        this.repository = repository;
+        this.mongoTemplate = mongoTemplate;
+        this.backfillOnStartup = backfillOnStartup;
+    }
+
+    /**
+     * Claims [start, end) for the appointment.
+     *
+     * @return ids of the claimed buckets
+     * @throws ConflictException when any part is held by another appointment
+     */
+    public List<String> claim(String doctorId, String appointmentId, Instant start, Instant end) {
+        return claim(doctorId, appointmentId, start, end, List.of());
+    }
+
+    /**
+     * Like {@link #claim(String, String, Instant, Instant)} but skips buckets the appointment already holds
+     * (reschedule to an overlapping time).
+     *
+     * @return ids of the newly claimed buckets only
+     */
+    public List<String> claim(String doctorId, String appointmentId, Instant start, Instant end, Collection<String> alreadyHeld) {
+        return claim(doctorId, appointmentId, start, end, alreadyHeld, end.plus(RETENTION));
+    }
+
+    /**
+     * Claims [start, end) for a hold. The claims expire with the hold unless {@link #keep} extends them.
+     */
+    public List<String> claimUntil(String doctorId, String holdId, Instant start, Instant end, Instant expireAt) {
+        return claim(doctorId, holdId, start, end, List.of(), expireAt);
+    }
+
+    /**
+     * Keeps the owner's claims until the end of its appointment (a confirmed hold).
+     */
+    public void keep(String appointmentId, Instant end) {
+        mongoTemplate.updateMulti(new Query(where("appointmentId").is(appointmentId)),
+                new Update().set("expireAt", end.plus(RETENTION)), SlotClaim.class);
+    }
+
+    private List<String> claim(String doctorId, String appointmentId, Instant start, Instant end,
+                               Collection<String> alreadyHeld, Instant expireAt) {
+        List<SlotClaim> claims = new ArrayList<>();
+        for (Instant bucket = bucketStart(start); bucket.isBefore(end); bucket = bucket.plusSeconds(BUCKET_SECONDS)) {
+            String id = idFor(doctorId, bucket);
+            if (alreadyHeld.contains(id)) continue;
+
+            claims.add(SlotClaim.builder()
+                    .id(id)
+                    .doctorId(doctorId)
+                    .appointmentId(appointmentId)
+                    .bucketStart(bucket)
+                    .expireAt(expireAt)
+                    .build());
+        }
+        List<String> ids = claims.stream().map(SlotClaim::getId).toList();
+        if (claims.isEmpty()) return ids;
+
+        try {
+            repository.insert(claims);
+        } catch (DuplicateKeyException e) {
+            // The insert stops at the first taken bucket, drop whatever got in before it
+            repository.deleteByAppointmentIdAndIdIn(appointmentId, ids);
+            throw new ConflictException("Selected time is no longer available for this doctor.");
+        }
+        return ids;
+    }
+
+    /**
+     * Claims several appointments of one doctor with a single unordered bulk insert (series booking).
+     * Appointments that hit a taken bucket have their partial claims removed again.
+     *
+     * @return ids of the appointments that could not be claimed
+     */
+    public Set<String> claimAll(Collection<Appointment> appointments) {
+        List<SlotClaim> claims = new ArrayList<>();
+        for (Appointment a : appointments) {
+            for (Instant bucket = bucketStart(a.getStart()); bucket.isBefore(a.getEnd()); bucket = bucket.plusSeconds(BUCKET_SECONDS)) {
+                claims.add(SlotClaim.builder()
+                        .id(idFor(a.getDoctorId(), bucket))
+                        .doctorId(a.getDoctorId())
+                        .appointmentId(a.getId())
+                        .bucketStart(bucket)
+                        .expireAt(a.getEnd().plus(RETENTION))
+                        .build());
+            }
+        }
+        if (claims.isEmpty()) return Set.of();
+
+        try {
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, SlotClaim.class).insert(claims).execute();
+            return Set.of();
+        } catch (BulkOperationException e) {
+            Set<String> lost = new HashSet<>();
+            for (BulkWriteError error : e.getErrors()) {
+                if (ErrorCategory.fromErrorCode(error.getCode()) != ErrorCategory.DUPLICATE_KEY) throw e;
+                lost.add(claims.get(error.getIndex()).getAppointmentId());
+            }
+            releaseAll(lost);
+            return lost;
+        }
+    }
+
+    public List<String> bucketIds(String doctorId, Instant start, Instant end) {
+        List<String> ids = new ArrayList<>();
+        for (Instant bucket = bucketStart(start); bucket.isBefore(end); bucket = bucket.plusSeconds(BUCKET_SECONDS)) {
+            ids.add(idFor(doctorId, bucket));
+        }
+        return ids;
+    }
+
+    public void release(String appointmentId, Collection<String> ids) {
+        if (!ids.isEmpty()) repository.deleteByAppointmentIdAndIdIn(appointmentId, ids);
+    }
+
+    public void releaseAll(String appointmentId) {
+        repository.deleteByAppointmentId(appointmentId);
+    }
+
+    public void releaseAll(Collection<String> appointmentIds) {
+        if (!appointmentIds.isEmpty()) repository.deleteByAppointmentIdIn(appointmentIds);
+    }
+
+    /**
+     * Appointments booked before claims existed get theirs, so new bookings cannot overlap them from another node.
+     * Upserts, so running it on every start is harmless.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        if (!backfillOnStartup) return;
+
+        Query query = new Query(where("status").is(AppointmentStatus.SCHEDULED).and("end").gt(Instant.now()));
+        query.fields().include("doctorId").include("start").include("end");
+
+        int count = 0;
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, SlotClaim.class);
+        try (Stream<Appointment> appointments = mongoTemplate.stream(query, Appointment.class)) {
+            for (Appointment a : (Iterable<Appointment>) appointments::iterator) {
+                if (a.getStart() == null || a.getEnd() == null) continue;
+                for (Instant bucket = bucketStart(a.getStart()); bucket.isBefore(a.getEnd()); bucket = bucket.plusSeconds(BUCKET_SECONDS)) {
+                    Update update = new Update()
+                            .setOnInsert("doctorId", a.getDoctorId())
+                            .setOnInsert("appointmentId", a.getId())
+                            .setOnInsert("bucketStart", bucket)
+                            .setOnInsert("expireAt", a.getEnd().plus(RETENTION));
+                    bulk.upsert(new Query(where("_id").is(idFor(a.getDoctorId(), bucket))), update);
+                    if (++count % 1_000 == 0) {
+                        bulk.execute();
+                        bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, SlotClaim.class);
+                    }
+                }
+            }
+        }
+        if (count % 1_000 != 0) bulk.execute();
+        log.info("Slot claims backfilled: {} buckets", count);
+    }
+
+    private static Instant bucketStart(Instant instant) {
+        long epochSecond = instant.getEpochSecond();
+        return Instant.ofEpochSecond(epochSecond - Math.floorMod(epochSecond, BUCKET_SECONDS));
+    }
+
+    private static String idFor(String doctorId, Instant bucket) {
+        return doctorId + ":" + (bucket.getEpochSecond() / 60);
+    }
+}
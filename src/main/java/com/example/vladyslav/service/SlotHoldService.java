@@ -0,0 +1,263 @@
+package com.example.vladyslav.service;
+
+import com.example.vladyslav.dto.AppointmentDTO;
+import com.example.vladyslav.dto.SlotHoldDTO;
+import com.example.vladyslav.event.AppointmentChangedEvent;
+import com.example.vladyslav.event.SlotHoldChangedEvent;
+import com.example.vladyslav.exception.ConflictException;
+import com.example.vladyslav.exception.NotFoundException;
+import com.example.vladyslav.exception.OurException;
+import com.example.vladyslav.model.Appointment;
+import com.example.vladyslav.model.AvailabilityRule;
+import com.example.vladyslav.model.Doctor;
+import com.example.vladyslav.model.Patient;
+import com.example.vladyslav.model.SlotHold;
+import com.example.vladyslav.model.User;
+import com.example.vladyslav.model.enums.AppointmentStatus;
+import com.example.vladyslav.repository.AppointmentRepository;
+import com.example.vladyslav.repository.DoctorRepository;
+import com.example.vladyslav.repository.PatientRepository;
+import com.example.vladyslav.requests.HoldSlotRequest;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Short-lived holds for the checkout flow: choosing a slot reserves it for a few minutes, confirming books it.
+ *
+ * A hold claims its time in slot_claims like an appointment, with the claims expiring together with the hold,
+ * so bookings on any node see it as taken; availability and the booking context also list live holds as busy.
+ * Mongo's TTL monitor removes expired holds eventually (it runs about once a minute); the in-memory expiry wheel
+ * releases the ones placed on this node within a second of their deadline.
+ */
+@Service
+public class SlotHoldService {
+
+    private static final Logger log = LoggerFactory.getLogger(SlotHoldService.class);
+
+    private static final ZoneId UK_TZ = ZoneId.of("Europe/London");
+
+    // A hold must have this much life left to be confirmed, so its claims cannot expire mid-confirmation
+    private static final Duration CONFIRM_MARGIN = Duration.ofSeconds(5);
+
+    private final MongoTemplate mongoTemplate;
+    private final AppointmentRepository appointmentRepository;
+    private final DoctorRepository doctorRepository;
+    private final PatientRepository patientRepository;
+    private final AppointmentService appointmentService;
+    private final BookingContextLoader bookingContextLoader;
+    private final BookingLocks bookingLocks;
+    private final SlotClaimService slotClaimService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final AppointmentOutbox outbox;
+    private final AppointmentSnapshots snapshots;
+    private final Duration holdDuration;
+    private final ExpiryWheel<String> wheel;
+
+    public SlotHoldService(MongoTemplate mongoTemplate,
+                           AppointmentRepository appointmentRepository,
+                           DoctorRepository doctorRepository,
+                           PatientRepository patientRepository,
+                           AppointmentService appointmentService,
+                           BookingContextLoader bookingContextLoader,
+                           BookingLocks bookingLocks,
+                           SlotClaimService slotClaimService,
+                           ApplicationEventPublisher eventPublisher,
+                           AppointmentOutbox outbox,
+                           AppointmentSnapshots snapshots,
+                           @Value("${app.holds.minutes:10}") long holdMinutes) {
+        this.mongoTemplate = mongoTemplate;
+        this.appointmentRepository = appointmentRepository;
+        this.doctorRepository = doctorRepository;
+        this.patientRepository = patientRepository;
+        this.appointmentService = appointmentService;
+        this.bookingContextLoader = bookingContextLoader;
+        this.bookingLocks = bookingLocks;
+        this.slotClaimService = slotClaimService;
+        this.eventPublisher = eventPublisher;
+        this.outbox = outbox;
+        this.snapshots = snapshots;
+        this.holdDuration = Duration.ofMinutes(holdMinutes);
+        // One-second ticks, one revolution a bit longer than a hold
+        this.wheel = new ExpiryWheel<>(Duration.ofSeconds(1), (int) holdDuration.toSeconds() + 60, Instant.now());
+    }
+
+    public SlotHoldDTO hold(HoldSlotRequest request) {
+        if (request.getDoctorId() == null || request.getPatientId() == null) {
+            throw new OurException("doctorId and patientId are required.");
+        }
+
+        final LocalDate date;
+        final LocalTime time;
+        try {
+            date = LocalDate.parse(request.getDate()); // yyyy-MM-dd
+            time = LocalTime.parse(request.getTime()); // HH:mm
+        } catch (DateTimeException | NullPointerException e) {
+            throw new OurException("Invalid date/time. Expected date yyyy-MM-dd and time HH:mm");
+        }
+        if (date.isBefore(LocalDate.now(UK_TZ))) throw new OurException("Cannot book an appointment in the past");
+
+        Instant dayStart = date.atStartOfDay(UK_TZ).toInstant();
+        Instant dayEnd = date.plusDays(1).atStartOfDay(UK_TZ).toInstant();
+
+        SlotHold hold = bookingLocks.withDoctorLock(request.getDoctorId(), () -> {
+            BookingContext context = bookingContextLoader.load(request.getDoctorId(), date.getDayOfWeek().getValue(), dayStart, dayEnd);
+            AvailabilityRule rule = context.requireRule();
+            Instant start = AppointmentService.alignedStart(rule, date, time);
+            if (!start.isAfter(Instant.now())) throw new OurException("Cannot book an appointment in the past");
+
+            // Validated as the appointment it would become
+            Appointment draft = Appointment.builder()
+                    .id(new ObjectId().toHexString())
+                    .doctorId(request.getDoctorId())
+                    .patientId(request.getPatientId())
+                    .start(start)
+                    .end(start.plus(Duration.ofMinutes(rule.getSlotMinutes())))
+                    .build();
+            context.ensureNotDuringTimeOff(draft);
+            context.ensureNoOverlap(draft);
+
+            Instant expireAt = Instant.now().plus(holdDuration);
+            slotClaimService.claimUntil(draft.getDoctorId(), draft.getId(), draft.getStart(), draft.getEnd(), expireAt);
+
+            SlotHold created = SlotHold.builder()
+                    .id(draft.getId())
+                    .doctorId(draft.getDoctorId())
+                    .patientId(draft.getPatientId())
+                    .concern(request.getConcern())
+                    .start(draft.getStart())
+                    .end(draft.getEnd())
+                    .expireAt(expireAt)
+                    .build();
+            try {
+                return mongoTemplate.insert(created);
+            } catch (RuntimeException e) {
+                slotClaimService.releaseAll(created.getId());
+                throw e;
+            }
+        });
+
+        wheel.schedule(hold.getId(), hold.getExpireAt());
+        eventPublisher.publishEvent(new SlotHoldChangedEvent(hold.getDoctorId(), hold.getStart(), hold.getEnd()));
+        return toDto(hold);
+    }
+
+    /**
+     * Turns a live hold into a SCHEDULED appointment with the same id.
+     *
+     * Removing the hold (conditional on it still being live, so confirmation and expiry cannot both win), inserting
+     * the appointment and keeping its claims run in the outbox transaction: if any of it fails the patient still
+     * holds the slot. The claims already carry the id and are only extended to the appointment's end.
+     */
+    public AppointmentDTO confirm(String holdId, User user) {
+        SlotHold hold = owned(holdId, user);
+        Appointment appointment = Appointment.builder()
+                .id(hold.getId())
+                .doctorId(hold.getDoctorId())
+                .patientId(hold.getPatientId())
+                .start(hold.getStart())
+                .end(hold.getEnd())
+                .status(AppointmentStatus.SCHEDULED)
+                .concern(hold.getConcern())
+                .build();
+        snapshots.fill(appointment);
+
+        Query live = new Query(where("_id").is(holdId).and("expireAt").gt(Instant.now().plus(CONFIRM_MARGIN)));
+        try {
+            outbox.write(() -> {
+                if (mongoTemplate.findAndRemove(live, SlotHold.class) == null) {
+                    throw new ConflictException("Hold " + holdId + " has expired.");
+                }
+                Appointment booked = appointmentRepository.insert(appointment);
+                slotClaimService.keep(hold.getId(), hold.getEnd());
+                return booked;
+            }, booked -> AppointmentChangedEvent.of(booked, AppointmentChangedEvent.Change.BOOKED));
+        } catch (ConflictException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            restore(hold);
+            throw e;
+        }
+        wheel.cancel(holdId);
+
+        return appointmentService.toDto(appointment);
+    }
+
+    public void release(String holdId, User user) {
+        owned(holdId, user);
+        SlotHold hold = mongoTemplate.findAndRemove(new Query(where("_id").is(holdId)), SlotHold.class);
+        if (hold == null) return;
+        wheel.cancel(holdId);
+        freed(hold);
+    }
+
+    /**
+     * Releases holds of this node whose time is up, without waiting for the TTL monitor.
+     */
+    @Scheduled(fixedDelayString = "${app.holds.tick-ms:1000}")
+    public void expireDue() {
+        Instant now = Instant.now();
+        for (String holdId : wheel.advance(now)) {
+            try {
+                // Only if still unconfirmed and really expired; a confirmed hold is gone already
+                Query expired = new Query(where("_id").is(holdId).and("expireAt").lte(now));
+                SlotHold hold = mongoTemplate.findAndRemove(expired, SlotHold.class);
+                if (hold != null) freed(hold);
+            } catch (RuntimeException e) {
+                log.warn("Could not expire hold {}, left to the TTL index", holdId, e);
+            }
+        }
+    }
+
+    // The hold's patient, its doctor or an admin; anyone else gets the same 404 as for a missing hold
+    private SlotHold owned(String holdId, User user) {
+        SlotHold hold = mongoTemplate.findById(holdId, SlotHold.class);
+        if (hold == null || !canAccess(hold, user)) throw new NotFoundException("Hold not found with id:" + holdId);
+        return hold;
+    }
+
+    private boolean canAccess(SlotHold hold, User user) {
+        return switch (user.getRole()) {
+            case ADMIN -> true;
+            case DOCTOR -> doctorRepository.findByUserId(user.getId()).map(Doctor::getId)
+                    .filter(hold.getDoctorId()::equals).isPresent();
+            case PATIENT -> patientRepository.findByUserId(user.getId()).map(Patient::getId)
+                    .filter(hold.getPatientId()::equals).isPresent();
+            default -> false;
+        };
+    }
+
+    // A rolled back transaction left the hold in place; without transactions it was removed and is put back
+    private void restore(SlotHold hold) {
+        try {
+            mongoTemplate.insert(hold);
+        } catch (DuplicateKeyException e) {
+            // Still there
+        }
+    }
+
+    private void freed(SlotHold hold) {
+        slotClaimService.releaseAll(hold.getId());
+        eventPublisher.publishEvent(new SlotHoldChangedEvent(hold.getDoctorId(), hold.getStart(), hold.getEnd()));
+    }
+
+    private static SlotHoldDTO toDto(SlotHold hold) {
+        return new SlotHoldDTO(hold.getId(), hold.getDoctorId(), hold.getPatientId(), hold.getStart(), hold.getEnd(), hold.getExpireAt());
+    }
+}
@@ -0,0 +1,260 @@
+package com.example.vladyslav.service;
+
+import com.example.vladyslav.event.AppointmentLifecycleEvent;
+import com.example.vladyslav.event.AvailabilityRuleChangedEvent;
+import com.example.vladyslav.event.SlotHoldChangedEvent;
+import com.example.vladyslav.event.TimeOffChangedEvent;
+import com.example.vladyslav.model.AvailabilityRule;
+import com.example.vladyslav.model.SlotInventory;
+import com.mongodb.bulk.BulkWriteResult;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Optional "slot inventory" mode (app.slot-inventory.enabled).
+ *
+ * A per doctor-day document lists the free slots for a rolling horizon. Booking claims a slot with a single
+ * conditional findAndModify and availability is one indexed fetch. Documents are regenerated from rules,
+ * time-off and appointments by a background sweep and whenever one of those changes. Rule, time-off and hold
+ * changes are rebuilt on slotInventoryExecutor instead of the request that made them; a rule change rebuilds the
+ * doctor's whole horizon.
+ */
+@Service
+public class SlotInventoryService {
+
+    private static final Logger log = LoggerFactory.getLogger(SlotInventoryService.class);
+
+    private static final ZoneId UK_TZ = ZoneId.of("Europe/London");
+    private static final int MAX_REGENERATE_ATTEMPTS = 3;
+
+    private final MongoTemplate mongoTemplate;
+    private final SlotMaskCalculator slotMaskCalculator;
+    private final Executor executor;
+    private final boolean enabled;
+    private final int horizonDays;
+
+    public SlotInventoryService(MongoTemplate mongoTemplate,
+                                SlotMaskCalculator slotMaskCalculator,
+                                @Qualifier("slotInventoryExecutor") Executor executor,
+                                @Value("${app.slot-inventory.enabled:false}") boolean enabled,
+                                @Value("${app.slot-inventory.horizon-days:28}") int horizonDays) {
+        this.mongoTemplate = mongoTemplate;
+        this.slotMaskCalculator = slotMaskCalculator;
+        this.executor = executor;
+        this.enabled = enabled;
+        this.horizonDays = horizonDays;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Atomically moves {@code time} from the day's free list to its taken list.
+     */
+    public Claim claim(String doctorId, LocalDate date, String time) {
+        String id = SlotInventory.idFor(doctorId, date);
+
+        Query query = new Query(where("_id").is(id).and("free").is(time));
+        query.fields().include("slotMinutes");
+        Update update = new Update().pull("free", time).push("taken", time).inc("version", 1);
+
+        SlotInventory before = mongoTemplate.findAndModify(query, update, SlotInventory.class);
+        if (before != null) return new Claim(ClaimStatus.CLAIMED, before.getSlotMinutes());
+
+        // Only on the failure path: was the slot taken, or is the day simply not materialized?
+        boolean materialized = mongoTemplate.exists(new Query(where("_id").is(id)), SlotInventory.class);
+        return new Claim(materialized ? ClaimStatus.UNAVAILABLE : ClaimStatus.NOT_MATERIALIZED, 0);
+    }
+
+    /**
+     * Gives back slots claimed for [start, end) (cancelled booking, or a booking whose insert failed).
+     */
+    public void release(String doctorId, Instant start, Instant end) {
+        if (!enabled || start == null || end == null) return;
+
+        LocalDate first = LocalDate.ofInstant(start, UK_TZ);
+        LocalDate last = LocalDate.ofInstant(end.minusNanos(1), UK_TZ);
+        for (LocalDate date = first; !date.isAfter(last); date = date.plusDays(1)) {
+            String from = date.equals(first) ? label(start) : "00:00";
+            String to = date.equals(LocalDate.ofInstant(end, UK_TZ)) ? label(end) : "24:00";
+
+            // "HH:mm" strings compare in time order, so a string range selects the slots
+            Update update = new Update()
+                    .pull("taken", new Document("$gte", from).append("$lt", to))
+                    .inc("version", 1);
+            mongoTemplate.updateFirst(new Query(where("_id").is(SlotInventory.idFor(doctorId, date))), update, SlotInventory.class);
+        }
+        regenerate(doctorId, first, last);
+    }
+
+    /**
+     * Stored free slots per date. Dates that are not materialized are absent from the map.
+     */
+    public Map<LocalDate, List<String>> read(String doctorId, LocalDate from, LocalDate to) {
+        Query query = new Query(where("doctorId").is(doctorId).and("date").gte(from.toString()).lte(to.toString()));
+        query.fields().include("date").include("free");
+
+        return mongoTemplate.find(query, SlotInventory.class).stream()
+                .collect(Collectors.toMap(s -> LocalDate.parse(s.getDate()), SlotInventory::getFree));
+    }
+
+    /**
+     * Rebuilds the free lists of the doctor's days in from..to (clipped to the horizon).
+     * Writes are conditional on the version read beforehand, so a claim that lands in between forces a retry
+     * instead of being overwritten.
+     */
+    public void regenerate(String doctorId, LocalDate from, LocalDate to) {
+        if (!enabled) return;
+
+        LocalDate today = LocalDate.now(UK_TZ);
+        LocalDate horizonEnd = today.plusDays(horizonDays - 1);
+        if (from.isBefore(today)) from = today;
+        if (to.isAfter(horizonEnd)) to = horizonEnd;
+        if (from.isAfter(to)) return;
+
+        for (int attempt = 1; attempt <= MAX_REGENERATE_ATTEMPTS; attempt++) {
+            if (tryRegenerate(doctorId, from, to)) return;
+        }
+        log.warn("Slot inventory for doctor {} {}..{} kept changing, left for the next sweep", doctorId, from, to);
+    }
+
+    private boolean tryRegenerate(String doctorId, LocalDate from, LocalDate to) {
+        Query currentQuery = new Query(where("doctorId").is(doctorId).and("date").gte(from.toString()).lte(to.toString()));
+        currentQuery.fields().include("version").include("taken");
+        Map<String, SlotInventory> current = mongoTemplate.find(currentQuery, SlotInventory.class).stream()
+                .collect(Collectors.toMap(SlotInventory::getId, Function.identity()));
+
+        Map<LocalDate, DaySlotMask> masks = slotMaskCalculator.compute(doctorId, from, to);
+
+        Instant now = Instant.now();
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, SlotInventory.class);
+        masks.forEach((date, mask) -> {
+            String id = SlotInventory.idFor(doctorId, date);
+            SlotInventory existing = current.get(id);
+
+            List<String> free = new ArrayList<>(mask.freeSlotTimes());
+            if (existing != null && existing.getTaken() != null) free.removeAll(existing.getTaken());
+
+            Update update = new Update()
+                    .set("free", free)
+                    .set("slotMinutes", mask.slotMinutes())
+                    .set("generatedAt", now)
+                    .inc("version", 1);
+
+            if (existing == null) {
+                // Insert only if nobody created it meanwhile (a concurrent insert turns into a duplicate key -> retry)
+                update.setOnInsert("doctorId", doctorId).setOnInsert("date", date.toString()).setOnInsert("taken", List.of());
+                bulk.upsert(new Query(where("_id").is(id).and("version").exists(false)), update);
+            } else {
+                bulk.updateOne(new Query(where("_id").is(id).and("version").is(existing.getVersion())), update);
+            }
+        });
+
+        try {
+            BulkWriteResult result = bulk.execute();
+            return result.getMatchedCount() + result.getUpserts().size() == masks.size();
+        } catch (BulkOperationException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Rolls the horizon forward: drops past days and rebuilds every day of every doctor that has rules.
+     */
+    @Scheduled(initialDelayString = "${app.slot-inventory.initial-delay-ms:60000}",
+               fixedDelayString = "${app.slot-inventory.refresh-ms:3600000}")
+    public void refreshHorizon() {
+        if (!enabled) return;
+
+        LocalDate today = LocalDate.now(UK_TZ);
+        mongoTemplate.remove(new Query(where("date").lt(today.toString())), SlotInventory.class);
+
+        List<String> doctorIds = mongoTemplate.findDistinct(new Query(), "doctorId", AvailabilityRule.class, String.class);
+        for (String doctorId : doctorIds) {
+            regenerate(doctorId, today, today.plusDays(horizonDays - 1));
+        }
+        log.debug("Slot inventory refreshed for {} doctors", doctorIds.size());
+    }
+
+    @EventListener
+    public void onAppointmentChanged(AppointmentLifecycleEvent event) {
+        if (!enabled) return;
+
+        switch (event.change()) {
+            case CANCELLED -> release(event.doctorId(), event.start(), event.end());
+            case RESCHEDULED -> {
+                release(event.doctorId(), event.previousStart(), event.previousEnd());
+                regenerate(event.doctorId(), LocalDate.ofInstant(event.start(), UK_TZ), LocalDate.ofInstant(event.end(), UK_TZ));
+            }
+            default -> {
+                // BOOKED claims its slot directly, ATTENDED is in the past
+            }
+        }
+    }
+
+    @EventListener
+    public void onTimeOffChanged(TimeOffChangedEvent event) {
+        if (!enabled) return;
+        regenerateLater(event.doctorId(), LocalDate.ofInstant(event.start(), UK_TZ), LocalDate.ofInstant(event.end(), UK_TZ));
+    }
+
+    @EventListener
+    public void onHoldChanged(SlotHoldChangedEvent event) {
+        if (!enabled) return;
+        regenerateLater(event.doctorId(), LocalDate.ofInstant(event.start(), UK_TZ), LocalDate.ofInstant(event.end(), UK_TZ));
+    }
+
+    @EventListener
+    public void onRuleChanged(AvailabilityRuleChangedEvent event) {
+        if (!enabled) return;
+        LocalDate today = LocalDate.now(UK_TZ);
+        regenerateLater(event.doctorId(), today, today.plusDays(horizonDays - 1));
+    }
+
+    // Off the thread that published the change; a full queue leaves the days to the next horizon refresh
+    private void regenerateLater(String doctorId, LocalDate from, LocalDate to) {
+        try {
+            executor.execute(() -> regenerate(doctorId, from, to));
+        } catch (TaskRejectedException e) {
+            log.warn("Slot inventory queue full, doctor {} {}..{} is rebuilt by the next horizon refresh", doctorId, from, to);
+        }
+    }
+
+    private static String label(Instant instant) {
+        return LocalTime.ofInstant(instant, UK_TZ).withSecond(0).withNano(0).toString();
+    }
+
+    public enum ClaimStatus {
+        CLAIMED,
+        UNAVAILABLE,
+        NOT_MATERIALIZED
+    }
+
+    public record Claim(ClaimStatus status, int slotMinutes) {}
+}
@@ -0,0 +1,83 @@
+package com.example.vladyslav.service;
+
+import com.example.vladyslav.model.AvailabilityRule;
+import com.example.vladyslav.repository.AvailabilityRuleRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Computes free-slot masks straight from the database (rules, bookings, time-off), without any caching.
+ */
+@Component
+@RequiredArgsConstructor
+public class SlotMaskCalculator {
+
+    private static final ZoneId UK_TZ = ZoneId.of("Europe/London");
+
+    private final AvailabilityRuleRepository ruleRepository;
+
+    private final AvailabilityWindowLoader windowLoader;
+
+    public Map<LocalDate, DaySlotMask> compute(String doctorId, LocalDate from, LocalDate to) {
+
+        // Load doctor's weekly schedule rules from DB
+        List<AvailabilityRule> rules = ruleRepository.findByDoctorId(doctorId);
+
+        // e.g. 1 -> Monday rule
+        // e.g. 2 -> Tuesday rule
+        // e.g  3 -> "id": "6904cc4ec8248ceb824c2e40",
+        //        "doctorId": "690321b8a20b7634c71ef405",
+        //        "dayOfWeek": 1,
+        //        "start": "09:00:00",
+        //        "end": "17:00:00",
+        //        "slotMinutes": 30,
+        //        "bufferBeforeMinutes": 5,
+        //        "bufferAfterMinutes": 5,
+        //        "breaks": [
+        //            {
+        //                "startBreak": "12:30:00",
+        //                "endBreak": "13:30:00"
+        //            },
+        //            {
+        //                "startBreak": "15:00:00",
+        //                "endBreak": "15:15:00"
+        //            }
+        //        ]
+        Map<Integer, AvailabilityRule> ruleByDow = rules.stream()
+                .collect(Collectors.toMap(AvailabilityRule::getDayOfWeek, r -> r));
+        // AvailabilityRule::getDayOfWeek (KEY) this is method reference, means rule -> rule.getDayOfWeek()
+        // r -> r (VALUE) means use object itself as a value.
+
+        Map<LocalDate, DaySlotMask> result = new LinkedHashMap<>();
+
+        // Bookings and time-off for the whole range, one query each, split into days in memory
+        AvailabilityWindow window = windowLoader.load(doctorId, from, to, UK_TZ);
+
+        // Loop date by date between from and to, so if from = Jan 6 and to = Jan 12, it iterates: Jav6, Jan 7, Jan 8,Jan9, Jan 10
+        for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+            int dow = date.getDayOfWeek().getValue(); // ISO 1..7
+            AvailabilityRule rule = ruleByDow.get(dow);  // Get rule for specific date
+
+            // If doctor doesn't work that day, meaning rule is null;
+            if (rule == null) {
+                result.put(date, DaySlotMask.empty()); // return empty slots
+                continue;
+            }
+
+            // Start from the rule's grid (breaks already cleared), then clear booked and time-off ranges
+            DaySlotMask mask = DaySlotMask.forRule(rule);
+            window.applyTo(date, mask);
+
+            result.put(date, mask);
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.vladyslav.service;
+
+import com.example.vladyslav.dto.SlotDeltaDTO;
+import com.example.vladyslav.event.AppointmentChangedEvent;
+import com.example.vladyslav.event.SlotHoldChangedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Pushes slot deltas to /topic/doctors/{doctorId}/slots when appointments are booked, cancelled or rescheduled,
+ * and when slots are held or released during checkout.
+ *
+ * The booking thread only enqueues the work. The affected days are recomputed on slotPushExecutor and the
+ * broker fans the message out to subscribers on its own outbound threads.
+ */
+@Service
+public class SlotUpdatePublisher {
+
+    private static final Logger log = LoggerFactory.getLogger(SlotUpdatePublisher.class);
+
+    private static final ZoneId UK_TZ = ZoneId.of("Europe/London");
+    private static final int MINUTES_PER_DAY = 24 * 60;
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final SlotMaskCalculator slotMaskCalculator;
+    private final Executor executor;
+
+    public SlotUpdatePublisher(SimpMessagingTemplate messagingTemplate,
+                               SlotMaskCalculator slotMaskCalculator,
+                               @Qualifier("slotPushExecutor") Executor executor) {
+        this.messagingTemplate = messagingTemplate;
+        this.slotMaskCalculator = slotMaskCalculator;
+        this.executor = executor;
+    }
+
+    public static String topic(String doctorId) {
+        return "/topic/doctors/" + doctorId + "/slots";
+    }
+
+    @EventListener
+    public void onAppointmentChanged(AppointmentChangedEvent event) {
+        if (event.change().isOutcome()) return;
+
+        List<Instant[]> ranges = new ArrayList<>();
+        ranges.add(new Instant[]{event.start(), event.end()});
+        if (event.previousStart() != null && event.previousEnd() != null) {
+            ranges.add(new Instant[]{event.previousStart(), event.previousEnd()});
+        }
+
+        try {
+            executor.execute(() -> push(event.doctorId(), ranges));
+        } catch (TaskRejectedException e) {
+            // Clients still see the change on their next fetch
+            log.debug("Slot push queue full, dropping update for doctor {}", event.doctorId());
+        }
+    }
+
+    @EventListener
+    public void onHoldChanged(SlotHoldChangedEvent event) {
+        List<Instant[]> ranges = List.<Instant[]>of(new Instant[]{event.start(), event.end()});
+        try {
+            executor.execute(() -> push(event.doctorId(), ranges));
+        } catch (TaskRejectedException e) {
+            log.debug("Slot push queue full, dropping update for doctor {}", event.doctorId());
+        }
+    }
+
+    private void push(String doctorId, List<Instant[]> ranges) {
+        try {
+            LocalDate first = null, last = null;
+            for (Instant[] range : ranges) {
+                LocalDate from = LocalDate.ofInstant(range[0], UK_TZ);
+                LocalDate to = LocalDate.ofInstant(range[1].minusNanos(1), UK_TZ);
+                if (first == null || from.isBefore(first)) first = from;
+                if (last == null || to.isAfter(last)) last = to;
+            }
+
+            // Current state from the database, so the delta is right whatever else happened in between
+            Map<LocalDate, DaySlotMask> masks = slotMaskCalculator.compute(doctorId, first, last);
+
+            for (Instant[] range : ranges) {
+                LocalDate from = LocalDate.ofInstant(range[0], UK_TZ);
+                LocalDate to = LocalDate.ofInstant(range[1].minusNanos(1), UK_TZ);
+                for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+                    SlotDeltaDTO delta = delta(doctorId, date, masks.get(date), range[0], range[1]);
+                    if (delta != null) messagingTemplate.convertAndSend(topic(doctorId), delta);
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not push slot update for doctor {}", doctorId, e);
+        }
+    }
+
+    // Slots of the day overlapping [start, end), split by whether they are bookable now
+    private static SlotDeltaDTO delta(String doctorId, LocalDate date, DaySlotMask mask, Instant start, Instant end) {
+        if (mask == null || mask.slotCount() == 0) return null;
+
+        int fromMinute = minuteOfDate(date, start);
+        int toMinute = minuteOfDate(date, end);
+
+        List<String> taken = new ArrayList<>();
+        List<String> freed = new ArrayList<>();
+        for (int slot = 0; slot < mask.slotCount(); slot++) {
+            int slotStart = mask.slotStartMinute(slot);
+            if (slotStart >= toMinute || slotStart + mask.slotMinutes() <= fromMinute) continue;
+
+            (mask.isFree(slot) ? freed : taken).add(mask.slotStart(slot).toString());
+        }
+        return taken.isEmpty() && freed.isEmpty() ? null : new SlotDeltaDTO(doctorId, date, taken, freed);
+    }
+
+    private static int minuteOfDate(LocalDate date, Instant instant) {
+        long minutes = ChronoUnit.MINUTES.between(date.atStartOfDay(), LocalDateTime.ofInstant(instant, UK_TZ));
+        return (int) Math.max(0, Math.min(MINUTES_PER_DAY, minutes));
+    }
+}
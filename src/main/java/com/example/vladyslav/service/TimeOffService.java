@@ -1,24 +1,47 @@
 package com.example.vladyslav.service;
 
+import com.example.vladyslav.dto.TimeOffConflictSummaryDTO;
+import com.example.vladyslav.event.TimeOffChangedEvent;
+import com.example.vladyslav.event.TimeOffConflictNotice;
 import com.example.vladyslav.exception.NotFoundException;
 import com.example.vladyslav.exception.OurException;
+import com.example.vladyslav.model.Appointment;
 import com.example.vladyslav.model.TimeOff;
+import com.example.vladyslav.model.enums.AppointmentStatus;
+import com.example.vladyslav.model.enums.TimeOffConflictMode;
 import com.example.vladyslav.repository.TimeOffRepository;
+import com.mongodb.bulk.BulkWriteResult;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
 import java.time.LocalDate;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
 
 @Service
 @RequiredArgsConstructor
 public class TimeOffService {
 
     private final TimeOffRepository timeOffRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final MongoTemplate mongoTemplate;
+    private final SlotClaimService slotClaimService;
+    private final BookingLocks bookingLocks;
 
     public TimeOff get(String id){
         return timeOffRepository.findById(id)
@@ -34,7 +57,56 @@ public class TimeOffService {
 
     public TimeOff create(TimeOff timeOff) {
         validate(timeOff);
-        // Optional: check for overlapping time-off for same doctor
+        TimeOff saved = saveWithoutOverlap(timeOff);
+
+        eventPublisher.publishEvent(new TimeOffChangedEvent(saved.getDoctorId(), saved.getStart(), saved.getEnd()));
+        return saved;
+    }
+
+    /**
+     * Creates the time-off and deals with the SCHEDULED appointments inside it according to {@code mode}.
+     *
+     * The conflicts are found with one range query (idx_doctor_range) and flagged or cancelled with one unordered
+     * bulkWrite; each update is conditional on the version just read, so an appointment changed in between is left
+     * alone and not reported. Every affected patient then gets one TimeOffConflictNotice for all of their sessions.
+     *
+     * No per-appointment CANCELLED events are written: the TimeOffChangedEvent for the range already refreshes
+     * caches and inventory, and the waitlist must not try to offer slots inside the leave.
+     */
+    public TimeOffConflictSummaryDTO create(TimeOff timeOff, TimeOffConflictMode mode) {
+        TimeOffConflictMode resolution = mode == null ? TimeOffConflictMode.IGNORE : mode;
+        validate(timeOff);
+
+        // Under the doctor's lock so no booking on this node lands between the save and the conflict query
+        Resolved outcome = bookingLocks.withDoctorLock(timeOff.getDoctorId(), () -> {
+            TimeOff saved = saveWithoutOverlap(timeOff);
+            List<Appointment> conflicts = findConflicts(saved);
+            List<Appointment> resolved = resolution == TimeOffConflictMode.IGNORE || conflicts.isEmpty()
+                    ? List.of()
+                    : resolve(saved, conflicts, resolution);
+            return new Resolved(saved, conflicts, resolved);
+        });
+
+        TimeOff saved = outcome.timeOff();
+        if (resolution == TimeOffConflictMode.CANCEL && !outcome.resolved().isEmpty()) {
+            slotClaimService.releaseAll(outcome.resolved().stream().map(Appointment::getId).toList());
+        }
+        // Covers the whole range, so caches and inventory also pick up the cancelled sessions
+        eventPublisher.publishEvent(new TimeOffChangedEvent(saved.getDoctorId(), saved.getStart(), saved.getEnd()));
+
+        Map<String, List<Appointment>> byPatient = outcome.resolved().stream()
+                .collect(Collectors.groupingBy(Appointment::getPatientId, LinkedHashMap::new, Collectors.toList()));
+        byPatient.forEach((patientId, appointments) -> eventPublisher.publishEvent(new TimeOffConflictNotice(
+                patientId, saved.getDoctorId(), saved.getId(), resolution,
+                appointments.stream()
+                        .map(a -> new TimeOffConflictNotice.Affected(a.getId(), a.getStart(), a.getEnd()))
+                        .toList())));
+
+        return new TimeOffConflictSummaryDTO(saved, resolution, outcome.conflicts().size(), outcome.resolved().size(),
+                outcome.resolved().stream().map(Appointment::getId).toList(), byPatient.size());
+    }
+
+    private TimeOff saveWithoutOverlap(TimeOff timeOff) {
         List<TimeOff> overlaps = timeOffRepository
                 .findByDoctorIdAndStartLessThanEqualAndEndGreaterThanEqual(
                         timeOff.getDoctorId(), timeOff.getEnd(), timeOff.getStart());
@@ -44,10 +116,52 @@ public class TimeOffService {
         return timeOffRepository.save(timeOff);
     }
 
+    private List<Appointment> findConflicts(TimeOff timeOff) {
+        Query query = new Query(where("doctorId").is(timeOff.getDoctorId())
+                .and("start").lt(timeOff.getEnd())
+                .and("end").gt(timeOff.getStart())
+                .and("status").is(AppointmentStatus.SCHEDULED))
+                .with(Sort.by("start"));
+        query.fields().include("doctorId", "patientId", "start", "end", "version");
+        return mongoTemplate.find(query, Appointment.class);
+    }
+
+    private List<Appointment> resolve(TimeOff timeOff, List<Appointment> conflicts, TimeOffConflictMode mode) {
+        Instant now = Instant.now();
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Appointment.class);
+        for (Appointment a : conflicts) {
+            Update update = new Update()
+                    .set("timeOffConflictId", timeOff.getId())
+                    .set("updatedAt", now)
+                    .inc("version", 1);
+            if (mode == TimeOffConflictMode.CANCEL) update.set("status", AppointmentStatus.CANCELLED);
+            bulk.updateOne(new Query(where("_id").is(a.getId())
+                    .and("version").is(a.getVersion())
+                    .and("status").is(AppointmentStatus.SCHEDULED)), update);
+        }
+        BulkWriteResult result = bulk.execute();
+        if (result.getModifiedCount() == conflicts.size()) return conflicts;
+
+        // Some changed in between; the marker tells which updates applied
+        Query applied = new Query(where("_id").in(conflicts.stream().map(Appointment::getId).toList())
+                .and("timeOffConflictId").is(timeOff.getId()));
+        applied.fields().include("_id");
+        Set<String> ids = mongoTemplate.find(applied, Appointment.class).stream()
+                .map(Appointment::getId)
+                .collect(Collectors.toSet());
+        return conflicts.stream().filter(a -> ids.contains(a.getId())).toList();
+    }
+
     public void delete(String id){
-        timeOffRepository.deleteById(id);
+        // Load first so the freed range is known to the listeners
+        timeOffRepository.findById(id).ifPresent(timeOff -> {
+            timeOffRepository.deleteById(id);
+            eventPublisher.publishEvent(new TimeOffChangedEvent(timeOff.getDoctorId(), timeOff.getStart(), timeOff.getEnd()));
+        });
     }
 
+    private record Resolved(TimeOff timeOff, List<Appointment> conflicts, List<Appointment> resolved) {}
+
     public void validate(TimeOff timeOff){
         if(timeOff.getDoctorId() == null) throw new OurException("Doctor is required");
         if(timeOff.getStart() == null || timeOff.getEnd() == null || !timeOff.getEnd().isAfter(timeOff.getStart())){
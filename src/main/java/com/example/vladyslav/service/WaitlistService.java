@@ -0,0 +1,232 @@
+package com.example.vladyslav.service;
+
+import com.example.vladyslav.dto.AppointmentDTO;
+import com.example.vladyslav.dto.WaitlistEntryDTO;
+import com.example.vladyslav.event.AppointmentChangedEvent;
+import com.example.vladyslav.event.AppointmentLifecycleEvent;
+import com.example.vladyslav.exception.ConflictException;
+import com.example.vladyslav.exception.NotFoundException;
+import com.example.vladyslav.exception.OurException;
+import com.example.vladyslav.model.WaitlistEntry;
+import com.example.vladyslav.model.enums.WaitlistStatus;
+import com.example.vladyslav.repository.WaitlistRepository;
+import com.example.vladyslav.requests.BookAppointmentRequest;
+import com.example.vladyslav.requests.JoinWaitlistRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Per-doctor waitlist. When a booking is cancelled or moved, the freed slot is booked for the longest-waiting
+ * patient whose window contains it.
+ *
+ * The cancel request only hands the slot to waitlistExecutor. The matcher takes candidates one at a time with
+ * findAndModify on idx_doctor_status_created (WAITING -> MATCHING), so two nodes never pick the same entry and
+ * no query reads more than the doctor's waiting entries. Booking goes through AppointmentService as usual.
+ */
+@Service
+public class WaitlistService {
+
+    private static final Logger log = LoggerFactory.getLogger(WaitlistService.class);
+
+    private static final ZoneId UK_TZ = ZoneId.of("Europe/London");
+
+    // Entries that cannot take this particular slot are skipped, but only this many per freed slot
+    private static final int MAX_CANDIDATES = 5;
+
+    // A node that died mid-match leaves the entry in MATCHING; it goes back to the queue after this
+    private static final Duration MATCH_LEASE = Duration.ofMinutes(5);
+
+    private final WaitlistRepository repository;
+    private final MongoTemplate mongoTemplate;
+    private final AppointmentService appointmentService;
+    private final Executor executor;
+    private final int maxWindowDays;
+
+    public WaitlistService(WaitlistRepository repository,
+                           MongoTemplate mongoTemplate,
+                           AppointmentService appointmentService,
+                           @Qualifier("waitlistExecutor") Executor executor,
+                           @Value("${app.waitlist.max-window-days:90}") int maxWindowDays) {
+        this.repository = repository;
+        this.mongoTemplate = mongoTemplate;
+        this.appointmentService = appointmentService;
+        this.executor = executor;
+        this.maxWindowDays = maxWindowDays;
+    }
+
+    public WaitlistEntryDTO join(JoinWaitlistRequest request) {
+        if (request.getDoctorId() == null || request.getPatientId() == null) {
+            throw new OurException("doctorId and patientId are required.");
+        }
+
+        final LocalDate from;
+        final LocalDate to;
+        try {
+            from = LocalDate.parse(request.getFromDate());
+            to = LocalDate.parse(request.getToDate());
+        } catch (DateTimeException | NullPointerException e) {
+            throw new OurException("Invalid fromDate/toDate. Expected yyyy-MM-dd");
+        }
+        if (to.isBefore(from) || to.isBefore(LocalDate.now(UK_TZ))) throw new OurException("Invalid fromDate/toDate range.");
+        if (ChronoUnit.DAYS.between(from, to) + 1 > maxWindowDays) {
+            throw new OurException("Waitlist window must not exceed " + maxWindowDays + " days.");
+        }
+        if (repository.existsByDoctorIdAndPatientIdAndStatusIn(request.getDoctorId(), request.getPatientId(),
+                List.of(WaitlistStatus.WAITING, WaitlistStatus.MATCHING))) {
+            throw new ConflictException("Patient is already on this doctor's waitlist.");
+        }
+
+        WaitlistEntry entry = WaitlistEntry.builder()
+                .doctorId(request.getDoctorId())
+                .patientId(request.getPatientId())
+                .concern(request.getConcern())
+                .windowStart(from.atStartOfDay(UK_TZ).toInstant())
+                .windowEnd(to.plusDays(1).atStartOfDay(UK_TZ).toInstant())
+                .status(WaitlistStatus.WAITING)
+                .build();
+        return toDto(repository.save(entry));
+    }
+
+    public void withdraw(String id) {
+        WaitlistEntry entry = repository.findById(id).orElseThrow(() -> new NotFoundException("Waitlist entry not found with id " + id));
+        if (entry.getStatus() == WaitlistStatus.BOOKED) throw new OurException("Waitlist entry was already booked.");
+
+        Query query = new Query(where("_id").is(id).and("status").is(WaitlistStatus.WAITING));
+        if (mongoTemplate.updateFirst(query, new Update().set("status", WaitlistStatus.WITHDRAWN), WaitlistEntry.class).getModifiedCount() == 0) {
+            throw new ConflictException("Waitlist entry is being matched to a slot, try again shortly.");
+        }
+    }
+
+    public List<WaitlistEntryDTO> forPatient(String patientId) {
+        return repository.findByPatientIdOrderByCreatedAtDesc(patientId).stream().map(this::toDto).toList();
+    }
+
+    @EventListener
+    public void onAppointmentChanged(AppointmentLifecycleEvent event) {
+        boolean cancelled = event.change() == AppointmentChangedEvent.Change.CANCELLED;
+        if (!cancelled && event.change() != AppointmentChangedEvent.Change.RESCHEDULED) return;
+
+        Instant freedStart = cancelled ? event.start() : event.previousStart();
+        Instant freedEnd = cancelled ? event.end() : event.previousEnd();
+        if (freedStart == null || freedEnd == null || !freedStart.isAfter(Instant.now())) return;
+
+        try {
+            executor.execute(() -> match(event.doctorId(), freedStart, freedEnd));
+        } catch (TaskRejectedException e) {
+            log.warn("Waitlist queue full, freed slot {} of doctor {} not offered", freedStart, event.doctorId());
+        }
+    }
+
+    /**
+     * Books [start, end) for the first eligible waiting patient, if any.
+     *
+     * @return the booked appointment, or null when nobody took the slot
+     */
+    AppointmentDTO match(String doctorId, Instant start, Instant end) {
+        List<String> tried = new ArrayList<>();
+        for (int i = 0; i < MAX_CANDIDATES; i++) {
+            WaitlistEntry entry = claimNext(doctorId, start, end, tried);
+            if (entry == null) return null;
+
+            try {
+                AppointmentDTO booked = appointmentService.createAppointment(bookingFor(entry, start));
+                Update update = new Update().set("status", WaitlistStatus.BOOKED).set("appointmentId", booked.getId());
+                mongoTemplate.updateFirst(new Query(where("_id").is(entry.getId())), update, WaitlistEntry.class);
+                log.info("Waitlist entry {} booked into freed slot {} (appointment {})", entry.getId(), start, booked.getId());
+                return booked;
+            } catch (ConflictException e) {
+                // Someone else got the slot first; the entry keeps its place for the next one
+                requeue(entry);
+                return null;
+            } catch (OurException e) {
+                // This slot does not work for this entry, keep its place and offer the slot to the next
+                requeue(entry);
+                tried.add(entry.getId());
+            } catch (RuntimeException e) {
+                requeue(entry);
+                log.warn("Waitlist matching failed for doctor {} slot {}", doctorId, start, e);
+                return null;
+            }
+        }
+        return null;
+    }
+
+    // WAITING -> MATCHING on the longest-waiting entry whose window contains the slot
+    private WaitlistEntry claimNext(String doctorId, Instant start, Instant end, List<String> exclude) {
+        Query query = new Query(where("doctorId").is(doctorId)
+                .and("status").is(WaitlistStatus.WAITING)
+                .and("windowStart").lte(start)
+                .and("windowEnd").gte(end))
+                .with(Sort.by(Sort.Direction.ASC, "createdAt"));
+        if (!exclude.isEmpty()) query.addCriteria(where("_id").nin(exclude));
+
+        Update update = new Update().set("status", WaitlistStatus.MATCHING).set("matchedAt", Instant.now());
+        return mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().returnNew(true), WaitlistEntry.class);
+    }
+
+    private void requeue(WaitlistEntry entry) {
+        Query query = new Query(where("_id").is(entry.getId()).and("status").is(WaitlistStatus.MATCHING));
+        mongoTemplate.updateFirst(query, new Update().set("status", WaitlistStatus.WAITING).unset("matchedAt"), WaitlistEntry.class);
+    }
+
+    /**
+     * Puts entries stuck in MATCHING (node died mid-booking) back in the queue.
+     */
+    @Scheduled(initialDelayString = "${app.waitlist.initial-delay-ms:60000}",
+               fixedDelayString = "${app.waitlist.sweep-ms:300000}")
+    public void releaseStuckMatches() {
+        Query query = new Query(where("status").is(WaitlistStatus.MATCHING).and("matchedAt").lt(Instant.now().minus(MATCH_LEASE)));
+        long released = mongoTemplate.updateMulti(query,
+                new Update().set("status", WaitlistStatus.WAITING).unset("matchedAt"), WaitlistEntry.class).getModifiedCount();
+        if (released > 0) log.info("Released {} stuck waitlist matches", released);
+    }
+
+    private static BookAppointmentRequest bookingFor(WaitlistEntry entry, Instant start) {
+        ZonedDateTime startUK = start.atZone(UK_TZ);
+        BookAppointmentRequest request = new BookAppointmentRequest();
+        request.setDoctorId(entry.getDoctorId());
+        request.setPatientId(entry.getPatientId());
+        request.setConcern(entry.getConcern());
+        request.setDate(startUK.toLocalDate().toString());
+        request.setTime(startUK.toLocalTime().withSecond(0).withNano(0).toString());
+        return request;
+    }
+
+    private WaitlistEntryDTO toDto(WaitlistEntry e) {
+        return WaitlistEntryDTO.builder()
+                .id(e.getId())
+                .doctorId(e.getDoctorId())
+                .patientId(e.getPatientId())
+                .concern(e.getConcern())
+                .windowStart(e.getWindowStart())
+                .windowEnd(e.getWindowEnd())
+                .status(e.getStatus())
+                .appointmentId(e.getAppointmentId())
+                .createdAt(e.getCreatedAt())
+                .build();
+    }
+}
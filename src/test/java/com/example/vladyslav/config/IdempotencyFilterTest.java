@@ -0,0 +1,100 @@
+package com.example.vladyslav.config;
+
+import com.example.vladyslav.service.IdempotencyService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IdempotencyFilterTest {
+
+    private static final String BODY = "{\"doctorId\":\"doctor-1\"}";
+
+    private final AtomicInteger executions = new AtomicInteger();
+
+    private IdempotencyFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        IdempotencyService service = new IdempotencyService(Mockito.mock(MongoTemplate.class), 24, 60, 5_000, 1_000, 10);
+        filter = new IdempotencyFilter(service, new ObjectMapper());
+    }
+
+    @Test
+    void replayCarriesTheOriginalLocationHeader() throws Exception {
+        FilterChain created = (request, response) -> {
+            executions.incrementAndGet();
+            HttpServletResponse http = (HttpServletResponse) response;
+            http.setStatus(201);
+            http.setHeader("Location", "/api/appointments/a1");
+            response.setContentType("application/json");
+            response.getOutputStream().write("{\"id\":\"a1\"}".getBytes(StandardCharsets.UTF_8));
+        };
+
+        MockHttpServletResponse first = send(created);
+        MockHttpServletResponse retry = send(created);
+
+        assertThat(executions.get()).isEqualTo(1);
+        assertThat(first.getHeader("Location")).isEqualTo("/api/appointments/a1");
+        assertThat(retry.getStatus()).isEqualTo(201);
+        assertThat(retry.getHeader("Location")).isEqualTo("/api/appointments/a1");
+        assertThat(retry.getHeader(IdempotencyFilter.REPLAYED_HEADER)).isEqualTo("true");
+        assertThat(retry.getContentAsString()).isEqualTo("{\"id\":\"a1\"}");
+    }
+
+    @Test
+    void controllerCanReadTheCachedBodyAsynchronously() throws Exception {
+        List<String> callbacks = new ArrayList<>();
+        ByteArrayOutputStream read = new ByteArrayOutputStream();
+
+        send((request, response) -> {
+            ServletInputStream in = request.getInputStream();
+            in.setReadListener(new ReadListener() {
+                @Override
+                public void onDataAvailable() throws IOException {
+                    callbacks.add("data");
+                    while (in.isReady() && !in.isFinished()) read.write(in.read());
+                }
+
+                @Override
+                public void onAllDataRead() {
+                    callbacks.add("done");
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    callbacks.add("error");
+                }
+            });
+            response.getOutputStream().write(new byte[0]);
+        });
+
+        assertThat(callbacks).containsExactly("data", "done");
+        assertThat(read.toString(StandardCharsets.UTF_8)).isEqualTo(BODY);
+    }
+
+    private MockHttpServletResponse send(FilterChain chain) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/appointments");
+        request.addHeader(IdempotencyFilter.HEADER, "key-1");
+        request.setContent(BODY.getBytes(StandardCharsets.UTF_8));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, chain);
+        return response;
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.vladyslav.config;
+
+import com.example.vladyslav.model.Appointment;
+import com.example.vladyslav.model.AvailabilityRule;
+import com.example.vladyslav.model.CalendarFeed;
+import com.example.vladyslav.model.Doctor;
+import com.example.vladyslav.model.OutboxEvent;
+import com.example.vladyslav.model.Review;
+import com.example.vladyslav.model.SlotClaim;
+import com.example.vladyslav.model.SlotHold;
+import com.example.vladyslav.model.SlotInventory;
+import com.example.vladyslav.model.Speciality;
+import com.example.vladyslav.model.TimeOff;
+import com.example.vladyslav.model.User;
+import com.example.vladyslav.model.WaitlistEntry;
+import com.example.vladyslav.service.AppointmentHistory;
+import com.mongodb.client.MongoDatabase;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+class IndexCoverageVerifierTest {
+
+    private static final QueryShape SHAPE = QueryShape.of("appointments.byDoctor", "appointments",
+            new Document("doctorId", "d1"), "idx_doctor_start_id").sortedBy(new Document("start", -1).append("_id", -1));
+
+    @Test
+    void indexScanOnTheExpectedIndexIsClean() {
+        Document plan = stage("LIMIT", stage("FETCH", ixscan("idx_doctor_start_id")));
+
+        assertThat(IndexCoverageVerifier.check(SHAPE, explain(plan))).isEmpty();
+    }
+
+    @Test
+    void collectionScanFails() {
+        List<IndexCoverageVerifier.Finding> findings = IndexCoverageVerifier.check(SHAPE, explain(new Document("stage", "COLLSCAN")));
+
+        assertThat(findings).extracting(IndexCoverageVerifier.Finding::problem).containsExactly(IndexCoverageVerifier.Problem.COLLSCAN);
+        assertThat(findings.get(0).problem().isFailure()).isTrue();
+    }
+
+    @Test
+    void blockingSortOverAnIndexFails() {
+        Document plan = stage("SORT", stage("FETCH", ixscan("doctorId")));
+
+        assertThat(IndexCoverageVerifier.check(SHAPE, explain(plan)))
+                .extracting(IndexCoverageVerifier.Finding::problem)
+                .containsExactlyInAnyOrder(IndexCoverageVerifier.Problem.IN_MEMORY_SORT, IndexCoverageVerifier.Problem.OTHER_INDEX);
+    }
+
+    @Test
+    void slotBasedPlansAreReadFromTheirQueryPlan() {
+        Document sbe = new Document("queryPlan", stage("SORT", new Document("stage", "COLLSCAN")))
+                .append("slotBasedPlan", new Document("stages", "[1] sort ..."));
+
+        assertThat(IndexCoverageVerifier.check(SHAPE, explain(sbe)))
+                .extracting(IndexCoverageVerifier.Finding::problem)
+                .containsExactlyInAnyOrder(IndexCoverageVerifier.Problem.COLLSCAN, IndexCoverageVerifier.Problem.IN_MEMORY_SORT);
+    }
+
+    @Test
+    void otherIndexIsReportedButDoesNotFail() {
+        Document plan = stage("FETCH", new Document("stage", "OR")
+                .append("inputStages", List.of(ixscan("idx_doctor_range"), ixscan("idx_doctor_range"))));
+
+        List<IndexCoverageVerifier.Finding> findings = IndexCoverageVerifier.check(SHAPE, explain(plan));
+
+        assertThat(findings).extracting(IndexCoverageVerifier.Finding::problem).containsExactly(IndexCoverageVerifier.Problem.OTHER_INDEX);
+        assertThat(findings.get(0).problem().isFailure()).isFalse();
+    }
+
+    @Test
+    void missingCollectionIsNotAFailure() {
+        assertThat(IndexCoverageVerifier.check(SHAPE, explain(new Document("stage", "EOF"))))
+                .extracting(IndexCoverageVerifier.Finding::problem).containsExactly(IndexCoverageVerifier.Problem.NO_COLLECTION);
+    }
+
+    @Test
+    void startupFailsOnScansOnlyWhenAskedTo() {
+        MongoTemplate mongoTemplate = Mockito.mock(MongoTemplate.class);
+        MongoDatabase db = Mockito.mock(MongoDatabase.class);
+        when(mongoTemplate.getDb()).thenReturn(db);
+        when(db.runCommand(any(Document.class))).thenReturn(explain(new Document("stage", "COLLSCAN")));
+
+        new IndexCoverageVerifier(mongoTemplate, true, false).verifyOnStartup();
+        assertThatThrownBy(() -> new IndexCoverageVerifier(mongoTemplate, true, true).verifyOnStartup())
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("appointments.byDoctor");
+    }
+
+    @Test
+    void everyRegisteredShapeNamesAnIndexTheModelDeclares() {
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(new MongoCustomConversions(List.of()).getSimpleTypeHolder());
+        MongoPersistentEntityIndexResolver resolver = new MongoPersistentEntityIndexResolver(mappingContext);
+
+        Map<String, Set<String>> declared = new HashMap<>();
+        for (Class<?> type : List.of(Appointment.class, TimeOff.class, AvailabilityRule.class, SlotHold.class, SlotClaim.class,
+                SlotInventory.class, Review.class, WaitlistEntry.class, OutboxEvent.class, Doctor.class, User.class, CalendarFeed.class, Speciality.class)) {
+            Set<String> names = new HashSet<>(Set.of("_id_"));
+            resolver.resolveIndexFor(type).forEach(holder -> names.add(holder.getIndexOptions().getString("name")));
+            declared.put(mappingContext.getRequiredPersistentEntity(type).getCollection(), names);
+        }
+        // Created by MongoConfig with the names of their hot counterparts
+        declared.put(AppointmentHistory.ARCHIVE, declared.get("appointments"));
+
+        List<QueryShape> shapes = QueryShapes.all();
+        assertThat(shapes).extracting(QueryShape::name).doesNotHaveDuplicates();
+        assertThat(shapes).allSatisfy(shape -> assertThat(declared.get(shape.collection()))
+                .as(shape.name())
+                .contains(shape.expectedIndex()));
+    }
+
+    private static Document explain(Document winningPlan) {
+        return new Document("queryPlanner", new Document("winningPlan", winningPlan));
+    }
+
+    private static Document stage(String name, Document input) {
+        return new Document("stage", name).append("inputStage", input);
+    }
+
+    private static Document ixscan(String index) {
+        return new Document("stage", "IXSCAN").append("indexName", index);
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.vladyslav.config;
+
+import com.example.vladyslav.model.Appointment;
+import com.example.vladyslav.model.AvailabilityRule;
+import com.example.vladyslav.model.CalendarFeed;
+import com.example.vladyslav.model.Doctor;
+import com.example.vladyslav.model.OutboxEvent;
+import com.example.vladyslav.model.Review;
+import com.example.vladyslav.model.SlotClaim;
+import com.example.vladyslav.model.SlotHold;
+import com.example.vladyslav.model.SlotInventory;
+import com.example.vladyslav.model.TimeOff;
+import com.example.vladyslav.model.User;
+import com.example.vladyslav.model.WaitlistEntry;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIf;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.testcontainers.DockerClientFactory;
+import org.testcontainers.containers.MongoDBContainer;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+
+/**
+ * Explains every registered shape against a real server and fails the build on a COLLSCAN or an in-memory SORT.
+ * Starts a throwaway MongoDB container, or uses -Dquery-shapes.mongo-uri=mongodb://localhost:27017 when given;
+ * skipped only when neither Docker nor a URI is available.
+ * Works on a scratch database holding only the indexes the models and MongoConfig declare.
+ */
+@EnabledIf("serverAvailable")
+class QueryShapeExplainTest {
+
+    private static final String MONGO_URI = System.getProperty("query-shapes.mongo-uri", "");
+
+    private static MongoDBContainer container;
+    private static MongoClient client;
+    private static MongoTemplate mongoTemplate;
+
+    static boolean serverAvailable() {
+        return !MONGO_URI.isBlank() || DockerClientFactory.instance().isDockerAvailable();
+    }
+
+    @BeforeAll
+    static void createIndexes() throws Exception {
+        String uri = MONGO_URI;
+        if (uri.isBlank()) {
+            container = new MongoDBContainer("mongo:7.0");
+            container.start();
+            uri = container.getConnectionString();
+        }
+        client = MongoClients.create(uri);
+        mongoTemplate = new MongoTemplate(client, "query_shapes_" + System.currentTimeMillis());
+
+        MongoPersistentEntityIndexResolver resolver = new MongoPersistentEntityIndexResolver(mongoTemplate.getConverter().getMappingContext());
+        for (Class<?> type : List.of(Appointment.class, TimeOff.class, AvailabilityRule.class, SlotHold.class, SlotClaim.class,
+                SlotInventory.class, Review.class, WaitlistEntry.class, OutboxEvent.class, Doctor.class, User.class, CalendarFeed.class)) {
+            resolver.resolveIndexFor(type).forEach(index -> mongoTemplate.indexOps(type).createIndex(index));
+        }
+        new MongoConfig().ensureArchiveIndexes(mongoTemplate).run(null);
+    }
+
+    @AfterAll
+    static void dropDatabase() {
+        if (mongoTemplate != null) mongoTemplate.getDb().drop();
+        if (client != null) client.close();
+        if (container != null) container.stop();
+    }
+
+    @Test
+    void noShapeScansOrSortsInMemory() {
+        IndexCoverageVerifier verifier = new IndexCoverageVerifier(mongoTemplate, true, true);
+
+        assertThat(verifier.verify(QueryShapes.all())).filteredOn(f -> f.problem().isFailure()).isEmpty();
+        // What a node runs at startup, with fail-on-scan on
+        assertThatCode(verifier::verifyOnStartup).doesNotThrowAnyException();
+    }
+}
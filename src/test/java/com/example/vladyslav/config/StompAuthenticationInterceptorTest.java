@@ -0,0 +1,96 @@
+package com.example.vladyslav.config;
+
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.PlainJWT;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.AuthenticationManagerResolver;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.oauth2.server.resource.authentication.BearerTokenAuthenticationToken;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class StompAuthenticationInterceptorTest {
+
+    private static final Authentication PATIENT = new UsernamePasswordAuthenticationToken("patient-1", null, List.of());
+
+    private AuthenticationManager appTokens;
+    private StompAuthenticationInterceptor interceptor;
+    private MessageChannel channel;
+
+    @BeforeEach
+    void setUp() {
+        appTokens = Mockito.mock(AuthenticationManager.class);
+        when(appTokens.authenticate(any())).thenReturn(PATIENT);
+        AuthenticationManagerResolver<String> byIssuer = issuer -> "medikart-api".equals(issuer) ? appTokens : null;
+        interceptor = new StompAuthenticationInterceptor(byIssuer);
+        channel = Mockito.mock(MessageChannel.class);
+    }
+
+    @Test
+    void connectWithABearerTokenAuthenticatesTheSession() {
+        String token = token("medikart-api");
+        Message<?> connect = frame(StompCommand.CONNECT, "Bearer " + token, null);
+
+        Message<?> passed = interceptor.preSend(connect, channel);
+
+        assertThat(StompHeaderAccessor.wrap(passed).getUser()).isEqualTo(PATIENT);
+        ArgumentCaptor<Authentication> checked = ArgumentCaptor.forClass(Authentication.class);
+        verify(appTokens).authenticate(checked.capture());
+        assertThat(((BearerTokenAuthenticationToken) checked.getValue()).getToken()).isEqualTo(token);
+    }
+
+    @Test
+    void connectWithoutATokenIsRejected() {
+        assertThatThrownBy(() -> interceptor.preSend(frame(StompCommand.CONNECT, null, null), channel))
+                .isInstanceOf(AuthenticationException.class);
+        verify(appTokens, never()).authenticate(any());
+    }
+
+    @Test
+    void tokenOfAnUntrustedIssuerIsRejected() {
+        assertThatThrownBy(() -> interceptor.preSend(frame(StompCommand.CONNECT, "Bearer " + token("https://evil.example"), null), channel))
+                .isInstanceOf(AuthenticationException.class);
+        verify(appTokens, never()).authenticate(any());
+    }
+
+    @Test
+    void subscribeNeedsAnAuthenticatedSession() {
+        assertThatThrownBy(() -> interceptor.preSend(frame(StompCommand.SUBSCRIBE, null, null), channel))
+                .isInstanceOf(AuthenticationException.class);
+
+        Message<?> subscribe = frame(StompCommand.SUBSCRIBE, null, PATIENT);
+        assertThat(interceptor.preSend(subscribe, channel)).isSameAs(subscribe);
+    }
+
+    private static Message<?> frame(StompCommand command, String authorization, Authentication user) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(command);
+        if (authorization != null) accessor.addNativeHeader("Authorization", authorization);
+        if (command == StompCommand.SUBSCRIBE) accessor.setDestination("/topic/doctors/doctor-1/slots");
+        accessor.setUser(user);
+        accessor.setLeaveMutable(true);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    // Unsigned: the interceptor only reads the issuer, the signature is the manager's job
+    private static String token(String issuer) {
+        return new PlainJWT(new JWTClaimsSet.Builder().issuer(issuer).subject("patient-1").build()).serialize();
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.vladyslav.controller;
+
+import com.example.vladyslav.dto.DaySlotsDTO;
+import com.example.vladyslav.service.AvailabilityCache;
+import com.example.vladyslav.service.AvailabilityHeatmapService;
+import com.example.vladyslav.service.AvailabilityRuleService;
+import com.example.vladyslav.service.AvailabilityStreamService;
+import com.example.vladyslav.service.CalendarVersionService;
+import com.example.vladyslav.service.ETagService;
+import com.example.vladyslav.service.EarliestAvailabilityService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AvailabilityRuleServiceControllerTest {
+
+    private static final String DOCTOR = "doctor-1";
+    private static final LocalDate FROM = LocalDate.of(2026, 1, 5);
+    private static final LocalDate TO = FROM.plusDays(6);
+
+    private AvailabilityRuleService service;
+    private CalendarVersionService calendarVersionService;
+    private AvailabilityRuleServiceController controller;
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+
+    @BeforeEach
+    void setUp() {
+        service = Mockito.mock(AvailabilityRuleService.class);
+        calendarVersionService = Mockito.mock(CalendarVersionService.class);
+        when(calendarVersionService.current(DOCTOR)).thenReturn(5L);
+
+        controller = new AvailabilityRuleServiceController(service,
+                Mockito.mock(EarliestAvailabilityService.class),
+                Mockito.mock(AvailabilityCache.class),
+                Mockito.mock(AvailabilityStreamService.class),
+                Mockito.mock(AvailabilityHeatmapService.class),
+                new ETagService(null, calendarVersionService),
+                calendarVersionService);
+        request = new MockHttpServletRequest("GET", "/api/availability-rules/doctors/" + DOCTOR + "/availability");
+        response = new MockHttpServletResponse();
+    }
+
+    @Test
+    void currentETagIsAnsweredWithNotModifiedWithoutComputing() {
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, "\"cal-doctor-1-5\"");
+
+        assertThat(controller.availability(DOCTOR, FROM, TO, new ServletWebRequest(request, response))).isNull();
+
+        assertThat(response.getStatus()).isEqualTo(304);
+        verify(service, never()).getAvailability(anyString(), any(), any(), anyLong());
+    }
+
+    @Test
+    void olderETagGetsTheListingAtTheVersionItIsTaggedWith() {
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, "\"cal-doctor-1-4\"");
+        List<DaySlotsDTO> listing = List.of(new DaySlotsDTO(FROM, List.of("09:00")));
+        when(service.getAvailability(DOCTOR, FROM, TO, 5L)).thenReturn(listing);
+
+        assertThat(controller.availability(DOCTOR, FROM, TO, new ServletWebRequest(request, response))).isEqualTo(listing);
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getHeader(HttpHeaders.ETAG)).isEqualTo("\"cal-doctor-1-5\"");
+        // One version read serves both the tag and the cache check
+        verify(calendarVersionService).current(DOCTOR);
+    }
+}
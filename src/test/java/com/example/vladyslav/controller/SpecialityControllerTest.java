@@ -0,0 +1,77 @@
+package com.example.vladyslav.controller;
+
+import com.example.vladyslav.model.Speciality;
+import com.example.vladyslav.service.ETagService;
+import com.example.vladyslav.service.SpecialityService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SpecialityControllerTest {
+
+    private static final Instant UPDATED = Instant.parse("2030-01-01T10:00:00Z");
+
+    private SpecialityService service;
+    private SpecialityController controller;
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+
+    @BeforeEach
+    void setUp() {
+        MongoTemplate mongoTemplate = Mockito.mock(MongoTemplate.class);
+        when(mongoTemplate.findOne(any(Query.class), eq(Speciality.class)))
+                .thenReturn(Speciality.builder().id("s1").updatedAt(UPDATED).build());
+        when(mongoTemplate.estimatedCount(Speciality.class)).thenReturn(12L);
+
+        service = Mockito.mock(SpecialityService.class);
+        controller = new SpecialityController(service, new ETagService(mongoTemplate, null));
+        request = new MockHttpServletRequest("GET", "/api/specialities");
+        response = new MockHttpServletResponse();
+    }
+
+    @Test
+    void currentListingETagIsAnsweredWithNotModifiedWithoutLoading() {
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, "\"s-12-" + UPDATED.toEpochMilli() + "\"");
+
+        assertThat(controller.getAll(new ServletWebRequest(request, response))).isNull();
+
+        assertThat(response.getStatus()).isEqualTo(304);
+        verify(service, never()).getAll();
+    }
+
+    @Test
+    void changedListingIsServedWithItsVersionETag() {
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, "\"s-11-" + UPDATED.toEpochMilli() + "\"");
+        List<Speciality> all = List.of(Speciality.builder().id("s1").title("Dermatology").build());
+        when(service.getAll()).thenReturn(all);
+
+        assertThat(controller.getAll(new ServletWebRequest(request, response))).isEqualTo(all);
+
+        assertThat(response.getHeader(HttpHeaders.ETAG)).isEqualTo("\"s-12-" + UPDATED.toEpochMilli() + "\"");
+    }
+
+    @Test
+    void currentByIdETagSkipsTheLookup() {
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, "\"s-s1-" + UPDATED.toEpochMilli() + "\"");
+
+        assertThat(controller.getSpecialityById("s1", new ServletWebRequest(request, response))).isNull();
+
+        verify(service, never()).getSpecialityById(any());
+    }
+}
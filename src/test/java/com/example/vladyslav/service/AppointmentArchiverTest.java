@@ -0,0 +1,133 @@
+package com.example.vladyslav.service;
+
+import com.example.vladyslav.model.Appointment;
+import com.example.vladyslav.model.SweepCheckpoint;
+import com.example.vladyslav.model.enums.AppointmentStatus;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AppointmentArchiverTest {
+
+    private static final Instant NOW = Instant.parse("2030-05-10T12:00:00Z");
+
+    private MongoTemplate mongoTemplate;
+    private BulkOperations copy;
+    private BulkOperations remove;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = Mockito.mock(MongoTemplate.class);
+        copy = Mockito.mock(BulkOperations.class);
+        remove = Mockito.mock(BulkOperations.class);
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Appointment.class, AppointmentHistory.ARCHIVE)).thenReturn(copy);
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Appointment.class)).thenReturn(remove);
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(SweepCheckpoint.class)))
+                .thenReturn(SweepCheckpoint.builder().id(AppointmentArchiver.NAME).build());
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(SweepCheckpoint.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+    }
+
+    @Test
+    void batchIsCopiedWithUpsertsThenRemovedAtTheCopiedVersion() {
+        when(mongoTemplate.find(any(Query.class), eq(Appointment.class))).thenReturn(List.of(appointment("a1", 3L), appointment("a2", 0L)));
+        deleted(2);
+
+        long moved = archiver(500, 20).archiveOnce(NOW);
+
+        assertThat(moved).isEqualTo(2);
+        verify(copy, times(2)).replaceOne(any(Query.class), any(Appointment.class), any(FindAndReplaceOptions.class));
+        verify(copy).execute();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Query>> removed = ArgumentCaptor.forClass(List.class);
+        verify(remove).remove(removed.capture());
+        assertThat(removed.getValue()).extracting(Query::getQueryObject)
+                .containsExactly(new Document("_id", "a1").append("version", 3L), new Document("_id", "a2").append("version", 0L));
+    }
+
+    @Test
+    void selectsOnlyFinishedAppointmentsOlderThanTheAge() {
+        when(mongoTemplate.find(any(Query.class), eq(Appointment.class))).thenReturn(List.of());
+
+        archiver(500, 20).archiveOnce(NOW);
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(query.capture(), eq(Appointment.class));
+        Document filter = query.getValue().getQueryObject();
+        assertThat(filter.get("status", Document.class).getList("$in", AppointmentStatus.class))
+                .containsExactlyInAnyOrder(AppointmentStatus.ATTENDED, AppointmentStatus.CANCELLED, AppointmentStatus.NO_SHOW);
+        Object before = filter.get("end", Document.class).get("$lt");
+        assertThat(before instanceof Date date ? date.toInstant() : before).isEqualTo(NOW.minus(Duration.ofDays(365)));
+        assertThat(query.getValue().getLimit()).isEqualTo(500);
+        verify(copy, never()).execute();
+    }
+
+    @Test
+    void fullBatchesContinueUpToMaxBatches() {
+        List<Appointment> full = IntStream.range(0, 3).mapToObj(i -> appointment("a" + i, 1L)).toList();
+        when(mongoTemplate.find(any(Query.class), eq(Appointment.class))).thenReturn(full);
+        deleted(3);
+
+        assertThat(archiver(3, 4).archiveOnce(NOW)).isEqualTo(12);
+        verify(copy, times(4)).execute();
+        verify(mongoTemplate, times(4)).updateFirst(any(Query.class), any(Update.class), eq(SweepCheckpoint.class));
+    }
+
+    @Test
+    void onlyTheLeaseHolderArchives() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(SweepCheckpoint.class)))
+                .thenThrow(new DuplicateKeyException("lease held"));
+
+        assertThat(archiver(500, 20).archiveOnce(NOW)).isZero();
+        verify(mongoTemplate, never()).find(any(Query.class), eq(Appointment.class));
+        verify(remove, never()).remove(anyList());
+    }
+
+    private AppointmentArchiver archiver(int batchSize, int maxBatches) {
+        return new AppointmentArchiver(mongoTemplate, 365, batchSize, maxBatches, 600);
+    }
+
+    private void deleted(int count) {
+        BulkWriteResult result = Mockito.mock(BulkWriteResult.class);
+        when(result.getDeletedCount()).thenReturn(count);
+        when(remove.execute()).thenReturn(result);
+    }
+
+    private static Appointment appointment(String id, long version) {
+        return Appointment.builder()
+                .id(id)
+                .doctorId("doctor-1")
+                .status(AppointmentStatus.ATTENDED)
+                .start(NOW.minus(Duration.ofDays(400)))
+                .end(NOW.minus(Duration.ofDays(400)).plusSeconds(1800))
+                .version(version)
+                .build();
+    }
+}
@@ -0,0 +1,214 @@
+package com.example.vladyslav.service;
+
+import com.example.vladyslav.exception.ConflictException;
+import com.example.vladyslav.model.Appointment;
+import com.example.vladyslav.model.AvailabilityRule;
+import com.example.vladyslav.model.SlotClaim;
+import com.example.vladyslav.model.enums.AppointmentStatus;
+import com.example.vladyslav.repository.AppointmentRepository;
+import com.example.vladyslav.repository.SlotClaimRepository;
+import com.example.vladyslav.requests.BookAppointmentRequest;
+import com.example.vladyslav.requests.RescheduleRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.example.vladyslav.service.AppointmentServiceFixture.appointmentService;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.when;
+
+/**
+ * Two service instances stand in for two nodes: each has its own locks, they share the "database"
+ * (appointment list and slot_claims with a unique _id).
+ */
+class AppointmentBookingConcurrencyTest {
+
+    private static final ZoneId UK = ZoneId.of("Europe/London");
+    private static final String DOCTOR = "doctor-1";
+
+    private final List<Appointment> appointments = new CopyOnWriteArrayList<>();
+    private final Map<String, SlotClaim> claims = new ConcurrentHashMap<>();
+
+    private volatile boolean staleReads;
+
+    private AppointmentRepository appointmentRepository;
+    private AppointmentService nodeA;
+    private AppointmentService nodeB;
+
+    @BeforeEach
+    void setUp() {
+        appointmentRepository = Mockito.mock(AppointmentRepository.class);
+        AvailabilityRule rule = AvailabilityRule.builder()
+                .doctorId(DOCTOR)
+                .start(LocalTime.of(9, 0))
+                .end(LocalTime.of(17, 0))
+                .slotMinutes(30)
+                .build();
+        BookingContextLoader contextLoader = Mockito.mock(BookingContextLoader.class);
+        when(contextLoader.load(eq(DOCTOR), anyInt(), any(), any()))
+                .thenAnswer(inv -> context(rule, inv.getArgument(1), inv.getArgument(2), inv.getArgument(3)));
+        when(contextLoader.loadForBooking(eq(DOCTOR), anyString(), anyInt(), any(), any()))
+                .thenAnswer(inv -> context(rule, inv.getArgument(2), inv.getArgument(3), inv.getArgument(4)));
+
+        when(appointmentRepository.save(any(Appointment.class))).thenAnswer(inv -> {
+            Appointment a = inv.getArgument(0);
+            appointments.removeIf(existing -> existing.getId().equals(a.getId()));
+            appointments.add(a);
+            return a;
+        });
+        when(appointmentRepository.findById(anyString()))
+                .thenAnswer(inv -> appointments.stream().filter(a -> a.getId().equals(inv.getArgument(0))).findFirst());
+
+        SlotClaimRepository claimRepository = Mockito.mock(SlotClaimRepository.class);
+        doAnswer(inv -> {
+            // Ordered insert with a unique _id: stops at the first bucket that is already taken
+            Iterable<SlotClaim> batch = inv.getArgument(0);
+            for (SlotClaim claim : batch) {
+                if (claims.putIfAbsent(claim.getId(), claim) != null) throw new DuplicateKeyException(claim.getId());
+            }
+            return null;
+        }).when(claimRepository).insert(anyIterable());
+        doAnswer(inv -> {
+            Collection<String> ids = inv.getArgument(1);
+            claims.entrySet().removeIf(e -> ids.contains(e.getKey()) && e.getValue().getAppointmentId().equals(inv.getArgument(0)));
+            return null;
+        }).when(claimRepository).deleteByAppointmentIdAndIdIn(anyString(), anyCollection());
+        doAnswer(inv -> {
+            claims.values().removeIf(c -> c.getAppointmentId().equals(inv.getArgument(0)));
+            return null;
+        }).when(claimRepository).deleteByAppointmentId(anyString());
+
+        SlotClaimService claimService = new SlotClaimService(claimRepository, Mockito.mock(MongoTemplate.class), false);
+
+        nodeA = node(contextLoader, claimService);
+        nodeB = node(contextLoader, claimService);
+    }
+
+    private BookingContext context(AvailabilityRule rule, int dayOfWeek, Instant from, Instant to) {
+        List<Appointment> overlapping = staleReads ? List.of() : appointments.stream()
+                .filter(a -> a.getStart().isBefore(to) && a.getEnd().isAfter(from))
+                .toList();
+        return new BookingContext(DOCTOR, dayOfWeek, rule, List.of(), overlapping, List.of());
+    }
+
+    private AppointmentService node(BookingContextLoader contextLoader, SlotClaimService claimService) {
+        return appointmentService()
+                .repository(appointmentRepository)
+                .slotClaims(claimService)
+                .contextLoader(contextLoader)
+                .build();
+    }
+
+    @Test
+    void concurrentBookingsOfOneSlotProduceExactlyOneAppointment() throws Exception {
+        LocalDate date = LocalDate.now(UK).plusDays(7);
+        int threads = 64;
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger booked = new AtomicInteger();
+        AtomicInteger conflicts = new AtomicInteger();
+        AtomicInteger other = new AtomicInteger();
+
+        for (int i = 0; i < threads; i++) {
+            AppointmentService node = i % 2 == 0 ? nodeA : nodeB;
+            String patient = "patient-" + i;
+            pool.submit(() -> {
+                try {
+                    start.await();
+                    node.createAppointment(request(patient, date, "10:00"));
+                    booked.incrementAndGet();
+                } catch (ConflictException e) {
+                    conflicts.incrementAndGet();
+                } catch (Exception e) {
+                    other.incrementAndGet();
+                }
+            });
+        }
+        start.countDown();
+        pool.shutdown();
+        assertThat(pool.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(booked.get()).isEqualTo(1);
+        assertThat(conflicts.get()).isEqualTo(threads - 1);
+        assertThat(other.get()).isZero();
+        assertThat(appointments).hasSize(1);
+    }
+
+    @Test
+    void overlapWithDifferentStartIsRejectedByTheClaimEvenIfTheOverlapQueryMissesIt() {
+        LocalDate date = LocalDate.now(UK).plusDays(7);
+        nodeA.createAppointment(request("patient-1", date, "10:00"));
+        nodeB.createAppointment(request("patient-2", date, "11:00"));
+        String second = appointments.get(1).getId();
+
+        // Simulate the other node's booking not being visible to the check yet
+        staleReads = true;
+
+        RescheduleRequest overlapping = new RescheduleRequest();
+        overlapping.setNewStart(at(date, 10, 15));
+        overlapping.setNewEnd(at(date, 10, 45));
+
+        assertThatThrownBy(() -> nodeB.reschedule(second, overlapping)).isInstanceOf(ConflictException.class);
+
+        // Failed move keeps the original time and its claims, and leaves nothing of the attempt behind
+        assertThat(appointments.get(1).getStart()).isEqualTo(at(date, 11, 0));
+        assertThat(claims.values()).filteredOn(c -> c.getAppointmentId().equals(second)).hasSize(6);
+        assertThat(claims).hasSize(12);
+    }
+
+    @Test
+    void cancelledSlotCanBeBookedAgain() {
+        LocalDate date = LocalDate.now(UK).plusDays(7);
+        nodeA.createAppointment(request("patient-1", date, "10:00"));
+        Appointment first = appointments.get(0);
+
+        when(appointmentRepository.findById(first.getId())).thenReturn(Optional.of(first));
+        nodeA.cancel(first.getId());
+        appointments.clear(); // overlap query only sees live bookings in this fake
+
+        nodeB.createAppointment(request("patient-2", date, "10:00"));
+        assertThat(appointments).hasSize(1);
+        assertThat(appointments.get(0).getStatus()).isEqualTo(AppointmentStatus.SCHEDULED);
+    }
+
+    private static BookAppointmentRequest request(String patientId, LocalDate date, String time) {
+        BookAppointmentRequest request = new BookAppointmentRequest();
+        request.setDoctorId(DOCTOR);
+        request.setPatientId(patientId);
+        request.setDate(date.toString());
+        request.setTime(time);
+        return request;
+    }
+
+    private static Instant at(LocalDate date, int hour, int minute) {
+        return ZonedDateTime.of(date, LocalTime.of(hour, minute), UK).toInstant();
+    }
+}
@@ -0,0 +1,247 @@
+package com.example.vladyslav.service;
+
+import com.example.vladyslav.exception.ConflictException;
+import com.example.vladyslav.model.Appointment;
+import com.example.vladyslav.model.AvailabilityRule;
+import com.example.vladyslav.model.TimeOff;
+import com.example.vladyslav.model.enums.AppointmentStatus;
+import com.example.vladyslav.repository.AppointmentRepository;
+import com.example.vladyslav.repository.SlotClaimRepository;
+import com.example.vladyslav.requests.BookAppointmentRequest;
+import com.example.vladyslav.requests.RescheduleRequest;
+import com.mongodb.DBRef;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.mockito.invocation.Invocation;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static com.example.vladyslav.service.AppointmentServiceFixture.appointmentService;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Counts what a booking sends to Mongo. Every mocked call that reaches the database is one command;
+ * metadata calls on the template (converter, collection names) are not.
+ */
+class AppointmentBookingRoundTripTest {
+
+    private static final ZoneId UK = ZoneId.of("Europe/London");
+    // Profiles are keyed by ObjectId
+    private static final ObjectId DOCTOR_ID = new ObjectId();
+    private static final ObjectId PATIENT_ID = new ObjectId();
+    private static final ObjectId CLINIC_ID = new ObjectId();
+    private static final String DOCTOR = DOCTOR_ID.toHexString();
+    private static final Set<String> LOCAL_CALLS = Set.of("getConverter", "getCollectionName");
+
+    private final MappingMongoConverter converter = converter();
+    private final List<Document> timeOffs = new ArrayList<>();
+    private final List<Document> booked = new ArrayList<>();
+
+    private MongoTemplate mongoTemplate;
+    private AppointmentRepository appointmentRepository;
+    private SlotClaimRepository claimRepository;
+    private MongoTemplate outboxTemplate;
+    private MongoTemplate snapshotsTemplate;
+    private AppointmentService service;
+
+    @BeforeEach
+    void setUp() {
+        AvailabilityRule rule = AvailabilityRule.builder()
+                .id("rule-1")
+                .doctorId(DOCTOR)
+                .dayOfWeek(1)
+                .start(LocalTime.of(9, 0))
+                .end(LocalTime.of(17, 0))
+                .slotMinutes(30)
+                .build();
+
+        mongoTemplate = Mockito.mock(MongoTemplate.class);
+        when(mongoTemplate.getConverter()).thenReturn(converter);
+        when(mongoTemplate.getCollectionName(any())).thenAnswer(inv -> inv.getArgument(0, Class.class).getSimpleName());
+        when(mongoTemplate.aggregate(any(Aggregation.class), anyString(), eq(Document.class))).thenAnswer(inv -> {
+            Document result = new Document();
+            converter.write(rule, result);
+            result.append("timeOffs", timeOffs).append("appointments", booked)
+                    .append("doctor", List.of(new Document("_id", DOCTOR_ID).append("firstName", "Ann").append("lastName", "Lee")
+                            .append("clinic", new DBRef("Clinic", CLINIC_ID))))
+                    .append("patient", List.of(new Document("_id", PATIENT_ID).append("firstName", "Bob").append("lastName", "Roe")));
+            return new AggregationResults<>(List.of(result), new Document());
+        });
+
+        appointmentRepository = Mockito.mock(AppointmentRepository.class);
+        when(appointmentRepository.save(any(Appointment.class))).thenAnswer(inv -> inv.getArgument(0));
+        claimRepository = Mockito.mock(SlotClaimRepository.class);
+        outboxTemplate = Mockito.mock(MongoTemplate.class);
+        snapshotsTemplate = Mockito.mock(MongoTemplate.class);
+
+        service = appointmentService()
+                .repository(appointmentRepository)
+                .slotClaims(new SlotClaimService(claimRepository, Mockito.mock(MongoTemplate.class), false))
+                .contextLoader(new BookingContextLoader(mongoTemplate))
+                .outboxTemplate(outboxTemplate)
+                .historyTemplate(mongoTemplate)
+                .snapshotsTemplate(snapshotsTemplate)
+                .build();
+    }
+
+    @Test
+    void bookingIsOneReadAndThreeWrites() {
+        service.createAppointment(request(nextMonday(), "10:00"));
+
+        assertThat(commands(mongoTemplate)).containsExactly("aggregate");
+        assertThat(commands(claimRepository)).containsExactly("insert");
+        assertThat(commands(appointmentRepository)).containsExactly("save");
+        assertThat(commands(outboxTemplate)).containsExactly("insert");
+        assertThat(commands(snapshotsTemplate)).isEmpty();
+    }
+
+    @Test
+    void clinicAndNamesComeFromTheContextRead() {
+        service.createAppointment(request(nextMonday(), "10:00"));
+
+        ArgumentCaptor<Aggregation> aggregation = ArgumentCaptor.forClass(Aggregation.class);
+        verify(mongoTemplate).aggregate(aggregation.capture(), eq("AvailabilityRule"), eq(Document.class));
+        List<Document> lookups = aggregation.getValue().toPipeline(Aggregation.DEFAULT_CONTEXT).stream()
+                .filter(stage -> stage.containsKey("$lookup"))
+                .map(stage -> stage.get("$lookup", Document.class))
+                .toList();
+        assertThat(lookups).extracting(lookup -> lookup.getString("from"))
+                .containsExactly("TimeOff", "Appointment", "SlotHold", "Doctor", "Patient");
+        assertThat(lookups.get(3).getList("pipeline", Document.class).get(0))
+                .isEqualTo(new Document("$match", new Document("_id", DOCTOR_ID)));
+
+        ArgumentCaptor<Appointment> saved = ArgumentCaptor.forClass(Appointment.class);
+        verify(appointmentRepository).save(saved.capture());
+        assertThat(saved.getValue().getClinicId()).isEqualTo(CLINIC_ID.toHexString());
+        assertThat(saved.getValue().getDoctorName()).isEqualTo("Ann Lee");
+        assertThat(saved.getValue().getPatientName()).isEqualTo("Bob Roe");
+    }
+
+    @Test
+    void rejectedBookingStopsAfterTheContextRead() {
+        LocalDate date = nextMonday();
+        booked.add(converted(Appointment.builder()
+                .id("existing")
+                .doctorId(DOCTOR)
+                .start(at(date, 10, 0))
+                .end(at(date, 10, 30))
+                .status(AppointmentStatus.SCHEDULED)
+                .build()));
+
+        assertThatThrownBy(() -> service.createAppointment(request(date, "10:00"))).isInstanceOf(ConflictException.class);
+
+        assertThat(commands(mongoTemplate)).containsExactly("aggregate");
+        assertThat(commands(claimRepository)).isEmpty();
+        assertThat(commands(appointmentRepository)).isEmpty();
+        assertThat(commands(outboxTemplate)).isEmpty();
+    }
+
+    @Test
+    void timeOffFromTheSnapshotBlocksTheBooking() {
+        LocalDate date = nextMonday();
+        timeOffs.add(converted(TimeOff.builder()
+                .id("off-1")
+                .doctorId(DOCTOR)
+                .start(at(date, 9, 0))
+                .end(at(date, 12, 0))
+                .build()));
+
+        assertThatThrownBy(() -> service.createAppointment(request(date, "10:00")))
+                .hasMessageContaining("time-off");
+        assertThat(commands(mongoTemplate)).containsExactly("aggregate");
+    }
+
+    @Test
+    void rescheduleReadsTheAppointmentAndTheContextOnly() {
+        LocalDate date = nextMonday();
+        Appointment existing = Appointment.builder()
+                .id("appt-1")
+                .doctorId(DOCTOR)
+                .patientId("patient-1")
+                .start(at(date, 10, 0))
+                .end(at(date, 10, 30))
+                .status(AppointmentStatus.SCHEDULED)
+                .build();
+        when(appointmentRepository.findById("appt-1")).thenReturn(Optional.of(existing));
+        booked.add(converted(existing));
+
+        RescheduleRequest request = new RescheduleRequest();
+        request.setNewStart(at(date, 11, 0));
+        request.setNewEnd(at(date, 11, 30));
+        service.reschedule("appt-1", request);
+
+        assertThat(commands(mongoTemplate)).containsExactly("aggregate");
+        assertThat(commands(appointmentRepository)).containsExactly("findById", "save");
+        assertThat(commands(outboxTemplate)).containsExactly("insert");
+    }
+
+    private static List<String> commands(Object mock) {
+        return Mockito.mockingDetails(mock).getInvocations().stream()
+                .map(Invocation::getMethod)
+                .map(method -> method.getName())
+                .filter(name -> !LOCAL_CALLS.contains(name))
+                .toList();
+    }
+
+    private static MappingMongoConverter converter() {
+        MongoCustomConversions conversions = new MongoCustomConversions(List.of());
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        mappingContext.afterPropertiesSet();
+
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+        return converter;
+    }
+
+    private Document converted(Object entity) {
+        Document document = new Document();
+        converter.write(entity, document);
+        return document;
+    }
+
+    private static LocalDate nextMonday() {
+        LocalDate date = LocalDate.now(UK).plusDays(7);
+        while (date.getDayOfWeek().getValue() != 1) date = date.plusDays(1);
+        return date;
+    }
+
+    private static BookAppointmentRequest request(LocalDate date, String time) {
+        BookAppointmentRequest request = new BookAppointmentRequest();
+        request.setDoctorId(DOCTOR);
+        request.setPatientId(PATIENT_ID.toHexString());
+        request.setDate(date.toString());
+        request.setTime(time);
+        return request;
+    }
+
+    private static Instant at(LocalDate date, int hour, int minute) {
+        return ZonedDateTime.of(date, LocalTime.of(hour, minute), UK).toInstant();
+    }
+}
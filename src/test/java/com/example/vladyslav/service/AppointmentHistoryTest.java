@@ -0,0 +1,114 @@
+package com.example.vladyslav.service;
+
+import com.example.vladyslav.model.Appointment;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+import org.springframework.data.mongodb.core.aggregation.TypeBasedAggregationOperationContext;
+import org.springframework.data.mongodb.core.aggregation.TypedAggregation;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+class AppointmentHistoryTest {
+
+    private MongoTemplate mongoTemplate;
+    private AppointmentHistory history;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = Mockito.mock(MongoTemplate.class);
+        history = new AppointmentHistory(mongoTemplate);
+    }
+
+    @Test
+    void offsetPageIsCutOnTheServerFromBothCollections() {
+        when(mongoTemplate.aggregate(any(TypedAggregation.class), eq(Appointment.class)))
+                .thenReturn(new AggregationResults<>(List.of(appointment("c5", 5), appointment("c4", 4)), new Document()));
+        when(mongoTemplate.count(any(Query.class), eq(Appointment.class))).thenReturn(10L);
+        when(mongoTemplate.count(any(Query.class), eq(Appointment.class), eq(AppointmentHistory.ARCHIVE))).thenReturn(30L);
+
+        Page<Appointment> page = history.page(where("patientId").is("patient-1"), Sort.Direction.DESC, PageRequest.of(1, 2));
+
+        assertThat(page.getContent()).extracting(Appointment::getId).containsExactly("c5", "c4");
+        assertThat(page.getTotalElements()).isEqualTo(40);
+
+        List<Document> stages = pipeline();
+        Document match = new Document("$match", new Document("patientId", "patient-1"));
+        Document order = new Document("$sort", new Document("start", -1).append("_id", -1));
+        // Each side only needs offset + size rows, only the page comes back
+        assertThat(stages).containsExactly(match, order, new Document("$limit", 4L),
+                new Document("$unionWith", new Document("coll", AppointmentHistory.ARCHIVE)
+                        .append("pipeline", List.of(match, order, new Document("$limit", 4L)))),
+                order, new Document("$skip", 2L), new Document("$limit", 2L));
+        // Key order matters for the (start, _id) index
+        assertThat(stages.get(1).get("$sort", Document.class).keySet()).containsExactly("start", "_id");
+    }
+
+    @Test
+    void rowCaughtMidArchivingIsListedOnce() {
+        when(mongoTemplate.aggregate(any(TypedAggregation.class), eq(Appointment.class)))
+                .thenReturn(new AggregationResults<>(List.of(appointment("a1", 1), appointment("a1", 1), appointment("a2", 2)), new Document()));
+
+        Page<Appointment> page = history.page(where("doctorId").is("doctor-1"), Sort.Direction.ASC, PageRequest.of(0, 5));
+
+        assertThat(page.getContent()).extracting(Appointment::getId).containsExactly("a1", "a2");
+    }
+
+    @Test
+    void lookupFallsBackToTheArchive() {
+        when(mongoTemplate.findOne(any(Query.class), eq(Appointment.class), eq(AppointmentHistory.ARCHIVE))).thenReturn(appointment("old", 1));
+
+        assertThat(history.findById("old")).map(Appointment::getId).contains("old");
+    }
+
+    @Test
+    void hotHitSkipsTheArchive() {
+        when(mongoTemplate.findOne(any(Query.class), eq(Appointment.class))).thenReturn(appointment("new", 1));
+
+        assertThat(history.findById("new")).isPresent();
+        verify(mongoTemplate, never()).findOne(any(Query.class), eq(Appointment.class), eq(AppointmentHistory.ARCHIVE));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Document> pipeline() {
+        ArgumentCaptor<TypedAggregation<Appointment>> aggregation = ArgumentCaptor.forClass(TypedAggregation.class);
+        verify(mongoTemplate).aggregate(aggregation.capture(), eq(Appointment.class));
+        // Rendered the way the template does, with Appointment's field names
+        MongoCustomConversions conversions = new MongoCustomConversions(List.of());
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        mappingContext.afterPropertiesSet();
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+        return aggregation.getValue().toPipeline(
+                new TypeBasedAggregationOperationContext(Appointment.class, mappingContext, new QueryMapper(converter)));
+    }
+
+    private static Appointment appointment(String id, int hour) {
+        Instant start = Instant.parse("2030-01-01T00:00:00Z").plusSeconds(hour * 3600L);
+        return Appointment.builder().id(id).start(start).end(start.plusSeconds(1800)).build();
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.vladyslav.service;
+
+import com.example.vladyslav.dto.AppointmentDTO;
+import com.example.vladyslav.dto.CursorPageDTO;
+import com.example.vladyslav.exception.OurException;
+import com.example.vladyslav.model.Appointment;
+import com.example.vladyslav.repository.AppointmentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Window;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.example.vladyslav.service.AppointmentServiceFixture.appointmentService;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+class AppointmentKeysetPaginationTest {
+
+    private static final String DOCTOR = "doctor-1";
+
+    private AppointmentRepository appointmentRepository;
+    private MongoTemplate mongoTemplate;
+    private AppointmentService service;
+
+    @BeforeEach
+    void setUp() {
+        appointmentRepository = Mockito.mock(AppointmentRepository.class);
+        mongoTemplate = Mockito.mock(MongoTemplate.class);
+        when(mongoTemplate.scroll(any(Query.class), eq(Appointment.class), eq(AppointmentHistory.ARCHIVE)))
+                .thenReturn(window(List.of(), false));
+        service = appointmentService()
+                .repository(appointmentRepository)
+                .historyTemplate(mongoTemplate)
+                .build();
+    }
+
+    @Test
+    void firstPageStartsAtTheBeginningAndHandsOutACursorForTheNext() {
+        List<Appointment> rows = List.of(appointment("a3", 3), appointment("a2", 2));
+        when(mongoTemplate.scroll(any(Query.class), eq(Appointment.class))).thenReturn(window(rows, true));
+
+        CursorPageDTO<AppointmentDTO> page = service.getAppointmentsByDoctorId(DOCTOR, null, 2);
+
+        assertThat(page.items()).extracting(AppointmentDTO::getId).containsExactly("a3", "a2");
+        assertThat(page.nextCursor()).isNotBlank().doesNotContain("a2");
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).scroll(query.capture(), eq(Appointment.class));
+        assertThat(query.getValue().getLimit()).isEqualTo(2);
+        assertThat(query.getValue().getQueryObject()).containsEntry("doctorId", DOCTOR);
+        // No offset page, no count query
+        verify(mongoTemplate).scroll(any(Query.class), eq(Appointment.class), eq(AppointmentHistory.ARCHIVE));
+        verifyNoMoreInteractions(mongoTemplate);
+        verifyNoInteractions(appointmentRepository);
+    }
+
+    @Test
+    void cursorSeeksPastTheLastRowOfThePreviousPage() {
+        when(mongoTemplate.scroll(any(Query.class), eq(Appointment.class)))
+                .thenReturn(window(List.of(appointment("a3", 3), appointment("a2", 2)), true))
+                .thenReturn(window(List.of(appointment("a1", 1)), false));
+
+        String cursor = service.getAppointmentsByDoctorId(DOCTOR, null, 2).nextCursor();
+        CursorPageDTO<AppointmentDTO> last = service.getAppointmentsByDoctorId(DOCTOR, cursor, 2);
+
+        assertThat(last.nextCursor()).isNull();
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, Mockito.times(2)).scroll(query.capture(), eq(Appointment.class));
+        KeysetScrollPosition seek = query.getAllValues().get(1).getKeyset();
+        assertThat(seek.getKeys()).containsEntry("id", "a2").containsEntry("start", start(2));
+    }
+
+    @Test
+    void archivedRowsAreMergedIntoTheSameKeysetOrder() {
+        when(mongoTemplate.scroll(any(Query.class), eq(Appointment.class)))
+                .thenReturn(window(List.of(appointment("a5", 5), appointment("a2", 2)), false));
+        when(mongoTemplate.scroll(any(Query.class), eq(Appointment.class), eq(AppointmentHistory.ARCHIVE)))
+                .thenReturn(window(List.of(appointment("a4", 4), appointment("a1", 1)), true));
+
+        CursorPageDTO<AppointmentDTO> page = service.getAppointmentsByDoctorId(DOCTOR, null, 3);
+
+        assertThat(page.items()).extracting(AppointmentDTO::getId).containsExactly("a5", "a4", "a2");
+        // The next page continues after a2 on both sides, a1 included
+        assertThat(AppointmentCursor.decode(page.nextCursor()))
+                .isEqualTo(ScrollPosition.forward(Map.of("start", start(2), "id", "a2")));
+    }
+
+    @Test
+    void tamperedCursorIsRejected() {
+        assertThatThrownBy(() -> service.getAppointmentsByPatientId("patient-1", "not-a-cursor", 20)).isInstanceOf(OurException.class);
+        assertThatThrownBy(() -> AppointmentCursor.decode("MnwxfGE")).isInstanceOf(OurException.class);
+    }
+
+    @Test
+    void pageSizeIsBounded() {
+        assertThatThrownBy(() -> service.getAppointmentsByStatus(null, null, 0)).isInstanceOf(OurException.class);
+        assertThatThrownBy(() -> service.getAppointmentsByClinicId("clinic-1", null, 1000)).isInstanceOf(OurException.class);
+    }
+
+    // Mirrors what Spring Data hands back: the keyset of each row is its sort keys
+    private static Window<Appointment> window(List<Appointment> rows, boolean hasNext) {
+        return Window.from(rows, i -> {
+            Map<String, Object> keys = new LinkedHashMap<>();
+            keys.put("id", rows.get(i).getId());
+            keys.put("start", rows.get(i).getStart());
+            return ScrollPosition.forward(keys);
+        }, hasNext);
+    }
+
+    private static Appointment appointment(String id, int hour) {
+        return Appointment.builder().id(id).doctorId(DOCTOR).start(start(hour)).end(start(hour).plusSeconds(1800)).build();
+    }
+
+    private static Instant start(int hour) {
+        return Instant.parse("2030-01-01T00:00:00Z").plusSeconds(hour * 3600L);
+    }
+}
@@ -0,0 +1,181 @@
+package com.example.vladyslav.service;
+
+import com.example.vladyslav.dto.SeriesBookingDTO;
+import com.example.vladyslav.dto.SeriesOccurrenceDTO;
+import com.example.vladyslav.model.Appointment;
+import com.example.vladyslav.model.AvailabilityRule;
+import com.example.vladyslav.model.TimeOff;
+import com.example.vladyslav.model.enums.AppointmentStatus;
+import com.example.vladyslav.model.enums.SeriesMode;
+import com.example.vladyslav.repository.AppointmentRepository;
+import com.example.vladyslav.requests.BookSeriesRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import static com.example.vladyslav.service.AppointmentServiceFixture.appointmentService;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AppointmentSeriesBookingTest {
+
+    private static final ZoneId UK = ZoneId.of("Europe/London");
+    private static final String DOCTOR = "doctor-1";
+
+    private final List<TimeOff> timeOffs = new ArrayList<>();
+    private final List<Appointment> existing = new ArrayList<>();
+
+    private AppointmentRepository appointmentRepository;
+    private SlotClaimService slotClaimService;
+    private BookingContextLoader contextLoader;
+    private AppointmentService service;
+    private LocalDate first;
+
+    @BeforeEach
+    void setUp() {
+        first = LocalDate.now(UK).plusDays(7);
+        AvailabilityRule rule = AvailabilityRule.builder()
+                .doctorId(DOCTOR)
+                .dayOfWeek(first.getDayOfWeek().getValue())
+                .start(LocalTime.of(9, 0))
+                .end(LocalTime.of(17, 0))
+                .slotMinutes(45)
+                .build();
+
+        contextLoader = Mockito.mock(BookingContextLoader.class);
+        when(contextLoader.loadForBooking(eq(DOCTOR), any(), anyInt(), any(), any()))
+                .thenAnswer(inv -> new BookingContext(DOCTOR, inv.getArgument(2), rule, timeOffs, existing, List.of(),
+                        new AppointmentSnapshots.Parties("clinic-1", "Ann Lee", "Bob Roe")));
+
+        appointmentRepository = Mockito.mock(AppointmentRepository.class);
+        slotClaimService = Mockito.mock(SlotClaimService.class);
+        when(slotClaimService.claimAll(anyCollection())).thenReturn(Set.of());
+
+        service = appointmentService()
+                .repository(appointmentRepository)
+                .slotClaims(slotClaimService)
+                .contextLoader(contextLoader)
+                .build();
+    }
+
+    @Test
+    void weeklySeriesIsValidatedWithOneLoadAndInsertedWithOneCall() {
+        SeriesBookingDTO result = service.bookSeries(request(SeriesMode.ALL_OR_NOTHING, 12));
+
+        assertThat(result.booked()).isEqualTo(12);
+        assertThat(result.seriesId()).isNotNull();
+        assertThat(result.occurrences()).extracting(SeriesOccurrenceDTO::outcome).containsOnly(SeriesOccurrenceDTO.Outcome.BOOKED);
+        assertThat(result.occurrences().get(11).date()).isEqualTo(first.plusWeeks(11));
+
+        verify(contextLoader, times(1)).loadForBooking(eq(DOCTOR), eq("patient-1"), anyInt(),
+                eq(at(first, 0, 0)), eq(at(first.plusWeeks(11).plusDays(1), 0, 0)));
+        verify(slotClaimService, times(1)).claimAll(anyCollection());
+        assertThat(inserted()).hasSize(12)
+                .allSatisfy(a -> assertThat(a.getSeriesId()).isEqualTo(result.seriesId()))
+                // Copied from the same context read, no profile lookups of their own
+                .allSatisfy(a -> assertThat(a.getClinicId()).isEqualTo("clinic-1"))
+                .allSatisfy(a -> assertThat(a.getPatientName()).isEqualTo("Bob Roe"));
+    }
+
+    @Test
+    void allOrNothingWritesNothingWhenOneSessionIsBlocked() {
+        timeOffs.add(TimeOff.builder().doctorId(DOCTOR).start(at(first.plusWeeks(2), 0, 0)).end(at(first.plusWeeks(2), 23, 59)).build());
+
+        SeriesBookingDTO result = service.bookSeries(request(SeriesMode.ALL_OR_NOTHING, 6));
+
+        assertThat(result.booked()).isZero();
+        assertThat(result.seriesId()).isNull();
+        assertThat(result.occurrences().get(2).outcome()).isEqualTo(SeriesOccurrenceDTO.Outcome.REJECTED);
+        assertThat(result.occurrences()).filteredOn(o -> o.outcome() == SeriesOccurrenceDTO.Outcome.SKIPPED).hasSize(5);
+        verify(slotClaimService, never()).claimAll(anyCollection());
+        verify(appointmentRepository, never()).insert(anyIterable());
+    }
+
+    @Test
+    void bestEffortBooksAroundAnExistingAppointment() {
+        existing.add(Appointment.builder()
+                .id("other")
+                .doctorId(DOCTOR)
+                .start(at(first.plusWeeks(3), 10, 30))
+                .end(at(first.plusWeeks(3), 11, 15))
+                .status(AppointmentStatus.SCHEDULED)
+                .build());
+
+        SeriesBookingDTO result = service.bookSeries(request(SeriesMode.BEST_EFFORT, 6));
+
+        assertThat(result.booked()).isEqualTo(5);
+        assertThat(result.occurrences().get(3).outcome()).isEqualTo(SeriesOccurrenceDTO.Outcome.REJECTED);
+        assertThat(inserted()).hasSize(5);
+    }
+
+    @Test
+    void lostClaimsAreReportedInBestEffortMode() {
+        when(slotClaimService.claimAll(anyCollection())).thenAnswer(inv -> {
+            Collection<Appointment> drafts = inv.getArgument(0);
+            return Set.of(drafts.iterator().next().getId());
+        });
+
+        SeriesBookingDTO result = service.bookSeries(request(SeriesMode.BEST_EFFORT, 4));
+
+        assertThat(result.booked()).isEqualTo(3);
+        assertThat(result.occurrences().get(0).outcome()).isEqualTo(SeriesOccurrenceDTO.Outcome.REJECTED);
+        assertThat(inserted()).hasSize(3);
+    }
+
+    @Test
+    void lostClaimsReleaseTheRestInAllOrNothingMode() {
+        when(slotClaimService.claimAll(anyCollection())).thenAnswer(inv -> {
+            Collection<Appointment> drafts = inv.getArgument(0);
+            return Set.of(drafts.iterator().next().getId());
+        });
+
+        SeriesBookingDTO result = service.bookSeries(request(SeriesMode.ALL_OR_NOTHING, 4));
+
+        assertThat(result.booked()).isZero();
+        verify(slotClaimService).releaseAll(Mockito.<Collection<String>>argThat(ids -> ids.size() == 3));
+        verify(appointmentRepository, never()).insert(anyIterable());
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Appointment> inserted() {
+        ArgumentCaptor<Iterable<Appointment>> captor = ArgumentCaptor.forClass(Iterable.class);
+        verify(appointmentRepository, times(1)).insert(captor.capture());
+        List<Appointment> appointments = new ArrayList<>();
+        captor.getValue().forEach(appointments::add);
+        return appointments;
+    }
+
+    private BookSeriesRequest request(SeriesMode mode, int occurrences) {
+        BookSeriesRequest request = new BookSeriesRequest();
+        request.setDoctorId(DOCTOR);
+        request.setPatientId("patient-1");
+        request.setStartDate(first.toString());
+        request.setTime("10:30");
+        request.setOccurrences(occurrences);
+        request.setMode(mode);
+        return request;
+    }
+
+    private static Instant at(LocalDate date, int hour, int minute) {
+        return ZonedDateTime.of(date, LocalTime.of(hour, minute), UK).toInstant();
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.vladyslav.service;
+
+import com.example.vladyslav.repository.AppointmentRepository;
+import com.example.vladyslav.repository.DoctorRepository;
+import org.mockito.Mockito;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+/**
+ * The AppointmentService the booking tests run against. Whatever a test does not set is a mock, except the parts
+ * that are cheaper to run for real: slot inventory switched off, in-memory locks and an outbox without transactions.
+ */
+final class AppointmentServiceFixture {
+
+    private AppointmentRepository appointmentRepository = Mockito.mock(AppointmentRepository.class);
+    private ApplicationEventPublisher eventPublisher = Mockito.mock(ApplicationEventPublisher.class);
+    private SlotClaimService slotClaimService = Mockito.mock(SlotClaimService.class);
+    private BookingContextLoader contextLoader = Mockito.mock(BookingContextLoader.class);
+    private MongoTemplate outboxTemplate = Mockito.mock(MongoTemplate.class);
+    private MongoTemplate historyTemplate = Mockito.mock(MongoTemplate.class);
+    private MongoTemplate snapshotsTemplate = Mockito.mock(MongoTemplate.class);
+
+    static AppointmentServiceFixture appointmentService() {
+        return new AppointmentServiceFixture();
+    }
+
+    AppointmentServiceFixture repository(AppointmentRepository appointmentRepository) {
+        this.appointmentRepository = appointmentRepository;
+        return this;
+    }
+
+    AppointmentServiceFixture eventPublisher(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+        return this;
+    }
+
+    AppointmentServiceFixture slotClaims(SlotClaimService slotClaimService) {
+        this.slotClaimService = slotClaimService;
+        return this;
+    }
+
+    AppointmentServiceFixture contextLoader(BookingContextLoader contextLoader) {
+        this.contextLoader = contextLoader;
+        return this;
+    }
+
+    AppointmentServiceFixture outboxTemplate(MongoTemplate outboxTemplate) {
+        this.outboxTemplate = outboxTemplate;
+        return this;
+    }
+
+    AppointmentServiceFixture historyTemplate(MongoTemplate historyTemplate) {
+        this.historyTemplate = historyTemplate;
+        return this;
+    }
+
+    AppointmentServiceFixture snapshotsTemplate(MongoTemplate snapshotsTemplate) {
+        this.snapshotsTemplate = snapshotsTemplate;
+        return this;
+    }
+
+    AppointmentOutbox outbox() {
+        return new AppointmentOutbox(outboxTemplate, null, eventPublisher, false);
+    }
+
+    AppointmentService build() {
+        return new AppointmentService(appointmentRepository,
+                Mockito.mock(DoctorRepository.class),
+                new SlotInventoryService(Mockito.mock(MongoTemplate.class), null, Runnable::run, false, 28),
+                slotClaimService,
+                new BookingLocks(16, 10_000),
+                contextLoader,
+                outbox(),
+                new AppointmentHistory(historyTemplate),
+                new AppointmentSnapshots(snapshotsTemplate));
+    }
+}
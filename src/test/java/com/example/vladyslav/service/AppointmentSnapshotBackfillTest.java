@@ -0,0 +1,157 @@
+package com.example.vladyslav.service;
+
+import com.example.vladyslav.model.Appointment;
+import com.example.vladyslav.model.Doctor;
+import com.example.vladyslav.model.Patient;
+import com.example.vladyslav.model.SweepCheckpoint;
+import com.mongodb.DBRef;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AppointmentSnapshotBackfillTest {
+
+    private static final Instant NOW = Instant.parse("2030-05-10T12:00:00Z");
+    private static final String HOT = "appointments";
+
+    private MongoTemplate mongoTemplate;
+    private AppointmentSnapshots snapshots;
+    private BulkOperations bulk;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = Mockito.mock(MongoTemplate.class);
+        snapshots = Mockito.mock(AppointmentSnapshots.class);
+        bulk = Mockito.mock(BulkOperations.class);
+        when(mongoTemplate.getCollectionName(Appointment.class)).thenReturn(HOT);
+        when(mongoTemplate.bulkOps(eq(BulkOperations.BulkMode.UNORDERED), eq(Appointment.class), anyString())).thenReturn(bulk);
+        checkpoint(SweepCheckpoint.builder().build());
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(SweepCheckpoint.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+        when(mongoTemplate.find(any(Query.class), eq(Appointment.class), anyString())).thenReturn(List.of());
+
+        when(snapshots.doctors(any())).thenReturn(Map.of("d1", new AppointmentSnapshots.DoctorSnapshot("c1", "Ann Lee")));
+        when(snapshots.patientNames(any())).thenReturn(Map.of("p1", "Bob Roe"));
+    }
+
+    @Test
+    void missingFieldsAreSetWithOneBulkPerBatchAndTheCollectionIsMarkedDone() {
+        when(mongoTemplate.find(any(Query.class), eq(Appointment.class), eq(HOT)))
+                .thenReturn(List.of(appointment("a1", "d1", "p1", null), appointment("a2", "d1", "p1", "c-booked")));
+        modified(2);
+
+        assertThat(backfill(500, 20).backfillOnce(NOW)).isEqualTo(2);
+
+        ArgumentCaptor<Query> queries = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+        verify(bulk, times(2)).updateOne(queries.capture(), updates.capture());
+        assertThat(queries.getAllValues().get(0).getQueryObject())
+                .isEqualTo(new Document("_id", "a1").append("doctorName", new Document("$exists", false)));
+        assertThat(updates.getAllValues().get(0).getUpdateObject().get("$set", Document.class))
+                .isEqualTo(new Document("doctorName", "Ann Lee").append("clinicId", "c1").append("patientName", "Bob Roe"));
+        // A clinic recorded at booking is not replaced with the doctor's current one
+        assertThat(updates.getAllValues().get(1).getUpdateObject().get("$set", Document.class)).doesNotContainKey("clinicId");
+
+        ArgumentCaptor<Update> checkpoints = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate, times(2)).updateFirst(any(Query.class), checkpoints.capture(), eq(SweepCheckpoint.class));
+        assertThat(checkpoints.getAllValues().get(0).getUpdateObject().get("$set", Document.class))
+                .containsEntry("lastId", "a2").containsEntry("watermark", NOW);
+    }
+
+    @Test
+    void resumesAfterTheCheckpointAndRenewsBetweenFullBatches() {
+        checkpoint(SweepCheckpoint.builder().lastId("a0").build());
+        when(mongoTemplate.find(any(Query.class), eq(Appointment.class), eq(HOT)))
+                .thenReturn(List.of(appointment("a1", "d1", "p1", null), appointment("a2", "unknown", "unknown", null)));
+        modified(1);
+
+        backfill(2, 3).backfillOnce(NOW);
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, times(3)).find(query.capture(), eq(Appointment.class), eq(HOT));
+        assertThat(query.getAllValues().get(0).getQueryObject().get("_id", Document.class)).containsEntry("$gt", "a0");
+        assertThat(query.getAllValues().get(0).getSortObject()).isEqualTo(new Document("_id", 1));
+        // Rows whose doctor and patient are gone are skipped, not retried forever
+        verify(bulk, times(3)).updateOne(any(Query.class), any(Update.class));
+    }
+
+    @Test
+    void finishedCollectionsAreNotWalkedAgain() {
+        checkpoint(SweepCheckpoint.builder().watermark(NOW.minusSeconds(3600)).build());
+
+        assertThat(backfill(500, 20).backfillOnce(NOW)).isZero();
+        verify(mongoTemplate, never()).find(any(Query.class), eq(Appointment.class), anyString());
+    }
+
+    @Test
+    void onlyTheLeaseHolderBackfills() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(SweepCheckpoint.class)))
+                .thenThrow(new DuplicateKeyException("lease held"));
+
+        assertThat(backfill(500, 20).backfillOnce(NOW)).isZero();
+        verify(mongoTemplate, never()).find(any(Query.class), eq(Appointment.class), anyString());
+    }
+
+    @Test
+    void snapshotsTakeTheClinicIdFromTheDoctorsReferenceWithoutResolvingIt() {
+        ObjectId doctorId = new ObjectId();
+        ObjectId clinicId = new ObjectId();
+        ObjectId patientId = new ObjectId();
+        when(mongoTemplate.getCollectionName(Doctor.class)).thenReturn("doctors");
+        when(mongoTemplate.getCollectionName(Patient.class)).thenReturn("patients");
+        when(mongoTemplate.find(any(Query.class), eq(Document.class), eq("doctors"))).thenReturn(List.of(
+                new Document("_id", doctorId).append("firstName", "Ann").append("lastName", "Lee").append("clinic", new DBRef("clinics", clinicId))));
+        when(mongoTemplate.find(any(Query.class), eq(Document.class), eq("patients"))).thenReturn(List.of(
+                new Document("_id", patientId).append("firstName", "Bob")));
+
+        Appointment filled = new AppointmentSnapshots(mongoTemplate)
+                .fill(Appointment.builder().doctorId(doctorId.toHexString()).patientId(patientId.toHexString()).build());
+
+        assertThat(filled.getClinicId()).isEqualTo(clinicId.toHexString());
+        assertThat(filled.getDoctorName()).isEqualTo("Ann Lee");
+        assertThat(filled.getPatientName()).isEqualTo("Bob");
+    }
+
+    private AppointmentSnapshotBackfill backfill(int batchSize, int maxBatches) {
+        return new AppointmentSnapshotBackfill(mongoTemplate, snapshots, true, batchSize, maxBatches, 600);
+    }
+
+    private void checkpoint(SweepCheckpoint checkpoint) {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(SweepCheckpoint.class)))
+                .thenReturn(checkpoint);
+    }
+
+    private void modified(int count) {
+        BulkWriteResult result = Mockito.mock(BulkWriteResult.class);
+        when(result.getModifiedCount()).thenReturn(count);
+        when(bulk.execute()).thenReturn(result);
+    }
+
+    private static Appointment appointment(String id, String doctorId, String patientId, String clinicId) {
+        return Appointment.builder().id(id).doctorId(doctorId).patientId(patientId).clinicId(clinicId).build();
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.vladyslav.service;
+
+import com.example.vladyslav.dto.HeatmapDayDTO;
+import com.example.vladyslav.exception.OurException;
+import com.example.vladyslav.model.Appointment;
+import com.example.vladyslav.model.AvailabilityRule;
+import com.example.vladyslav.model.Doctor;
+import com.example.vladyslav.model.TimeOff;
+import com.example.vladyslav.model.enums.AppointmentStatus;
+import com.example.vladyslav.repository.AvailabilityRuleRepository;
+import com.example.vladyslav.repository.TimeOffRepository;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AvailabilityHeatmapServiceTest {
+
+    private static final ZoneId UK = ZoneId.of("Europe/London");
+    private static final String SPECIALITY = new ObjectId().toHexString();
+    private static final LocalDate MONDAY = nextMonday();
+
+    private MongoTemplate mongoTemplate;
+    private AvailabilityRuleRepository ruleRepository;
+    private TimeOffRepository timeOffRepository;
+    private AvailabilityHeatmapService service;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = Mockito.mock(MongoTemplate.class);
+        ruleRepository = Mockito.mock(AvailabilityRuleRepository.class);
+        timeOffRepository = Mockito.mock(TimeOffRepository.class);
+        service = new AvailabilityHeatmapService(mongoTemplate, ruleRepository, timeOffRepository, 60, 14);
+
+        when(mongoTemplate.find(any(Query.class), eq(Doctor.class)))
+                .thenReturn(List.of(Doctor.builder().id("a").build(), Doctor.builder().id("b").build()));
+        // a: Mondays 09:00-11:00 (4 slots), b: Mondays and Tuesdays 09:00-10:00 (2 slots)
+        when(ruleRepository.findByDoctorIdIn(anyCollection())).thenReturn(List.of(
+                rule("a", 1, 11), rule("b", 1, 10), rule("b", 2, 10)));
+        // a has 09:00 booked on Monday
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq(Appointment.class), eq(Document.class)))
+                .thenReturn(new AggregationResults<>(List.of(new Document("_id", "a").append("busy", List.of(
+                        new Document("start", Date.from(at(MONDAY, 9, 0))).append("end", Date.from(at(MONDAY, 9, 30)))))), new Document()));
+        // b is off all Tuesday
+        when(timeOffRepository.findByDoctorIdInAndStartLessThanAndEndGreaterThan(anyCollection(), any(), any()))
+                .thenReturn(List.of(TimeOff.builder().doctorId("b")
+                        .start(at(MONDAY.plusDays(1), 0, 0)).end(at(MONDAY.plusDays(2), 0, 0)).build()));
+    }
+
+    @Test
+    void freeSlotsAndAvailableDoctorsAreCountedPerDay() {
+        List<HeatmapDayDTO> days = service.heatmap(SPECIALITY, null, MONDAY, MONDAY.plusDays(2));
+
+        assertThat(days).containsExactly(
+                new HeatmapDayDTO(MONDAY, 3 + 2, 2),
+                new HeatmapDayDTO(MONDAY.plusDays(1), 0, 0),
+                new HeatmapDayDTO(MONDAY.plusDays(2), 0, 0));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void everyDoctorIsReadWithOneQueryPerCollection() {
+        service.heatmap(SPECIALITY, null, MONDAY, MONDAY.plusDays(6));
+
+        ArgumentCaptor<Query> doctors = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(doctors.capture(), eq(Doctor.class));
+        assertThat(doctors.getValue().getQueryObject().toJson()).contains("speciality.$id").contains(SPECIALITY);
+        assertThat(doctors.getValue().getFieldsObject()).isEqualTo(new Document("_id", 1));
+
+        ArgumentCaptor<Aggregation> bookings = ArgumentCaptor.forClass(Aggregation.class);
+        verify(mongoTemplate).aggregate(bookings.capture(), eq(Appointment.class), eq(Document.class));
+        List<Document> stages = bookings.getValue().toPipeline(Aggregation.DEFAULT_CONTEXT);
+        Document match = stages.get(0).get("$match", Document.class);
+        assertThat((Collection<Object>) match.get("doctorId", Document.class).get("$in")).containsExactlyInAnyOrder("a", "b");
+        assertThat(match).containsEntry("status", AppointmentStatus.SCHEDULED)
+                .containsEntry("start", new Document("$lt", at(MONDAY.plusDays(7), 0, 0)))
+                .containsEntry("end", new Document("$gt", at(MONDAY, 0, 0)));
+        assertThat(stages.get(2).get("$group", Document.class)).containsEntry("_id", "$doctorId");
+
+        verify(ruleRepository).findByDoctorIdIn(anyCollection());
+        verify(timeOffRepository).findByDoctorIdInAndStartLessThanAndEndGreaterThan(anyCollection(), any(), any());
+    }
+
+    @Test
+    void repeatedRequestsAreServedFromTheCache() {
+        service.heatmap(SPECIALITY, null, MONDAY, MONDAY.plusDays(6));
+        service.heatmap(SPECIALITY, null, MONDAY, MONDAY.plusDays(6));
+
+        verify(mongoTemplate, times(1)).find(any(Query.class), eq(Doctor.class));
+    }
+
+    @Test
+    void rangeIsCappedByTheConfiguredMaximum() {
+        assertThat(service.heatmap(SPECIALITY, null, MONDAY, MONDAY.plusDays(13))).hasSize(14);
+
+        assertThatThrownBy(() -> service.heatmap(SPECIALITY, null, MONDAY, MONDAY.plusDays(14)))
+                .isInstanceOf(OurException.class)
+                .hasMessageContaining("14 days");
+    }
+
+    @Test
+    void noMatchingDoctorsIsAllZeroWithoutFurtherQueries() {
+        when(mongoTemplate.find(any(Query.class), eq(Doctor.class))).thenReturn(List.of());
+
+        assertThat(service.heatmap(SPECIALITY, null, MONDAY, MONDAY.plusDays(1)))
+                .extracting(HeatmapDayDTO::freeSlots).containsExactly(0, 0);
+        verify(ruleRepository, never()).findByDoctorIdIn(anyCollection());
+    }
+
+    private static AvailabilityRule rule(String doctorId, int dayOfWeek, int endHour) {
+        return AvailabilityRule.builder()
+                .doctorId(doctorId)
+                .dayOfWeek(dayOfWeek)
+                .start(LocalTime.of(9, 0))
+                .end(LocalTime.of(endHour, 0))
+                .slotMinutes(30)
+                .build();
+    }
+
+    // In the future, so no slot is dropped for having started already
+    private static LocalDate nextMonday() {
+        LocalDate date = LocalDate.now(UK).plusDays(7);
+        while (date.getDayOfWeek().getValue() != 1) date = date.plusDays(1);
+        return date;
+    }
+
+    private static Instant at(LocalDate date, int hour, int minute) {
+        return ZonedDateTime.of(date, LocalTime.of(hour, minute), UK).toInstant();
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.vladyslav.service;
+
+import com.example.vladyslav.dto.DaySlotsDTO;
+import com.example.vladyslav.event.AppointmentChangedEvent;
+import com.example.vladyslav.model.Appointment;
+import com.example.vladyslav.model.AvailabilityRule;
+import com.example.vladyslav.model.TimeOff;
+import com.example.vladyslav.model.enums.AppointmentStatus;
+import com.example.vladyslav.repository.AppointmentRepository;
+import com.example.vladyslav.repository.AvailabilityRuleRepository;
+import com.example.vladyslav.repository.SlotHoldRepository;
+import com.example.vladyslav.repository.TimeOffRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.mockito.Mockito;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+class AvailabilityRuleServiceTest {
+
+    private static final ZoneId UK = ZoneId.of("Europe/London");
+    private static final String DOCTOR = "doctor-1";
+    private static final LocalDate MONDAY = LocalDate.of(2026, 1, 5);
+
+    private AvailabilityRuleRepository ruleRepository;
+    private AppointmentRepository appointmentRepository;
+    private TimeOffRepository timeOffRepository;
+    private SlotHoldRepository slotHoldRepository;
+    private AvailabilityCache cache;
+    private AvailabilityRuleService service;
+
+    @BeforeEach
+    void setUp() {
+        ruleRepository = Mockito.mock(AvailabilityRuleRepository.class);
+        appointmentRepository = Mockito.mock(AppointmentRepository.class);
+        timeOffRepository = Mockito.mock(TimeOffRepository.class);
+        slotHoldRepository = Mockito.mock(SlotHoldRepository.class);
+
+        List<AvailabilityRule> weekdays = IntStream.rangeClosed(1, 5)
+                .mapToObj(dow -> AvailabilityRule.builder()
+                        .doctorId(DOCTOR)
+                        .dayOfWeek(dow)
+                        .start(LocalTime.of(9, 0))
+                        .end(LocalTime.of(12, 0))
+                        .slotMinutes(30)
+                        .build())
+                .toList();
+        when(ruleRepository.findByDoctorId(DOCTOR)).thenReturn(weekdays);
+
+        SlotMaskCalculator calculator = new SlotMaskCalculator(ruleRepository,
+                new AvailabilityWindowLoader(appointmentRepository, timeOffRepository, slotHoldRepository));
+        service = new AvailabilityRuleService(ruleRepository,
+                calculator,
+                cache = new AvailabilityCache(1_000, 10),
+                Mockito.mock(ApplicationEventPublisher.class),
+                new SlotInventoryService(Mockito.mock(MongoTemplate.class), calculator, Runnable::run, false, 28));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 7, 31, 90})
+    void roundTripsDoNotDependOnRangeLength(int days) {
+        service.getAvailability(DOCTOR, MONDAY, MONDAY.plusDays(days - 1));
+
+        // One query per collection for the whole range
+        assertThat(queryCount()).isEqualTo(4);
+    }
+
+    @Test
+    void bookingsAndTimeOffAreRemovedFromTheListing() {
+        when(appointmentRepository.findByDoctorIdAndStatusAndStartLessThanAndEndGreaterThan(
+                eq(DOCTOR), eq(AppointmentStatus.SCHEDULED), any(), any()))
+                .thenReturn(List.of(Appointment.builder()
+                        .doctorId(DOCTOR)
+                        .status(AppointmentStatus.SCHEDULED)
+                        .start(at(MONDAY, 9, 30))
+                        .end(at(MONDAY, 10, 0))
+                        .build()));
+
+        // Whole Tuesday off, plus the first hour on Wednesday
+        when(timeOffRepository.findByDoctorIdAndStartLessThanAndEndGreaterThan(eq(DOCTOR), any(), any()))
+                .thenReturn(List.of(TimeOff.builder()
+                        .doctorId(DOCTOR)
+                        .start(at(MONDAY.plusDays(1), 0, 0))
+                        .end(at(MONDAY.plusDays(2), 10, 0))
+                        .build()));
+
+        List<DaySlotsDTO> days = service.getAvailability(DOCTOR, MONDAY, MONDAY.plusDays(2));
+
+        assertThat(days.get(0).slots()).containsExactly("09:00", "10:00", "10:30", "11:00", "11:30");
+        assertThat(days.get(1).slots()).isEmpty();
+        assertThat(days.get(2).slots()).containsExactly("10:00", "10:30", "11:00", "11:30");
+    }
+
+    @Test
+    void repeatedRequestsAreServedFromCache() {
+        service.getAvailability(DOCTOR, MONDAY, MONDAY.plusDays(6));
+        service.getAvailability(DOCTOR, MONDAY, MONDAY.plusDays(6));
+
+        assertThat(queryCount()).isEqualTo(4);
+        assertThat(cache.stats().hitCount()).isEqualTo(7);
+    }
+
+    @Test
+    void bookingInvalidatesOnlyItsDoctorDay() {
+        service.getAvailability(DOCTOR, MONDAY, MONDAY.plusDays(6));
+
+        Appointment booked = Appointment.builder()
+                .id("a-1")
+                .doctorId(DOCTOR)
+                .start(at(MONDAY.plusDays(2), 9, 0))
+                .end(at(MONDAY.plusDays(2), 9, 30))
+                .build();
+        cache.onAppointmentChanged(AppointmentChangedEvent.of(booked, AppointmentChangedEvent.Change.BOOKED));
+
+        service.getAvailability(DOCTOR, MONDAY, MONDAY.plusDays(6));
+
+        assertThat(cache.stats().hitCount()).isEqualTo(6);
+        assertThat(cache.stats().missCount()).isEqualTo(8);
+    }
+
+    @Test
+    void daysCachedAtAnOlderCalendarVersionAreRecomputed() {
+        LocalDate to = MONDAY.plusDays(6);
+        assertThat(service.getAvailability(DOCTOR, MONDAY, to, 1).get(0).slots()).startsWith("09:00");
+
+        // Booked on another node: the version moved on, this node's cache was not told
+        when(appointmentRepository.findByDoctorIdAndStatusAndStartLessThanAndEndGreaterThan(
+                eq(DOCTOR), eq(AppointmentStatus.SCHEDULED), any(), any()))
+                .thenReturn(List.of(Appointment.builder()
+                        .doctorId(DOCTOR)
+                        .status(AppointmentStatus.SCHEDULED)
+                        .start(at(MONDAY, 9, 0))
+                        .end(at(MONDAY, 9, 30))
+                        .build()));
+
+        assertThat(service.getAvailability(DOCTOR, MONDAY, to, 1).get(0).slots()).startsWith("09:00");
+        assertThat(queryCount()).isEqualTo(4);
+
+        assertThat(service.getAvailability(DOCTOR, MONDAY, to, 2).get(0).slots()).startsWith("09:30");
+        assertThat(queryCount()).isEqualTo(8);
+    }
+
+    private int queryCount() {
+        return Mockito.mockingDetails(ruleRepository).getInvocations().size()
+                + Mockito.mockingDetails(appointmentRepository).getInvocations().size()
+                + Mockito.mockingDetails(timeOffRepository).getInvocations().size()
+                + Mockito.mockingDetails(slotHoldRepository).getInvocations().size();
+    }
+
+    private static Instant at(LocalDate date, int hour, int minute) {
+        return ZonedDateTime.of(date, LocalTime.of(hour, minute), UK).toInstant();
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.vladyslav.service;
+
+import com.example.vladyslav.dto.DaySlotsDTO;
+import com.example.vladyslav.exception.OurException;
+import com.example.vladyslav.model.Appointment;
+import com.example.vladyslav.model.AvailabilityRule;
+import com.example.vladyslav.model.SlotHold;
+import com.example.vladyslav.model.TimeOff;
+import com.example.vladyslav.model.enums.AppointmentStatus;
+import com.example.vladyslav.repository.AppointmentRepository;
+import com.example.vladyslav.repository.AvailabilityRuleRepository;
+import com.example.vladyslav.repository.SlotHoldRepository;
+import com.example.vladyslav.repository.TimeOffRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+class AvailabilityStreamServiceTest {
+
+    private static final ZoneId UK = ZoneId.of("Europe/London");
+    private static final String DOCTOR = "doctor-1";
+    private static final LocalDate MONDAY = LocalDate.of(2026, 1, 5);
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    private AvailabilityRuleRepository ruleRepository;
+    private AppointmentRepository appointmentRepository;
+    private TimeOffRepository timeOffRepository;
+    private SlotHoldRepository slotHoldRepository;
+    private AvailabilityStreamService streamService;
+
+    @BeforeEach
+    void setUp() {
+        ruleRepository = Mockito.mock(AvailabilityRuleRepository.class);
+        appointmentRepository = Mockito.mock(AppointmentRepository.class);
+        timeOffRepository = Mockito.mock(TimeOffRepository.class);
+        slotHoldRepository = Mockito.mock(SlotHoldRepository.class);
+
+        // Mon-Sat, Saturday with a late shift crossing into a midnight booking
+        List<AvailabilityRule> rules = IntStream.rangeClosed(1, 6)
+                .mapToObj(dow -> AvailabilityRule.builder()
+                        .doctorId(DOCTOR)
+                        .dayOfWeek(dow)
+                        .start(dow == 6 ? LocalTime.of(20, 0) : LocalTime.of(9, 0))
+                        .end(dow == 6 ? LocalTime.of(23, 30) : LocalTime.of(12, 0))
+                        .slotMinutes(30)
+                        .build())
+                .toList();
+        when(ruleRepository.findByDoctorId(DOCTOR)).thenReturn(rules);
+
+        streamService = new AvailabilityStreamService(ruleRepository, appointmentRepository, timeOffRepository, slotHoldRepository, objectMapper, 100);
+    }
+
+    @Test
+    void streamMatchesTheListingDayForDay() throws Exception {
+        List<Appointment> appointments = List.of(
+                booking(at(MONDAY, 9, 0), at(MONDAY, 9, 30)),
+                booking(at(MONDAY.plusDays(5), 23, 0), at(MONDAY.plusDays(6), 1, 0)),
+                booking(at(MONDAY.plusDays(15), 10, 0), at(MONDAY.plusDays(15), 11, 0)));
+        List<TimeOff> timeOffs = List.of(
+                TimeOff.builder().doctorId(DOCTOR).start(at(MONDAY.plusDays(8), 11, 0)).end(at(MONDAY.plusDays(10), 10, 0)).build(),
+                TimeOff.builder().doctorId(DOCTOR).start(at(MONDAY.plusDays(9), 0, 0)).end(at(MONDAY.plusDays(9), 9, 30)).build());
+        List<SlotHold> holds = List.of(
+                SlotHold.builder().doctorId(DOCTOR).start(at(MONDAY, 10, 0)).end(at(MONDAY, 10, 30)).build(),
+                SlotHold.builder().doctorId(DOCTOR).start(at(MONDAY.plusDays(22), 11, 0)).end(at(MONDAY.plusDays(22), 11, 30)).build());
+
+        when(appointmentRepository.findByDoctorIdAndStatusAndStartLessThanAndEndGreaterThan(
+                eq(DOCTOR), eq(AppointmentStatus.SCHEDULED), any(), any())).thenReturn(appointments);
+        when(appointmentRepository.streamByDoctorIdAndStatusAndStartLessThanAndEndGreaterThanOrderByStartAsc(
+                eq(DOCTOR), eq(AppointmentStatus.SCHEDULED), any(), any())).thenAnswer(inv -> appointments.stream());
+        when(timeOffRepository.findByDoctorIdAndStartLessThanAndEndGreaterThan(eq(DOCTOR), any(), any())).thenReturn(timeOffs);
+        when(timeOffRepository.streamByDoctorIdAndStartLessThanAndEndGreaterThanOrderByStartAsc(eq(DOCTOR), any(), any()))
+                .thenAnswer(inv -> timeOffs.stream());
+        when(slotHoldRepository.findByDoctorIdAndStartLessThanAndEndGreaterThanAndExpireAtGreaterThan(eq(DOCTOR), any(), any(), any()))
+                .thenReturn(holds);
+        when(slotHoldRepository.streamByDoctorIdAndStartLessThanAndEndGreaterThanAndExpireAtGreaterThanOrderByStartAsc(eq(DOCTOR), any(), any(), any()))
+                .thenAnswer(inv -> holds.stream());
+
+        SlotMaskCalculator calculator = new SlotMaskCalculator(ruleRepository,
+                new AvailabilityWindowLoader(appointmentRepository, timeOffRepository, slotHoldRepository));
+        AvailabilityRuleService listing = new AvailabilityRuleService(ruleRepository, calculator,
+                new AvailabilityCache(1_000, 10),
+                Mockito.mock(ApplicationEventPublisher.class),
+                new SlotInventoryService(Mockito.mock(MongoTemplate.class), calculator, Runnable::run, false, 28));
+
+        LocalDate to = MONDAY.plusDays(34);
+        assertThat(streamed(MONDAY, to)).isEqualTo(listing.getAvailability(DOCTOR, MONDAY, to));
+    }
+
+    @Test
+    void rangeLimitIsEnforced() {
+        assertThatThrownBy(() -> streamService.checkRange(MONDAY, MONDAY.plusDays(100)))
+                .isInstanceOf(OurException.class);
+        streamService.checkRange(MONDAY, MONDAY.plusDays(99));
+    }
+
+    private List<DaySlotsDTO> streamed(LocalDate from, LocalDate to) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        streamService.write(DOCTOR, from, to, out);
+
+        List<DaySlotsDTO> days = new ArrayList<>();
+        for (String line : out.toString(StandardCharsets.UTF_8).split("\n")) {
+            DaySlotsDTO day = objectMapper.readValue(line, DaySlotsDTO.class);
+            days.add(new DaySlotsDTO(day.date(), List.copyOf(day.slots())));
+        }
+        return days;
+    }
+
+    private static Appointment booking(Instant start, Instant end) {
+        return Appointment.builder().doctorId(DOCTOR).status(AppointmentStatus.SCHEDULED).start(start).end(end).build();
+    }
+
+    private static Instant at(LocalDate date, int hour, int minute) {
+        return ZonedDateTime.of(date, LocalTime.of(hour, minute), UK).toInstant();
+    }
+}
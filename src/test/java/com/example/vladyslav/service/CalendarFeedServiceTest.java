@@ -0,0 +1,168 @@
+package com.example.vladyslav.service;
+
+import com.example.vladyslav.dto.CalendarFeedDTO;
+import com.example.vladyslav.exception.NotFoundException;
+import com.example.vladyslav.exception.OurException;
+import com.example.vladyslav.model.Appointment;
+import com.example.vladyslav.model.CalendarFeed;
+import com.example.vladyslav.model.Doctor;
+import com.example.vladyslav.model.User;
+import com.example.vladyslav.model.enums.AppointmentStatus;
+import com.example.vladyslav.model.enums.CalendarFeedOwner;
+import com.example.vladyslav.model.enums.Role;
+import com.example.vladyslav.repository.AppointmentRepository;
+import com.example.vladyslav.repository.CalendarFeedRepository;
+import com.example.vladyslav.repository.DoctorRepository;
+import com.example.vladyslav.repository.PatientRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CalendarFeedServiceTest {
+
+    private static final Instant NOW = Instant.parse("2026-03-10T12:00:00Z");
+
+    private CalendarFeedRepository feedRepository;
+    private AppointmentRepository appointmentRepository;
+    private DoctorRepository doctorRepository;
+    private CalendarVersionService calendarVersionService;
+    private CalendarFeedService service;
+
+    @BeforeEach
+    void setUp() {
+        feedRepository = Mockito.mock(CalendarFeedRepository.class);
+        appointmentRepository = Mockito.mock(AppointmentRepository.class);
+        doctorRepository = Mockito.mock(DoctorRepository.class);
+        calendarVersionService = Mockito.mock(CalendarVersionService.class);
+        service = new CalendarFeedService(feedRepository, appointmentRepository, doctorRepository,
+                Mockito.mock(PatientRepository.class), calendarVersionService, 30, 365, 2);
+    }
+
+    @Test
+    void onlyTheTokenHashIsStoredAndTheTokenResolvesToTheFeed() {
+        User user = User.builder().id("u1").role(Role.DOCTOR).build();
+        when(doctorRepository.findByUserId("u1")).thenReturn(Optional.of(Doctor.builder().id("d1").build()));
+        when(feedRepository.save(any(CalendarFeed.class))).thenAnswer(inv -> {
+            CalendarFeed feed = inv.getArgument(0);
+            feed.setId("f1");
+            return feed;
+        });
+
+        CalendarFeedDTO created = service.create(user, "Work");
+
+        ArgumentCaptor<CalendarFeed> saved = ArgumentCaptor.forClass(CalendarFeed.class);
+        verify(feedRepository).save(saved.capture());
+        assertThat(saved.getValue().getOwnerType()).isEqualTo(CalendarFeedOwner.DOCTOR);
+        assertThat(saved.getValue().getOwnerId()).isEqualTo("d1");
+        assertThat(saved.getValue().getTokenHash()).isEqualTo(CalendarFeedService.hash(created.getToken())).isNotEqualTo(created.getToken());
+        assertThat(created.getPath()).isEqualTo("/api/calendar-feeds/" + created.getToken() + ".ics");
+
+        when(feedRepository.findByTokenHash(CalendarFeedService.hash(created.getToken()))).thenReturn(Optional.of(saved.getValue()));
+        assertThat(service.resolve(created.getToken())).isSameAs(saved.getValue());
+        assertThatThrownBy(() -> service.resolve("revoked-or-made-up")).isInstanceOf(NotFoundException.class);
+    }
+
+    @Test
+    void feedsArePerDoctorOrPatientAndLimitedPerUser() {
+        assertThatThrownBy(() -> service.create(User.builder().id("u1").role(Role.CLINIC).build(), null))
+                .isInstanceOf(OurException.class);
+
+        when(feedRepository.countByUserId("u2")).thenReturn(2L);
+        assertThatThrownBy(() -> service.create(User.builder().id("u2").role(Role.PATIENT).build(), null))
+                .isInstanceOf(OurException.class)
+                .hasMessageContaining("revoke");
+    }
+
+    @Test
+    void eTagFollowsTheOwnersVersionAndTheDay() {
+        CalendarFeed feed = CalendarFeed.builder().id("f1").ownerType(CalendarFeedOwner.PATIENT).ownerId("p1").build();
+        when(calendarVersionService.currentForPatient("p1")).thenReturn(4L, 5L);
+
+        String first = service.eTag(feed, NOW);
+        String bumped = service.eTag(feed, NOW);
+
+        assertThat(first).isEqualTo("ics-f1-4-2026-03-10");
+        assertThat(bumped).isNotEqualTo(first);
+        assertThat(service.eTag(feed, NOW.plusSeconds(86_400))).endsWith("-2026-03-11");
+    }
+
+    @Test
+    void doctorFeedsFollowTheFeedVersionNotTheCalendarOne() {
+        CalendarFeed feed = CalendarFeed.builder().id("f1").ownerType(CalendarFeedOwner.DOCTOR).ownerId("d1").build();
+        when(calendarVersionService.currentFeed("d1")).thenReturn(7L);
+        when(calendarVersionService.current("d1")).thenReturn(40L);
+
+        assertThat(service.eTag(feed, NOW)).isEqualTo("ics-f1-7-2026-03-10");
+    }
+
+    @Test
+    void writesOneEventPerAppointmentFromTheCursorAndClosesIt() throws Exception {
+        CalendarFeed feed = CalendarFeed.builder().id("f1").ownerType(CalendarFeedOwner.DOCTOR).ownerId("d1").build();
+        AtomicBoolean closed = new AtomicBoolean();
+        Stream<Appointment> cursor = Stream.of(
+                appointment("a1", AppointmentStatus.SCHEDULED, null),
+                appointment("a2", AppointmentStatus.CANCELLED, null),
+                appointment("a3", AppointmentStatus.NO_SHOW, "t1")).onClose(() -> closed.set(true));
+        when(appointmentRepository.streamByDoctorIdAndStartBetweenOrderByStartAsc("d1",
+                Instant.parse("2026-02-08T00:00:00Z"), Instant.parse("2027-03-11T00:00:00Z"))).thenReturn(cursor);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.write(feed, NOW, out);
+        String body = out.toString(StandardCharsets.UTF_8);
+
+        assertThat(closed).isTrue();
+        assertThat(body).startsWith("BEGIN:VCALENDAR\r\nVERSION:2.0\r\n").endsWith("END:VCALENDAR\r\n");
+        assertThat(body.replace("\r\n", "")).doesNotContain("\n");
+        assertThat(body).contains("UID:a1@medikart\r\n", "DTSTART:20260312T090000Z\r\n", "DTEND:20260312T093000Z\r\n",
+                "SUMMARY:Patient appointment\r\n");
+        assertThat(body.split("BEGIN:VEVENT")).hasSize(4);
+        assertThat(body.substring(body.indexOf("UID:a2"))).contains("STATUS:CANCELLED");
+        assertThat(body.substring(body.indexOf("UID:a3"))).contains("STATUS:CONFIRMED", "DESCRIPTION:Affected by doctor time-off\\, needs");
+        assertThat(body).doesNotContain("concern");
+    }
+
+    @Test
+    void longLinesAreFoldedAt75OctetsWithoutSplittingCharacters() throws Exception {
+        StringWriter out = new StringWriter();
+        IcsWriter ics = new IcsWriter(out);
+
+        ics.text("X-WR-CALNAME", "Dr. Łukasz; clinic, room\n" + "é".repeat(60));
+
+        String[] lines = out.toString().split("\r\n");
+        assertThat(lines.length).isGreaterThan(1);
+        assertThat(Arrays.stream(lines).mapToInt(l -> l.getBytes(StandardCharsets.UTF_8).length).max().getAsInt()).isLessThanOrEqualTo(75);
+        assertThat(Arrays.stream(lines).skip(1)).allMatch(l -> l.startsWith(" "));
+        String unfolded = out.toString().replace("\r\n ", "").trim();
+        assertThat(unfolded).isEqualTo("X-WR-CALNAME:Dr. Łukasz\\; clinic\\, room\\n" + "é".repeat(60));
+    }
+
+    private static Appointment appointment(String id, AppointmentStatus status, String timeOffConflictId) {
+        return Appointment.builder()
+                .id(id)
+                .doctorId("d1")
+                .patientId("p1")
+                .start(Instant.parse("2026-03-12T09:00:00Z"))
+                .end(Instant.parse("2026-03-12T09:30:00Z"))
+                .status(status)
+                .concern("concern text")
+                .timeOffConflictId(timeOffConflictId)
+                .createdAt(Instant.parse("2026-03-01T10:00:00Z"))
+                .build();
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.vladyslav.service;
+
+import com.example.vladyslav.event.AppointmentChangedEvent;
+import com.example.vladyslav.event.AppointmentLifecycleEvent;
+import com.example.vladyslav.event.SlotHoldChangedEvent;
+import com.example.vladyslav.event.TimeOffConflictNotice;
+import com.example.vladyslav.model.CalendarVersion;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class CalendarVersionServiceTest {
+
+    private static final Instant START = Instant.parse("2030-01-07T09:00:00Z");
+
+    private MongoTemplate mongoTemplate;
+    private CalendarVersionService service;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = Mockito.mock(MongoTemplate.class);
+        service = new CalendarVersionService(mongoTemplate);
+    }
+
+    @Test
+    void committedBookingBumpsTheDoctorAndPatientWithoutWaitingForTheOutbox() {
+        service.onAppointmentWritten(new AppointmentChangedEvent("a1", "doctor-1", "patient-1",
+                START, START.plusSeconds(1800), null, null, AppointmentChangedEvent.Change.BOOKED));
+
+        ArgumentCaptor<Query> bumped = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, times(2)).upsert(bumped.capture(), any(Update.class), eq(CalendarVersion.class));
+        assertThat(bumped.getAllValues()).extracting(q -> q.getQueryObject().get("_id"))
+                .containsExactly("doctor-1", "patient-patient-1");
+    }
+
+    @Test
+    void outcomesTakeNoCalendarTime() {
+        service.onAppointmentWritten(new AppointmentChangedEvent("a1", "doctor-1", "patient-1",
+                START, START.plusSeconds(1800), null, null, AppointmentChangedEvent.Change.ATTENDED));
+
+        verify(mongoTemplate, never()).upsert(any(Query.class), any(Update.class), eq(CalendarVersion.class));
+    }
+
+    @Test
+    void doctorFeedOnlyMovesWithAppointmentsAndTimeOffConflicts() {
+        service.onHoldChanged(new SlotHoldChangedEvent("doctor-1", START, START.plusSeconds(1800)));
+        assertThat(bumped()).containsExactly("doctor-1");
+
+        Mockito.clearInvocations(mongoTemplate);
+        service.onAppointmentChanged(new AppointmentLifecycleEvent("e1", "a1", "doctor-1", "patient-1",
+                AppointmentChangedEvent.Change.CANCELLED, START, START.plusSeconds(1800), null, null, START));
+        assertThat(bumped()).containsExactly("doctor-1", "feed-doctor-1", "patient-patient-1");
+
+        Mockito.clearInvocations(mongoTemplate);
+        service.onTimeOffConflict(new TimeOffConflictNotice("patient-1", "doctor-1", "off-1", null, List.of()));
+        assertThat(bumped()).containsExactly("patient-patient-1", "feed-doctor-1");
+    }
+
+    private List<Object> bumped() {
+        ArgumentCaptor<Query> bumped = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, Mockito.atLeast(0)).upsert(bumped.capture(), any(Update.class), eq(CalendarVersion.class));
+        return bumped.getAllValues().stream().map(q -> q.getQueryObject().get("_id")).toList();
+    }
+}
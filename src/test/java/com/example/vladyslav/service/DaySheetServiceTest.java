@@ -0,0 +1,107 @@
+package com.example.vladyslav.service;
+
+import com.example.vladyslav.dto.DaySheetDTO;
+import com.example.vladyslav.dto.DaySheetEntryDTO;
+import com.example.vladyslav.exception.OurException;
+import com.example.vladyslav.model.Appointment;
+import com.example.vladyslav.model.Doctor;
+import com.example.vladyslav.model.Patient;
+import com.example.vladyslav.model.enums.AppointmentStatus;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DaySheetServiceTest {
+
+    private static final String CLINIC = new ObjectId().toHexString();
+    private static final LocalDate DAY = LocalDate.of(2030, 6, 3);
+
+    private MongoTemplate mongoTemplate;
+    private DaySheetService service;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = Mockito.mock(MongoTemplate.class);
+        when(mongoTemplate.getCollectionName(Appointment.class)).thenReturn("appointments");
+        when(mongoTemplate.getCollectionName(Patient.class)).thenReturn("patients");
+        when(mongoTemplate.getCollectionName(Doctor.class)).thenReturn("doctors");
+        when(mongoTemplate.aggregate(any(Aggregation.class), anyString(), eq(DaySheetEntryDTO.class)))
+                .thenReturn(new AggregationResults<>(List.of(new DaySheetEntryDTO("a1", "d1", "Ann Doe", "p1", "Bob Roe", "07000000000",
+                        Instant.parse("2030-06-03T08:00:00Z"), Instant.parse("2030-06-03T08:30:00Z"), AppointmentStatus.SCHEDULED, null)),
+                        new Document()));
+        service = new DaySheetService(mongoTemplate);
+    }
+
+    @Test
+    void daySheetIsOneAggregationJoiningAppointmentsAndPatients() {
+        DaySheetDTO sheet = service.daySheet(CLINIC, DAY, false);
+
+        assertThat(sheet.appointments()).extracting(DaySheetEntryDTO::patientName).containsExactly("Bob Roe");
+        assertThat(sheet.date()).isEqualTo(DAY);
+
+        List<Document> pipeline = pipeline();
+        assertThat(pipeline).extracting(stage -> stage.keySet().iterator().next())
+                .containsExactly("$match", "$project", "$lookup", "$unwind", "$lookup", "$unwind", "$sort", "$project");
+        assertThat(pipeline.get(0).get("$match", Document.class)).containsEntry("clinic.$id", new ObjectId(CLINIC));
+        assertThat(pipeline.get(2).get("$lookup", Document.class)).containsEntry("from", "appointments");
+        assertThat(pipeline.get(4).get("$lookup", Document.class)).containsEntry("from", "patients");
+        assertThat(pipeline.get(6).get("$sort", Document.class).keySet()).containsExactly("doctorName", "_id", "appointment.start");
+        assertThat(pipeline.get(7).get("$project", Document.class).keySet())
+                .containsExactly("_id", "appointmentId", "doctorId", "doctorName", "patientId", "patientName", "patientPhone",
+                        "start", "end", "status", "concern");
+    }
+
+    @Test
+    void appointmentsAreLimitedToTheUkDayAndSkipCancelledByDefault() {
+        service.daySheet(CLINIC, DAY, false);
+
+        Document match = appointmentMatch();
+        Document start = match.get("start", Document.class);
+        assertThat(start.get("$gte")).isEqualTo(Date.from(Instant.parse("2030-06-02T23:00:00Z")));
+        assertThat(start.get("$lt")).isEqualTo(Date.from(Instant.parse("2030-06-03T23:00:00Z")));
+        assertThat(match.get("status", Document.class)).containsEntry("$ne", "CANCELLED");
+    }
+
+    @Test
+    void cancelledAppointmentsCanBeIncluded() {
+        service.daySheet(CLINIC, DAY, true);
+
+        assertThat(appointmentMatch()).doesNotContainKey("status");
+    }
+
+    @Test
+    void invalidClinicIdIsRejected() {
+        assertThatThrownBy(() -> service.daySheet("nope", DAY, false)).isInstanceOf(OurException.class);
+    }
+
+    private List<Document> pipeline() {
+        ArgumentCaptor<Aggregation> aggregation = ArgumentCaptor.forClass(Aggregation.class);
+        verify(mongoTemplate, times(1)).aggregate(aggregation.capture(), eq("doctors"), eq(DaySheetEntryDTO.class));
+        return aggregation.getValue().toPipeline(Aggregation.DEFAULT_CONTEXT);
+    }
+
+    private Document appointmentMatch() {
+        Document lookup = pipeline().get(2).get("$lookup", Document.class);
+        return lookup.getList("pipeline", Document.class).get(0).get("$match", Document.class);
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.vladyslav.service;
+
+import com.example.vladyslav.dto.AvailableSlotDTO;
+import com.example.vladyslav.exception.OurException;
+import com.example.vladyslav.model.AvailabilityRule;
+import com.example.vladyslav.model.Doctor;
+import com.example.vladyslav.model.enums.LanguageCode;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class EarliestAvailabilityServiceTest {
+
+    private static final ZoneId UK = ZoneId.of("Europe/London");
+    private static final String SPECIALITY = new ObjectId().toHexString();
+    private static final String CLINIC = new ObjectId().toHexString();
+
+    private MongoTemplate mongoTemplate;
+    private AvailabilityRuleService availabilityRuleService;
+    private EarliestAvailabilityService service;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = Mockito.mock(MongoTemplate.class);
+        availabilityRuleService = Mockito.mock(AvailabilityRuleService.class);
+        // Runs each doctor on the calling thread
+        service = new EarliestAvailabilityService(mongoTemplate, availabilityRuleService, Runnable::run, 2);
+
+        when(mongoTemplate.find(any(Query.class), eq(Doctor.class))).thenReturn(List.of(doctor("a"), doctor("b")));
+        worksFromTomorrow("a", LocalTime.of(10, 0), LocalTime.of(11, 0));
+        worksFromTomorrow("b", LocalTime.of(9, 30), LocalTime.of(10, 30));
+    }
+
+    @Test
+    void clinicAndLanguageAreFilteredInTheDoctorQueryBeforeTheCap() {
+        service.findEarliest(SPECIALITY, CLINIC, LanguageCode.uk, 14, 3);
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(query.capture(), eq(Doctor.class));
+        assertThat(query.getValue().getQueryObject()).isEqualTo(new Document("speciality.$id", new ObjectId(SPECIALITY))
+                .append("clinic.$id", new ObjectId(CLINIC))
+                .append("languages", LanguageCode.uk));
+        assertThat(query.getValue().getLimit()).isEqualTo(2);
+        // Only ids, no clinic or speciality DBRef is resolved
+        assertThat(query.getValue().getFieldsObject()).isEqualTo(new Document("_id", 1));
+    }
+
+    @Test
+    void slotsOfAllDoctorsComeInStartOrderAndTheSearchStopsOnceEnoughAreFound() {
+        List<AvailableSlotDTO> found = service.findEarliest(SPECIALITY, null, null, 14, 3);
+
+        assertThat(found).extracting(AvailableSlotDTO::doctorId, AvailableSlotDTO::time)
+                .containsExactly(tuple("b", "09:30"), tuple("a", "10:00"), tuple("b", "10:00"));
+        assertThat(found).extracting(AvailableSlotDTO::date).containsOnly(LocalDate.now(UK).plusDays(1));
+        // Today, then tomorrow and the day after; nothing further ahead is computed
+        verify(availabilityRuleService, times(2)).getSlotMasks(eq("a"), any(), any());
+        verify(availabilityRuleService, times(2)).getSlotMasks(eq("b"), any(), any());
+    }
+
+    @Test
+    void noMatchingDoctorComputesNothing() {
+        when(mongoTemplate.find(any(Query.class), eq(Doctor.class))).thenReturn(List.of());
+
+        assertThat(service.findEarliest(SPECIALITY, CLINIC, null, 14, 3)).isEmpty();
+        verify(availabilityRuleService, never()).getSlotMasks(anyString(), any(), any());
+    }
+
+    @Test
+    void malformedSpecialityIdIsRejected() {
+        assertThatThrownBy(() -> service.findEarliest("cardiology", null, null, 14, 3)).isInstanceOf(OurException.class);
+        verify(mongoTemplate, never()).find(any(Query.class), eq(Doctor.class));
+    }
+
+    // No slot today, so the result does not depend on the time the test runs
+    private void worksFromTomorrow(String doctorId, LocalTime start, LocalTime end) {
+        AvailabilityRule rule = AvailabilityRule.builder().doctorId(doctorId).start(start).end(end).slotMinutes(30).build();
+        LocalDate today = LocalDate.now(UK);
+        when(availabilityRuleService.getSlotMasks(eq(doctorId), any(), any())).thenAnswer(inv -> {
+            Map<LocalDate, DaySlotMask> masks = new LinkedHashMap<>();
+            for (LocalDate date = inv.getArgument(1); !date.isAfter(inv.getArgument(2)); date = date.plusDays(1)) {
+                masks.put(date, date.equals(today) ? DaySlotMask.empty() : DaySlotMask.forRule(rule));
+            }
+            return masks;
+        });
+    }
+
+    private static Doctor doctor(String id) {
+        return Doctor.builder().id(id).build();
+    }
+}
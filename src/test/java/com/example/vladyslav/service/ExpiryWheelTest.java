@@ -0,0 +1,54 @@
+package com.example.vladyslav.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ExpiryWheelTest {
+
+    private final Instant t0 = Instant.parse("2030-01-01T10:00:00Z");
+
+    @Test
+    void keysExpireOnceTheirDeadlinePasses() {
+        ExpiryWheel<String> wheel = new ExpiryWheel<>(Duration.ofSeconds(1), 60, t0);
+        wheel.schedule("a", t0.plusSeconds(5));
+        wheel.schedule("b", t0.plusSeconds(10));
+
+        assertThat(wheel.advance(t0.plusSeconds(4))).isEmpty();
+        assertThat(wheel.advance(t0.plusSeconds(5))).containsExactly("a");
+        assertThat(wheel.advance(t0.plusSeconds(12))).containsExactly("b");
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void cancelledKeysNeverExpire() {
+        ExpiryWheel<String> wheel = new ExpiryWheel<>(Duration.ofSeconds(1), 60, t0);
+        wheel.schedule("a", t0.plusSeconds(5));
+        wheel.cancel("a");
+
+        assertThat(wheel.advance(t0.plusSeconds(30))).isEmpty();
+    }
+
+    @Test
+    void deadlinesBeyondOneRevolutionWaitForTheirRound() {
+        ExpiryWheel<String> wheel = new ExpiryWheel<>(Duration.ofSeconds(1), 10, t0);
+        wheel.schedule("far", t0.plusSeconds(25));
+
+        assertThat(wheel.advance(t0.plusSeconds(5))).isEmpty();
+        assertThat(wheel.advance(t0.plusSeconds(15))).isEmpty();
+        assertThat(wheel.advance(t0.plusSeconds(24))).isEmpty();
+        assertThat(wheel.advance(t0.plusSeconds(26))).containsExactly("far");
+    }
+
+    @Test
+    void longPauseStillExpiresEverythingDue() {
+        ExpiryWheel<String> wheel = new ExpiryWheel<>(Duration.ofSeconds(1), 10, t0);
+        wheel.schedule("a", t0.plusSeconds(3));
+        wheel.schedule("b", t0.plusSeconds(8));
+
+        assertThat(wheel.advance(t0.plusSeconds(100))).containsExactlyInAnyOrder("a", "b");
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.vladyslav.service;
+
+import com.example.vladyslav.exception.OurException;
+import com.example.vladyslav.model.IdempotencyRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class IdempotencyServiceTest {
+
+    private MongoTemplate mongoTemplate;
+    private IdempotencyService service;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = Mockito.mock(MongoTemplate.class);
+        service = new IdempotencyService(mongoTemplate, 24, 60, 5_000, 1_000, 10);
+    }
+
+    @Test
+    void concurrentDuplicatesRunTheRequestOnce() throws Exception {
+        int threads = 8;
+        AtomicInteger executions = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        List<IdempotencyService.Outcome> outcomes = new CopyOnWriteArrayList<>();
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            futures.add(pool.submit(() -> outcomes.add(service.execute("user:key-1", "fp", () -> {
+                executions.incrementAndGet();
+                await(release);
+                return response(201, "booked");
+            }))));
+        }
+        // Let the duplicates pile up behind the first one before it finishes
+        Thread.sleep(200);
+        release.countDown();
+        for (Future<?> f : futures) f.get(10, TimeUnit.SECONDS);
+        pool.shutdown();
+
+        assertThat(executions.get()).isEqualTo(1);
+        assertThat(outcomes).hasSize(threads);
+        assertThat(outcomes).filteredOn(IdempotencyService.Outcome::replayed).hasSize(threads - 1);
+        assertThat(outcomes).allSatisfy(o -> {
+            assertThat(o.response().status()).isEqualTo(201);
+            assertThat(new String(o.response().body(), StandardCharsets.UTF_8)).isEqualTo("booked");
+        });
+        verify(mongoTemplate, times(1)).insert(any(IdempotencyRecord.class));
+    }
+
+    @Test
+    void retryIsServedFromTheHotLayerWithoutTouchingMongo() {
+        service.execute("user:key-1", "fp", () -> response(201, "booked"));
+        Mockito.clearInvocations(mongoTemplate);
+
+        IdempotencyService.Outcome retry = service.execute("user:key-1", "fp", () -> {
+            throw new AssertionError("must not run again");
+        });
+
+        assertThat(retry.replayed()).isTrue();
+        Mockito.verifyNoInteractions(mongoTemplate);
+    }
+
+    @Test
+    void responseStoredByAnotherNodeIsReplayed() {
+        when(mongoTemplate.insert(any(IdempotencyRecord.class))).thenThrow(new DuplicateKeyException("user:key-1"));
+        when(mongoTemplate.findById(eq("user:key-1"), eq(IdempotencyRecord.class))).thenReturn(IdempotencyRecord.builder()
+                .id("user:key-1")
+                .state(IdempotencyRecord.State.COMPLETED)
+                .fingerprint("fp")
+                .httpStatus(200)
+                .body("done".getBytes(StandardCharsets.UTF_8))
+                .build());
+
+        IdempotencyService.Outcome outcome = service.execute("user:key-1", "fp", () -> {
+            throw new AssertionError("must not run again");
+        });
+
+        assertThat(outcome.replayed()).isTrue();
+        assertThat(outcome.response().status()).isEqualTo(200);
+    }
+
+    @Test
+    void keyReusedForADifferentRequestIsRejected() {
+        service.execute("user:key-1", "fp", () -> response(201, "booked"));
+
+        assertThatThrownBy(() -> service.execute("user:key-1", "other", () -> response(201, "booked")))
+                .isInstanceOf(OurException.class);
+    }
+
+    @Test
+    void serverErrorsAreNotStored() {
+        service.execute("user:key-1", "fp", () -> response(503, "unavailable"));
+
+        verify(mongoTemplate).remove(any(Query.class), eq(IdempotencyRecord.class));
+        verify(mongoTemplate, never()).updateFirst(any(Query.class), any(Update.class), eq(IdempotencyRecord.class));
+
+        AtomicInteger executions = new AtomicInteger();
+        service.execute("user:key-1", "fp", () -> {
+            executions.incrementAndGet();
+            return response(201, "booked");
+        });
+        assertThat(executions.get()).isEqualTo(1);
+    }
+
+    private static IdempotencyService.StoredResponse response(int status, String body) {
+        return new IdempotencyService.StoredResponse(status, "application/json", Map.of(), body.getBytes(StandardCharsets.UTF_8), null);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
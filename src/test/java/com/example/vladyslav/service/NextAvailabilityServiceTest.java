@@ -0,0 +1,158 @@
+package com.example.vladyslav.service;
+
+import com.example.vladyslav.event.AppointmentChangedEvent;
+import com.example.vladyslav.event.AppointmentLifecycleEvent;
+import com.example.vladyslav.event.AvailabilityRuleChangedEvent;
+import com.example.vladyslav.event.TimeOffChangedEvent;
+import com.example.vladyslav.model.AvailabilityRule;
+import com.example.vladyslav.model.Doctor;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class NextAvailabilityServiceTest {
+
+    private static final ZoneId UK = ZoneId.of("Europe/London");
+    private static final String DOCTOR = "doctor-1";
+    private static final LocalDate TOMORROW = LocalDate.now(UK).plusDays(1);
+
+    private MongoTemplate mongoTemplate;
+    private SlotMaskCalculator calculator;
+    private List<Runnable> queued;
+    private NextAvailabilityService service;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = Mockito.mock(MongoTemplate.class);
+        calculator = Mockito.mock(SlotMaskCalculator.class);
+        queued = new ArrayList<>();
+        service = new NextAvailabilityService(mongoTemplate, calculator, queued::add, 60);
+
+        // Nothing today, 09:00 and 09:30 from tomorrow on
+        AvailabilityRule rule = AvailabilityRule.builder().doctorId(DOCTOR)
+                .start(LocalTime.of(9, 0)).end(LocalTime.of(10, 0)).slotMinutes(30).build();
+        when(calculator.compute(eq(DOCTOR), any(), any())).thenAnswer(inv -> {
+            Map<LocalDate, DaySlotMask> masks = new LinkedHashMap<>();
+            for (LocalDate date = inv.getArgument(1); !date.isAfter(inv.getArgument(2)); date = date.plusDays(1)) {
+                masks.put(date, date.isBefore(TOMORROW) ? DaySlotMask.empty() : DaySlotMask.forRule(rule));
+            }
+            return masks;
+        });
+    }
+
+    @Test
+    void recomputeStoresTheFirstFreeSlotFromTheFirstWeek() {
+        assertThat(service.recompute(DOCTOR)).isEqualTo(at(TOMORROW, 9, 0));
+
+        assertThat(written().getUpdateObject()).isEqualTo(new Document("$set", new Document("nextAvailableAt", at(TOMORROW, 9, 0))));
+        // The first chunk had a slot, the rest of the horizon is not computed
+        verify(calculator).compute(DOCTOR, TOMORROW.minusDays(1), TOMORROW.plusDays(5));
+    }
+
+    @Test
+    void doctorWithNothingFreeInTheHorizonIsUnset() {
+        when(calculator.compute(eq(DOCTOR), any(), any())).thenReturn(Map.of());
+
+        assertThat(service.recompute(DOCTOR)).isNull();
+
+        assertThat(written().getUpdateObject()).isEqualTo(new Document("$unset", new Document("nextAvailableAt", 1)));
+    }
+
+    @Test
+    void timeOffAndRuleChangesRecomputeOffTheRequestThread() {
+        service.onTimeOffChanged(new TimeOffChangedEvent(DOCTOR, at(TOMORROW, 9, 0), at(TOMORROW, 12, 0)));
+        verify(calculator, never()).compute(anyString(), any(), any());
+
+        queued.forEach(Runnable::run);
+        verify(mongoTemplate).updateFirst(any(Query.class), any(Update.class), eq(Doctor.class));
+    }
+
+    @Test
+    void changesQueuedForTheSameDoctorRecomputeOnce() {
+        service.onTimeOffChanged(new TimeOffChangedEvent(DOCTOR, at(TOMORROW, 9, 0), at(TOMORROW, 12, 0)));
+        service.onRuleChanged(new AvailabilityRuleChangedEvent(DOCTOR, 1));
+        assertThat(queued).hasSize(1);
+
+        queued.get(0).run();
+        // Once it ran, the next change queues again
+        service.onRuleChanged(new AvailabilityRuleChangedEvent(DOCTOR, 1));
+        assertThat(queued).hasSize(2);
+    }
+
+    @Test
+    void fullQueueLeavesTheDoctorForTheSweep() {
+        service = new NextAvailabilityService(mongoTemplate, calculator, task -> {
+            throw new TaskRejectedException("full");
+        }, 60);
+
+        service.onRuleChanged(new AvailabilityRuleChangedEvent(DOCTOR, 1));
+        service.onRuleChanged(new AvailabilityRuleChangedEvent(DOCTOR, 1));
+
+        verify(calculator, never()).compute(anyString(), any(), any());
+    }
+
+    @Test
+    void bookingRecomputesOnlyWhenItTakesTheStoredSlot() {
+        stored(at(TOMORROW, 9, 0));
+
+        service.onAppointmentChanged(delivered(AppointmentChangedEvent.Change.BOOKED, at(TOMORROW, 9, 30)));
+        verify(calculator, never()).compute(anyString(), any(), any());
+
+        service.onAppointmentChanged(delivered(AppointmentChangedEvent.Change.BOOKED, at(TOMORROW, 9, 0)));
+        verify(calculator, times(1)).compute(anyString(), any(), any());
+    }
+
+    @Test
+    void cancellationBeforeTheStoredSlotRecomputes() {
+        stored(at(TOMORROW.plusDays(1), 9, 0));
+
+        service.onAppointmentChanged(delivered(AppointmentChangedEvent.Change.CANCELLED, at(TOMORROW, 9, 0)));
+
+        verify(calculator).compute(anyString(), any(), any());
+    }
+
+    private void stored(Instant nextAvailableAt) {
+        when(mongoTemplate.findOne(any(Query.class), eq(Doctor.class)))
+                .thenReturn(Doctor.builder().id(DOCTOR).nextAvailableAt(nextAvailableAt).build());
+    }
+
+    private Update written() {
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateFirst(any(Query.class), update.capture(), eq(Doctor.class));
+        return update.getValue();
+    }
+
+    private static AppointmentLifecycleEvent delivered(AppointmentChangedEvent.Change change, Instant start) {
+        return new AppointmentLifecycleEvent("event-1", "appt-1", DOCTOR, "patient-1", change,
+                start, start.plusSeconds(1800), null, null, Instant.now());
+    }
+
+    private static Instant at(LocalDate date, int hour, int minute) {
+        return ZonedDateTime.of(date, LocalTime.of(hour, minute), UK).toInstant();
+    }
+}
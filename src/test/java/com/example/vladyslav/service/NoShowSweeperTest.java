@@ -0,0 +1,184 @@
+package com.example.vladyslav.service;
+
+import com.example.vladyslav.event.AppointmentChangedEvent;
+import com.example.vladyslav.model.Appointment;
+import com.example.vladyslav.model.OutboxEvent;
+import com.example.vladyslav.model.SweepCheckpoint;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class NoShowSweeperTest {
+
+    private static final Instant NOW = Instant.parse("2030-05-10T12:00:00Z");
+    private static final Instant CUTOFF = NOW.minus(Duration.ofHours(1));
+
+    private final List<AppointmentChangedEvent> events = new ArrayList<>();
+
+    private MongoTemplate mongoTemplate;
+    private MongoTemplate outboxTemplate;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = Mockito.mock(MongoTemplate.class);
+        outboxTemplate = Mockito.mock(MongoTemplate.class);
+        when(mongoTemplate.findDistinct(any(Query.class), eq("doctorId"), eq(Appointment.class), eq(String.class)))
+                .thenReturn(List.of("d1", "d2"));
+        when(mongoTemplate.updateMulti(any(Query.class), any(Update.class), eq(Appointment.class)))
+                .thenReturn(UpdateResult.acknowledged(4, 4L, null));
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(SweepCheckpoint.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+    }
+
+    @Test
+    void firstRunWalksFromTheOldestScheduledRowInWindows() {
+        checkpoint(null);
+        oldestEnd(NOW.minus(Duration.ofDays(3)));
+
+        long moved = sweeper(50).sweepOnce(NOW);
+
+        // [-3d, -2d), [-2d, -1d), [-1d, cutoff)
+        assertThat(moved).isEqualTo(12);
+        assertThat(windows()).containsExactly(
+                new Instant[]{NOW.minus(Duration.ofDays(3)), NOW.minus(Duration.ofDays(2))},
+                new Instant[]{NOW.minus(Duration.ofDays(2)), NOW.minus(Duration.ofDays(1))},
+                new Instant[]{NOW.minus(Duration.ofDays(1)), CUTOFF});
+        verify(mongoTemplate, times(3)).updateFirst(any(Query.class), any(Update.class), eq(SweepCheckpoint.class));
+    }
+
+    @Test
+    void eachWindowWritesOneOutboxEventPerAffectedDoctor() {
+        checkpoint(null);
+        oldestEnd(NOW.minus(Duration.ofHours(5)));
+
+        sweeper(50).sweepOnce(NOW);
+
+        verify(outboxTemplate).insert(Mockito.<List<OutboxEvent>>argThat(written -> written.size() == 2
+                && written.stream().allMatch(e -> e.getChange() == AppointmentChangedEvent.Change.NO_SHOW)), eq(OutboxEvent.class));
+        assertThat(events).extracting(AppointmentChangedEvent::doctorId).containsExactly("d1", "d2");
+        assertThat(events).allSatisfy(e -> {
+            assertThat(e.start()).isEqualTo(NOW.minus(Duration.ofHours(5)));
+            assertThat(e.end()).isEqualTo(CUTOFF);
+            assertThat(e.appointmentId()).isNull();
+        });
+    }
+
+    @Test
+    void emptyWindowsWriteNothing() {
+        when(mongoTemplate.findDistinct(any(Query.class), eq("doctorId"), eq(Appointment.class), eq(String.class))).thenReturn(List.of());
+        checkpoint(null);
+        oldestEnd(NOW.minus(Duration.ofHours(5)));
+
+        assertThat(sweeper(50).sweepOnce(NOW)).isZero();
+        verify(mongoTemplate, never()).updateMulti(any(Query.class), any(Update.class), eq(Appointment.class));
+        Mockito.verifyNoInteractions(outboxTemplate);
+        assertThat(events).isEmpty();
+    }
+
+    @Test
+    void updatesOnlyScheduledRowsAndBumpsTheirVersion() {
+        checkpoint(null);
+        oldestEnd(NOW.minus(Duration.ofHours(5)));
+
+        sweeper(50).sweepOnce(NOW);
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateMulti(query.capture(), update.capture(), eq(Appointment.class));
+        assertThat(query.getValue().getQueryObject()).containsKeys("status", "end");
+        assertThat(query.getValue().getQueryObject().get("status").toString()).isEqualTo("SCHEDULED");
+        assertThat(update.getValue().getUpdateObject().get("$set", Document.class).get("status").toString()).isEqualTo("NO_SHOW");
+        assertThat(update.getValue().getUpdateObject()).containsKey("$inc");
+    }
+
+    @Test
+    void resumesFromTheWatermarkAndCatchesStragglersInOneUpdate() {
+        Instant watermark = NOW.minus(Duration.ofHours(3));
+        checkpoint(watermark);
+        oldestEnd(NOW.minus(Duration.ofDays(5)));
+
+        sweeper(50).sweepOnce(NOW);
+
+        assertThat(windows()).containsExactly(
+                new Instant[]{NOW.minus(Duration.ofDays(5)), watermark},
+                new Instant[]{watermark, CUTOFF});
+    }
+
+    @Test
+    void runIsBoundedByMaxWindows() {
+        checkpoint(null);
+        oldestEnd(NOW.minus(Duration.ofDays(30)));
+
+        sweeper(2).sweepOnce(NOW);
+
+        assertThat(windows()).hasSize(2);
+    }
+
+    @Test
+    void onlyTheLeaseHolderSweeps() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(SweepCheckpoint.class)))
+                .thenThrow(new DuplicateKeyException("lease held"));
+
+        assertThat(sweeper(50).sweepOnce(NOW)).isZero();
+        verify(mongoTemplate, never()).updateMulti(any(Query.class), any(Update.class), eq(Appointment.class));
+    }
+
+    @Test
+    void nothingOverdueOnlyMovesTheWatermark() {
+        checkpoint(null);
+        oldestEnd(NOW.plus(Duration.ofDays(1)));
+
+        assertThat(sweeper(50).sweepOnce(NOW)).isZero();
+        verify(mongoTemplate, never()).updateMulti(any(Query.class), any(Update.class), eq(Appointment.class));
+        verify(mongoTemplate).updateFirst(any(Query.class), any(Update.class), eq(SweepCheckpoint.class));
+    }
+
+    private NoShowSweeper sweeper(int maxWindows) {
+        AppointmentOutbox outbox = new AppointmentOutbox(outboxTemplate, null, event -> events.add((AppointmentChangedEvent) event), false);
+        return new NoShowSweeper(mongoTemplate, outbox, 60, 24, maxWindows, 300);
+    }
+
+    private void checkpoint(Instant watermark) {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(SweepCheckpoint.class)))
+                .thenReturn(SweepCheckpoint.builder().id(NoShowSweeper.NAME).watermark(watermark).build());
+    }
+
+    private void oldestEnd(Instant end) {
+        when(mongoTemplate.findOne(any(Query.class), eq(Appointment.class))).thenReturn(Appointment.builder().end(end).build());
+    }
+
+    private List<Instant[]> windows() {
+        ArgumentCaptor<Query> queries = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, Mockito.atLeastOnce()).updateMulti(queries.capture(), any(Update.class), eq(Appointment.class));
+        return queries.getAllValues().stream()
+                .map(q -> q.getQueryObject().get("end", Document.class))
+                .map(range -> new Instant[]{instant(range.get("$gte")), instant(range.get("$lt"))})
+                .toList();
+    }
+
+    private static Instant instant(Object value) {
+        return value instanceof Date date ? date.toInstant() : (Instant) value;
+    }
+}
@@ -0,0 +1,192 @@
+package com.example.vladyslav.service;
+
+import com.example.vladyslav.event.AppointmentChangedEvent;
+import com.example.vladyslav.event.AppointmentLifecycleEvent;
+import com.example.vladyslav.model.OutboxCheckpoint;
+import com.example.vladyslav.model.OutboxEvent;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OutboxDispatcherTest {
+
+    private final List<AppointmentLifecycleEvent> delivered = new ArrayList<>();
+    private final Set<String> failing = new HashSet<>();
+
+    private MongoTemplate mongoTemplate;
+    private OutboxDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = Mockito.mock(MongoTemplate.class);
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(OutboxCheckpoint.class)))
+                .thenReturn(OutboxCheckpoint.builder().id(OutboxDispatcher.NAME).lastEventId(id(0)).build());
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), any(Class.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+
+        ApplicationEventPublisher publisher = event -> {
+            AppointmentLifecycleEvent e = (AppointmentLifecycleEvent) event;
+            if (failing.contains(e.eventId())) throw new IllegalStateException("listener failed");
+            delivered.add(e);
+        };
+        dispatcher = new OutboxDispatcher(mongoTemplate, publisher, Runnable::run, 100, 2000, 30, 3);
+    }
+
+    @Test
+    void deliversTheBatchAndCheckpointsItsLastEvent() {
+        batch(event(1, "doctor-a"), event(2, "doctor-b"), event(3, "doctor-a"));
+
+        assertThat(dispatcher.dispatchBatch()).isEqualTo(3);
+
+        assertThat(delivered).extracting(AppointmentLifecycleEvent::eventId).containsExactlyInAnyOrder(id(1), id(2), id(3));
+        assertThat(delivered).filteredOn(e -> e.doctorId().equals("doctor-a"))
+                .extracting(AppointmentLifecycleEvent::eventId).containsExactly(id(1), id(3));
+        assertThat(checkpointedTo()).isEqualTo(id(3));
+
+        // Reads only after the checkpoint and only settled events
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, times(2)).find(query.capture(), eq(OutboxEvent.class));
+        Query range = query.getAllValues().get(1);
+        Document idRange = range.getQueryObject().get("_id", Document.class);
+        assertThat(idRange).containsEntry("$gt", id(0)).containsKey("$lt");
+        assertThat(range.getLimit()).isEqualTo(100);
+        verify(mongoTemplate, never()).updateMulti(any(Query.class), any(Update.class), eq(OutboxEvent.class));
+    }
+
+    @Test
+    void failureHoldsBackItsDoctorButNotOtherDoctorsOrTheCheckpoint() {
+        failing.add(id(2));
+        batch(event(1, "doctor-a"), event(2, "doctor-a"), event(3, "doctor-b"), event(4, "doctor-a"), event(5, "doctor-b"));
+
+        assertThat(dispatcher.dispatchBatch()).isEqualTo(5);
+
+        // doctor-a stops at its failed event, doctor-b is not held up and will not be delivered again
+        assertThat(delivered).extracting(AppointmentLifecycleEvent::eventId).containsExactlyInAnyOrder(id(1), id(3), id(5));
+        assertThat(checkpointedTo()).isEqualTo(id(5));
+        verify(mongoTemplate).updateFirst(Mockito.argThat(q -> id(2).equals(q.getQueryObject().get("_id"))),
+                Mockito.argThat(u -> u.getUpdateObject().get("$set", Document.class).get("attempts").equals(1)),
+                eq(OutboxEvent.class));
+        assertThat(heldIds()).containsExactly(id(2), id(4));
+    }
+
+    @Test
+    void heldEventsAreRetriedFirstAndInOrder() {
+        OutboxEvent second = event(2, "doctor-a");
+        second.setAttempts(1);
+        held(second, event(4, "doctor-a"));
+        batch(event(6, "doctor-a"), event(7, "doctor-b"));
+
+        assertThat(dispatcher.dispatchBatch()).isEqualTo(2);
+
+        assertThat(delivered).filteredOn(e -> e.doctorId().equals("doctor-a"))
+                .extracting(AppointmentLifecycleEvent::eventId).containsExactly(id(2), id(4), id(6));
+        assertThat(checkpointedTo()).isEqualTo(id(7));
+        verify(mongoTemplate).updateMulti(Mockito.argThat(q -> q.getQueryObject().get("_id", Document.class)
+                        .getList("$in", String.class).equals(List.of(id(2), id(4)))),
+                Mockito.argThat(u -> u.getUpdateObject().containsKey("$unset")), eq(OutboxEvent.class));
+    }
+
+    @Test
+    void stillFailingDoctorKeepsItsNewEventsBehindTheHeldOne() {
+        failing.add(id(2));
+        OutboxEvent second = event(2, "doctor-a");
+        second.setAttempts(1);
+        held(second, event(4, "doctor-a"));
+        batch(event(6, "doctor-a"), event(7, "doctor-b"));
+
+        assertThat(dispatcher.dispatchBatch()).isEqualTo(2);
+
+        assertThat(delivered).extracting(AppointmentLifecycleEvent::eventId).containsExactly(id(7));
+        assertThat(checkpointedTo()).isEqualTo(id(7));
+        assertThat(heldIds()).containsExactly(id(6));
+    }
+
+    @Test
+    void eventOutOfAttemptsIsDeadLetteredAndTheChainMovesOn() {
+        failing.add(id(2));
+        OutboxEvent poisoned = event(2, "doctor-a");
+        poisoned.setAttempts(2);
+        batch(event(1, "doctor-a"), poisoned, event(3, "doctor-a"));
+
+        assertThat(dispatcher.dispatchBatch()).isEqualTo(3);
+
+        assertThat(delivered).extracting(AppointmentLifecycleEvent::eventId).containsExactly(id(1), id(3));
+        assertThat(checkpointedTo()).isEqualTo(id(3));
+        verify(mongoTemplate).updateFirst(any(Query.class),
+                Mockito.argThat(u -> Boolean.TRUE.equals(u.getUpdateObject().get("$set", Document.class).get("deadLettered"))),
+                eq(OutboxEvent.class));
+    }
+
+    @Test
+    void nodeWithoutTheLeaseReadsNothing() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(OutboxCheckpoint.class)))
+                .thenThrow(new DuplicateKeyException("lease held"));
+
+        assertThat(dispatcher.dispatchBatch()).isZero();
+        verify(mongoTemplate, never()).find(any(Query.class), eq(OutboxEvent.class));
+    }
+
+    private void batch(OutboxEvent... events) {
+        when(mongoTemplate.find(Mockito.argThat(q -> q != null && !q.getQueryObject().containsKey("held")), eq(OutboxEvent.class)))
+                .thenReturn(List.of(events));
+    }
+
+    private void held(OutboxEvent... events) {
+        for (OutboxEvent event : events) event.setHeld(true);
+        when(mongoTemplate.find(Mockito.argThat(q -> q != null && q.getQueryObject().containsKey("held")), eq(OutboxEvent.class)))
+                .thenReturn(List.of(events));
+    }
+
+    private List<String> heldIds() {
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).updateMulti(query.capture(),
+                Mockito.argThat(u -> Boolean.TRUE.equals(u.getUpdateObject().get("$set", Document.class).get("held"))),
+                eq(OutboxEvent.class));
+        return query.getValue().getQueryObject().get("_id", Document.class).getList("$in", String.class);
+    }
+
+    private String checkpointedTo() {
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateFirst(any(Query.class), update.capture(), eq(OutboxCheckpoint.class));
+        return update.getValue().getUpdateObject().get("$set", Document.class).getString("lastEventId");
+    }
+
+    private static OutboxEvent event(int n, String doctorId) {
+        return OutboxEvent.builder()
+                .id(id(n))
+                .appointmentId("appt-" + n)
+                .doctorId(doctorId)
+                .change(AppointmentChangedEvent.Change.BOOKED)
+                .occurredAt(Instant.now())
+                .build();
+    }
+
+    // Increasing ObjectIds, like the outbox writes them
+    private static String id(int n) {
+        return new ObjectId(1_700_000_000 + n, 0).toHexString();
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.vladyslav.service;
+
+import com.example.vladyslav.model.AvailabilityRule;
+import com.example.vladyslav.model.Break;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the old LocalTime/stream slot loop with {@link DaySlotMask} for 7, 31 and 90 day ranges.
+ * Both variants iterate the produced strings, which is what Jackson does when writing the response.
+ *
+ * Not a unit test: run {@link #main} on the test classpath after mvn test-compile.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SlotGenerationBenchmark {
+
+    @Param({"7", "31", "90"})
+    int days;
+
+    private AvailabilityRule rule;
+    private List<List<AvailabilityRuleService.TimeInterval>> bookedPerDay;
+
+    @Setup
+    public void setUp() {
+        rule = AvailabilityRule.builder()
+                .doctorId("doctor")
+                .dayOfWeek(1)
+                .start(LocalTime.of(8, 0))
+                .end(LocalTime.of(18, 0))
+                .slotMinutes(15)
+                .breaks(List.of(new Break(LocalTime.of(12, 30), LocalTime.of(13, 30)),
+                                new Break(LocalTime.of(15, 0), LocalTime.of(15, 15))))
+                .build();
+
+        // Roughly a third of the day booked, shifted a little each day
+        bookedPerDay = new ArrayList<>();
+        for (int d = 0; d < days; d++) {
+            List<AvailabilityRuleService.TimeInterval> booked = new ArrayList<>();
+            for (int i = 0; i < 12; i++) {
+                LocalTime start = LocalTime.of(8, 0).plusMinutes(((d + i * 3L) % 40) * 15);
+                booked.add(new AvailabilityRuleService.TimeInterval(start, start.plusMinutes(15)));
+            }
+            bookedPerDay.add(booked);
+        }
+
+        // Both implementations must agree before timing anything
+        for (List<AvailabilityRuleService.TimeInterval> booked : bookedPerDay) {
+            if (!legacyDay(booked).equals(new ArrayList<>(maskDay(booked)))) {
+                throw new IllegalStateException("DaySlotMask output differs from the legacy implementation");
+            }
+        }
+    }
+
+    @Benchmark
+    public void legacy(Blackhole bh) {
+        for (List<AvailabilityRuleService.TimeInterval> booked : bookedPerDay) {
+            for (String slot : legacyDay(booked)) bh.consume(slot);
+        }
+    }
+
+    @Benchmark
+    public void bitmask(Blackhole bh) {
+        for (List<AvailabilityRuleService.TimeInterval> booked : bookedPerDay) {
+            for (String slot : maskDay(booked)) bh.consume(slot);
+        }
+    }
+
+    private List<String> maskDay(List<AvailabilityRuleService.TimeInterval> booked) {
+        DaySlotMask mask = DaySlotMask.forRule(rule);
+        for (AvailabilityRuleService.TimeInterval b : booked) mask.block(b.start(), b.end());
+        return mask.freeSlotTimes();
+    }
+
+    private List<String> legacyDay(List<AvailabilityRuleService.TimeInterval> booked) {
+        List<AvailabilityRuleService.TimeInterval> breaks = rule.getBreaks().stream()
+                .map(b -> new AvailabilityRuleService.TimeInterval(b.getStartBreak(), b.getEndBreak()))
+                .toList();
+
+        int slotMin = rule.getSlotMinutes();
+        List<String> out = new ArrayList<>();
+        for (LocalTime t = rule.getStart(); !t.plusMinutes(slotMin).isAfter(rule.getEnd()); t = t.plusMinutes(slotMin)) {
+            LocalTime slotStart = t;
+            LocalTime slotEnd = t.plusMinutes(slotMin);
+            if (breaks.stream().anyMatch(b -> overlaps(slotStart, slotEnd, b.start(), b.end()))) continue;
+            if (booked.stream().anyMatch(b -> overlaps(slotStart, slotEnd, b.start(), b.end()))) continue;
+            out.add(slotStart.toString().substring(0, 5));
+        }
+        return out;
+    }
+
+    private static boolean overlaps(LocalTime aStart, LocalTime aEnd, LocalTime bStart, LocalTime bEnd) {
+        return aStart.isBefore(bEnd) && bStart.isBefore(aEnd);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(SlotGenerationBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,249 @@
+package com.example.vladyslav.service;
+
+import com.example.vladyslav.dto.AppointmentDTO;
+import com.example.vladyslav.dto.SlotHoldDTO;
+import com.example.vladyslav.event.AppointmentChangedEvent;
+import com.example.vladyslav.event.SlotHoldChangedEvent;
+import com.example.vladyslav.exception.ConflictException;
+import com.example.vladyslav.exception.NotFoundException;
+import com.example.vladyslav.model.Appointment;
+import com.example.vladyslav.model.AvailabilityRule;
+import com.example.vladyslav.model.Doctor;
+import com.example.vladyslav.model.OutboxEvent;
+import com.example.vladyslav.model.Patient;
+import com.example.vladyslav.model.SlotHold;
+import com.example.vladyslav.model.User;
+import com.example.vladyslav.model.enums.AppointmentStatus;
+import com.example.vladyslav.model.enums.Role;
+import com.example.vladyslav.repository.AppointmentRepository;
+import com.example.vladyslav.repository.DoctorRepository;
+import com.example.vladyslav.repository.PatientRepository;
+import com.example.vladyslav.requests.HoldSlotRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static com.example.vladyslav.service.AppointmentServiceFixture.appointmentService;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SlotHoldServiceTest {
+
+    private static final ZoneId UK = ZoneId.of("Europe/London");
+    private static final String DOCTOR = "doctor-1";
+
+    private static final User PATIENT_1 = user("user-p1", Role.PATIENT);
+    private static final User PATIENT_2 = user("user-p2", Role.PATIENT);
+    private static final User DOCTOR_USER = user("user-d1", Role.DOCTOR);
+
+    private final List<SlotHold> holds = new ArrayList<>();
+
+    private MongoTemplate mongoTemplate;
+    private AppointmentRepository appointmentRepository;
+    private SlotClaimService slotClaimService;
+    private ApplicationEventPublisher eventPublisher;
+    private MongoTemplate outboxTemplate;
+    private SlotHoldService service;
+    private LocalDate date;
+
+    @BeforeEach
+    void setUp() {
+        date = LocalDate.now(UK).plusDays(3);
+        AvailabilityRule rule = AvailabilityRule.builder()
+                .doctorId(DOCTOR)
+                .start(LocalTime.of(9, 0))
+                .end(LocalTime.of(17, 0))
+                .slotMinutes(30)
+                .build();
+
+        BookingContextLoader contextLoader = Mockito.mock(BookingContextLoader.class);
+        when(contextLoader.load(eq(DOCTOR), anyInt(), any(), any()))
+                .thenAnswer(inv -> new BookingContext(DOCTOR, inv.getArgument(1), rule, List.of(), List.of(), List.copyOf(holds)));
+
+        mongoTemplate = Mockito.mock(MongoTemplate.class);
+        when(mongoTemplate.insert(any(SlotHold.class))).thenAnswer(inv -> {
+            holds.add(inv.getArgument(0));
+            return inv.getArgument(0);
+        });
+        appointmentRepository = Mockito.mock(AppointmentRepository.class);
+        when(appointmentRepository.insert(any(Appointment.class))).thenAnswer(inv -> inv.getArgument(0));
+        slotClaimService = Mockito.mock(SlotClaimService.class);
+        eventPublisher = Mockito.mock(ApplicationEventPublisher.class);
+        outboxTemplate = Mockito.mock(MongoTemplate.class);
+        when(mongoTemplate.findById(any(), eq(SlotHold.class)))
+                .thenAnswer(inv -> holds.stream().filter(h -> h.getId().equals(inv.getArgument(0))).findFirst().orElse(null));
+
+        DoctorRepository doctorRepository = Mockito.mock(DoctorRepository.class);
+        when(doctorRepository.findByUserId(DOCTOR_USER.getId())).thenReturn(Optional.of(Doctor.builder().id(DOCTOR).build()));
+        PatientRepository patientRepository = Mockito.mock(PatientRepository.class);
+        when(patientRepository.findByUserId(PATIENT_1.getId())).thenReturn(Optional.of(Patient.builder().id("patient-1").build()));
+        when(patientRepository.findByUserId(PATIENT_2.getId())).thenReturn(Optional.of(Patient.builder().id("patient-2").build()));
+
+        AppointmentServiceFixture appointments = appointmentService()
+                .repository(appointmentRepository)
+                .eventPublisher(eventPublisher)
+                .slotClaims(slotClaimService)
+                .contextLoader(contextLoader)
+                .outboxTemplate(outboxTemplate)
+                .historyTemplate(mongoTemplate);
+
+        service = new SlotHoldService(mongoTemplate, appointmentRepository, doctorRepository, patientRepository, appointments.build(), contextLoader,
+                new BookingLocks(16, 10_000), slotClaimService, eventPublisher, appointments.outbox(),
+                new AppointmentSnapshots(Mockito.mock(MongoTemplate.class)), 10);
+    }
+
+    @Test
+    void holdClaimsTheSlotUntilItExpires() {
+        SlotHoldDTO hold = service.hold(request("patient-1", "10:00"));
+
+        assertThat(hold.start()).isEqualTo(at(10, 0));
+        assertThat(hold.expiresAt()).isAfter(Instant.now().plusSeconds(9 * 60));
+        verify(slotClaimService).claimUntil(DOCTOR, hold.id(), at(10, 0), at(10, 30), hold.expiresAt());
+        verify(eventPublisher).publishEvent(new SlotHoldChangedEvent(DOCTOR, at(10, 0), at(10, 30)));
+    }
+
+    @Test
+    void heldSlotCannotBeHeldAgain() {
+        service.hold(request("patient-1", "10:00"));
+
+        assertThatThrownBy(() -> service.hold(request("patient-2", "10:00"))).isInstanceOf(ConflictException.class);
+    }
+
+    @Test
+    void confirmTurnsTheHoldIntoAnAppointmentWithTheSameId() {
+        SlotHoldDTO hold = service.hold(request("patient-1", "10:00"));
+        when(mongoTemplate.findAndRemove(any(Query.class), eq(SlotHold.class))).thenReturn(holds.get(0));
+
+        AppointmentDTO booked = service.confirm(hold.id(), PATIENT_1);
+
+        assertThat(booked.getId()).isEqualTo(hold.id());
+        assertThat(booked.getStatus()).isEqualTo(AppointmentStatus.SCHEDULED);
+        verify(slotClaimService).keep(hold.id(), at(10, 30));
+
+        ArgumentCaptor<Appointment> inserted = ArgumentCaptor.forClass(Appointment.class);
+        verify(appointmentRepository).insert(inserted.capture());
+        assertThat(inserted.getValue().getPatientId()).isEqualTo("patient-1");
+        verify(eventPublisher).publishEvent(any(AppointmentChangedEvent.class));
+        verify(outboxTemplate).insert(Mockito.<OutboxEvent>argThat(e -> e.getAppointmentId().equals(hold.id())
+                && e.getChange() == AppointmentChangedEvent.Change.BOOKED));
+
+        // The removal is conditional on the hold still being live
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).findAndRemove(query.capture(), eq(SlotHold.class));
+        assertThat(query.getValue().getQueryObject()).containsKeys("_id", "expireAt");
+    }
+
+    @Test
+    void failingLocalListenerDoesNotUndoACommittedConfirm() {
+        SlotHoldDTO hold = service.hold(request("patient-1", "10:00"));
+        when(mongoTemplate.findAndRemove(any(Query.class), eq(SlotHold.class))).thenReturn(holds.get(0));
+        doThrow(new IllegalStateException("cache down")).when(eventPublisher).publishEvent(any(AppointmentChangedEvent.class));
+
+        assertThat(service.confirm(hold.id(), PATIENT_1).getId()).isEqualTo(hold.id());
+        verify(slotClaimService, never()).releaseAll(hold.id());
+    }
+
+    @Test
+    void expiredHoldCannotBeConfirmed() {
+        SlotHoldDTO hold = service.hold(request("patient-1", "10:00"));
+
+        // Still stored, but past the confirm margin: the conditional removal finds nothing
+        assertThatThrownBy(() -> service.confirm(hold.id(), PATIENT_1)).isInstanceOf(ConflictException.class);
+        verify(appointmentRepository, never()).insert(any(Appointment.class));
+    }
+
+    @Test
+    void missingHoldIsNotFound() {
+        assertThatThrownBy(() -> service.confirm("gone", PATIENT_1)).isInstanceOf(NotFoundException.class);
+        verify(appointmentRepository, never()).insert(any(Appointment.class));
+    }
+
+    @Test
+    void anotherPatientsHoldIsNotFound() {
+        SlotHoldDTO hold = service.hold(request("patient-1", "10:00"));
+
+        assertThatThrownBy(() -> service.confirm(hold.id(), PATIENT_2)).isInstanceOf(NotFoundException.class);
+        assertThatThrownBy(() -> service.release(hold.id(), PATIENT_2)).isInstanceOf(NotFoundException.class);
+        verify(mongoTemplate, never()).findAndRemove(any(Query.class), eq(SlotHold.class));
+        verify(slotClaimService, never()).releaseAll(hold.id());
+    }
+
+    @Test
+    void theHoldsDoctorCanReleaseIt() {
+        SlotHoldDTO hold = service.hold(request("patient-1", "10:00"));
+        when(mongoTemplate.findAndRemove(any(Query.class), eq(SlotHold.class))).thenReturn(holds.get(0));
+
+        service.release(hold.id(), DOCTOR_USER);
+
+        verify(slotClaimService).releaseAll(hold.id());
+    }
+
+    @Test
+    void failedInsertLeavesThePatientHoldingTheSlot() {
+        SlotHoldDTO hold = service.hold(request("patient-1", "10:00"));
+        SlotHold stored = holds.get(0);
+        when(mongoTemplate.findAndRemove(any(Query.class), eq(SlotHold.class))).thenAnswer(inv -> {
+            holds.remove(stored);
+            return stored;
+        });
+        when(appointmentRepository.insert(any(Appointment.class))).thenThrow(new IllegalStateException("write failed"));
+
+        assertThatThrownBy(() -> service.confirm(hold.id(), PATIENT_1)).isInstanceOf(IllegalStateException.class);
+
+        // Without a transaction the removed hold is put back, its claims keep expiring with it
+        assertThat(holds).containsExactly(stored);
+        verify(slotClaimService, never()).keep(any(), any());
+        verify(slotClaimService, never()).releaseAll(hold.id());
+        verify(outboxTemplate, never()).insert(any(OutboxEvent.class));
+    }
+
+    @Test
+    void expiryWheelReleasesDueHolds() {
+        SlotHold due = SlotHold.builder().id("hold-1").doctorId(DOCTOR).start(at(10, 0)).end(at(10, 30))
+                .expireAt(Instant.now().minusSeconds(1)).build();
+        when(mongoTemplate.insert(any(SlotHold.class))).thenReturn(due);
+
+        service.hold(request("patient-1", "10:00"));
+        when(mongoTemplate.findAndRemove(any(Query.class), eq(SlotHold.class))).thenReturn(due);
+        service.expireDue();
+
+        verify(slotClaimService).releaseAll("hold-1");
+    }
+
+    private HoldSlotRequest request(String patientId, String time) {
+        HoldSlotRequest request = new HoldSlotRequest();
+        request.setDoctorId(DOCTOR);
+        request.setPatientId(patientId);
+        request.setDate(date.toString());
+        request.setTime(time);
+        return request;
+    }
+
+    private static User user(String id, Role role) {
+        return User.builder().id(id).role(role).build();
+    }
+
+    private Instant at(int hour, int minute) {
+        return ZonedDateTime.of(date, LocalTime.of(hour, minute), UK).toInstant();
+    }
+}
@@ -0,0 +1,265 @@
+package com.example.vladyslav.service;
+
+import com.example.vladyslav.event.AvailabilityRuleChangedEvent;
+import com.example.vladyslav.event.SlotHoldChangedEvent;
+import com.example.vladyslav.event.TimeOffChangedEvent;
+import com.example.vladyslav.model.AvailabilityRule;
+import com.example.vladyslav.model.SlotInventory;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.bulk.BulkWriteUpsert;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.mockito.stubbing.OngoingStubbing;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SlotInventoryServiceTest {
+
+    private static final ZoneId UK = ZoneId.of("Europe/London");
+    private static final String DOCTOR = "doctor-1";
+    private static final LocalDate TOMORROW = LocalDate.now(UK).plusDays(1);
+    private static final String DAY = SlotInventory.idFor(DOCTOR, TOMORROW);
+
+    // 09:00, 09:30 and 10:00 every day
+    private static final AvailabilityRule RULE = AvailabilityRule.builder()
+            .doctorId(DOCTOR)
+            .start(LocalTime.of(9, 0))
+            .end(LocalTime.of(10, 30))
+            .slotMinutes(30)
+            .build();
+
+    private MongoTemplate mongoTemplate;
+    private SlotMaskCalculator calculator;
+    private List<Runnable> queued;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = Mockito.mock(MongoTemplate.class);
+        calculator = Mockito.mock(SlotMaskCalculator.class);
+        queued = new ArrayList<>();
+        when(calculator.compute(eq(DOCTOR), any(), any())).thenAnswer(inv -> {
+            Map<LocalDate, DaySlotMask> masks = new LinkedHashMap<>();
+            for (LocalDate date = inv.getArgument(1); !date.isAfter(inv.getArgument(2)); date = date.plusDays(1)) {
+                masks.put(date, DaySlotMask.forRule(RULE));
+            }
+            return masks;
+        });
+    }
+
+    @Test
+    void claimMovesTheSlotFromFreeToTakenInOneWrite() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), eq(SlotInventory.class)))
+                .thenReturn(SlotInventory.builder().slotMinutes(30).build());
+
+        SlotInventoryService.Claim claim = service().claim(DOCTOR, TOMORROW, "09:30");
+
+        assertThat(claim).isEqualTo(new SlotInventoryService.Claim(SlotInventoryService.ClaimStatus.CLAIMED, 30));
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).findAndModify(query.capture(), update.capture(), eq(SlotInventory.class));
+        assertThat(query.getValue().getQueryObject()).isEqualTo(new Document("_id", DAY).append("free", "09:30"));
+        assertThat(update.getValue().getUpdateObject()).isEqualTo(new Document("$pull", new Document("free", "09:30"))
+                .append("$push", new Document("taken", "09:30"))
+                .append("$inc", new Document("version", 1)));
+        verify(mongoTemplate, never()).exists(any(Query.class), eq(SlotInventory.class));
+    }
+
+    @Test
+    void failedClaimTellsATakenSlotFromADayThatIsNotMaterialized() {
+        when(mongoTemplate.exists(any(Query.class), eq(SlotInventory.class))).thenReturn(true, false);
+
+        assertThat(service().claim(DOCTOR, TOMORROW, "09:30").status()).isEqualTo(SlotInventoryService.ClaimStatus.UNAVAILABLE);
+        assertThat(service().claim(DOCTOR, TOMORROW, "09:30").status()).isEqualTo(SlotInventoryService.ClaimStatus.NOT_MATERIALIZED);
+    }
+
+    @Test
+    void regenerateWritesEachDayOnlyAtTheVersionItReadAndKeepsTakenSlots() {
+        LocalDate dayAfter = TOMORROW.plusDays(1);
+        stored(inventory(TOMORROW, 3, "09:30"));
+        BulkOperations bulk = bulk(result(1, 1));
+
+        service().regenerate(DOCTOR, TOMORROW, dayAfter);
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(bulk).updateOne(query.capture(), update.capture());
+        assertThat(query.getValue().getQueryObject()).isEqualTo(new Document("_id", DAY).append("version", 3L));
+        assertThat(update.getValue().getUpdateObject().get("$set", Document.class).get("free")).isEqualTo(List.of("09:00", "10:00"));
+        assertThat(update.getValue().getUpdateObject().get("$inc", Document.class)).isEqualTo(new Document("version", 1));
+
+        // A day nobody materialized yet is only inserted if it still does not exist
+        verify(bulk).upsert(query.capture(), update.capture());
+        assertThat(query.getValue().getQueryObject()).isEqualTo(new Document("_id", SlotInventory.idFor(DOCTOR, dayAfter))
+                .append("version", new Document("$exists", false)));
+        assertThat(update.getValue().getUpdateObject().get("$setOnInsert", Document.class)).containsEntry("taken", List.of());
+        verify(bulk).execute();
+    }
+
+    @Test
+    void claimLandingDuringRegenerationIsNotOverwritten() {
+        stored(inventory(TOMORROW, 3, "09:30"), inventory(TOMORROW, 4, "09:30", "10:00"));
+        // The first write finds version 4 instead of 3 and matches nothing
+        BulkOperations first = bulk(result(0, 0));
+        BulkOperations second = bulk(result(1, 0));
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, SlotInventory.class)).thenReturn(first, second);
+
+        service().regenerate(DOCTOR, TOMORROW, TOMORROW);
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(second).updateOne(query.capture(), update.capture());
+        assertThat(query.getValue().getQueryObject()).containsEntry("version", 4L);
+        assertThat(update.getValue().getUpdateObject().get("$set", Document.class).get("free")).isEqualTo(List.of("09:00"));
+        verify(calculator, times(2)).compute(DOCTOR, TOMORROW, TOMORROW);
+    }
+
+    @Test
+    void dayInsertedConcurrentlyIsRetried() {
+        stored();
+        BulkOperationException duplicate = new BulkOperationException("E11000 duplicate key", Mockito.mock(MongoBulkWriteException.class));
+        BulkOperations first = bulk(null);
+        when(first.execute()).thenThrow(duplicate);
+        BulkOperations second = bulk(result(1, 0));
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, SlotInventory.class)).thenReturn(first, second);
+
+        service().regenerate(DOCTOR, TOMORROW, TOMORROW);
+
+        verify(second).execute();
+    }
+
+    @Test
+    void dayThatKeepsChangingIsLeftForTheSweep() {
+        stored(inventory(TOMORROW, 3));
+        BulkOperations bulk = bulk(result(0, 0));
+
+        service().regenerate(DOCTOR, TOMORROW, TOMORROW);
+
+        verify(bulk, times(3)).execute();
+    }
+
+    @Test
+    void releasePullsTheSlotsOfTheRangeAndRebuildsTheDay() {
+        stored(inventory(TOMORROW, 5));
+        bulk(result(1, 0));
+
+        service().release(DOCTOR, at(TOMORROW, 9, 30), at(TOMORROW, 10, 0));
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateFirst(query.capture(), update.capture(), eq(SlotInventory.class));
+        assertThat(query.getValue().getQueryObject()).isEqualTo(new Document("_id", DAY));
+        assertThat(update.getValue().getUpdateObject()).isEqualTo(
+                new Document("$pull", new Document("taken", new Document("$gte", "09:30").append("$lt", "10:00")))
+                        .append("$inc", new Document("version", 1)));
+        verify(calculator).compute(DOCTOR, TOMORROW, TOMORROW);
+    }
+
+    @Test
+    void ruleChangeRebuildsTheHorizonOffTheRequestThread() {
+        SlotInventoryService service = service(queued::add);
+        stored();
+        bulk(result(0, 28));
+
+        service.onRuleChanged(new AvailabilityRuleChangedEvent(DOCTOR, 1));
+        verify(calculator, never()).compute(anyString(), any(), any());
+
+        queued.forEach(Runnable::run);
+        LocalDate today = LocalDate.now(UK);
+        verify(calculator).compute(DOCTOR, today, today.plusDays(27));
+    }
+
+    @Test
+    void ruleChangeWithAFullQueueIsLeftForTheHorizonRefresh() {
+        SlotInventoryService service = service(task -> {
+            throw new TaskRejectedException("full");
+        });
+
+        service.onRuleChanged(new AvailabilityRuleChangedEvent(DOCTOR, 1));
+
+        verify(calculator, never()).compute(anyString(), any(), any());
+    }
+
+    @Test
+    void timeOffAndHoldChangesAreRebuiltOffTheRequestThread() {
+        SlotInventoryService service = service(queued::add);
+        stored();
+        bulk(result(0, 1));
+        Instant start = ZonedDateTime.of(TOMORROW, LocalTime.of(9, 0), UK).toInstant();
+
+        service.onTimeOffChanged(new TimeOffChangedEvent(DOCTOR, start, start.plusSeconds(3600)));
+        service.onHoldChanged(new SlotHoldChangedEvent(DOCTOR, start, start.plusSeconds(1800)));
+        verify(calculator, never()).compute(anyString(), any(), any());
+
+        queued.forEach(Runnable::run);
+        verify(calculator, times(2)).compute(DOCTOR, TOMORROW, TOMORROW);
+    }
+
+    private SlotInventoryService service() {
+        return service(Runnable::run);
+    }
+
+    private SlotInventoryService service(Executor executor) {
+        return new SlotInventoryService(mongoTemplate, calculator, executor, true, 28);
+    }
+
+    // What each read of the doctor's days returns, in order
+    private void stored(SlotInventory... reads) {
+        OngoingStubbing<List<SlotInventory>> stub = when(mongoTemplate.find(any(Query.class), eq(SlotInventory.class)));
+        if (reads.length == 0) stub.thenReturn(List.of());
+        for (SlotInventory read : reads) stub = stub.thenReturn(List.of(read));
+    }
+
+    private BulkOperations bulk(BulkWriteResult result) {
+        BulkOperations bulk = Mockito.mock(BulkOperations.class);
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, SlotInventory.class)).thenReturn(bulk);
+        if (result != null) when(bulk.execute()).thenReturn(result);
+        return bulk;
+    }
+
+    private static BulkWriteResult result(int matched, int upserted) {
+        List<BulkWriteUpsert> upserts = new ArrayList<>();
+        for (int i = 0; i < upserted; i++) upserts.add(new BulkWriteUpsert(i, new BsonString("day-" + i)));
+        return BulkWriteResult.acknowledged(0, matched, 0, matched, upserts, List.of());
+    }
+
+    private static SlotInventory inventory(LocalDate date, long version, String... taken) {
+        return SlotInventory.builder()
+                .id(SlotInventory.idFor(DOCTOR, date))
+                .version(version)
+                .taken(new ArrayList<>(List.of(taken)))
+                .build();
+    }
+
+    private static Instant at(LocalDate date, int hour, int minute) {
+        return ZonedDateTime.of(date, LocalTime.of(hour, minute), UK).toInstant();
+    }
+}
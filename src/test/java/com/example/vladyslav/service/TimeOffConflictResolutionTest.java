@@ -0,0 +1,153 @@
+package com.example.vladyslav.service;
+
+import com.example.vladyslav.dto.TimeOffConflictSummaryDTO;
+import com.example.vladyslav.event.AppointmentChangedEvent;
+import com.example.vladyslav.event.TimeOffChangedEvent;
+import com.example.vladyslav.event.TimeOffConflictNotice;
+import com.example.vladyslav.model.Appointment;
+import com.example.vladyslav.model.TimeOff;
+import com.example.vladyslav.model.enums.TimeOffConflictMode;
+import com.example.vladyslav.repository.TimeOffRepository;
+import com.mongodb.bulk.BulkWriteResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TimeOffConflictResolutionTest {
+
+    private static final String DOCTOR = "doctor-1";
+    private static final Instant FROM = Instant.parse("2030-03-04T00:00:00Z");
+    private static final Instant TO = Instant.parse("2030-03-08T23:59:00Z");
+
+    private final List<Object> events = new ArrayList<>();
+
+    private MongoTemplate mongoTemplate;
+    private BulkOperations bulk;
+    private BulkWriteResult bulkResult;
+    private SlotClaimService slotClaimService;
+    private TimeOffService service;
+
+    @BeforeEach
+    void setUp() {
+        TimeOffRepository repository = Mockito.mock(TimeOffRepository.class);
+        when(repository.findByDoctorIdAndStartLessThanEqualAndEndGreaterThanEqual(any(), any(), any())).thenReturn(List.of());
+        when(repository.save(any(TimeOff.class))).thenAnswer(inv -> {
+            TimeOff t = inv.getArgument(0);
+            t.setId("off-1");
+            return t;
+        });
+
+        mongoTemplate = Mockito.mock(MongoTemplate.class);
+        bulk = Mockito.mock(BulkOperations.class);
+        bulkResult = Mockito.mock(BulkWriteResult.class);
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Appointment.class)).thenReturn(bulk);
+        when(bulk.execute()).thenReturn(bulkResult);
+        when(mongoTemplate.find(any(Query.class), eq(Appointment.class))).thenReturn(List.of(
+                appointment("a1", "patient-1", 0), appointment("a2", "patient-2", 1), appointment("a3", "patient-1", 2)));
+
+        slotClaimService = Mockito.mock(SlotClaimService.class);
+        ApplicationEventPublisher publisher = events::add;
+        service = new TimeOffService(repository, publisher, mongoTemplate, slotClaimService, new BookingLocks(16, 10_000));
+    }
+
+    @Test
+    void cancelResolvesAllConflictsWithOneBulkWriteAndOneNoticePerPatient() {
+        when(bulkResult.getModifiedCount()).thenReturn(3);
+
+        TimeOffConflictSummaryDTO summary = service.create(timeOff(), TimeOffConflictMode.CANCEL);
+
+        assertThat(summary.conflicts()).isEqualTo(3);
+        assertThat(summary.resolved()).isEqualTo(3);
+        assertThat(summary.patientsNotified()).isEqualTo(2);
+        verify(bulk, times(3)).updateOne(any(Query.class), any(Update.class));
+        verify(bulk, times(1)).execute();
+        verify(mongoTemplate, times(1)).find(any(Query.class), eq(Appointment.class));
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Collection<String>> released = ArgumentCaptor.forClass(Collection.class);
+        verify(slotClaimService).releaseAll(released.capture());
+        assertThat(released.getValue()).containsExactly("a1", "a2", "a3");
+
+        List<TimeOffConflictNotice> notices = notices();
+        assertThat(notices).hasSize(2);
+        assertThat(notices.get(0).patientId()).isEqualTo("patient-1");
+        assertThat(notices.get(0).appointments()).extracting(TimeOffConflictNotice.Affected::appointmentId).containsExactly("a1", "a3");
+        assertThat(events).filteredOn(TimeOffChangedEvent.class::isInstance).hasSize(1);
+
+        // No per-appointment events, so the waitlist does not try to fill slots inside the leave
+        assertThat(events).noneMatch(AppointmentChangedEvent.class::isInstance);
+    }
+
+    @Test
+    void flagMarksAppointmentsButKeepsThemBooked() {
+        when(bulkResult.getModifiedCount()).thenReturn(3);
+
+        service.create(timeOff(), TimeOffConflictMode.FLAG);
+
+        ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+        verify(bulk, times(3)).updateOne(any(Query.class), updates.capture());
+        assertThat(updates.getValue().getUpdateObject().get("$set", org.bson.Document.class))
+                .containsEntry("timeOffConflictId", "off-1")
+                .doesNotContainKey("status");
+        verify(slotClaimService, never()).releaseAll(anyList());
+        assertThat(events).noneMatch(AppointmentChangedEvent.class::isInstance);
+    }
+
+    @Test
+    void appointmentsChangedMeanwhileAreNotReported() {
+        when(bulkResult.getModifiedCount()).thenReturn(2);
+        when(mongoTemplate.find(any(Query.class), eq(Appointment.class)))
+                .thenReturn(List.of(appointment("a1", "patient-1", 0), appointment("a2", "patient-2", 1), appointment("a3", "patient-1", 2)))
+                .thenReturn(List.of(Appointment.builder().id("a1").build(), Appointment.builder().id("a3").build()));
+
+        TimeOffConflictSummaryDTO summary = service.create(timeOff(), TimeOffConflictMode.CANCEL);
+
+        assertThat(summary.conflicts()).isEqualTo(3);
+        assertThat(summary.appointmentIds()).containsExactly("a1", "a3");
+        assertThat(notices()).hasSize(1);
+    }
+
+    @Test
+    void ignoreOnlyReportsConflicts() {
+        TimeOffConflictSummaryDTO summary = service.create(timeOff(), TimeOffConflictMode.IGNORE);
+
+        assertThat(summary.conflicts()).isEqualTo(3);
+        assertThat(summary.resolved()).isZero();
+        verify(mongoTemplate, never()).bulkOps(any(BulkOperations.BulkMode.class), eq(Appointment.class));
+        assertThat(notices()).isEmpty();
+    }
+
+    private List<TimeOffConflictNotice> notices() {
+        return events.stream().filter(TimeOffConflictNotice.class::isInstance).map(TimeOffConflictNotice.class::cast).toList();
+    }
+
+    private static TimeOff timeOff() {
+        return TimeOff.builder().doctorId(DOCTOR).start(FROM).end(TO).reason("Sick").build();
+    }
+
+    private static Appointment appointment(String id, String patientId, int day) {
+        Instant start = FROM.plusSeconds(day * 86_400L + 10 * 3600);
+        return Appointment.builder().id(id).doctorId(DOCTOR).patientId(patientId)
+                .start(start).end(start.plusSeconds(1800)).version(0L).build();
+    }
+}
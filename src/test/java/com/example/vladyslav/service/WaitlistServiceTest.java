@@ -0,0 +1,144 @@
+package com.example.vladyslav.service;
+
+import com.example.vladyslav.dto.AppointmentDTO;
+import com.example.vladyslav.event.AppointmentChangedEvent;
+import com.example.vladyslav.event.AppointmentLifecycleEvent;
+import com.example.vladyslav.exception.ConflictException;
+import com.example.vladyslav.exception.OurException;
+import com.example.vladyslav.model.WaitlistEntry;
+import com.example.vladyslav.model.enums.WaitlistStatus;
+import com.example.vladyslav.repository.WaitlistRepository;
+import com.example.vladyslav.requests.BookAppointmentRequest;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class WaitlistServiceTest {
+
+    private static final String DOCTOR = "doctor-1";
+
+    private final List<Runnable> queued = new ArrayList<>();
+
+    private MongoTemplate mongoTemplate;
+    private AppointmentService appointmentService;
+    private WaitlistService service;
+
+    private final Instant start = Instant.now().plus(Duration.ofDays(3)).truncatedTo(ChronoUnit.HOURS);
+    private final Instant end = start.plus(Duration.ofMinutes(30));
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = Mockito.mock(MongoTemplate.class);
+        appointmentService = Mockito.mock(AppointmentService.class);
+        service = new WaitlistService(Mockito.mock(WaitlistRepository.class), mongoTemplate, appointmentService, queued::add, 90);
+    }
+
+    @Test
+    void cancellationOnlyQueuesTheMatch() {
+        service.onAppointmentChanged(delivered("appt-1", AppointmentChangedEvent.Change.CANCELLED, start, end));
+
+        assertThat(queued).hasSize(1);
+        Mockito.verifyNoInteractions(mongoTemplate, appointmentService);
+    }
+
+    @Test
+    void pastOrBookedSlotsAreNotOffered() {
+        service.onAppointmentChanged(delivered("appt-1", AppointmentChangedEvent.Change.CANCELLED,
+                Instant.now().minusSeconds(3600), Instant.now().minusSeconds(1800)));
+        service.onAppointmentChanged(delivered("appt-2", AppointmentChangedEvent.Change.BOOKED, start, end));
+
+        assertThat(queued).isEmpty();
+    }
+
+    @Test
+    void freedSlotIsBookedForTheLongestWaitingEligibleEntry() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(WaitlistEntry.class)))
+                .thenReturn(entry("entry-1", "patient-1"));
+        when(appointmentService.createAppointment(any())).thenReturn(AppointmentDTO.builder().id("appt-9").build());
+
+        AppointmentDTO booked = service.match(DOCTOR, start, end);
+
+        assertThat(booked.getId()).isEqualTo("appt-9");
+
+        ArgumentCaptor<Query> claim = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).findAndModify(claim.capture(), any(Update.class), any(FindAndModifyOptions.class), eq(WaitlistEntry.class));
+        Document filter = claim.getValue().getQueryObject();
+        assertThat(filter.get("doctorId")).isEqualTo(DOCTOR);
+        assertThat(filter.get("status")).isEqualTo(WaitlistStatus.WAITING);
+        assertThat(filter).containsKeys("windowStart", "windowEnd");
+        assertThat(claim.getValue().getSortObject()).containsEntry("createdAt", 1);
+
+        ArgumentCaptor<BookAppointmentRequest> request = ArgumentCaptor.forClass(BookAppointmentRequest.class);
+        verify(appointmentService).createAppointment(request.capture());
+        assertThat(request.getValue().getPatientId()).isEqualTo("patient-1");
+
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateFirst(any(Query.class), update.capture(), eq(WaitlistEntry.class));
+        assertThat(update.getValue().getUpdateObject().get("$set", Document.class))
+                .containsEntry("status", WaitlistStatus.BOOKED)
+                .containsEntry("appointmentId", "appt-9");
+    }
+
+    @Test
+    void slotTakenMeanwhileRequeuesTheEntryAndStops() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(WaitlistEntry.class)))
+                .thenReturn(entry("entry-1", "patient-1"));
+        when(appointmentService.createAppointment(any())).thenThrow(new ConflictException("taken"));
+
+        assertThat(service.match(DOCTOR, start, end)).isNull();
+
+        verify(mongoTemplate, times(1)).findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(WaitlistEntry.class));
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateFirst(any(Query.class), update.capture(), eq(WaitlistEntry.class));
+        assertThat(update.getValue().getUpdateObject().get("$set", Document.class)).containsEntry("status", WaitlistStatus.WAITING);
+    }
+
+    @Test
+    void entryThatCannotTakeTheSlotIsSkipped() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(WaitlistEntry.class)))
+                .thenReturn(entry("entry-1", "patient-1"), entry("entry-2", "patient-2"));
+        when(appointmentService.createAppointment(any()))
+                .thenThrow(new OurException("not on grid"))
+                .thenReturn(AppointmentDTO.builder().id("appt-9").build());
+
+        assertThat(service.match(DOCTOR, start, end).getId()).isEqualTo("appt-9");
+
+        ArgumentCaptor<Query> claims = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, times(2)).findAndModify(claims.capture(), any(Update.class), any(FindAndModifyOptions.class), eq(WaitlistEntry.class));
+        assertThat(claims.getAllValues().get(1).getQueryObject().get("_id", Document.class).getList("$nin", String.class))
+                .containsExactly("entry-1");
+    }
+
+    private static WaitlistEntry entry(String id, String patientId) {
+        return WaitlistEntry.builder()
+                .id(id)
+                .doctorId(DOCTOR)
+                .patientId(patientId)
+                .status(WaitlistStatus.MATCHING)
+                .build();
+    }
+
+    private static AppointmentLifecycleEvent delivered(String appointmentId, AppointmentChangedEvent.Change change, Instant start, Instant end) {
+        return new AppointmentLifecycleEvent("event-" + appointmentId, appointmentId, DOCTOR, "patient-0", change,
+                start, end, null, null, Instant.now());
+    }
+}